@@ -0,0 +1,75 @@
+package com.gamesys.consoleroulette.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gamesys.consoleroulette.application.bet.Bet;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+
+/**
+ * Parsing of one "Username Number Bet" input line into a bet.
+ * 
+ * @author Andreas
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreateBetBenchmark
+{
+	// How many distinct lines to cycle through, so we don't parse the very same string every time.
+	private static final int DISTINCT_LINES = 1024;
+
+	private static final int NUM_TOKENS = 3;
+
+	@Param({ "10", "10000", "1000000" })
+	public int players;
+
+	private GameBetMonitor betMonitor;
+
+	private BufferedReader reader;
+
+	private Pattern pattern;
+
+	@Setup
+	public void setUp()
+	{
+		ConcurrentHashMap<String, Player> playerMap = TableFixture.createPlayers(players);
+		betMonitor = new GameBetMonitor(TableFixture.LOWER_BOUND, TableFixture.UPPER_BOUND, playerMap,
+				new TableFixture.ControlledGameNumberGenerator());
+
+		String[] lines = new String[DISTINCT_LINES];
+		for (int i = 0; i < lines.length; i++)
+		{
+			String choice = (i % 3 == 0) ? "odd" : (i % 3 == 1) ? "EVEN" : Integer.toString(i % 36 + 1);
+			lines[i] = TableFixture.playerName(i % players) + " " + choice + " " + (i % 99 + 1) + ".50";
+		}
+		reader = new BufferedReader(new RepeatingLineReader(lines));
+		pattern = Pattern.compile(" ");
+	}
+
+	@Benchmark
+	public Bet createBet() throws IOException
+	{
+		return betMonitor.createBet(reader, pattern, NUM_TOKENS);
+	}
+}
@@ -0,0 +1,74 @@
+package com.gamesys.consoleroulette.benchmarks;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gamesys.consoleroulette.application.bet.BetRecord;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+
+/**
+ * Parsing of one "Username Number Bet" line with the garbage free parser, to compare against CreateBetBenchmark. A
+ * tenth of the lines are invalid, to make sure rejecting a line is as cheap as accepting one.
+ * 
+ * @author Andreas
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBetBenchmark
+{
+	// How many distinct lines to cycle through, so we don't parse the very same string every time.
+	private static final int DISTINCT_LINES = 1024;
+
+	@Param({ "10", "10000", "1000000" })
+	public int players;
+
+	private GameBetMonitor betMonitor;
+
+	private String[] lines;
+
+	private BetRecord betRecord;
+
+	private int next;
+
+	@Setup
+	public void setUp()
+	{
+		ConcurrentHashMap<String, Player> playerMap = TableFixture.createPlayers(players);
+		betMonitor = new GameBetMonitor(TableFixture.LOWER_BOUND, TableFixture.UPPER_BOUND, playerMap,
+				new TableFixture.ControlledGameNumberGenerator());
+
+		lines = new String[DISTINCT_LINES];
+		for (int i = 0; i < lines.length; i++)
+		{
+			String choice = (i % 3 == 0) ? "odd" : (i % 3 == 1) ? "EVEN" : Integer.toString(i % 36 + 1);
+			String amount = (i % 10 == 9) ? "1.005" : (i % 99 + 1) + ".50";
+			lines[i] = TableFixture.playerName(i % players) + " " + choice + " " + amount;
+		}
+		betRecord = new BetRecord();
+	}
+
+	@Benchmark
+	public int parseBet()
+	{
+		next = (next + 1) & (DISTINCT_LINES - 1);
+		return betMonitor.parseBet(lines[next], betRecord);
+	}
+}
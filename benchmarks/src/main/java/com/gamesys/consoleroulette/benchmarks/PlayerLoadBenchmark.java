@@ -0,0 +1,121 @@
+package com.gamesys.consoleroulette.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.store.MappedPlayerLoader;
+import com.gamesys.consoleroulette.application.store.PlayerRecordParser;
+
+/**
+ * Startup time: loading a player file of millions of lines, line by line (as createPlayerMap does) against the memory-mapped,
+ * parallel loader. The players keep a single game of history so the heap goes on the loading and not on empty
+ * histories.
+ * 
+ * @author Andreas
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class PlayerLoadBenchmark
+{
+	private static final String PLAYER_DELIMITER = ",";
+
+	private static final int MAX_TOKENS = 3;
+
+	private static final int HISTORY_DEPTH = 1;
+
+	@Param({ "5000000" })
+	private int rows;
+
+	private Path file;
+
+	private PlayerRecordParser recordParser;
+
+	private MappedPlayerLoader mappedLoader;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		TableFixture.silenceConsole();
+
+		recordParser = new PlayerRecordParser(Pattern.compile(PLAYER_DELIMITER), MAX_TOKENS, HISTORY_DEPTH);
+		mappedLoader = new MappedPlayerLoader(recordParser);
+
+		// Names with and without totals, like a real export.
+		file = Files.createTempFile("players", ".txt");
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+		{
+			for (int i = 0; i < rows; i++)
+			{
+				writer.write(TableFixture.playerName(i));
+				if (i % 4 != 0)
+				{
+					writer.write("," + (i % 1000) + ".50," + (i % 5000) + ".25");
+				}
+				writer.newLine();
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		Files.deleteIfExists(file);
+	}
+
+	/**
+	 * What ConsoleRoulette.createPlayerMap does, with the same history depth as the mapped loader.
+	 */
+	@Benchmark
+	public Map<String, Player> lineByLine() throws IOException
+	{
+		ConcurrentHashMap<String, Player> players = new ConcurrentHashMap<String, Player>(2);
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+		{
+			String line;
+			Player player;
+			while ((line = reader.readLine()) != null)
+			{
+				player = recordParser.parse(line);
+				if (player != null)
+				{
+					players.put(player.getUserName(), player);
+				}
+			}
+		}
+		return players;
+	}
+
+	@Benchmark
+	public Map<String, Player> mappedParallel() throws IOException
+	{
+		return mappedLoader.load(file);
+	}
+}
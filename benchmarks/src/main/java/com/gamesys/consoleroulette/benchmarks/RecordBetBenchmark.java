@@ -0,0 +1,89 @@
+package com.gamesys.consoleroulette.benchmarks;
+
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gamesys.consoleroulette.application.bet.Bet;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+
+/**
+ * Recording of an already parsed bet against the current game. Every player bets once per game; when all of them have
+ * bet the game id moves on, the same way it would when the game thread spins.
+ * 
+ * @author Andreas
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordBetBenchmark
+{
+	@Param({ "10", "10000", "1000000" })
+	public int players;
+
+	private GameBetMonitor betMonitor;
+
+	private TableFixture.ControlledGameNumberGenerator game;
+
+	private String[] names;
+
+	private long gameId;
+
+	private int next;
+
+	private PrintStream console;
+
+	@Setup
+	public void setUp()
+	{
+		ConcurrentHashMap<String, Player> playerMap = TableFixture.createPlayers(players);
+		game = new TableFixture.ControlledGameNumberGenerator();
+		betMonitor = new GameBetMonitor(TableFixture.LOWER_BOUND, TableFixture.UPPER_BOUND, playerMap, game);
+
+		names = new String[players];
+		for (int i = 0; i < players; i++)
+		{
+			names[i] = TableFixture.playerName(i);
+		}
+
+		console = TableFixture.silenceConsole();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		System.setOut(console);
+	}
+
+	@Benchmark
+	public boolean recordBet()
+	{
+		if (next == players)
+		{
+			next = 0;
+			game.setCurrentGameId(++gameId);
+		}
+		int index = next++;
+
+		return betMonitor.recordBet(new Bet(names[index], RouletteRange.SEVENTEEN, 250));
+	}
+}
@@ -0,0 +1,45 @@
+package com.gamesys.consoleroulette.benchmarks;
+
+import java.io.Reader;
+
+/**
+ * Reader that serves the same set of lines over and over, so a BufferedReader on top of it never runs dry and the
+ * benchmark doesn't pay for building a new reader on every call.
+ * 
+ * @author Andreas
+ *
+ */
+final class RepeatingLineReader extends Reader
+{
+	private final char[] text;
+
+	private int position;
+
+	RepeatingLineReader(String[] lines)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (String line : lines)
+		{
+			sb.append(line).append('\n');
+		}
+		this.text = sb.toString().toCharArray();
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len)
+	{
+		int count = Math.min(len, text.length - position);
+		System.arraycopy(text, position, cbuf, off, count);
+		position += count;
+		if (position == text.length)
+		{
+			position = 0;
+		}
+		return count;
+	}
+
+	@Override
+	public void close()
+	{
+	}
+}
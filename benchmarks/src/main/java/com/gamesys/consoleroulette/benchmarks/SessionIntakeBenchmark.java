@@ -0,0 +1,137 @@
+package com.gamesys.consoleroulette.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+import com.gamesys.consoleroulette.application.intake.SessionBetIntake;
+
+/**
+ * Round trip of one bet through the session intake while many other bettors sit connected and idle, with sessions on
+ * virtual threads against sessions on a pool of platform threads (one per session, which is what blocking sessions
+ * need). Every connection is a file descriptor on both ends, so 10k sessions need a descriptor limit above 20k.
+ * 
+ * @author Andreas
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionIntakeBenchmark
+{
+	@Param({ "10000" })
+	public int sessions;
+
+	@Param({ "virtual", "platform" })
+	public String threads;
+
+	private TableFixture.ControlledGameNumberGenerator game;
+
+	private SessionBetIntake intake;
+
+	private Socket[] sockets;
+
+	private byte[][] lines;
+
+	private final byte[] reply = new byte[256];
+
+	private long gameId;
+
+	private int next;
+
+	private PrintStream console;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		ConcurrentHashMap<String, Player> playerMap = TableFixture.createPlayers(sessions);
+		game = new TableFixture.ControlledGameNumberGenerator();
+		GameBetMonitor betMonitor = new GameBetMonitor(TableFixture.LOWER_BOUND, TableFixture.UPPER_BOUND, playerMap,
+				game);
+
+		ExecutorService executor = "virtual".equals(threads) ? Executors.newVirtualThreadPerTaskExecutor()
+				: Executors.newCachedThreadPool();
+		intake = new SessionBetIntake(betMonitor, 0, executor);
+		Thread acceptor = new Thread(intake, "SessionIntake");
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		// One connection, and so one session, per player.
+		sockets = new Socket[sessions];
+		lines = new byte[sessions][];
+		for (int i = 0; i < sessions; i++)
+		{
+			sockets[i] = new Socket(InetAddress.getLoopbackAddress(), intake.getPort());
+			sockets[i].setTcpNoDelay(true);
+			lines[i] = (TableFixture.playerName(i) + " " + (i % 36 + 1) + " 2.50\n").getBytes(StandardCharsets.US_ASCII);
+		}
+
+		console = TableFixture.silenceConsole();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		for (Socket socket : sockets)
+		{
+			socket.close();
+		}
+		intake.close();
+		System.setOut(console);
+	}
+
+	@Benchmark
+	public int betRoundTrip() throws IOException
+	{
+		// Every player bets once per game, then the game moves on.
+		if (next == sessions)
+		{
+			next = 0;
+			game.setCurrentGameId(++gameId);
+		}
+		Socket socket = sockets[next];
+		OutputStream out = socket.getOutputStream();
+		out.write(lines[next++]);
+		out.flush();
+
+		// Wait for the whole answer line.
+		InputStream in = socket.getInputStream();
+		int length = 0;
+		while (length == 0 || reply[length - 1] != '\n')
+		{
+			int read = in.read(reply, length, reply.length - length);
+			if (read < 0)
+			{
+				throw new IOException("The session was closed.");
+			}
+			length += read;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,121 @@
+package com.gamesys.consoleroulette.benchmarks;
+
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gamesys.consoleroulette.application.bet.Bet;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.game.BetBook;
+import com.gamesys.consoleroulette.application.game.ConsoleRenderer;
+import com.gamesys.consoleroulette.application.game.ConsoleRoundReporter;
+import com.gamesys.consoleroulette.application.game.RoundReporter;
+
+/**
+ * Settlement of a whole round: the book of bets of a game is settled against the winning number, the way
+ * GameNumberGenerator does after a spin. One invocation is one round, so the score is per round and not per player.
+ * 
+ * @author Andreas
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SettlementBenchmark
+{
+	private static final long GAME_ID = 0;
+
+	private static final RouletteRange[] CHOICES =
+	{ RouletteRange.ODD, RouletteRange.EVEN, RouletteRange.SEVEN, RouletteRange.SEVENTEEN, RouletteRange.THIRTYSIX };
+
+	@Param({ "10", "10000", "1000000" })
+	public int players;
+
+	// Share of registered players that placed a bet this round.
+	@Param({ "1.0", "0.01" })
+	public double betRatio;
+
+	// Prints the results table on the settling thread (console) or hands it to the renderer thread (renderer).
+	@Param({ "console", "renderer" })
+	public String output;
+
+	private BetBook betBook;
+
+	// Prints the results table like the game does, into the silenced console.
+	private RoundReporter reporter;
+
+	private Thread rendererThread;
+
+	private int winningNumber;
+
+	private PrintStream console;
+
+	@Setup
+	public void setUp()
+	{
+		ConcurrentHashMap<String, Player> playerMap = TableFixture.createPlayers(players);
+		Player[] table = playerMap.values().toArray(new Player[0]);
+
+		// Every round settles the same book, so the results overwrite each other instead of piling up.
+		betBook = new BetBook();
+		int betting = (int) Math.ceil(players * betRatio);
+		for (int i = 0; i < betting; i++)
+		{
+			Bet bet = new Bet(table[i].getUserName(), CHOICES[i % CHOICES.length], 160);
+			bet.setGameId(GAME_ID);
+			table[i].getHistory().record(GAME_ID, bet.getChoice().ordinal(), bet.getAmount());
+			betBook.add(table[i], bet);
+		}
+
+		console = TableFixture.silenceConsole();
+		if ("renderer".equals(output))
+		{
+			ConsoleRenderer renderer = new ConsoleRenderer();
+			rendererThread = new Thread(renderer, "ConsoleRenderer");
+			rendererThread.setDaemon(true);
+			rendererThread.start();
+			reporter = renderer;
+		}
+		else
+		{
+			reporter = new ConsoleRoundReporter();
+		}
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		if (rendererThread != null)
+		{
+			rendererThread.interrupt();
+		}
+		System.setOut(console);
+	}
+
+	@Benchmark
+	public int settleRound()
+	{
+		winningNumber = winningNumber % TableFixture.UPPER_BOUND + TableFixture.LOWER_BOUND;
+		reporter.roundStarted(GAME_ID, winningNumber);
+		int settled = betBook.settle(winningNumber, reporter);
+		reporter.roundFinished(GAME_ID, settled);
+		return winningNumber;
+	}
+}
@@ -0,0 +1,92 @@
+package com.gamesys.consoleroulette.benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.BetBook;
+import com.gamesys.consoleroulette.application.game.GameNumberGenerator;
+
+/**
+ * Builds the pieces of a table the benchmarks need: a player map of a given size and a number generator whose game id
+ * is driven by the benchmark instead of the game thread.
+ * 
+ * @author Andreas
+ *
+ */
+final class TableFixture
+{
+	static final int LOWER_BOUND = 1;
+
+	static final int UPPER_BOUND = 36;
+
+	// Console output is not what we are measuring, so it goes nowhere while a benchmark runs.
+	private static final PrintStream NULL_OUT = new PrintStream(new OutputStream()
+	{
+		@Override
+		public void write(int b)
+		{
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len)
+		{
+		}
+	});
+
+	private TableFixture()
+	{
+	}
+
+	/**
+	 * Player names are "Player0" .. "Player{count - 1}" so the benchmarks can build bet lines for them.
+	 */
+	static String playerName(int index)
+	{
+		return "Player" + index;
+	}
+
+	static ConcurrentHashMap<String, Player> createPlayers(int count)
+	{
+		ConcurrentHashMap<String, Player> players = new ConcurrentHashMap<String, Player>(count * 2);
+		for (int i = 0; i < count; i++)
+		{
+			String userName = playerName(i);
+			players.put(userName, new Player(userName));
+		}
+		return players;
+	}
+
+	static PrintStream silenceConsole()
+	{
+		PrintStream original = System.out;
+		System.setOut(NULL_OUT);
+		return original;
+	}
+
+	/**
+	 * Number generator that never runs. The benchmark sets the game id directly, and since nothing settles the books
+	 * only the book of the current game is kept.
+	 */
+	static final class ControlledGameNumberGenerator extends GameNumberGenerator
+	{
+		private BetBook betBook = new BetBook();
+
+		ControlledGameNumberGenerator()
+		{
+			super(LOWER_BOUND, UPPER_BOUND, 0);
+		}
+
+		void setCurrentGameId(long currentGameId)
+		{
+			this.betBook = new BetBook(currentGameId, BetBook.NO_LIMIT);
+		}
+
+		@Override
+		public BetBook getOpenBook()
+		{
+			return betBook;
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.gamesys.consoleroulette.application;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+import com.gamesys.consoleroulette.application.bet.Money;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+
+/**
+ * Writes random valid bet lines in the console format for the harnesses: a random player, any choice the table takes
+ * and an amount below the maximum bet. The random generator is passed in, so every bettor thread can have its own.
+ * 
+ * @author Andreas
+ *
+ */
+final class BetGenerator
+{
+	// Generated bets are up to this many pence, which is below the maximum bet.
+	private static final int MAX_GENERATED_BET = 9999;
+
+	private final String[] names;
+
+	// Ordinals of the choices the table takes, bets are on one of these.
+	private final int[] choices;
+
+	/**
+	 * @param names of the players to bet for
+	 * @param betMonitor of the table, to find the choices it takes
+	 */
+	BetGenerator(String[] names, GameBetMonitor betMonitor)
+	{
+		this.names = names;
+
+		int offered = 0;
+		int[] ordinals = new int[RouletteRange.values().length];
+		for (RouletteRange choice : RouletteRange.values())
+		{
+			if (betMonitor.offers(choice.ordinal()))
+			{
+				ordinals[offered++] = choice.ordinal();
+			}
+		}
+		choices = Arrays.copyOf(ordinals, offered);
+	}
+
+	/**
+	 * Writes a random bet line, reusing the builder.
+	 */
+	void generateBet(RandomGenerator random, StringBuilder line)
+	{
+		line.setLength(0);
+		line.append(names[random.nextInt(names.length)]).append(' ');
+		line.append(RouletteRange.fromOrdinal(choices[random.nextInt(choices.length)]).getValue());
+		line.append(' ');
+		Money.append(line, random.nextInt(MAX_GENERATED_BET) + 1);
+	}
+}
@@ -2,11 +2,14 @@ package com.gamesys.consoleroulette.application;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.math.BigDecimal;
-import java.util.Map;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
@@ -14,7 +17,24 @@ import org.slf4j.LoggerFactory;
 
 import com.gamesys.consoleroulette.application.bet.Player;
 import com.gamesys.consoleroulette.application.game.GameBetMonitor;
-import com.gamesys.consoleroulette.application.game.GameNumberGenerator;
+import com.gamesys.consoleroulette.application.game.PlayerLookup;
+import com.gamesys.consoleroulette.application.game.RoundReporter;
+import com.gamesys.consoleroulette.application.game.ConsoleRenderer;
+import com.gamesys.consoleroulette.application.game.Table;
+import com.gamesys.consoleroulette.application.game.TableConfig;
+import com.gamesys.consoleroulette.application.game.TableManager;
+import com.gamesys.consoleroulette.application.intake.SessionBetIntake;
+import com.gamesys.consoleroulette.application.intake.SocketBetGateway;
+import com.gamesys.consoleroulette.application.random.SecureNumberSource;
+import com.gamesys.consoleroulette.application.store.BetJournal;
+import com.gamesys.consoleroulette.application.store.JournalRoundReporter;
+import com.gamesys.consoleroulette.application.store.LedgerSnapshotStore;
+import com.gamesys.consoleroulette.application.store.LedgerSnapshotStore.Snapshot;
+import com.gamesys.consoleroulette.application.store.MappedLedger;
+import com.gamesys.consoleroulette.application.store.MappedPlayerLoader;
+import com.gamesys.consoleroulette.application.store.PlayerDirectory;
+import com.gamesys.consoleroulette.application.store.PlayerRecordParser;
+import com.gamesys.consoleroulette.application.store.SnapshotRoundReporter;
 
 /**
  * Class that contains entry point. Sets up the threads, reads the file with the player details and starts the main
@@ -40,24 +60,101 @@ public final class ConsoleRoulette
 
 	private final int MAX_TOKENS = 3;
 
+	// Port on localhost where bets are also taken over TCP.
+	private final int GATEWAY_PORT = 9030;
+
+	// Port on localhost for the session intake, when it is used instead of the console.
+	private final int SESSION_PORT = 9031;
+
+	// Argument that switches the console bet monitor for a session (thread) per bettor on SESSION_PORT.
+	private static final String SESSIONS_MODE = "sessions";
+
+	// Argument that keeps the totals of the players in PLAYER_LEDGER instead of the heap, snapshots and journal replay.
+	private static final String LEDGER_MODE = "ledger";
+
+	// Most the house may owe on any one number in a game, in pence (100,000.00). Bets that would go over are rejected.
+	private final long MAX_LIABILITY = 10000000;
+
+	// Milliseconds before every spin in which bets go to the next game ("no more bets").
+	private final long BETTING_CUTOFF = 3000;
+
+	// Name of the table of the console game.
+	private final String TABLE_NAME = "Console";
+
+	// Threads running the tables. There is only the one table, so one is plenty.
+	private final int TABLE_THREADS = 1;
+
+	// Journal of accepted and settled bets, in the working directory. Replayed on top of the player file at start.
+	private final String JOURNAL_FILE = "bet_journal.bin";
+
+	// Longest time an accepted bet waits to be forced to disk.
+	private final long JOURNAL_COMMIT_MILLIS = 50;
+
+	// Where the snapshots of the players are written, in the working directory.
+	private final String SNAPSHOT_DIRECTORY = "snapshots";
+
+	// A snapshot every this many games.
+	private final int SNAPSHOT_ROUNDS = 20;
+
+	// Snapshots kept, in case the newest is damaged.
+	private final int SNAPSHOTS_KEPT = 2;
+
+	// Number of games each player keeps the bets and results of.
+	private final int HISTORY_DEPTH = Player.DEFAULT_HISTORY_DEPTH;
+
+	// A player file larger than this (in bytes) isn't loaded, its players are looked up in a directory as they bet.
+	private final long PLAYER_DIRECTORY_THRESHOLD = 512L * 1024 * 1024;
+
+	// Where the index of the player directory is written, in the working directory.
+	private final String PLAYER_DIRECTORY = "player_directory";
+
+	// Heap the players loaded by the directory, or made by the ledger, may take, in bytes. Idle ones are evicted past
+	// it.
+	private final long PLAYER_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+	// Memory-mapped totals of the players in ledger mode, in the working directory. Filled from the newest snapshot
+	// or the player file, with the journal after it, the first time.
+	private final String PLAYER_LEDGER = "player_ledger.bin";
+
 	public static void main(String[] args)
 	{
 		ConsoleRoulette cr = new ConsoleRoulette();
 
 		ConcurrentHashMap<String, Player> players = null;
 
-		try
-		{
-			// Getting the file that contains the names of the players.
-			InputStream inputStream = cr.getClass().getClassLoader().getResourceAsStream(cr.PLAYER_RECORD);
-			InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
-			BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
+		// Players of a player file too big to load, looked up as they bet. Null when the players are all loaded.
+		PlayerDirectory directory = null;
 
-			// Create the player map.
-			Pattern pattern = Pattern.compile(cr.PLAYER_DELIMITER);
-			players = cr.createPlayerMap(bufferedReader, pattern, cr.MAX_TOKENS);
+		// Players looked up as they bet instead of all loaded: the directory, or the players of the ledger.
+		PlayerLookup lookup = null;
+
+		// The totals of the players in ledger mode. The ledger is always up to date, so there are no snapshots and
+		// the journal isn't replayed.
+		boolean ledgerMode = hasArgument(args, LEDGER_MODE);
+		MappedLedger ledger = null;
+
+		// The newest snapshot of the players wins over the player file, it's faster to load and more recent.
+		LedgerSnapshotStore snapshotStore = new LedgerSnapshotStore(Paths.get(cr.SNAPSHOT_DIRECTORY),
+				cr.SNAPSHOTS_KEPT);
+		Snapshot snapshot = ledgerMode ? null : cr.loadSnapshot(snapshotStore);
 
-			bufferedReader.close();
+		try
+		{
+			if (ledgerMode)
+			{
+				ledger = cr.openLedger(snapshotStore);
+				lookup = ledger.lookup(cr.HISTORY_DEPTH, cr.PLAYER_MEMORY_BUDGET);
+			}
+			else if (snapshot != null)
+			{
+				players = snapshot.getPlayers();
+			}
+			else
+			{
+				directory = cr.openPlayerDirectory();
+				lookup = directory;
+				players = (directory == null) ? cr.loadPlayers() : null;
+			}
 		}
 		catch (IOException e)
 		{
@@ -67,107 +164,381 @@ public final class ConsoleRoulette
 
 		// If the file was empty then exit. No game can be played.
 		// SHould never really be null. It would be caught by the exception.
-		if (players.isEmpty())
+		if ((ledger != null) ? ledger.size() == 0 : (directory != null) ? directory.size() == 0 : players.isEmpty())
 		{
 			log.info("The file was empty or did not have any valid entries. Exiting...");
 			return;
 		}
 
-		GameNumberGenerator gameNumberGenerator = new GameNumberGenerator(cr.LOWER_BOUND, cr.UPPER_BOUND, cr.FRQUENCY);
-		// Adding listeners for players on the game number generator so i can notify them when the bet is complete.
-		for (Map.Entry<String, Player> playerEntry : players.entrySet())
+		// Bets of earlier sessions, on top of the totals of the snapshot or the player file. The game goes on without
+		// a journal (or snapshots, which need one) if it can't be opened.
+		BetJournal journal = cr.openJournal((lookup != null) ? lookup::find : players::get, snapshot, !ledgerMode);
+
+		// Results and answers to bets are printed on a thread of their own, so neither the game nor the bet monitor
+		// waits for the console.
+		ConsoleRenderer renderer = new ConsoleRenderer();
+		Thread rendererThread = new Thread(renderer, "ConsoleRenderer");
+		rendererThread.start();
+		RoundReporter roundReporter = renderer;
+		if (journal != null)
 		{
-			gameNumberGenerator.addBetListener(playerEntry.getValue());
+			// Snapshots need all the players in memory, so there are none with a directory. The journal is replayed
+			// from the start then. The ledger needs none.
+			if (players != null && ledger == null)
+			{
+				roundReporter = new SnapshotRoundReporter(snapshotStore, journal, players.values(), cr.SNAPSHOT_ROUNDS,
+						roundReporter);
+			}
+			roundReporter = new JournalRoundReporter(journal, roundReporter);
 		}
 
-		// Setting the players in the bet monitor.
-		GameBetMonitor betMonitor = new GameBetMonitor(cr.LOWER_BOUND, cr.UPPER_BOUND, players, gameNumberGenerator);
-
 		System.out.println("************************\n" 
 						+  "*                      *\n" 
 						+  "* Starting roulette... *\n"
 						+  "*                      *\n" 
 						+  "************************");
 
-		// The thread running the two processes.
-		Thread gameThread = new Thread(gameNumberGenerator, "GameThread");
-		Thread betMonitorThread = new Thread(betMonitor, "BetMonitor");
+		// The game runs as a table of the table manager, which spins its wheel on a scheduler thread. Players don't
+		// need to listen for the end of a game. The generator settles the book of bets of each game, so it only
+		// touches the players that bet.
+		// Game ids carry on from the snapshot, or from the last game settled into the ledger. The table starts with
+		// them, and with the liability limit, before it is scheduled.
+		long firstGameId = (ledger != null) ? ledger.getNextGameId()
+				: (snapshot != null) ? snapshot.getNextGameId() : 0;
+		TableManager tableManager = new TableManager(cr.TABLE_THREADS);
+		TableConfig tableConfig = new TableConfig(cr.LOWER_BOUND, cr.UPPER_BOUND, cr.FRQUENCY)
+				.bettingCutoff(cr.BETTING_CUTOFF).firstGameId(firstGameId).maxLiability(cr.MAX_LIABILITY)
+				.numberSource(new SecureNumberSource()).roundReporter(roundReporter);
+		if (lookup != null)
+		{
+			tableConfig.playerLookup(lookup);
+		}
+		else
+		{
+			tableConfig.players(players);
+		}
+		Table table = tableManager.addTable(cr.TABLE_NAME, tableConfig);
+		if (directory != null)
+		{
+			// The directory evicts the players that have been idle for a while, once the games they bet in settled.
+			table.getGame().addBetListener(directory);
+		}
+		if (ledger != null)
+		{
+			table.getGame().addBetListener(ledger);
+		}
+
+		// The bet monitor of the table takes the bets, whichever way they come in.
+		GameBetMonitor betMonitor = table.getBetMonitor();
+		betMonitor.setJournal(journal);
+		betMonitor.setRenderer(renderer);
+
+		// Bets come from the console, or from bettors connected to their own session if asked for.
+		boolean sessionsMode = hasArgument(args, SESSIONS_MODE);
+		if (!sessionsMode || !cr.startSessionIntake(betMonitor))
+		{
+			Thread betMonitorThread = new Thread(betMonitor, "BetMonitor");
+			betMonitorThread.start();
+		}
 
-		gameThread.start();
-		betMonitorThread.start();
+		// Bets can also come in over TCP on localhost, next to the console. The game goes on without it if the port
+		// can't be opened.
+		try
+		{
+			SocketBetGateway gateway = new SocketBetGateway(betMonitor, cr.GATEWAY_PORT);
+			Thread gatewayThread = new Thread(gateway, "BetGateway");
+			gatewayThread.start();
+			log.info("Taking bets on localhost port " + gateway.getPort() + " as well.");
+		}
+		catch (IOException e)
+		{
+			log.error("Could not take bets on localhost port " + cr.GATEWAY_PORT + ", only from the console: "
+					+ e.getMessage());
+		}
 	}
 
-	public ConcurrentHashMap<String, Player> createPlayerMap(final BufferedReader bufferedReader, final Pattern pattern, final int MAX_TOKENS)
-			throws IOException
+	/**
+	 * Loads the newest snapshot of the players that is whole.
+	 * 
+	 * @param snapshotStore
+	 * @return the snapshot, or null if there is none or it can't be read
+	 */
+	private Snapshot loadSnapshot(LedgerSnapshotStore snapshotStore)
 	{
-		ConcurrentHashMap<String, Player> players = new ConcurrentHashMap<String, Player>(2);
+		try
+		{
+			Snapshot snapshot = snapshotStore.loadNewest(HISTORY_DEPTH);
+			if (snapshot != null)
+			{
+				log.info("Starting from snapshot " + snapshot.getFile() + " instead of " + PLAYER_RECORD + ".");
+			}
+			return snapshot;
+		}
+		catch (IOException e)
+		{
+			log.error("Could not read the snapshots, starting from " + PLAYER_RECORD + ": " + e.getMessage());
+			return null;
+		}
+	}
 
-		// Reading the file and creating the players.
-		String line;
-		String[] playerDetails;
+	/**
+	 * Replays the journal on the players (only what came after the snapshot, if there is one) and opens it for this
+	 * session, with its thread running. It's closed (and forced to disk) when the JVM exits.
+	 * 
+	 * @param players looks the players up by name
+	 * @param snapshot the players were loaded from, or null
+	 * @param replay false if the totals of the players already have the bets of the journal
+	 * @return the journal, or null if it couldn't be used
+	 */
+	private BetJournal openJournal(Function<String, Player> players, Snapshot snapshot, boolean replay)
+	{
+		Path journalFile = Paths.get(JOURNAL_FILE);
+		try
+		{
+			int replayed = !replay ? 0
+					: (snapshot != null) ? snapshot.replayJournal(journalFile) : BetJournal.replay(journalFile, players);
+			if (replayed > 0)
+			{
+				log.info("Replayed " + replayed + " bets from " + JOURNAL_FILE + ".");
+			}
+
+			final BetJournal journal = new BetJournal(journalFile, JOURNAL_COMMIT_MILLIS);
+			Thread journalThread = new Thread(journal, "BetJournal");
+			journalThread.start();
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try
+				{
+					journal.close();
+				}
+				catch (IOException e)
+				{
+					log.error("Could not close the bet journal: " + e.getMessage());
+				}
+			}, "BetJournalShutdown"));
+			return journal;
+		}
+		catch (IOException e)
+		{
+			log.error("Could not use the bet journal " + JOURNAL_FILE + ", bets will not be journaled: "
+					+ e.getMessage());
+			return null;
+		}
+	}
 
-		// Variables for the details of the player
-		String userName = null;
-		BigDecimal totalWin = BigDecimal.ZERO;
-		BigDecimal totalBet = BigDecimal.ZERO;
+	/**
+	 * Starts taking bets with a virtual thread per connected bettor, in place of the console.
+	 * 
+	 * @param betMonitor
+	 * @return false if the intake couldn't be started
+	 */
+	private boolean startSessionIntake(GameBetMonitor betMonitor)
+	{
+		try
+		{
+			SessionBetIntake sessionIntake = new SessionBetIntake(betMonitor, SESSION_PORT);
+			Thread sessionThread = new Thread(sessionIntake, "SessionIntake");
+			sessionThread.start();
+			log.info("Taking bets from bettor sessions on localhost port " + sessionIntake.getPort() + ".");
+			return true;
+		}
+		catch (IOException e)
+		{
+			log.error("Could not take bets on localhost port " + SESSION_PORT + ", using the console instead: "
+					+ e.getMessage());
+			return false;
+		}
+	}
 
-		while ((line = bufferedReader.readLine()) != null)
+	/**
+	 * Opens the ledger of the players. A new one is filled with the newest totals there are: the newest snapshot, or
+	 * the player file if there is none, with the journal replayed over it. It's closed (and forced to disk) when the
+	 * JVM exits.
+	 * 
+	 * @param snapshotStore
+	 * @return the ledger
+	 * @throws IOException
+	 */
+	private MappedLedger openLedger(LedgerSnapshotStore snapshotStore) throws IOException
+	{
+		final MappedLedger ledger = MappedLedger.open(Paths.get(PLAYER_LEDGER));
+		if (ledger.size() == 0)
+		{
+			// The newest totals there are: the newest snapshot or the player file, and the journal after it. They go
+			// into the ledger one player at a time, none of them is kept.
+			Path journalFile = Paths.get(JOURNAL_FILE);
+			Snapshot snapshot = snapshotStore.readNewest(ledger::registerIfFits);
+			int replayed;
+			if (snapshot != null)
+			{
+				log.info("Filling " + PLAYER_LEDGER + " from snapshot " + snapshot.getFile() + ".");
+				replayed = snapshot.replayJournal(journalFile, ledger::view);
+			}
+			else
+			{
+				registerPlayers(ledger);
+				replayed = BetJournal.replay(journalFile, ledger::view);
+			}
+			log.info("Created " + PLAYER_LEDGER + " with " + ledger.size() + " players and " + replayed
+					+ " bets replayed from " + JOURNAL_FILE + ".");
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try
+			{
+				ledger.close();
+			}
+			catch (IOException e)
+			{
+				log.error("Could not close the player ledger: " + e.getMessage());
+			}
+		}, "PlayerLedgerShutdown"));
+		return ledger;
+	}
+
+	/**
+	 * Reads the players of the player file into a ledger, a line at a time.
+	 * 
+	 * @param ledger
+	 * @throws IOException
+	 */
+	private void registerPlayers(MappedLedger ledger) throws IOException
+	{
+		URL playerRecord = getClass().getClassLoader().getResource(PLAYER_RECORD);
+		if (playerRecord == null)
 		{
-			playerDetails = pattern.split(line, MAX_TOKENS + 1);
+			throw new IOException("Could not find " + PLAYER_RECORD + ".");
+		}
 
-			/*
-			 * While we limit the number of tokens to the expected number we also check if the tokens are less and print
-			 * an error message to the user so he can correct his input.
-			 */
-			if (playerDetails.length > MAX_TOKENS)
+		PlayerRecordParser recordParser = new PlayerRecordParser(Pattern.compile(PLAYER_DELIMITER), MAX_TOKENS, 1);
+		try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(playerRecord.openStream())))
+		{
+			// Invalid lines are reported and skipped.
+			String line;
+			Player player;
+			while ((line = bufferedReader.readLine()) != null)
 			{
-				log.warn("'" + line + "' was malformed. The format is 'Username [TotalWin] [TotalBet]'.");
-				continue; // no point continuing, read the next input.
+				player = recordParser.parse(line);
+				if (player != null)
+				{
+					ledger.registerIfFits(player.getUserName(), player.getTotalBet(), player.getTotalWin());
+				}
 			}
+		}
+	}
+
+	/**
+	 * Opens a directory of the players of the player file when the file is on disk and too big to be loaded whole.
+	 * The players are loaded as they bet and evicted when idle, within {@link #PLAYER_MEMORY_BUDGET}. It's closed
+	 * when the JVM exits.
+	 * 
+	 * @return the directory, or null if the players should be loaded
+	 * @throws IOException
+	 */
+	private PlayerDirectory openPlayerDirectory() throws IOException
+	{
+		URL playerRecord = getClass().getClassLoader().getResource(PLAYER_RECORD);
+		if (playerRecord == null || !"file".equals(playerRecord.getProtocol()))
+		{
+			return null;
+		}
+
+		Path dataFile;
+		try
+		{
+			dataFile = Paths.get(playerRecord.toURI());
+		}
+		catch (URISyntaxException e)
+		{
+			return null;
+		}
+		if (Files.size(dataFile) <= PLAYER_DIRECTORY_THRESHOLD)
+		{
+			return null;
+		}
 
-			// The user name will always be present but it might be empty.
-			if (playerDetails[0].isEmpty() || playerDetails[0].contains(" "))
+		log.info("Indexing " + PLAYER_RECORD + " in " + PLAYER_DIRECTORY + ", players are loaded as they bet.");
+		final PlayerDirectory directory = PlayerDirectory.open(dataFile, Paths.get(PLAYER_DIRECTORY),
+				PLAYER_DELIMITER.charAt(0), new PlayerRecordParser(Pattern.compile(PLAYER_DELIMITER), MAX_TOKENS,
+						HISTORY_DEPTH), PLAYER_MEMORY_BUDGET);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try
+			{
+				directory.close();
+			}
+			catch (IOException e)
 			{
-				log.warn("The user name cannot be empty or contain empty spaces. Did you forget a comma?");
-				continue; // no point continuing, read the next input.
+				log.error("Could not close the player directory: " + e.getMessage());
 			}
-			userName = playerDetails[0];
+		}, "PlayerDirectoryShutdown"));
+		return directory;
+	}
+
+	/**
+	 * Reads the players from the player file. When the file is on disk (and not in a jar) it's memory-mapped and
+	 * parsed in parallel, which matters for files of millions of players. Otherwise it's read line by line.
+	 * 
+	 * @return the players by name
+	 * @throws IOException
+	 */
+	private ConcurrentHashMap<String, Player> loadPlayers() throws IOException
+	{
+		Pattern pattern = Pattern.compile(PLAYER_DELIMITER);
+
+		URL playerRecord = getClass().getClassLoader().getResource(PLAYER_RECORD);
+		if (playerRecord == null)
+		{
+			throw new IOException("Could not find " + PLAYER_RECORD + ".");
+		}
 
+		if ("file".equals(playerRecord.getProtocol()))
+		{
 			try
 			{
-				if (playerDetails.length == 3)
-				{
-					totalWin = (playerDetails[1].isEmpty()) ? BigDecimal.ZERO : new BigDecimal(playerDetails[1]);
-					if (totalWin.compareTo(BigDecimal.ZERO) == -1 )
-					{
-						log.warn("The total win amount must be positive.");
-						continue; // no point continuing, read the next input.
-					}
-					
-					totalBet = (playerDetails[2].isEmpty()) ? BigDecimal.ZERO : new BigDecimal(playerDetails[2]);
-					if (totalBet.compareTo(BigDecimal.ZERO) == -1 )
-					{
-						log.warn("The total bet amount must be positive.");
-						continue; // no point continuing, read the next input.
-					}
-				}
-				else if (playerDetails.length == 2)
-				{
-					totalWin = (playerDetails[1].isEmpty()) ? BigDecimal.ZERO : new BigDecimal(playerDetails[1]);
-					if (totalWin.compareTo(BigDecimal.ZERO) == -1 )
-					{
-						log.warn("The total win amount must be positive.");
-						continue; // no point continuing, read the next input.
-					}
-				}
+				MappedPlayerLoader loader = new MappedPlayerLoader(new PlayerRecordParser(pattern, MAX_TOKENS,
+						HISTORY_DEPTH));
+				return loader.load(Paths.get(playerRecord.toURI()));
 			}
-			catch (NumberFormatException nfe)
+			catch (URISyntaxException e)
+			{
+				// Fall back to reading it as a stream.
+			}
+		}
+
+		// Getting the file that contains the names of the players.
+		try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(playerRecord.openStream())))
+		{
+			// Create the player map.
+			return createPlayerMap(bufferedReader, pattern, MAX_TOKENS);
+		}
+	}
+
+	private static boolean hasArgument(String[] args, String argument)
+	{
+		for (String arg : args)
+		{
+			if (argument.equalsIgnoreCase(arg))
 			{
-				log.error("The total bet and total win amount must be a real numbers (i.e. 0.15, 3.50).");
-				continue; // no point continuing, read the next input.
+				return true;
 			}
+		}
+		return false;
+	}
 
-			players.put(userName, new Player(userName, totalBet, totalWin));
+	public ConcurrentHashMap<String, Player> createPlayerMap(final BufferedReader bufferedReader, final Pattern pattern, final int MAX_TOKENS)
+			throws IOException
+	{
+		ConcurrentHashMap<String, Player> players = new ConcurrentHashMap<String, Player>(2);
+		PlayerRecordParser recordParser = new PlayerRecordParser(pattern, MAX_TOKENS, HISTORY_DEPTH);
+
+		// Reading the file and creating the players. Invalid lines are reported and skipped.
+		String line;
+		Player player;
+		while ((line = bufferedReader.readLine()) != null)
+		{
+			player = recordParser.parse(line);
+			if (player != null)
+			{
+				players.put(player.getUserName(), player);
+			}
 		}
 
 		return players;
@@ -0,0 +1,67 @@
+package com.gamesys.consoleroulette.application;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.RoundReporter;
+
+/**
+ * Counts what was settled instead of printing it, for the harnesses. Only the game thread writes it; the counters can
+ * be read from any thread.
+ * 
+ * @author Andreas
+ *
+ */
+final class CountingReporter implements RoundReporter
+{
+	private volatile long rounds;
+
+	private volatile long betsSettled;
+
+	private volatile long betsWon;
+
+	private volatile long amountPaid;
+
+	@Override
+	public void roundStarted(long gameId, int winningNumber)
+	{
+	}
+
+	@Override
+	public void betSettled(Player player, long gameId, int choice, long amount, long winnings)
+	{
+		if (winnings != 0)
+		{
+			betsWon++;
+			amountPaid += winnings;
+		}
+	}
+
+	@Override
+	public void roundFinished(long gameId, int betsSettled)
+	{
+		this.betsSettled += betsSettled;
+		rounds++;
+	}
+
+	long getRounds()
+	{
+		return rounds;
+	}
+
+	long getBetsSettled()
+	{
+		return betsSettled;
+	}
+
+	long getBetsWon()
+	{
+		return betsWon;
+	}
+
+	/**
+	 * Returns the winnings paid, in pence.
+	 */
+	long getAmountPaid()
+	{
+		return amountPaid;
+	}
+}
@@ -0,0 +1,221 @@
+package com.gamesys.consoleroulette.application;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.bet.BetRecord;
+import com.gamesys.consoleroulette.application.bet.Money;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+import com.gamesys.consoleroulette.application.game.GameNumberGenerator;
+import com.gamesys.consoleroulette.application.metrics.TableMetrics;
+import com.gamesys.consoleroulette.application.random.ReplayNumberSource;
+
+/**
+ * Plays a table as fast as settlement allows, without the console: no waiting between spins, no results table, a
+ * seeded random generator so a run can be repeated, and a summary at the end. Meant for measuring throughput and for
+ * checking settlement over millions of games.
+ * 
+ * Arguments, all optional: rounds, players, bets per round, seed and a script file. Players are called "Player0",
+ * "Player1" and so on. Without a script every round gets random bets from random players. With a script, its lines
+ * are bet lines in the console format and a blank line spins the wheel; the script starts over when it runs out.
+ * 
+ * @author Andreas
+ *
+ */
+public final class HeadlessSimulation
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(HeadlessSimulation.class);
+
+	private static final int LOWER_BOUND = 1;
+
+	private static final int UPPER_BOUND = 36;
+
+	private static final long DEFAULT_ROUNDS = 1000000;
+
+	private static final int DEFAULT_PLAYERS = 1000;
+
+	private static final int DEFAULT_BETS_PER_ROUND = 100;
+
+	private static final long DEFAULT_SEED = 42;
+
+	private final long rounds;
+
+	private final int betsPerRound;
+
+	private final String[] names;
+
+	// Rounds of scripted bet lines, null to generate bets.
+	private final List<List<String>> script;
+
+	private final Random random;
+
+	private final CountingReporter summary = new CountingReporter();
+
+	private final ConcurrentHashMap<String, Player> players;
+
+	private final GameNumberGenerator game;
+
+	private final GameBetMonitor betMonitor;
+
+	private final BetGenerator betGenerator;
+
+	private long elapsedNanos;
+
+	// What was placed, as seen from the intake side.
+	private long betsPlaced;
+
+	private long betsAccepted;
+
+	private long amountStaked;
+
+	public HeadlessSimulation(long rounds, int playerCount, int betsPerRound, long seed, List<List<String>> script)
+	{
+		this.rounds = rounds;
+		this.betsPerRound = betsPerRound;
+		this.script = script;
+		this.random = new Random(seed + 1);
+
+		names = new String[playerCount];
+		players = new ConcurrentHashMap<String, Player>(playerCount * 2);
+		for (int i = 0; i < playerCount; i++)
+		{
+			names[i] = "Player" + i;
+			players.put(names[i], new Player(names[i]));
+		}
+
+		game = new GameNumberGenerator(LOWER_BOUND, UPPER_BOUND, 0, new ReplayNumberSource(seed), summary,
+				new TableMetrics());
+		betMonitor = new GameBetMonitor(LOWER_BOUND, UPPER_BOUND, players, game);
+		betGenerator = new BetGenerator(names, betMonitor);
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		long rounds = (args.length > 0) ? Long.parseLong(args[0]) : DEFAULT_ROUNDS;
+		int playerCount = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PLAYERS;
+		int betsPerRound = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_BETS_PER_ROUND;
+		long seed = (args.length > 3) ? Long.parseLong(args[3]) : DEFAULT_SEED;
+		List<List<String>> script = (args.length > 4) ? readScript(args[4]) : null;
+
+		log.info("Simulating " + rounds + " rounds with " + playerCount + " players, seed " + seed
+				+ ((script == null) ? ", " + betsPerRound + " generated bets per round." : ", scripted bets."));
+
+		HeadlessSimulation simulation = new HeadlessSimulation(rounds, playerCount, betsPerRound, seed, script);
+		simulation.run();
+		simulation.printSummary(System.out);
+	}
+
+	/**
+	 * Plays all the rounds.
+	 */
+	public void run()
+	{
+		StringBuilder line = new StringBuilder(64);
+		BetRecord betRecord = new BetRecord();
+
+		long start = System.nanoTime();
+		for (long round = 0; round < rounds; round++)
+		{
+			if (script == null)
+			{
+				for (int i = 0; i < betsPerRound; i++)
+				{
+					betGenerator.generateBet(random, line);
+					placeBet(line, betRecord);
+				}
+			}
+			else if (!script.isEmpty())
+			{
+				for (String scripted : script.get((int) (round % script.size())))
+				{
+					placeBet(scripted, betRecord);
+				}
+			}
+
+			game.playRound();
+		}
+		elapsedNanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * Prints what happened: throughput, money in and out and whether the players' totals add up to it.
+	 */
+	public void printSummary(PrintStream out)
+	{
+		double seconds = elapsedNanos / 1e9;
+		long totalBet = 0;
+		long totalWin = 0;
+		for (Player player : players.values())
+		{
+			totalBet += player.getTotalBet();
+			totalWin += player.getTotalWin();
+		}
+		boolean balanced = totalBet == amountStaked && totalWin == summary.getAmountPaid();
+
+		out.printf("Rounds played:      %,d%n", summary.getRounds());
+		out.printf("Bets placed:        %,d (%,d accepted, %,d rejected)%n", betsPlaced, betsAccepted,
+				betsPlaced - betsAccepted);
+		out.printf("Bets settled:       %,d (%,d won)%n", summary.getBetsSettled(), summary.getBetsWon());
+		out.printf("Staked:             %s%n", Money.format(amountStaked));
+		out.printf("Paid out:           %s%n", Money.format(summary.getAmountPaid()));
+		out.printf("House result:       %s%n", Money.format(amountStaked - summary.getAmountPaid()));
+		out.printf("Player totals:      %s%n", balanced ? "match the bets and payouts" : "DO NOT MATCH ("
+				+ Money.format(totalBet) + " bet, " + Money.format(totalWin) + " won)");
+		out.printf("Elapsed:            %.3f s%n", seconds);
+		out.printf("Rounds/sec:         %,.0f%n", summary.getRounds() / seconds);
+		out.printf("Bets settled/sec:   %,.0f%n", summary.getBetsSettled() / seconds);
+	}
+
+	private void placeBet(CharSequence line, BetRecord betRecord)
+	{
+		betsPlaced++;
+		if (betMonitor.placeBet(line, 0, line.length(), betRecord) == GameBetMonitor.ACCEPTED)
+		{
+			betsAccepted++;
+			amountStaked += betRecord.getAmount();
+		}
+	}
+
+	/**
+	 * Reads a script of bet lines. A blank line ends a round.
+	 */
+	private static List<List<String>> readScript(String fileName) throws IOException
+	{
+		List<List<String>> script = new ArrayList<List<String>>();
+		List<String> round = new ArrayList<String>();
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				if (line.trim().isEmpty())
+				{
+					script.add(round);
+					round = new ArrayList<String>();
+				}
+				else
+				{
+					round.add(line);
+				}
+			}
+		}
+		if (!round.isEmpty())
+		{
+			script.add(round);
+		}
+		return script;
+	}
+}
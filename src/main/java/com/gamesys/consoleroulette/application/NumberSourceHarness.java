@@ -0,0 +1,88 @@
+package com.gamesys.consoleroulette.application;
+
+import java.io.PrintStream;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.game.GameNumberGenerator;
+import com.gamesys.consoleroulette.application.random.ChiSquare;
+import com.gamesys.consoleroulette.application.random.NumberSource;
+import com.gamesys.consoleroulette.application.random.ReplayNumberSource;
+import com.gamesys.consoleroulette.application.random.SecureNumberSource;
+import com.gamesys.consoleroulette.application.random.SplittableNumberSource;
+
+/**
+ * Draws a lot of spins from every kind of number source and prints how fast each one is and how evenly it spreads the
+ * numbers of the wheel (chi-square against a uniform wheel). java.util.Random, which the game used before, is in
+ * the list for comparison.
+ * 
+ * Arguments, all optional: spins per source (100M by default) and the seed of the replay source.
+ * 
+ * @author Andreas
+ *
+ */
+public final class NumberSourceHarness
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(NumberSourceHarness.class);
+
+	private static final int LOWER_BOUND = 1;
+
+	private static final int UPPER_BOUND = 36;
+
+	private static final long DEFAULT_SPINS = 100000000;
+
+	private static final long DEFAULT_SEED = 42;
+
+	private NumberSourceHarness()
+	{
+	}
+
+	public static void main(String[] args)
+	{
+		long spins = (args.length > 0) ? Long.parseLong(args[0]) : DEFAULT_SPINS;
+		long seed = (args.length > 1) ? Long.parseLong(args[1]) : DEFAULT_SEED;
+
+		// The bounds of a table, so the harness checks the numbers a game would actually ask for.
+		GameNumberGenerator game = new GameNumberGenerator(LOWER_BOUND, UPPER_BOUND, 0);
+		int lowerBound = game.getLowerBound();
+		int upperBound = game.getUpperBound();
+
+		log.info("Drawing " + spins + " spins between " + lowerBound + " and " + upperBound + " from every source.");
+
+		Random random = new Random(seed);
+		run("java.util.Random", (lower, upper) -> random.nextInt(upper - lower + 1) + lower, spins, lowerBound,
+				upperBound, System.out);
+		run("SplittableNumberSource", new SplittableNumberSource(), spins, lowerBound, upperBound, System.out);
+		run("SecureNumberSource", new SecureNumberSource(), spins, lowerBound, upperBound, System.out);
+		run("ReplayNumberSource", new ReplayNumberSource(seed), spins, lowerBound, upperBound, System.out);
+	}
+
+	/**
+	 * Draws the spins from one source and prints its line.
+	 */
+	static void run(String name, NumberSource source, long spins, int lowerBound, int upperBound, PrintStream out)
+	{
+		long[] counts = new long[upperBound - lowerBound + 1];
+
+		// A round without counting, so the JIT has compiled the loop before it's timed.
+		for (int i = 0; i < 1000000; i++)
+		{
+			source.nextNumber(lowerBound, upperBound);
+		}
+
+		long start = System.nanoTime();
+		for (long i = 0; i < spins; i++)
+		{
+			counts[source.nextNumber(lowerBound, upperBound) - lowerBound]++;
+		}
+		long elapsed = System.nanoTime() - start;
+
+		double statistic = ChiSquare.statistic(counts);
+		double pValue = ChiSquare.pValue(statistic, counts.length - 1);
+		out.println(String.format("%-24s %,15.0f spins/s   chi-square %8.2f (%d df)   p %.4f", name,
+				spins * 1e9 / elapsed, statistic, counts.length - 1, pValue));
+	}
+}
@@ -0,0 +1,500 @@
+package com.gamesys.consoleroulette.application;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.bet.BetRecord;
+import com.gamesys.consoleroulette.application.bet.LedgerSnapshot;
+import com.gamesys.consoleroulette.application.bet.Money;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+import com.gamesys.consoleroulette.application.game.GameNumberGenerator;
+import com.gamesys.consoleroulette.application.metrics.LatencyHistogram;
+import com.gamesys.consoleroulette.application.metrics.TableMetrics;
+import com.gamesys.consoleroulette.application.random.SplittableNumberSource;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Keeps a live table under load for as long as it is asked to, to see that it holds up: the game thread spinning on
+ * its own timer like in the console game, and bettor threads placing bets at a steady rate from synthetic players,
+ * with some invalid lines mixed in. Every ten seconds it prints the bets per second, the 99th percentile of the time
+ * to accept a bet, the heap after GC and how much it grew per round, and the GC pauses; at the end the same for the
+ * whole run and whether the players' totals add up to what was staked and paid.
+ *
+ * The latency of a bet is counted from when it was due, not from when the bettor got round to it, so a table that
+ * stalls shows it in the latency instead of just slowing the load down. The bets go through placeBet, which parses
+ * and records them like the console does but without printing an answer for every one of them.
+ *
+ * Arguments, all optional: minutes to run (fractions too), players, bets per second, percentage of invalid lines,
+ * bettor threads, seconds between spins and seed. Players are called "Player0", "Player1" and so on, and are read
+ * from lines in the format of player_data.txt.
+ *
+ * @author Andreas
+ *
+ */
+public final class SoakHarness
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(SoakHarness.class);
+
+	private static final int LOWER_BOUND = 1;
+
+	private static final int UPPER_BOUND = 36;
+
+	private static final double DEFAULT_MINUTES = 60;
+
+	private static final int DEFAULT_PLAYERS = 10000;
+
+	private static final int DEFAULT_BETS_PER_SECOND = 20000;
+
+	private static final int DEFAULT_INVALID_PERCENT = 5;
+
+	private static final int DEFAULT_BETTORS = 4;
+
+	private static final int DEFAULT_FREQUENCY = 1;
+
+	private static final long DEFAULT_SEED = 42;
+
+	// No more bets this long before every spin.
+	private static final long BETTING_CUTOFF = 100;
+
+	// Seconds between two lines of the report.
+	private static final int REPORT_SECONDS = 10;
+
+	// Name, total win and total bet, as in player_data.txt.
+	private static final int PLAYER_TOKENS = 3;
+
+	private final long durationNanos;
+
+	private final int betsPerSecond;
+
+	private final int invalidPercent;
+
+	private final int bettorCount;
+
+	private final long seed;
+
+	private final String[] names;
+
+	private final ConcurrentHashMap<String, Player> players;
+
+	// What the players had before the run, to check their totals against at the end.
+	private final long initialTotalBet;
+
+	private final long initialTotalWin;
+
+	private final CountingReporter counter = new CountingReporter();
+
+	private final GameNumberGenerator game;
+
+	private final GameBetMonitor betMonitor;
+
+	private final BetGenerator betGenerator;
+
+	private final GcWatcher gcWatcher = new GcWatcher();
+
+	// Time from a bet being due to it being accepted, for the whole run and since the last report.
+	private final LatencyHistogram acceptLatency = new LatencyHistogram();
+
+	private final LatencyHistogram intervalLatency = new LatencyHistogram();
+
+	private final LongAdder betsAccepted = new LongAdder();
+
+	private final LongAdder betsRejected = new LongAdder();
+
+	private final LongAdder amountStaked = new LongAdder();
+
+	private volatile boolean running = true;
+
+	public SoakHarness(double minutes, int playerCount, int betsPerSecond, int invalidPercent, int bettorCount,
+			int frequency, long seed) throws IOException
+	{
+		this.durationNanos = (long) (minutes * 60e9);
+		this.betsPerSecond = betsPerSecond;
+		this.invalidPercent = invalidPercent;
+		this.bettorCount = bettorCount;
+		this.seed = seed;
+
+		// The players are read like the player file, with some history of their own.
+		StringBuilder lines = new StringBuilder(playerCount * 24);
+		names = new String[playerCount];
+		for (int i = 0; i < playerCount; i++)
+		{
+			names[i] = "Player" + i;
+			lines.append(names[i]).append(",10.00,20.00\n");
+		}
+		try (BufferedReader reader = new BufferedReader(new StringReader(lines.toString())))
+		{
+			players = new ConsoleRoulette().createPlayerMap(reader, Pattern.compile(","), PLAYER_TOKENS);
+		}
+
+		long totalBet = 0;
+		long totalWin = 0;
+		for (Player player : players.values())
+		{
+			totalBet += player.getTotalBet();
+			totalWin += player.getTotalWin();
+		}
+		initialTotalBet = totalBet;
+		initialTotalWin = totalWin;
+
+		game = new GameNumberGenerator(LOWER_BOUND, UPPER_BOUND, frequency, new SplittableNumberSource(seed), counter,
+				new TableMetrics());
+		game.setBettingCutoff(BETTING_CUTOFF);
+		betMonitor = new GameBetMonitor(LOWER_BOUND, UPPER_BOUND, players, game);
+		betGenerator = new BetGenerator(names, betMonitor);
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		double minutes = (args.length > 0) ? Double.parseDouble(args[0]) : DEFAULT_MINUTES;
+		int playerCount = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PLAYERS;
+		int betsPerSecond = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_BETS_PER_SECOND;
+		int invalidPercent = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_INVALID_PERCENT;
+		int bettorCount = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_BETTORS;
+		int frequency = (args.length > 5) ? Integer.parseInt(args[5]) : DEFAULT_FREQUENCY;
+		long seed = (args.length > 6) ? Long.parseLong(args[6]) : DEFAULT_SEED;
+
+		log.info("Soaking a table for " + minutes + " minutes: " + playerCount + " players, " + betsPerSecond
+				+ " bets per second (" + invalidPercent + "% invalid) from " + bettorCount + " threads, a spin every "
+				+ frequency + " seconds.");
+
+		SoakHarness harness = new SoakHarness(minutes, playerCount, betsPerSecond, invalidPercent, bettorCount,
+				frequency, seed);
+		harness.run(System.out);
+	}
+
+	/**
+	 * Runs the table and the bettors for the whole duration, reporting on the way, then settles what is left and prints
+	 * the summary.
+	 */
+	public void run(PrintStream out) throws InterruptedException
+	{
+		gcWatcher.start();
+
+		// The game thread of the console game, spinning on its own.
+		Thread gameThread = new Thread(game, "GameNumberGenerator");
+		gameThread.setDaemon(true);
+		gameThread.start();
+
+		long start = System.nanoTime();
+		List<Thread> bettors = new ArrayList<Thread>(bettorCount);
+		long betInterval = TimeUnit.SECONDS.toNanos(bettorCount) / Math.max(betsPerSecond, 1);
+		for (int i = 0; i < bettorCount; i++)
+		{
+			final SplittableRandom random = new SplittableRandom(seed * 31 + i);
+			// The bettors start a fraction of an interval apart, so their bets are spread out evenly.
+			final long firstBet = start + betInterval * i / bettorCount;
+			Thread bettor = new Thread(() -> bet(random, firstBet, betInterval), "Bettor-" + i);
+			bettor.start();
+			bettors.add(bettor);
+		}
+
+		out.printf("%8s %9s %11s %11s %9s %10s %12s %6s %8s%n", "Elapsed", "Rounds", "Accepted/s", "Rejected/s",
+				"p99 us", "Heap MB", "KB/round", "GCs", "GC max");
+		Interval interval = new Interval(start);
+		long end = start + durationNanos;
+		while (System.nanoTime() < end)
+		{
+			long next = Math.min(end, interval.started + TimeUnit.SECONDS.toNanos(REPORT_SECONDS));
+			LockSupport.parkNanos(next - System.nanoTime());
+			if (System.nanoTime() >= next)
+			{
+				interval = report(out, start, interval);
+			}
+		}
+
+		running = false;
+		for (Thread bettor : bettors)
+		{
+			bettor.join();
+		}
+
+		// The game past its cutoff, if there is one, and then the game taking bets.
+		game.playRound();
+		game.playRound();
+		printSummary(out, System.nanoTime() - start);
+	}
+
+	/**
+	 * A bettor: one bet every interval until the run is over, each timed from when it was due.
+	 */
+	private void bet(SplittableRandom random, long firstBet, long betInterval)
+	{
+		StringBuilder line = new StringBuilder(64);
+		BetRecord betRecord = new BetRecord();
+		long due = firstBet;
+		while (running)
+		{
+			long now = System.nanoTime();
+			if (now < due)
+			{
+				LockSupport.parkNanos(due - now);
+				continue;
+			}
+
+			if (random.nextInt(100) < invalidPercent)
+			{
+				generateInvalidBet(random, line);
+			}
+			else
+			{
+				betGenerator.generateBet(random, line);
+			}
+
+			if (betMonitor.placeBet(line, 0, line.length(), betRecord) == GameBetMonitor.ACCEPTED)
+			{
+				long latency = System.nanoTime() - due;
+				acceptLatency.record(latency);
+				intervalLatency.record(latency);
+				betsAccepted.increment();
+				amountStaked.add(betRecord.getAmount());
+			}
+			else
+			{
+				betsRejected.increment();
+			}
+			due += betInterval;
+		}
+	}
+
+	/**
+	 * Writes a line with one of the mistakes a bettor makes: too few tokens, a player nobody knows, a number off the
+	 * table, an amount with too many decimals and an amount over the maximum.
+	 */
+	private void generateInvalidBet(SplittableRandom random, StringBuilder line)
+	{
+		line.setLength(0);
+		String name = names[random.nextInt(names.length)];
+		switch (random.nextInt(5))
+		{
+		case 0:
+			line.append(name).append(" 17");
+			break;
+		case 1:
+			line.append("Nobody").append(random.nextInt(1000)).append(" 17 1.00");
+			break;
+		case 2:
+			line.append(name).append(' ').append(UPPER_BOUND + 1 + random.nextInt(10)).append(" 1.00");
+			break;
+		case 3:
+			line.append(name).append(" ODD 1.005");
+			break;
+		default:
+			line.append(name).append(" EVEN 100.00");
+			break;
+		}
+	}
+
+	/**
+	 * Prints the line of the interval that just ended and starts the next one.
+	 */
+	private Interval report(PrintStream out, long start, Interval interval)
+	{
+		Interval next = new Interval(System.nanoTime());
+		double seconds = (next.started - interval.started) / 1e9;
+
+		long heapAfterGc = gcWatcher.heapAfterGc;
+		long roundsAtGc = gcWatcher.roundsAtGc;
+		String heap = (heapAfterGc < 0) ? "-" : String.format("%,.1f", heapAfterGc / (1024.0 * 1024));
+		String growth = "-";
+		if (gcWatcher.firstHeapAfterGc >= 0 && roundsAtGc > gcWatcher.firstRoundsAtGc)
+		{
+			double perRound = (double) (heapAfterGc - gcWatcher.firstHeapAfterGc)
+					/ (roundsAtGc - gcWatcher.firstRoundsAtGc);
+			growth = String.format("%+,.2f", perRound / 1024);
+		}
+
+		out.printf("%7.0fs %,9d %,11.0f %,11.0f %,9d %10s %12s %6d %6d ms%n", (next.started - start) / 1e9,
+				next.rounds, (next.accepted - interval.accepted) / seconds,
+				(next.rejected - interval.rejected) / seconds, intervalLatency.getValueAtPercentile(99) / 1000,
+				heap, growth, next.gcPauses - interval.gcPauses,
+				gcWatcher.takeIntervalMaxPause());
+		intervalLatency.reset();
+		return next;
+	}
+
+	/**
+	 * Prints the whole run: sustained rates, latency, heap, GC and whether the players' totals add up.
+	 */
+	private void printSummary(PrintStream out, long elapsedNanos)
+	{
+		double seconds = elapsedNanos / 1e9;
+		long totalBet = 0;
+		long totalWin = 0;
+		LedgerSnapshot totals = new LedgerSnapshot();
+		for (Player player : players.values())
+		{
+			player.getTotals(totals);
+			totalBet += totals.getTotalBet();
+			totalWin += totals.getTotalWin();
+		}
+		long staked = amountStaked.sum();
+		long paid = counter.getAmountPaid();
+		boolean balanced = totalBet - initialTotalBet == staked && totalWin - initialTotalWin == paid;
+
+		out.println();
+		out.printf("Elapsed:            %.1f s%n", seconds);
+		out.printf("Rounds played:      %,d%n", counter.getRounds());
+		out.printf("Bets:               %,d accepted, %,d rejected, %,d settled%n", betsAccepted.sum(),
+				betsRejected.sum(), counter.getBetsSettled());
+		out.printf("Accepted/sec:       %,.0f (target %,d placed/sec)%n", betsAccepted.sum() / seconds, betsPerSecond);
+		out.printf("Accept latency:     p50 %,d us, p99 %,d us, p99.9 %,d us, max %,d us%n",
+				acceptLatency.getValueAtPercentile(50) / 1000, acceptLatency.getValueAtPercentile(99) / 1000,
+				acceptLatency.getValueAtPercentile(99.9) / 1000, acceptLatency.getMax() / 1000);
+		if (gcWatcher.firstHeapAfterGc < 0)
+		{
+			out.printf("Heap after GC:      no collection while the table was running%n");
+		}
+		else
+		{
+			out.printf("Heap after GC:      %,.1f MB at the end, %,.1f MB after the first collection%n",
+					gcWatcher.heapAfterGc / (1024.0 * 1024), gcWatcher.firstHeapAfterGc / (1024.0 * 1024));
+		}
+		out.printf("GC pauses:          %,d, %,d ms in all, max %,d ms%n", gcWatcher.pauses.sum(),
+				gcWatcher.pauseMillis.sum(), gcWatcher.maxPause);
+		out.printf("Staked:             %s%n", Money.format(staked));
+		out.printf("Paid out:           %s%n", Money.format(paid));
+		out.printf("Player totals:      %s%n", balanced ? "match the bets and payouts" : "DO NOT MATCH ("
+				+ Money.format(totalBet - initialTotalBet) + " bet, " + Money.format(totalWin - initialTotalWin)
+				+ " won)");
+	}
+
+	/**
+	 * The counters at the start of a report interval.
+	 */
+	private final class Interval
+	{
+		private final long started;
+
+		private final long rounds = counter.getRounds();
+
+		private final long accepted = betsAccepted.sum();
+
+		private final long rejected = betsRejected.sum();
+
+		private final long gcPauses = gcWatcher.pauses.sum();
+
+		private Interval(long started)
+		{
+			this.started = started;
+		}
+	}
+
+	/**
+	 * Listens to the collectors of the JVM: counts the pauses and keeps the heap after the latest collection, with the
+	 * rounds played by then. Concurrent cycles (G1's concurrent marking, ZGC's cycles) don't stop the table and aren't
+	 * counted as pauses.
+	 */
+	private final class GcWatcher implements NotificationListener
+	{
+		private final Set<String> heapPools = new HashSet<String>();
+
+		private final LongAdder pauses = new LongAdder();
+
+		private final LongAdder pauseMillis = new LongAdder();
+
+		private volatile long maxPause;
+
+		private volatile long intervalMaxPause;
+
+		// -1 until there was a collection.
+		private volatile long heapAfterGc = -1;
+
+		private volatile long roundsAtGc;
+
+		// The first heap after GC once the table was running, -1 until there is one.
+		private volatile long firstHeapAfterGc = -1;
+
+		private volatile long firstRoundsAtGc;
+
+		private void start()
+		{
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			{
+				if (pool.getType() == MemoryType.HEAP)
+				{
+					heapPools.add(pool.getName());
+				}
+			}
+			for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+			{
+				if (collector instanceof NotificationEmitter)
+				{
+					((NotificationEmitter) collector).addNotificationListener(this, null, null);
+				}
+			}
+		}
+
+		@Override
+		public synchronized void handleNotification(Notification notification, Object handback)
+		{
+			if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()))
+			{
+				return;
+			}
+			GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+					.from((CompositeData) notification.getUserData());
+
+			String name = info.getGcName();
+			if (!name.contains("Concurrent") && !name.contains("Cycles"))
+			{
+				long duration = info.getGcInfo().getDuration();
+				pauses.increment();
+				pauseMillis.add(duration);
+				maxPause = Math.max(maxPause, duration);
+				intervalMaxPause = Math.max(intervalMaxPause, duration);
+			}
+
+			long used = 0;
+			for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet())
+			{
+				if (heapPools.contains(pool.getKey()))
+				{
+					used += pool.getValue().getUsed();
+				}
+			}
+			long rounds = counter.getRounds();
+			heapAfterGc = used;
+			roundsAtGc = rounds;
+			if (firstHeapAfterGc < 0 && rounds > 0)
+			{
+				firstHeapAfterGc = used;
+				firstRoundsAtGc = rounds;
+			}
+		}
+
+		private synchronized long takeIntervalMaxPause()
+		{
+			long max = intervalMaxPause;
+			intervalMaxPause = 0;
+			return max;
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package com.gamesys.consoleroulette.application.bet;
 
-import java.math.BigDecimal;
-
 /**
  * Class representing a bet.
  * 
@@ -11,10 +9,10 @@ import java.math.BigDecimal;
 public class Bet
 {
 	// Number or choice to bet on.
-	private String choice;
+	private RouletteRange choice;
 	
-	// Amount to bet.
-	private BigDecimal amount;
+	// Amount to bet, in pence.
+	private long amount;
 	
 	// Game bet was made on.
 	private long gameId;
@@ -22,7 +20,7 @@ public class Bet
 	// User that made the bet.
 	private String userName;
 	
-	public Bet(String userName, String choice, BigDecimal amount)
+	public Bet(String userName, RouletteRange choice, long amount)
 	{
 		this.userName = userName;
 		this.choice = choice;
@@ -34,17 +32,17 @@ public class Bet
 	 * 
 	 * @return number
 	 */
-	public String getChoice()
+	public RouletteRange getChoice()
 	{
 		return choice;
 	}
 
 	/**
-	 * Return the amount the player bet.
+	 * Return the amount the player bet, in pence.
 	 * 
 	 * @return amount
 	 */
-	public BigDecimal getAmount()
+	public long getAmount()
 	{
 		return amount;
 	}
@@ -76,6 +74,6 @@ public class Bet
 	@Override
 	public String toString()
 	{
-		return "User Name: " + userName + "\nGame Id: " + gameId + "\nBet Choice: " + choice + "\nBet Amount: " + amount;
+		return "User Name: " + userName + "\nGame Id: " + gameId + "\nBet Choice: " + choice.getValue() + "\nBet Amount: " + Money.format(amount);
 	}
 }
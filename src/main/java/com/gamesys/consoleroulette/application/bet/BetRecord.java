@@ -0,0 +1,74 @@
+package com.gamesys.consoleroulette.application.bet;
+
+/**
+ * Mutable holder of a parsed bet. Meant to be reused for every line read, so parsing a bet doesn't leave anything
+ * behind for the garbage collector. A Bet is only created once the bet is accepted.
+ * 
+ * @author Andreas
+ *
+ */
+public final class BetRecord
+{
+	// Player that made the bet.
+	private Player player;
+
+	// Ordinal of the RouletteRange bet on, -1 when empty.
+	private int choice = -1;
+
+	// Amount to bet, in pence.
+	private long amount;
+
+	public void set(Player player, int choice, long amount)
+	{
+		this.player = player;
+		this.choice = choice;
+		this.amount = amount;
+	}
+
+	/**
+	 * Empties the record so a stale bet can't be recorded by mistake.
+	 */
+	public void clear()
+	{
+		player = null;
+		choice = -1;
+		amount = 0;
+	}
+
+	public Player getPlayer()
+	{
+		return player;
+	}
+
+	/**
+	 * @return the ordinal of the RouletteRange bet on
+	 */
+	public int getChoice()
+	{
+		return choice;
+	}
+
+	/**
+	 * @return the amount in pence
+	 */
+	public long getAmount()
+	{
+		return amount;
+	}
+
+	/**
+	 * Creates the bet to keep once the record is accepted.
+	 */
+	public Bet toBet()
+	{
+		return new Bet(player.getUserName(), RouletteRange.fromOrdinal(choice), amount);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "User Name: " + (player == null ? null : player.getUserName()) + "\nBet Choice: "
+				+ (choice < 0 ? null : RouletteRange.fromOrdinal(choice).getValue()) + "\nBet Amount: "
+				+ Money.format(amount);
+	}
+}
@@ -1,7 +1,5 @@
 package com.gamesys.consoleroulette.application.bet;
 
-import java.math.BigDecimal;
-
 /**
  * Class representing the result of a bet.
  * 
@@ -11,13 +9,13 @@ import java.math.BigDecimal;
 public class BetResult
 {
 	// Number or choice bet on.
-	private String choice;
+	private RouletteRange choice;
 	
 	// Number that won.
 	private int winningNumber;
 		
-	// Amount won.
-	private BigDecimal winnings;
+	// Amount won, in pence.
+	private long winnings;
 	
 	// Player user name
 	private String userName;
@@ -25,7 +23,7 @@ public class BetResult
 	// Outcome of the game.
 	private Outcome outcome;
 		
-	public BetResult(int winningNumber, String choice, BigDecimal winnings, String userName, Outcome outcome)
+	public BetResult(int winningNumber, RouletteRange choice, long winnings, String userName, Outcome outcome)
 	{
 		this.winningNumber= winningNumber;
 		this.userName = userName;
@@ -39,7 +37,7 @@ public class BetResult
 		return userName;
 	}
 
-	public String getChoice()
+	public RouletteRange getChoice()
 	{
 		return choice;
 	}
@@ -49,7 +47,7 @@ public class BetResult
 		return outcome;
 	}
 
-	public BigDecimal getWinnings()
+	public long getWinnings()
 	{
 		return winnings;
 	}
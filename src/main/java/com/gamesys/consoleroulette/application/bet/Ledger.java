@@ -0,0 +1,49 @@
+package com.gamesys.consoleroulette.application.bet;
+
+/**
+ * Where the running totals of a player are kept. PlayerLedger keeps them in the player on the heap; a player of a
+ * MappedLedger is a view of a slot of a memory-mapped file.
+ * 
+ * @author Andreas
+ *
+ */
+public interface Ledger
+{
+	/**
+	 * Adds a bet amount, in pence, to the total bet.
+	 */
+	void addBet(long amount);
+
+	/**
+	 * Adds winnings, in pence, to the total win.
+	 */
+	void addWin(long amount);
+
+	/**
+	 * A bet of this amount, in pence, was settled. It is in the total bet already; a ledger that keeps the stakes of
+	 * games not settled yet apart moves it over.
+	 */
+	default void betSettled(long amount)
+	{
+	}
+
+	long getTotalBet();
+
+	long getTotalWin();
+
+	/**
+	 * Reads both totals as they were at one instant.
+	 * 
+	 * @param snapshot to fill in, so it can be reused
+	 * @return the snapshot
+	 */
+	LedgerSnapshot snapshot(LedgerSnapshot snapshot);
+
+	/**
+	 * Reads both totals as they were at one instant, into a new snapshot.
+	 */
+	default LedgerSnapshot snapshot()
+	{
+		return snapshot(new LedgerSnapshot());
+	}
+}
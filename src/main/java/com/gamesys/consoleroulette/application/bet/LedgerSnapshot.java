@@ -0,0 +1,40 @@
+package com.gamesys.consoleroulette.application.bet;
+
+/**
+ * Both totals of a player as they were at one instant. Mutable so a reader can keep one around and refill it.
+ * 
+ * @author Andreas
+ *
+ */
+public final class LedgerSnapshot
+{
+	// Totals are in pence.
+	private long totalBet;
+
+	private long totalWin;
+
+	/**
+	 * Fills in both totals. Public for the ledgers kept outside of this package.
+	 */
+	public void set(long totalBet, long totalWin)
+	{
+		this.totalBet = totalBet;
+		this.totalWin = totalWin;
+	}
+
+	public long getTotalBet()
+	{
+		return totalBet;
+	}
+
+	public long getTotalWin()
+	{
+		return totalWin;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Total Bet: " + Money.format(totalBet) + "\nTotal Win: " + Money.format(totalWin);
+	}
+}
@@ -0,0 +1,78 @@
+package com.gamesys.consoleroulette.application.bet;
+
+import java.math.BigDecimal;
+
+/**
+ * Money is kept as a long of the smallest denomination (pence) everywhere in the game. This class does the conversion
+ * from and to pounds, and is only meant to be used where amounts come in (console, player file) or go out (console).
+ * 
+ * @author Andreas
+ *
+ */
+public final class Money
+{
+	// Pence in a pound.
+	public static final int PENCE_PER_POUND = 100;
+
+	private Money()
+	{
+	}
+
+	/**
+	 * Converts an amount in pounds (i.e. "3.50", "2", "0.1") to pence.
+	 * 
+	 * @param pounds
+	 * @return the amount in pence
+	 * @throws NumberFormatException if the amount is not a number or has more than 2 decimal places.
+	 */
+	public static long parse(String pounds) throws NumberFormatException
+	{
+		BigDecimal amount = new BigDecimal(pounds);
+		try
+		{
+			return amount.movePointRight(2).longValueExact();
+		}
+		catch (ArithmeticException ae)
+		{
+			throw new NumberFormatException("'" + pounds + "' has more than 2 decimal places or is too large.");
+		}
+	}
+
+	/**
+	 * Formats an amount in pence as pounds with 2 decimal places (i.e. 350 as "3.50").
+	 * 
+	 * @param pence
+	 * @return the amount in pounds
+	 */
+	public static String format(long pence)
+	{
+		StringBuilder sb = new StringBuilder(12);
+		append(sb, pence);
+		return sb.toString();
+	}
+
+	/**
+	 * Same as {@link #format(long)} but appends to an existing builder.
+	 * 
+	 * @param sb
+	 * @param pence
+	 * @return the builder
+	 */
+	public static StringBuilder append(StringBuilder sb, long pence)
+	{
+		if (pence < 0)
+		{
+			sb.append('-');
+			pence = -pence;
+		}
+		long pounds = pence / PENCE_PER_POUND;
+		int remainder = (int) (pence % PENCE_PER_POUND);
+
+		sb.append(pounds).append('.');
+		if (remainder < 10)
+		{
+			sb.append('0');
+		}
+		return sb.append(remainder);
+	}
+}
@@ -1,54 +1,72 @@
 package com.gamesys.consoleroulette.application.bet;
 
-import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * Class for representing a player of a game.
  * 
  * @author Andreas
  *
  */
-public class Player implements BetListener
+public class Player
 {
 	private String userName;
 
-	volatile private BigDecimal totalBet;
+	// Total bet and total win, in pence. Updated from the bet monitor and the game thread. On the heap, or in a slot
+	// of a mapped ledger file.
+	private Ledger ledger;
 
-	volatile private BigDecimal totalWin;
+	// Number of games kept in the history when no depth is given.
+	public static final int DEFAULT_HISTORY_DEPTH = 16;
 
-	private ConcurrentHashMap<Long, Bet> betHistory;
+	// Bets and results of the last few games. Older games are evicted as new ones come in.
+	private RoundHistory history;
 
-	// This is only going to be accessed from its owner... for now.
-	private Map<Long, BetResult> betResultHistory;
+	public Player(String userName, long totalBet, long totalWin, int historyDepth)
+	{
+		this(userName, new PlayerLedger(totalBet, totalWin), historyDepth);
+	}
 
-	public Player(String userName, BigDecimal totalBet, BigDecimal totalWin)
+	/**
+	 * A player whose totals are kept somewhere else than in the player, i.e. a slot of a mapped ledger.
+	 */
+	public Player(String userName, Ledger ledger, int historyDepth)
 	{
 		this.userName = userName;
-		this.totalBet = totalBet;
-		this.totalWin = totalWin;
-		betHistory = new ConcurrentHashMap<Long, Bet>();
-		betResultHistory = new HashMap<Long, BetResult>();
+		this.ledger = ledger;
+		history = new RoundHistory(historyDepth);
+	}
+
+	public Player(String userName, long totalBet, long totalWin)
+	{
+		this(userName, totalBet, totalWin, DEFAULT_HISTORY_DEPTH);
 	}
 
 	public Player(String userName)
 	{
-		// this(userName, 0.0d, 0.0d);
-		this.userName = userName;
-		this.totalBet = new BigDecimal(0);
-		this.totalWin = new BigDecimal(0);
-		betHistory = new ConcurrentHashMap<Long, Bet>();
-		betResultHistory = new HashMap<Long, BetResult>();
+		this(userName, 0, 0, DEFAULT_HISTORY_DEPTH);
+	}
+
+	/**
+	 * Return the bets and results of the user for the last few games.
+	 */
+	public RoundHistory getHistory()
+	{
+		return history;
+	}
+
+	/**
+	 * Return the first bet of the user for the game, or null if there isn't one (or it's too old to still be kept).
+	 */
+	public Bet getBet(long gameId)
+	{
+		return history.getBet(userName, gameId);
 	}
 
 	/**
-	 * Return the bet of the user for the game.
+	 * Return the result of the bets of the user for the game, or null if it isn't settled or it's too old.
 	 */
-	public ConcurrentHashMap<Long, Bet> getBetHistory()
+	public BetResult getBetResult(long gameId)
 	{
-		return betHistory;
+		return history.getResult(userName, gameId);
 	}
 
 	/**
@@ -61,127 +79,137 @@ public class Player implements BetListener
 		return userName;
 	}
 
-	public void updateTotalBet(BigDecimal betAmount)
+	public void updateTotalBet(long betAmount)
 	{
-		totalBet = totalBet.add(betAmount);
+		ledger.addBet(betAmount);
 	}
 
-	public void updateTotalWin(BigDecimal winnings)
+	public void updateTotalWin(long winnings)
 	{
-		totalWin = totalWin.add(winnings);
+		ledger.addWin(winnings);
 	}
 
-	public BigDecimal getTotalBet()
+	public long getTotalBet()
 	{
-		return totalBet;
+		return ledger.getTotalBet();
 	}
 
-	public BigDecimal getTotalWin()
+	public long getTotalWin()
 	{
-		return totalWin;
+		return ledger.getTotalWin();
 	}
 
-	@Override
-	public void betCompleted(long gameId, int winningNumber)
+	/**
+	 * Returns the total bet and total win as they were at one instant.
+	 */
+	public LedgerSnapshot getTotals()
 	{
-		Bet bet = betHistory.get(gameId);
-
-		BetResult betResult = evaluateResults(gameId, winningNumber, bet);
+		return ledger.snapshot();
+	}
 
-		if (betResult != null)
-		{
-			// "Player", "Bet", "Outcome", "Winnings", "TotalBet", "TotalWin"
-			System.out.printf("%-10s %5s %9s %10s %10s %10s %n", userName, bet.getChoice(), betResult.getOutcome(),
-					betResult.getWinnings(), totalBet, totalWin);
-		}
+	/**
+	 * Fills in the total bet and total win as they were at one instant.
+	 * 
+	 * @param totals to fill in, so it can be reused
+	 * @return the same totals
+	 */
+	public LedgerSnapshot getTotals(LedgerSnapshot totals)
+	{
+		return ledger.snapshot(totals);
 	}
 
 	/**
-	 * Evaluates the bets against the winning number.
+	 * Records a bet of this player in the history and adds it to the total bet, both in one go.
 	 * 
-	 * @param winningNumber
 	 * @param gameId
-	 * @return a result that contain information used to present the results.
+	 * @param choice ordinal of the RouletteRange bet on
+	 * @param amount in pence
+	 * @param maxBets most bets the game may have
+	 * @return false if the game already has maxBets bets, in which case nothing changes
 	 */
-	private BetResult evaluateResults(long gameId, int winningNumber, Bet bet)
-	{
-		/*
-		 * We will access all his bets and then evaluate them against the result of this game. When evaluating them we
-		 * will also prepare the object to represent the result that is also to be used in the presentation.
-		 */
-		Bet currentBet = betHistory.get(gameId);
-		if (currentBet == null)
-		{
-			// This player didn't place a bet in this game, moving on.
-			return null;
-		}
-
-		// Outcome of bet.
-		Outcome outcome;
-
-		// Winnings of bet.
-		// TODO perhaps it would be better to use smallest denomination, i.e pence, cents, etc
-		BigDecimal winnings;
+	public boolean placeBet(long gameId, int choice, long amount, int maxBets)
+	{
+		return history.record(gameId, choice, amount, maxBets, ledger) >= 0;
+	}
 
-		String betChoice = currentBet.getChoice();
-		BigDecimal betAmount = currentBet.getAmount();
+	/**
+	 * Fills in the total bet and total win as they were at one instant, without the stakes of a game that isn't
+	 * settled yet. Bets placed with placeBet are either in both the total and the stakes or in neither.
+	 * 
+	 * @param openGameId the game taking bets
+	 * @param totals to fill in, so it can be reused
+	 * @return the same totals
+	 */
+	public LedgerSnapshot getSettledTotals(long openGameId, LedgerSnapshot totals)
+	{
+		return history.settledTotals(openGameId, ledger, totals);
+	}
 
-		if (RouletteRange.ODD.getValue().equals(betChoice))
+	/**
+	 * Adds a bet that was settled somewhere else, i.e. one replayed from the journal, to the totals: its stake to the
+	 * total bet of the settled games and its winnings to the total win. Nothing goes in the history.
+	 * 
+	 * @param stake in pence, 0 if it's already in the totals
+	 * @param winnings in pence
+	 */
+	public void addSettledBet(long stake, long winnings)
+	{
+		if (stake != 0)
 		{
-			if ((winningNumber % 2) == 1)
-			{
-				outcome = Outcome.WIN;
-				winnings = betAmount.multiply(RouletteRange.ODD.getMultiplier());
-			}
-			else
-			{
-				outcome = Outcome.LOSE;
-				winnings = BigDecimal.ZERO;
-			}
+			ledger.addBet(stake);
+			ledger.betSettled(stake);
 		}
-		else if (RouletteRange.EVEN.getValue().equals(betChoice))
+		if (winnings != 0)
 		{
-			if ((winningNumber % 2) == 0)
-			{
-				outcome = Outcome.WIN;
-				winnings = betAmount.multiply(RouletteRange.EVEN.getMultiplier());
-			}
-			else
-			{
-				outcome = Outcome.LOSE;
-				winnings = BigDecimal.ZERO;
-			}
+			ledger.addWin(winnings);
 		}
-		else
-		{
-			String winningNumberStr = Integer.toString(winningNumber);
-			if (winningNumberStr.equals(betChoice))
-			{
-				outcome = Outcome.WIN;
-				winnings = betAmount.multiply(RouletteRange.getMultiplierByValue(betChoice));
-			}
-			else
-			{
-				outcome = Outcome.LOSE;
-				winnings = BigDecimal.ZERO;
-			}
+	}
 
-		}
+	/**
+	 * Settles a bet of this player against the winning number of its game.
+	 * 
+	 * @param bet the bet to settle
+	 * @param winningNumber
+	 * @param multiplier payout of the bet choice for the winning number, 0 if the bet lost
+	 * @return the winnings of the bet, in pence
+	 */
+	public long settleBet(Bet bet, int winningNumber, int multiplier)
+	{
+		return settleBet(bet.getGameId(), bet.getAmount(), winningNumber, multiplier);
+	}
+
+	/**
+	 * Settles a bet of this player against the winning number of its game, from its game and amount alone. A player
+	 * with several bets on a game has each of them settled with a call of its own.
+	 * 
+	 * @param gameId of the bet
+	 * @param amount of the bet, in pence
+	 * @param winningNumber
+	 * @param multiplier payout of the bet choice for the winning number, 0 if the bet lost
+	 * @return the winnings of the bet, in pence
+	 */
+	public long settleBet(long gameId, long amount, int winningNumber, int multiplier)
+	{
+		// Winnings of bet, in pence.
+		long winnings = amount * multiplier;
 
-		// Create result object and add it to the history.
-		BetResult betResult = new BetResult(winningNumber, betChoice, winnings, userName, outcome);
-		betResultHistory.put(gameId, betResult);
+		// Keep the result in the history.
+		history.settle(gameId, winningNumber, winnings);
+		ledger.betSettled(amount);
 
 		// Update total win of player
-		updateTotalWin(winnings);
+		if (winnings != 0)
+		{
+			updateTotalWin(winnings);
+		}
 
-		return betResult;
+		return winnings;
 	}
-	
+
 	@Override
 	public String toString()
 	{
-		return "User Name: " + userName + "\nTotal Bet: " + totalBet + "\nTotal Win: " + totalWin;
+		return "User Name: " + userName + "\n" + ledger.snapshot();
 		
 	}
 }
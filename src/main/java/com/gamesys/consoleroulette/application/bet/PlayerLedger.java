@@ -0,0 +1,100 @@
+package com.gamesys.consoleroulette.application.bet;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Running totals of a player. The bet monitor adds to the total bet and the game thread to the total win, possibly at
+ * the same time, so every update is an atomic add instead of a read-add-write.
+ * 
+ * Reading both totals at once needs a bit more. Every write is bracketed by two counters, writes started and writes
+ * completed. A reader that sees no write in progress before it reads the totals and no new write started after, knows
+ * the two values it read belong together. Writers never wait; a reader retries if a write got in its way.
+ * 
+ * Field updaters are used instead of AtomicLong objects since there is a ledger per player.
+ * 
+ * @author Andreas
+ *
+ */
+public class PlayerLedger implements Ledger
+{
+	private static final AtomicLongFieldUpdater<PlayerLedger> TOTAL_BET = AtomicLongFieldUpdater
+			.newUpdater(PlayerLedger.class, "totalBet");
+
+	private static final AtomicLongFieldUpdater<PlayerLedger> TOTAL_WIN = AtomicLongFieldUpdater
+			.newUpdater(PlayerLedger.class, "totalWin");
+
+	private static final AtomicLongFieldUpdater<PlayerLedger> WRITES_STARTED = AtomicLongFieldUpdater
+			.newUpdater(PlayerLedger.class, "writesStarted");
+
+	private static final AtomicLongFieldUpdater<PlayerLedger> WRITES_COMPLETED = AtomicLongFieldUpdater
+			.newUpdater(PlayerLedger.class, "writesCompleted");
+
+	// Totals are in pence.
+	private volatile long totalBet;
+
+	private volatile long totalWin;
+
+	private volatile long writesStarted;
+
+	private volatile long writesCompleted;
+
+	public PlayerLedger(long totalBet, long totalWin)
+	{
+		this.totalBet = totalBet;
+		this.totalWin = totalWin;
+	}
+
+	@Override
+	public void addBet(long amount)
+	{
+		WRITES_STARTED.incrementAndGet(this);
+		TOTAL_BET.addAndGet(this, amount);
+		WRITES_COMPLETED.incrementAndGet(this);
+	}
+
+	@Override
+	public void addWin(long amount)
+	{
+		WRITES_STARTED.incrementAndGet(this);
+		TOTAL_WIN.addAndGet(this, amount);
+		WRITES_COMPLETED.incrementAndGet(this);
+	}
+
+	@Override
+	public long getTotalBet()
+	{
+		return totalBet;
+	}
+
+	@Override
+	public long getTotalWin()
+	{
+		return totalWin;
+	}
+
+	@Override
+	public LedgerSnapshot snapshot(LedgerSnapshot snapshot)
+	{
+		while (true)
+		{
+			// No write may be in progress (completed lags started) when we start reading...
+			long completed = writesCompleted;
+			long started = writesStarted;
+			if (started != completed)
+			{
+				Thread.onSpinWait();
+				continue;
+			}
+
+			long bet = totalBet;
+			long win = totalWin;
+
+			// ... and none may have started while we were.
+			if (writesStarted == started)
+			{
+				snapshot.set(bet, win);
+				return snapshot;
+			}
+		}
+	}
+}
@@ -1,12 +1,14 @@
 package com.gamesys.consoleroulette.application.bet;
 
-import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Possible outcomes of a game.
+ * Possible outcomes of a game: every bet of the European layout. A choice covers a set of numbers, kept as a mask with
+ * bit n set for number n, and pays its multiplier (stake included) if the winning number is one of them, so settling
+ * any choice is the same shift and test. Choices made of numbers have the numbers joined by '-' as their value.
  * 
  * @author Andreas
  *
@@ -49,19 +51,194 @@ public enum RouletteRange
 	THIRTYFOUR("34", 36),
 	THIRTYFIVE("35", 36),
 	THIRTYSIX("36", 36),
-	ODD("ODD", 2),
-	EVEN("EVEN", 2);
+	ODD("ODD", 2, sequence(1, 2, 18)),
+	EVEN("EVEN", 2, sequence(2, 2, 18)),
+
+	// Appended after the first choices so the ordinals already in journals and snapshots keep their meaning.
+	ZERO("0", 36),
+
+	// Zero is none of these, the house keeps it.
+	RED("RED", 2, numbers(1, 3, 5, 7, 9, 12, 14, 16, 18, 19, 21, 23, 25, 27, 30, 32, 34, 36)),
+	BLACK("BLACK", 2, numbers(2, 4, 6, 8, 10, 11, 13, 15, 17, 20, 22, 24, 26, 28, 29, 31, 33, 35)),
+	LOW("LOW", 2, sequence(1, 1, 18)),
+	HIGH("HIGH", 2, sequence(19, 1, 18)),
+	DOZEN1("DOZEN1", 3, sequence(1, 1, 12)),
+	DOZEN2("DOZEN2", 3, sequence(13, 1, 12)),
+	DOZEN3("DOZEN3", 3, sequence(25, 1, 12)),
+	COLUMN1("COLUMN1", 3, sequence(1, 3, 12)),
+	COLUMN2("COLUMN2", 3, sequence(2, 3, 12)),
+	COLUMN3("COLUMN3", 3, sequence(3, 3, 12)),
+
+	// Two numbers next to each other on the layout.
+	SPLIT_0_1("0-1", 18),
+	SPLIT_0_2("0-2", 18),
+	SPLIT_0_3("0-3", 18),
+	SPLIT_1_2("1-2", 18),
+	SPLIT_1_4("1-4", 18),
+	SPLIT_2_3("2-3", 18),
+	SPLIT_2_5("2-5", 18),
+	SPLIT_3_6("3-6", 18),
+	SPLIT_4_5("4-5", 18),
+	SPLIT_4_7("4-7", 18),
+	SPLIT_5_6("5-6", 18),
+	SPLIT_5_8("5-8", 18),
+	SPLIT_6_9("6-9", 18),
+	SPLIT_7_8("7-8", 18),
+	SPLIT_7_10("7-10", 18),
+	SPLIT_8_9("8-9", 18),
+	SPLIT_8_11("8-11", 18),
+	SPLIT_9_12("9-12", 18),
+	SPLIT_10_11("10-11", 18),
+	SPLIT_10_13("10-13", 18),
+	SPLIT_11_12("11-12", 18),
+	SPLIT_11_14("11-14", 18),
+	SPLIT_12_15("12-15", 18),
+	SPLIT_13_14("13-14", 18),
+	SPLIT_13_16("13-16", 18),
+	SPLIT_14_15("14-15", 18),
+	SPLIT_14_17("14-17", 18),
+	SPLIT_15_18("15-18", 18),
+	SPLIT_16_17("16-17", 18),
+	SPLIT_16_19("16-19", 18),
+	SPLIT_17_18("17-18", 18),
+	SPLIT_17_20("17-20", 18),
+	SPLIT_18_21("18-21", 18),
+	SPLIT_19_20("19-20", 18),
+	SPLIT_19_22("19-22", 18),
+	SPLIT_20_21("20-21", 18),
+	SPLIT_20_23("20-23", 18),
+	SPLIT_21_24("21-24", 18),
+	SPLIT_22_23("22-23", 18),
+	SPLIT_22_25("22-25", 18),
+	SPLIT_23_24("23-24", 18),
+	SPLIT_23_26("23-26", 18),
+	SPLIT_24_27("24-27", 18),
+	SPLIT_25_26("25-26", 18),
+	SPLIT_25_28("25-28", 18),
+	SPLIT_26_27("26-27", 18),
+	SPLIT_26_29("26-29", 18),
+	SPLIT_27_30("27-30", 18),
+	SPLIT_28_29("28-29", 18),
+	SPLIT_28_31("28-31", 18),
+	SPLIT_29_30("29-30", 18),
+	SPLIT_29_32("29-32", 18),
+	SPLIT_30_33("30-33", 18),
+	SPLIT_31_32("31-32", 18),
+	SPLIT_31_34("31-34", 18),
+	SPLIT_32_33("32-33", 18),
+	SPLIT_32_35("32-35", 18),
+	SPLIT_33_36("33-36", 18),
+	SPLIT_34_35("34-35", 18),
+	SPLIT_35_36("35-36", 18),
+
+	// A row of three, and the two rows of three with zero.
+	STREET_1_2_3("1-2-3", 12),
+	STREET_4_5_6("4-5-6", 12),
+	STREET_7_8_9("7-8-9", 12),
+	STREET_10_11_12("10-11-12", 12),
+	STREET_13_14_15("13-14-15", 12),
+	STREET_16_17_18("16-17-18", 12),
+	STREET_19_20_21("19-20-21", 12),
+	STREET_22_23_24("22-23-24", 12),
+	STREET_25_26_27("25-26-27", 12),
+	STREET_28_29_30("28-29-30", 12),
+	STREET_31_32_33("31-32-33", 12),
+	STREET_34_35_36("34-35-36", 12),
+	TRIO_0_1_2("0-1-2", 12),
+	TRIO_0_2_3("0-2-3", 12),
+
+	// Four numbers meeting at a corner, and zero with the first row.
+	CORNER_1_2_4_5("1-2-4-5", 9),
+	CORNER_2_3_5_6("2-3-5-6", 9),
+	CORNER_4_5_7_8("4-5-7-8", 9),
+	CORNER_5_6_8_9("5-6-8-9", 9),
+	CORNER_7_8_10_11("7-8-10-11", 9),
+	CORNER_8_9_11_12("8-9-11-12", 9),
+	CORNER_10_11_13_14("10-11-13-14", 9),
+	CORNER_11_12_14_15("11-12-14-15", 9),
+	CORNER_13_14_16_17("13-14-16-17", 9),
+	CORNER_14_15_17_18("14-15-17-18", 9),
+	CORNER_16_17_19_20("16-17-19-20", 9),
+	CORNER_17_18_20_21("17-18-20-21", 9),
+	CORNER_19_20_22_23("19-20-22-23", 9),
+	CORNER_20_21_23_24("20-21-23-24", 9),
+	CORNER_22_23_25_26("22-23-25-26", 9),
+	CORNER_23_24_26_27("23-24-26-27", 9),
+	CORNER_25_26_28_29("25-26-28-29", 9),
+	CORNER_26_27_29_30("26-27-29-30", 9),
+	CORNER_28_29_31_32("28-29-31-32", 9),
+	CORNER_29_30_32_33("29-30-32-33", 9),
+	CORNER_31_32_34_35("31-32-34-35", 9),
+	CORNER_32_33_35_36("32-33-35-36", 9),
+	FIRST_FOUR("0-1-2-3", 9),
+
+	// Two rows of three next to each other.
+	SIX_LINE_1_6("1-2-3-4-5-6", 6),
+	SIX_LINE_4_9("4-5-6-7-8-9", 6),
+	SIX_LINE_7_12("7-8-9-10-11-12", 6),
+	SIX_LINE_10_15("10-11-12-13-14-15", 6),
+	SIX_LINE_13_18("13-14-15-16-17-18", 6),
+	SIX_LINE_16_21("16-17-18-19-20-21", 6),
+	SIX_LINE_19_24("19-20-21-22-23-24", 6),
+	SIX_LINE_22_27("22-23-24-25-26-27", 6),
+	SIX_LINE_25_30("25-26-27-28-29-30", 6),
+	SIX_LINE_28_33("28-29-30-31-32-33", 6),
+	SIX_LINE_31_36("31-32-33-34-35-36", 6);
+
+	// Highest number on the wheel. Masks have a bit for every number from 0 to this one.
+	public static final int HIGHEST_NUMBER = 36;
+
+	// What to tell a player who bet on something else.
+	public static final String CHOICES_MESSAGE = "The roulette number must be a number of the game, ODD, EVEN, RED, "
+			+ "BLACK, LOW, HIGH, DOZEN1-3, COLUMN1-3 or numbers next to each other joined by '-' "
+			+ "(i.e. 1-2, 1-2-3, 1-2-4-5, 1-2-3-4-5-6).";
 
 	private final String value;
 
-	private final BigDecimal multiplier;
+	private final int multiplier;
+
+	// Bit n is set if the choice covers number n.
+	private final long mask;
+
+	private static final Map<String, Integer> map = Collections.unmodifiableMap(initializeMapping());
+
+	private static final Map<String, RouletteRange> choices = Collections.unmodifiableMap(initializeChoices());
+
+	/*
+	 * Mask and multiplier of every choice by ordinal, so settlement reads two arrays instead of going through the
+	 * enum. However many choices there are, a payout is the same two loads, a shift and a multiplication.
+	 */
+	private static final long[] masks = initializeMasks();
+
+	private static final int[] multipliers = initializeMultipliers();
+
+	// values() hands out a new array every time, so keep one for look ups by ordinal.
+	private static final RouletteRange[] ranges = values();
+
+	// Masks of the choices made of numbers, sorted, and the ordinal of each, so a list of numbers is found by its mask.
+	private static final long[] numberMasks = initializeNumberMasks();
+
+	private static final int[] numberOrdinals = initializeNumberOrdinals();
 
-	private static final Map<String, BigDecimal> map = Collections.unmodifiableMap(initializeMapping());
+	// Ordinal of the straight bet on each number, the most common bet, without a search.
+	private static final int[] straightOrdinals = initializeStraightOrdinals();
 
-	private RouletteRange(String value, Integer multiplier)
+	// Choices with a name (ODD, RED, ...), the only ones matched by name.
+	private static final RouletteRange[] named = initializeNamed();
+
+	/**
+	 * A choice of numbers, which are its value joined by '-'.
+	 */
+	private RouletteRange(String value, int multiplier)
+	{
+		this(value, multiplier, parseNumbers(value));
+	}
+
+	private RouletteRange(String value, int multiplier, long mask)
 	{
 		this.value = value;
-		this.multiplier = new BigDecimal(multiplier);
+		this.multiplier = multiplier;
+		this.mask = mask;
 	}
 
 	public String getValue()
@@ -69,22 +246,172 @@ public enum RouletteRange
 		return value;
 	}
 
-	public BigDecimal getMultiplier()
+	public int getMultiplier()
 	{
 		return multiplier;
 	}
 
-	public static BigDecimal getMultiplierByValue(String value)
+	/**
+	 * Returns the numbers the choice covers, bit n for number n.
+	 */
+	public long getMask()
+	{
+		return mask;
+	}
+
+	/**
+	 * Whether the choice wins when the given number comes up.
+	 */
+	public boolean covers(int winningNumber)
+	{
+		return ((mask >>> winningNumber) & 1) != 0;
+	}
+
+	/**
+	 * Returns the payout multiplier of a choice for a winning number, or 0 if the choice lost.
+	 * 
+	 * @param choiceOrdinal ordinal of the choice bet on
+	 * @param winningNumber number that won, from 0 to HIGHEST_NUMBER
+	 * @return the multiplier to apply to the bet amount
+	 */
+	public static int payout(int choiceOrdinal, int winningNumber)
+	{
+		return (int) ((masks[choiceOrdinal] >>> winningNumber) & 1) * multipliers[choiceOrdinal];
+	}
+
+	/**
+	 * Returns the numbers covered by the choice with the given ordinal, bit n for number n.
+	 */
+	public static long mask(int choiceOrdinal)
+	{
+		return masks[choiceOrdinal];
+	}
+
+	/**
+	 * Returns the mask of the numbers from lowest to highest, i.e. the numbers a game can come up with.
+	 */
+	public static long range(int lowest, int highest)
+	{
+		return sequence(lowest, 1, highest - lowest + 1);
+	}
+
+	/**
+	 * Returns the choice with the given value (i.e. "17", "ODD"), or null if there is no such choice.
+	 */
+	public static RouletteRange fromValue(String value)
+	{
+		return choices.get(value);
+	}
+
+	/**
+	 * Returns the choice with the given ordinal.
+	 */
+	public static RouletteRange fromOrdinal(int ordinal)
+	{
+		return ranges[ordinal];
+	}
+
+	/**
+	 * Finds the choice spelled by part of a sequence of characters, without creating a String for it. Numbers must be
+	 * written as they are in the value (no signs or leading zeros) and names are matched ignoring case.
+	 * 
+	 * @param chars
+	 * @param start index of the first character
+	 * @param end index after the last character
+	 * @return the ordinal of the choice, or -1 if no choice is spelled that way
+	 */
+	public static int ordinalOf(CharSequence chars, int start, int end)
+	{
+		int length = end - start;
+		if (length <= 0)
+		{
+			return -1;
+		}
+
+		// Straight bets and numbers joined by '-', found by the mask of the numbers. No leading zeros, and every number
+		// only once.
+		char first = chars.charAt(start);
+		if (first >= '0' && first <= '9')
+		{
+			long numbers = 0;
+			int count = 0;
+			int number = -1;
+			for (int i = start; i <= end; i++)
+			{
+				char c = (i < end) ? chars.charAt(i) : '-';
+				if (c == '-')
+				{
+					if (number < 0)
+					{
+						return -1;
+					}
+					numbers |= 1L << number;
+					count++;
+					number = -1;
+				}
+				else if (c >= '0' && c <= '9' && number != 0)
+				{
+					number = (number < 0) ? c - '0' : number * 10 + (c - '0');
+					if (number > HIGHEST_NUMBER)
+					{
+						return -1;
+					}
+				}
+				else
+				{
+					return -1;
+				}
+			}
+			if (count == 1)
+			{
+				return straightOrdinals[Long.numberOfTrailingZeros(numbers)];
+			}
+			if (Long.bitCount(numbers) != count)
+			{
+				return -1;
+			}
+			int index = Arrays.binarySearch(numberMasks, numbers);
+			return (index < 0) ? -1 : numberOrdinals[index];
+		}
+
+		// Named choices (ODD, EVEN, RED, ...).
+		for (RouletteRange r : named)
+		{
+			if (r.value.length() == length && r.valueMatches(chars, start))
+			{
+				return r.ordinal();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether the characters from start on spell the value of this choice, ignoring case. The caller checks the length.
+	 */
+	private boolean valueMatches(CharSequence chars, int start)
+	{
+		for (int i = 0; i < value.length(); i++)
+		{
+			if (Character.toUpperCase(chars.charAt(start + i)) != value.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static int getMultiplierByValue(String value)
 	{
 		if (map == null)
 		{
 			initializeMapping();
 		}
-		if (map.containsKey(value))
+		Integer multiplier = map.get(value);
+		if (multiplier != null)
 		{
-			return map.get(value);
+			return multiplier;
 		}
-		return null;
+		return 0;
 	}
 	
 	public static boolean valueExists(String value)
@@ -97,9 +424,9 @@ public enum RouletteRange
 		return map.containsKey(value);
 	}
 
-	private static Map<String, BigDecimal> initializeMapping()
+	private static Map<String, Integer> initializeMapping()
 	{
-		Map<String, BigDecimal> map = new HashMap<String, BigDecimal>();
+		Map<String, Integer> map = new HashMap<String, Integer>();
 		for (RouletteRange r : RouletteRange.values())
 		{
 			map.put(r.value, r.multiplier);
@@ -107,4 +434,140 @@ public enum RouletteRange
 		
 		return map;
 	}
-}
\ No newline at end of file
+
+	private static Map<String, RouletteRange> initializeChoices()
+	{
+		Map<String, RouletteRange> choices = new HashMap<String, RouletteRange>();
+		for (RouletteRange r : RouletteRange.values())
+		{
+			choices.put(r.value, r);
+		}
+
+		return choices;
+	}
+
+	private static long[] initializeMasks()
+	{
+		RouletteRange[] ranges = RouletteRange.values();
+		long[] masks = new long[ranges.length];
+		for (RouletteRange r : ranges)
+		{
+			masks[r.ordinal()] = r.mask;
+		}
+
+		return masks;
+	}
+
+	private static int[] initializeMultipliers()
+	{
+		RouletteRange[] ranges = RouletteRange.values();
+		int[] multipliers = new int[ranges.length];
+		for (RouletteRange r : ranges)
+		{
+			multipliers[r.ordinal()] = r.multiplier;
+		}
+
+		return multipliers;
+	}
+
+	private static long[] initializeNumberMasks()
+	{
+		long[] numberMasks = new long[ranges.length];
+		int count = 0;
+		for (RouletteRange r : ranges)
+		{
+			if (!r.isNamed())
+			{
+				numberMasks[count++] = r.mask;
+			}
+		}
+		numberMasks = Arrays.copyOf(numberMasks, count);
+		Arrays.sort(numberMasks);
+
+		return numberMasks;
+	}
+
+	private static int[] initializeNumberOrdinals()
+	{
+		int[] ordinals = new int[numberMasks.length];
+		for (RouletteRange r : ranges)
+		{
+			if (!r.isNamed())
+			{
+				ordinals[Arrays.binarySearch(numberMasks, r.mask)] = r.ordinal();
+			}
+		}
+
+		return ordinals;
+	}
+
+	private static int[] initializeStraightOrdinals()
+	{
+		int[] ordinals = new int[HIGHEST_NUMBER + 1];
+		for (int number = 0; number <= HIGHEST_NUMBER; number++)
+		{
+			ordinals[number] = numberOrdinals[Arrays.binarySearch(numberMasks, 1L << number)];
+		}
+
+		return ordinals;
+	}
+
+	private static RouletteRange[] initializeNamed()
+	{
+		RouletteRange[] named = new RouletteRange[ranges.length];
+		int count = 0;
+		for (RouletteRange r : ranges)
+		{
+			if (r.isNamed())
+			{
+				named[count++] = r;
+			}
+		}
+
+		return Arrays.copyOf(named, count);
+	}
+
+	private boolean isNamed()
+	{
+		return value.charAt(0) < '0' || value.charAt(0) > '9';
+	}
+
+	/**
+	 * The mask of numbers joined by '-', i.e. "17" or "1-2-4-5". Only used to build the choices.
+	 */
+	private static long parseNumbers(String value)
+	{
+		long mask = 0;
+		for (String number : value.split("-"))
+		{
+			mask |= 1L << Integer.parseInt(number);
+		}
+
+		return mask;
+	}
+
+	private static long numbers(int... numbers)
+	{
+		long mask = 0;
+		for (int number : numbers)
+		{
+			mask |= 1L << number;
+		}
+
+		return mask;
+	}
+
+	/**
+	 * The mask of count numbers from first on, step apart.
+	 */
+	private static long sequence(int first, int step, int count)
+	{
+		long mask = 0;
+		for (int i = 0; i < count; i++)
+		{
+			mask |= 1L << (first + i * step);
+		}
+
+		return mask;
+	}
+}
@@ -0,0 +1,429 @@
+package com.gamesys.consoleroulette.application.bet;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The bets and results of a player for the last few games. Game ids go up by one every game, so the slot of a game is
+ * its id modulo the depth of the history: a new game simply takes over the slot of the oldest one and nothing is kept
+ * for longer than that. Everything is kept in primitive arrays, one entry per slot.
+ * <p>
+ * A game can have several bets. The first one is kept in the arrays of the slots, the others in (choice, amount)
+ * arrays of their slot that grow as needed and are kept when a new game takes the slot over, so a player who always
+ * spreads a few chips stops allocating once the arrays are big enough.
+ * 
+ * Writes (a bet from the bet monitor, a result from the game thread) take a short write lock. Reads are optimistic and
+ * can be done from any thread.
+ * 
+ * @author Andreas
+ *
+ */
+public class RoundHistory
+{
+	// Marks a slot that was never used.
+	private static final long NO_GAME = -1;
+
+	// Marks a bet that hasn't been settled yet.
+	private static final int NOT_SETTLED = -1;
+
+	// Initial room for the bets after the first of a game. The arrays double when full.
+	private static final int INITIAL_EXTRA_BETS = 4;
+
+	private final StampedLock lock = new StampedLock();
+
+	// Game the slot belongs to.
+	private final long[] gameIds;
+
+	// Ordinal of the RouletteRange of the first bet.
+	private final int[] choices;
+
+	// Amount of the first bet, in pence.
+	private final long[] amounts;
+
+	// Bets of the game.
+	private final int[] betCounts;
+
+	// Amount of all the bets of the game, in pence.
+	private final long[] staked;
+
+	// Choices and amounts of the bets after the first, null until a slot first gets a second bet.
+	private final int[][] extraChoices;
+
+	private final long[][] extraAmounts;
+
+	// Number that won, NOT_SETTLED until the game is settled.
+	private final int[] winningNumbers;
+
+	// Amount won by all the bets of the game, in pence.
+	private final long[] winnings;
+
+	public RoundHistory(int depth)
+	{
+		if (depth < 1)
+		{
+			throw new IllegalArgumentException("The history must keep at least one game.");
+		}
+		gameIds = new long[depth];
+		choices = new int[depth];
+		amounts = new long[depth];
+		betCounts = new int[depth];
+		staked = new long[depth];
+		extraChoices = new int[depth][];
+		extraAmounts = new long[depth][];
+		winningNumbers = new int[depth];
+		winnings = new long[depth];
+		Arrays.fill(gameIds, NO_GAME);
+	}
+
+	/**
+	 * Returns how many games are kept.
+	 */
+	public int getDepth()
+	{
+		return gameIds.length;
+	}
+
+	/**
+	 * Records the only bet for a game, evicting whatever game had the slot before.
+	 * 
+	 * @param gameId
+	 * @param choice ordinal of the RouletteRange bet on
+	 * @param amount in pence
+	 * @return false if there already is a bet for the game (or a newer game has the slot), in which case nothing changes
+	 */
+	public boolean record(long gameId, int choice, long amount)
+	{
+		return record(gameId, choice, amount, 1) >= 0;
+	}
+
+	/**
+	 * Records one more bet for a game. The first bet of a game evicts whatever game had the slot before.
+	 * 
+	 * @param gameId
+	 * @param choice ordinal of the RouletteRange bet on
+	 * @param amount in pence
+	 * @param maxBets most bets the game may have
+	 * @return the index of the bet in the game, or -1 if the game already has maxBets bets (or a newer game has the
+	 *         slot), in which case nothing changes
+	 */
+	public int record(long gameId, int choice, long amount, int maxBets)
+	{
+		return record(gameId, choice, amount, maxBets, null);
+	}
+
+	/**
+	 * Records one more bet for a game and adds it to the total bet of a ledger in the same write, so whoever reads
+	 * the totals along with the history (see settledTotals) never sees one without the other.
+	 * 
+	 * @param ledger the total bet goes to, null for none
+	 * @return the index of the bet in the game, or -1 if it was turned away
+	 */
+	int record(long gameId, int choice, long amount, int maxBets, Ledger ledger)
+	{
+		long stamp = lock.writeLock();
+		try
+		{
+			int index = add(slot(gameId), gameId, choice, amount, maxBets);
+			if (index >= 0 && ledger != null)
+			{
+				ledger.addBet(amount);
+			}
+			return index;
+		}
+		finally
+		{
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Reads the totals of a ledger without the stakes of a game that isn't settled yet, i.e. the game taking bets.
+	 * The stakes are taken off under the same lock record adds them with, so the totals are those of the settled
+	 * games only, whatever bets are coming in.
+	 * 
+	 * @param openGameId the game whose stakes are left out
+	 * @param ledger
+	 * @param totals to fill in
+	 * @return the same totals
+	 */
+	LedgerSnapshot settledTotals(long openGameId, Ledger ledger, LedgerSnapshot totals)
+	{
+		int slot = slot(openGameId);
+		long stamp = lock.readLock();
+		try
+		{
+			ledger.snapshot(totals);
+			long open = (gameIds[slot] == openGameId) ? staked[slot] : 0;
+			totals.set(totals.getTotalBet() - open, totals.getTotalWin());
+			return totals;
+		}
+		finally
+		{
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Adds a bet to its slot. The write lock is held.
+	 */
+	private int add(int slot, long gameId, int choice, long amount, int maxBets)
+	{
+		if (gameIds[slot] > gameId)
+		{
+			return -1;
+		}
+		if (gameIds[slot] < gameId)
+		{
+			gameIds[slot] = gameId;
+			choices[slot] = choice;
+			amounts[slot] = amount;
+			betCounts[slot] = 1;
+			staked[slot] = amount;
+			winningNumbers[slot] = NOT_SETTLED;
+			winnings[slot] = 0;
+			return 0;
+		}
+
+		int index = betCounts[slot];
+		if (index >= maxBets)
+		{
+			return -1;
+		}
+		if (extraChoices[slot] == null)
+		{
+			extraChoices[slot] = new int[INITIAL_EXTRA_BETS];
+			extraAmounts[slot] = new long[INITIAL_EXTRA_BETS];
+		}
+		else if (index - 1 == extraChoices[slot].length)
+		{
+			extraChoices[slot] = Arrays.copyOf(extraChoices[slot], (index - 1) * 2);
+			extraAmounts[slot] = Arrays.copyOf(extraAmounts[slot], (index - 1) * 2);
+		}
+		extraChoices[slot][index - 1] = choice;
+		extraAmounts[slot][index - 1] = amount;
+		betCounts[slot] = index + 1;
+		staked[slot] += amount;
+		return index;
+	}
+
+	/**
+	 * Records the result of a bet of a game. Every bet of the game is settled with it, the winnings add up.
+	 * 
+	 * @param gameId
+	 * @param winningNumber
+	 * @param amountWon by the bet, in pence
+	 * @return false if the game is not in the history anymore
+	 */
+	public boolean settle(long gameId, int winningNumber, long amountWon)
+	{
+		int slot = slot(gameId);
+		long stamp = lock.writeLock();
+		try
+		{
+			if (gameIds[slot] != gameId)
+			{
+				return false;
+			}
+			winningNumbers[slot] = winningNumber;
+			winnings[slot] += amountWon;
+			return true;
+		}
+		finally
+		{
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Whether there is a bet for the game in the history.
+	 */
+	public boolean contains(long gameId)
+	{
+		int slot = slot(gameId);
+		long stamp = lock.tryOptimisticRead();
+		boolean contains = gameIds[slot] == gameId;
+		if (lock.validate(stamp))
+		{
+			return contains;
+		}
+
+		stamp = lock.readLock();
+		try
+		{
+			return gameIds[slot] == gameId;
+		}
+		finally
+		{
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Returns the first bet of a game.
+	 * 
+	 * @param userName of the player the history belongs to
+	 * @param gameId
+	 * @return the bet, or null if there is no bet for the game in the history
+	 */
+	public Bet getBet(String userName, long gameId)
+	{
+		int slot = slot(gameId);
+		long stamp = lock.tryOptimisticRead();
+		long id = gameIds[slot];
+		int choice = choices[slot];
+		long amount = amounts[slot];
+		if (!lock.validate(stamp))
+		{
+			stamp = lock.readLock();
+			try
+			{
+				id = gameIds[slot];
+				choice = choices[slot];
+				amount = amounts[slot];
+			}
+			finally
+			{
+				lock.unlockRead(stamp);
+			}
+		}
+
+		if (id != gameId)
+		{
+			return null;
+		}
+		return bet(userName, gameId, choice, amount);
+	}
+
+	/**
+	 * Returns a bet of a game, in the order they were made.
+	 * 
+	 * @param userName of the player the history belongs to
+	 * @param gameId
+	 * @param index of the bet, from 0 to getBetCount(gameId) - 1
+	 * @return the bet, or null if there is no such bet for the game in the history
+	 */
+	public Bet getBet(String userName, long gameId, int index)
+	{
+		if (index == 0)
+		{
+			return getBet(userName, gameId);
+		}
+
+		// The extra arrays can be swapped for bigger ones, so these are read under the lock.
+		int slot = slot(gameId);
+		long stamp = lock.readLock();
+		try
+		{
+			if (gameIds[slot] != gameId || index < 0 || index >= betCounts[slot])
+			{
+				return null;
+			}
+			return bet(userName, gameId, extraChoices[slot][index - 1], extraAmounts[slot][index - 1]);
+		}
+		finally
+		{
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Returns the number of bets of a game, 0 if the game is not in the history.
+	 */
+	public int getBetCount(long gameId)
+	{
+		int slot = slot(gameId);
+		long stamp = lock.tryOptimisticRead();
+		long id = gameIds[slot];
+		int count = betCounts[slot];
+		if (!lock.validate(stamp))
+		{
+			stamp = lock.readLock();
+			try
+			{
+				id = gameIds[slot];
+				count = betCounts[slot];
+			}
+			finally
+			{
+				lock.unlockRead(stamp);
+			}
+		}
+		return (id == gameId) ? count : 0;
+	}
+
+	/**
+	 * Returns the amount of all the bets of a game, in pence, 0 if the game is not in the history.
+	 */
+	public long getStaked(long gameId)
+	{
+		int slot = slot(gameId);
+		long stamp = lock.tryOptimisticRead();
+		long id = gameIds[slot];
+		long amount = staked[slot];
+		if (!lock.validate(stamp))
+		{
+			stamp = lock.readLock();
+			try
+			{
+				id = gameIds[slot];
+				amount = staked[slot];
+			}
+			finally
+			{
+				lock.unlockRead(stamp);
+			}
+		}
+		return (id == gameId) ? amount : 0;
+	}
+
+	/**
+	 * Returns the result of the bets of a game: the choice of the first bet and the winnings of all of them.
+	 * 
+	 * @param userName of the player the history belongs to
+	 * @param gameId
+	 * @return the result, or null if the game is not in the history or wasn't settled yet
+	 */
+	public BetResult getResult(String userName, long gameId)
+	{
+		int slot = slot(gameId);
+		long stamp = lock.tryOptimisticRead();
+		long id = gameIds[slot];
+		int choice = choices[slot];
+		int winningNumber = winningNumbers[slot];
+		long amountWon = winnings[slot];
+		if (!lock.validate(stamp))
+		{
+			stamp = lock.readLock();
+			try
+			{
+				id = gameIds[slot];
+				choice = choices[slot];
+				winningNumber = winningNumbers[slot];
+				amountWon = winnings[slot];
+			}
+			finally
+			{
+				lock.unlockRead(stamp);
+			}
+		}
+
+		if (id != gameId || winningNumber == NOT_SETTLED)
+		{
+			return null;
+		}
+		Outcome outcome = (amountWon == 0) ? Outcome.LOSE : Outcome.WIN;
+		return new BetResult(winningNumber, RouletteRange.fromOrdinal(choice), amountWon, userName, outcome);
+	}
+
+	private static Bet bet(String userName, long gameId, int choice, long amount)
+	{
+		Bet bet = new Bet(userName, RouletteRange.fromOrdinal(choice), amount);
+		bet.setGameId(gameId);
+		return bet;
+	}
+
+	private int slot(long gameId)
+	{
+		return (int) (gameId % gameIds.length);
+	}
+}
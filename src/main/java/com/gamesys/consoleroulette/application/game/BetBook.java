@@ -0,0 +1,362 @@
+package com.gamesys.consoleroulette.application.game;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.gamesys.consoleroulette.application.bet.Bet;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+
+/**
+ * The bets placed on one game, as (player, choice, amount) entries in primitive arrays. The bet monitor writes every
+ * accepted bet in the book of its game and the game thread settles the book once the winning number is out, so
+ * settlement only walks the bets that were actually placed instead of every registered player, in one loop over the
+ * arrays without a Bet in sight. A player can have any number of entries.
+ * <p>
+ * A book goes OPEN (taking bets), CLOSED (no more bets, waiting for the spin) and SETTLING. Bets get in through enter
+ * and leave; close waits for the bets that got in to be written, so nothing lands in a book once it is settled. A settled book
+ * can be reopened for a later game, keeping its arrays, so a table stops allocating once its books are big enough.
+ * 
+ * @author Andreas
+ *
+ */
+public class BetBook
+{
+	// Initial room of each stripe. Stripes grow as needed.
+	private static final int INITIAL_STRIPE_SIZE = 8;
+
+	// Stripes the bets are spread over by player, so the book isn't a point every bet goes through one at a time. With a
+	// journal, bets still meet for a moment in its buffer; without one, a stripe is all two bets can wait for. A power
+	// of two.
+	private static final int STRIPES = 8;
+
+	// Liability of no limit.
+	public static final long NO_LIMIT = Long.MAX_VALUE;
+
+	// Numbers each choice pays out on and what it pays, by choice ordinal. Bets are reserved against these.
+	private static final int[][] COVERED_NUMBERS = initializeCoveredNumbers();
+
+	private static final int[][] COVERED_MULTIPLIERS = initializeCoveredMultipliers();
+
+	/**
+	 * Where a book is in the life of its game.
+	 */
+	public enum State
+	{
+		OPEN, CLOSED, SETTLING
+	}
+
+	// Id of the game the bets are on. Only changed by reopen, before the state goes OPEN, so whoever enters the book
+	// sees the id of its game.
+	private long gameId;
+
+	// The bets, spread over the stripes by player.
+	private final Stripe[] stripes = new Stripe[STRIPES];
+
+	// Changed by the game thread only.
+	private volatile State state = State.OPEN;
+
+	// Bets between enter and leave. Close waits for it to drop to zero.
+	private final AtomicInteger writers = new AtomicInteger();
+
+	// What the house owes if each number wins, in pence, indexed by the number.
+	private final AtomicLongArray liabilities = new AtomicLongArray(RouletteRange.HIGHEST_NUMBER + 1);
+
+	// Most the house may owe on any one number, in pence.
+	private volatile long maxLiability;
+
+	public BetBook()
+	{
+		this(0, NO_LIMIT);
+	}
+
+	/**
+	 * @param gameId id of the game the bets are on
+	 * @param maxLiability most the house may owe on any one number in this game, in pence
+	 */
+	public BetBook(long gameId, long maxLiability)
+	{
+		this.gameId = gameId;
+		this.maxLiability = maxLiability;
+		for (int i = 0; i < STRIPES; i++)
+		{
+			stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Empties a settled book and opens it for another game, keeping the room of its arrays. Only the game thread
+	 * calls it, and only once nobody settles the book anymore.
+	 * 
+	 * @param gameId id of the game the bets are on
+	 * @param maxLiability most the house may owe on any one number in this game, in pence
+	 */
+	void reopen(long gameId, long maxLiability)
+	{
+		for (Stripe stripe : stripes)
+		{
+			stripe.clear();
+		}
+		for (int number = 0; number < liabilities.length(); number++)
+		{
+			liabilities.set(number, 0);
+		}
+		this.gameId = gameId;
+		this.maxLiability = maxLiability;
+		state = State.OPEN;
+	}
+
+	/**
+	 * Lets a bet into the book while it is open. Every successful enter must be followed by a leave. Never blocks: a
+	 * bet that finds the book closed goes to the book of the next game instead.
+	 * 
+	 * @return false if the book no longer takes bets
+	 */
+	public boolean enter()
+	{
+		// Counted first and the state checked after, while close sets the state first and checks the count after, so
+		// either the bet sees the book closed or close sees the bet and waits for it.
+		writers.incrementAndGet();
+		if (state != State.OPEN)
+		{
+			writers.decrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Lets close know a bet that got in with enter is written (or given up).
+	 */
+	public void leave()
+	{
+		writers.decrementAndGet();
+	}
+
+	/**
+	 * Stops taking bets and waits for the bets already in to be written. Writing a bet takes microseconds, so it spins
+	 * instead of parking.
+	 */
+	void close()
+	{
+		state = State.CLOSED;
+		while (writers.get() != 0)
+		{
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * Changes the most the house may owe on any one number. Bets already taken stay.
+	 */
+	void setMaxLiability(long maxLiability)
+	{
+		this.maxLiability = maxLiability;
+	}
+
+	public long getGameId()
+	{
+		return gameId;
+	}
+
+	public State getState()
+	{
+		return state;
+	}
+
+	/**
+	 * Adds an accepted bet to the book.
+	 * 
+	 * @param player that placed the bet
+	 * @param bet
+	 */
+	public void add(Player player, Bet bet)
+	{
+		add(player, bet.getChoice().ordinal(), bet.getAmount());
+	}
+
+	/**
+	 * Adds an accepted bet to the book.
+	 * 
+	 * @param player that placed the bet
+	 * @param choice ordinal of the RouletteRange bet on
+	 * @param amount in pence
+	 */
+	public void add(Player player, int choice, long amount)
+	{
+		stripes[System.identityHashCode(player) & (STRIPES - 1)].add(player, choice, amount);
+	}
+
+	/**
+	 * Adds what a bet would pay to the liability of every number it covers, unless that takes a number over the
+	 * maximum liability. A straight bet touches one counter and ODD or RED eighteen, whatever the number of players.
+	 * Lock free: every number is added to and, if one went over, the ones added so far are taken back. Two bets racing
+	 * for the last of the room may therefore both be turned away, but the maximum is never passed.
+	 * 
+	 * @param choice ordinal of the RouletteRange bet on
+	 * @param amount in pence
+	 * @return false if the bet would take the liability of a number over the maximum, in which case nothing changes
+	 */
+	public boolean reserve(int choice, long amount)
+	{
+		int[] numbers = COVERED_NUMBERS[choice];
+		int[] multipliers = COVERED_MULTIPLIERS[choice];
+		for (int i = 0; i < numbers.length; i++)
+		{
+			long payout = amount * multipliers[i];
+			if (liabilities.addAndGet(numbers[i], payout) > maxLiability)
+			{
+				for (int j = 0; j <= i; j++)
+				{
+					liabilities.addAndGet(numbers[j], -amount * multipliers[j]);
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Takes back a reservation of a bet that wasn't added after all.
+	 * 
+	 * @param choice ordinal of the RouletteRange bet on
+	 * @param amount in pence
+	 */
+	public void release(int choice, long amount)
+	{
+		int[] numbers = COVERED_NUMBERS[choice];
+		int[] multipliers = COVERED_MULTIPLIERS[choice];
+		for (int i = 0; i < numbers.length; i++)
+		{
+			liabilities.addAndGet(numbers[i], -amount * multipliers[i]);
+		}
+	}
+
+	/**
+	 * Returns what the house owes if a number wins, in pence.
+	 */
+	public long getLiability(int number)
+	{
+		return liabilities.get(number);
+	}
+
+	/**
+	 * Returns the number of bets in the book.
+	 */
+	public int size()
+	{
+		int size = 0;
+		for (Stripe stripe : stripes)
+		{
+			size += stripe.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Settles every bet in the book against the winning number, one loop over the arrays of each stripe. The payout of
+	 * a bet is one lookup in the masks of RouletteRange. Close the book first if bets may still be coming in.
+	 * 
+	 * @param winningNumber
+	 * @param reporter told about every bet settled
+	 * @return the number of bets settled
+	 */
+	public int settle(int winningNumber, RoundReporter reporter)
+	{
+		state = State.SETTLING;
+		int settled = 0;
+		for (Stripe stripe : stripes)
+		{
+			settled += stripe.settle(gameId, winningNumber, reporter);
+		}
+		return settled;
+	}
+
+	private static int[][] initializeCoveredNumbers()
+	{
+		int[][] covered = new int[RouletteRange.values().length][];
+		for (int ordinal = 0; ordinal < covered.length; ordinal++)
+		{
+			int count = 0;
+			int[] numbers = new int[RouletteRange.HIGHEST_NUMBER + 1];
+			for (int number = 0; number <= RouletteRange.HIGHEST_NUMBER; number++)
+			{
+				if (RouletteRange.payout(ordinal, number) > 0)
+				{
+					numbers[count++] = number;
+				}
+			}
+			covered[ordinal] = Arrays.copyOf(numbers, count);
+		}
+		return covered;
+	}
+
+	private static int[][] initializeCoveredMultipliers()
+	{
+		int[][] multipliers = new int[COVERED_NUMBERS.length][];
+		for (int ordinal = 0; ordinal < multipliers.length; ordinal++)
+		{
+			multipliers[ordinal] = new int[COVERED_NUMBERS[ordinal].length];
+			for (int i = 0; i < multipliers[ordinal].length; i++)
+			{
+				multipliers[ordinal][i] = RouletteRange.payout(ordinal, COVERED_NUMBERS[ordinal][i]);
+			}
+		}
+		return multipliers;
+	}
+
+	/**
+	 * The bets of some of the players, with the player of each bet kept alongside so settlement doesn't need to look
+	 * players up by name.
+	 */
+	private static final class Stripe
+	{
+		private Player[] players = new Player[INITIAL_STRIPE_SIZE];
+
+		private int[] choices = new int[INITIAL_STRIPE_SIZE];
+
+		private long[] amounts = new long[INITIAL_STRIPE_SIZE];
+
+		private int size;
+
+		synchronized void add(Player player, int choice, long amount)
+		{
+			if (size == players.length)
+			{
+				players = Arrays.copyOf(players, size * 2);
+				choices = Arrays.copyOf(choices, size * 2);
+				amounts = Arrays.copyOf(amounts, size * 2);
+			}
+			players[size] = player;
+			choices[size] = choice;
+			amounts[size] = amount;
+			size++;
+		}
+
+		synchronized int size()
+		{
+			return size;
+		}
+
+		synchronized void clear()
+		{
+			// The book doesn't keep evicted players alive until it fills up again.
+			Arrays.fill(players, 0, size, null);
+			size = 0;
+		}
+
+		synchronized int settle(long gameId, int winningNumber, RoundReporter reporter)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				int choice = choices[i];
+				long amount = amounts[i];
+				long winnings = players[i].settleBet(gameId, amount, winningNumber,
+						RouletteRange.payout(choice, winningNumber));
+				reporter.betSettled(players[i], gameId, choice, amount, winnings);
+			}
+			return size;
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package com.gamesys.consoleroulette.application.game;
+
+import com.gamesys.consoleroulette.application.bet.BetRecord;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+
+/**
+ * Parses a "Username Number Bet" line in a single pass into a reusable BetRecord. Unlike GameBetMonitor.createBet it
+ * doesn't split, upper case or create any object, and bad input is reported with a result code instead of an
+ * exception, so it can be fed lines as fast as they come.
+ * 
+ * The amount is plain decimal notation: digits, optionally followed by a point and up to 2 decimal places.
+ * 
+ * @author Andreas
+ *
+ */
+public class BetLineParser
+{
+	// The line was parsed and the record holds a valid bet.
+	public static final int PARSED = 0;
+
+	// The line doesn't have exactly three tokens separated by a space.
+	public static final int MALFORMED = 1;
+
+	// There is no player with that user name.
+	public static final int UNKNOWN_PLAYER = 2;
+
+	// The choice is not a bet of the layout, or covers a number the game can't come up with.
+	public static final int INVALID_CHOICE = 3;
+
+	// The amount is not a number or has more than 2 decimal places.
+	public static final int INVALID_NUMBER = 4;
+
+	// The amount is not positive or not below the maximum bet.
+	public static final int INVALID_AMOUNT = 5;
+
+	// Number of result codes, for anyone keeping an array indexed by them.
+	public static final int RESULT_CODES = 6;
+
+	private static final String[] MESSAGES =
+	{ "OK",
+			"The line was malformed. The format is 'Username Number Bet'.",
+			"The userName does not exist in record. Please check your spelling.",
+			RouletteRange.CHOICES_MESSAGE,
+			"The roulette number must be a natural number (i.e. 2, 23) and "
+					+ "the bet amount must be a real number with at most 2 decimal places (i.e. 0.15, 3.50)",
+			"The bet amount must be a positive number with at most 2 decimal places." };
+
+	// Separator between the tokens of a line.
+	private static final char BET_DELIMITER = ' ';
+
+	// Any amount with more digits than this is far above the maximum bet anyway, and stopping here avoids overflow.
+	private static final int MAX_AMOUNT_DIGITS = 15;
+
+	private final PlayerLookup players;
+
+	private final long maxBet;
+
+	// Numbers of the game, a choice may only cover these.
+	private final long numbers;
+
+	/**
+	 * A parser for a game of the numbers 1 to 36.
+	 */
+	public BetLineParser(PlayerLookup players, long maxBet)
+	{
+		this(players, maxBet, 1, RouletteRange.HIGHEST_NUMBER);
+	}
+
+	/**
+	 * @param players
+	 * @param maxBet amounts must be below it, in pence
+	 * @param lowerBound lowest number of the game, 0 to take bets on zero
+	 * @param upperBound highest number of the game
+	 */
+	public BetLineParser(PlayerLookup players, long maxBet, int lowerBound, int upperBound)
+	{
+		this.players = players;
+		this.maxBet = maxBet;
+		this.numbers = RouletteRange.range(lowerBound, upperBound);
+	}
+
+	/**
+	 * Parses a whole line.
+	 * 
+	 * @see #parse(CharSequence, int, int, BetRecord)
+	 */
+	public int parse(CharSequence line, BetRecord record)
+	{
+		return parse(line, 0, line.length(), record);
+	}
+
+	/**
+	 * Parses part of a sequence of characters as a bet line. Validation happens in the same order as in createBet:
+	 * format, user name, choice and amount.
+	 * 
+	 * @param line
+	 * @param start index of the first character of the line
+	 * @param end index after the last character of the line (without the line terminator)
+	 * @param record to fill in. Cleared when the line is not valid.
+	 * @return PARSED or the code of the first problem found
+	 */
+	public int parse(CharSequence line, int start, int end, BetRecord record)
+	{
+		record.clear();
+
+		// Find the two delimiters and make sure there isn't a third one.
+		int first = indexOf(line, start, end);
+		int second = (first < 0) ? -1 : indexOf(line, first + 1, end);
+		if (second < 0 || indexOf(line, second + 1, end) >= 0)
+		{
+			return MALFORMED;
+		}
+
+		Player player = players.find(line, start, first);
+		if (player == null)
+		{
+			return UNKNOWN_PLAYER;
+		}
+
+		int choice = RouletteRange.ordinalOf(line, first + 1, second);
+		if (choice < 0 || (RouletteRange.mask(choice) & ~numbers) != 0)
+		{
+			return INVALID_CHOICE;
+		}
+
+		long amount = parseAmount(line, second + 1, end);
+		if (amount == -1)
+		{
+			return INVALID_NUMBER;
+		}
+		if (amount <= 0 || amount >= maxBet)
+		{
+			return INVALID_AMOUNT;
+		}
+
+		record.set(player, choice, amount);
+		return PARSED;
+	}
+
+	/**
+	 * Returns the message to show the player for a result code.
+	 */
+	public static String message(int resultCode)
+	{
+		return MESSAGES[resultCode];
+	}
+
+	/**
+	 * Reads an amount in pounds into pence.
+	 * 
+	 * @return the amount in pence or -1 if it isn't a number with at most 2 decimal places. Zeros after the second
+	 *         decimal place are fine, as they are to Money.parse, so "1.600" is 160.
+	 */
+	private static long parseAmount(CharSequence line, int start, int end)
+	{
+		long pence = 0;
+		int digits = 0;
+		int decimals = -1; // -1 until the point is seen
+
+		for (int i = start; i < end; i++)
+		{
+			char c = line.charAt(i);
+			if (c == '.' && decimals < 0)
+			{
+				decimals = 0;
+			}
+			else if (c >= '0' && c <= '9' && decimals < 2 && digits < MAX_AMOUNT_DIGITS)
+			{
+				pence = pence * 10 + (c - '0');
+				digits++;
+				if (decimals >= 0)
+				{
+					decimals++;
+				}
+			}
+			else if (c == '0' && decimals == 2)
+			{
+				// Trailing zero, doesn't change the amount.
+			}
+			else
+			{
+				return -1;
+			}
+		}
+
+		if (digits == 0)
+		{
+			return -1;
+		}
+
+		// Scale up whatever decimal places are missing.
+		for (int i = Math.max(decimals, 0); i < 2; i++)
+		{
+			pence *= 10;
+		}
+		return pence;
+	}
+
+	private static int indexOf(CharSequence line, int from, int end)
+	{
+		for (int i = from; i < end; i++)
+		{
+			if (line.charAt(i) == BET_DELIMITER)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
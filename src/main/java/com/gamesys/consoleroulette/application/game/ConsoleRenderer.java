@@ -0,0 +1,332 @@
+package com.gamesys.consoleroulette.application.game;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.bet.LedgerSnapshot;
+import com.gamesys.consoleroulette.application.bet.Money;
+import com.gamesys.consoleroulette.application.bet.Outcome;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+
+/**
+ * Prints the results of every game and the answers to the bets on the console, from a thread of its own. The game
+ * thread only copies each settled bet into a batch for the round (a few array writes) and hands the batch over at the
+ * end of the round; the bet monitor only queues its answer. Neither waits for the console. The renderer formats
+ * everything it finds queued into one buffer and writes it in a single call.
+ * 
+ * Batches are reused. If the console falls so far behind that every batch is still queued, the game thread waits for
+ * one instead of queueing without end.
+ * 
+ * @author Andreas
+ *
+ */
+public class ConsoleRenderer implements RoundReporter, Runnable
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(ConsoleRenderer.class);
+
+	// Rounds that can be waiting to be printed.
+	private static final int BATCHES = 4;
+
+	// Initial room for bets in a batch. Batches grow as needed and stay grown.
+	private static final int INITIAL_BATCH_SIZE = 64;
+
+	// Formatted text written out before the round is over, if it gets this long.
+	private static final int MAX_TEXT = 1 << 20;
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private final PrintStream out;
+
+	// Printed above the results when there is more than one table, null otherwise.
+	private final String tableName;
+
+	// Rounds and answers waiting to be printed, in order.
+	private final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+	// Batches ready to be filled.
+	private final BlockingQueue<RoundBatch> freeBatches = new ArrayBlockingQueue<RoundBatch>(BATCHES);
+
+	// Only used by the thread settling the rounds.
+	private final LedgerSnapshot totals = new LedgerSnapshot();
+
+	// The batch of the round being settled. Only used by the thread settling the rounds.
+	private RoundBatch current;
+
+	// Everything printed in one go is formatted in here. Only used by the renderer thread.
+	private final StringBuilder text = new StringBuilder(16 * 1024);
+
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	private ByteBuffer bytes = ByteBuffer.allocate(16 * 1024);
+
+	public ConsoleRenderer()
+	{
+		this(System.out, null);
+	}
+
+	/**
+	 * @param out where to print
+	 * @param tableName printed above the results of every game, null for none
+	 */
+	public ConsoleRenderer(PrintStream out, String tableName)
+	{
+		this.out = out;
+		this.tableName = tableName;
+		for (int i = 0; i < BATCHES; i++)
+		{
+			freeBatches.add(new RoundBatch());
+		}
+	}
+
+	@Override
+	public void roundStarted(long gameId, int winningNumber)
+	{
+		try
+		{
+			current = freeBatches.take();
+		}
+		catch (InterruptedException e)
+		{
+			// Better a round printed twice as big than one lost.
+			Thread.currentThread().interrupt();
+			current = new RoundBatch();
+		}
+		current.start(winningNumber);
+	}
+
+	@Override
+	public void betSettled(Player player, long gameId, int choice, long amount, long winnings)
+	{
+		player.getTotals(totals);
+		current.add(player.getUserName(), choice, winnings, totals.getTotalBet(),
+				totals.getTotalWin());
+	}
+
+	@Override
+	public void roundFinished(long gameId, int betsSettled)
+	{
+		queue.add(current);
+		current = null;
+	}
+
+	/**
+	 * Prints a line, after everything queued before it. Never waits for the console.
+	 * 
+	 * @param line
+	 */
+	public void printLine(String line)
+	{
+		queue.add(line);
+	}
+
+	/**
+	 * Prints whatever is queued, for ever.
+	 */
+	public void run()
+	{
+		try
+		{
+			while (true)
+			{
+				render(queue.take());
+				// Whatever queued up meanwhile goes in the same write.
+				Object next;
+				while ((next = queue.poll()) != null)
+				{
+					render(next);
+				}
+				write();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			log.info("The console renderer was stopped.");
+		}
+	}
+
+	private void render(Object item)
+	{
+		if (item instanceof RoundBatch)
+		{
+			RoundBatch batch = (RoundBatch) item;
+			renderRound(batch);
+			// A batch made up while the game thread was interrupted doesn't fit back in, and is dropped.
+			freeBatches.offer(batch);
+		}
+		else
+		{
+			text.append(item).append(LINE_SEPARATOR);
+		}
+	}
+
+	/**
+	 * Formats a round the way ConsoleRoundReporter prints it.
+	 */
+	private void renderRound(RoundBatch batch)
+	{
+		if (tableName != null)
+		{
+			text.append("Table: ").append(tableName).append(LINE_SEPARATOR);
+		}
+		text.append("Number: ").append(batch.winningNumber).append(LINE_SEPARATOR);
+		// "Player", "Bet", "Outcome", "Winnings", "TotalBet", "TotalWin"
+		padRight("Player", 10);
+		text.append(' ');
+		padLeft("Bet", 5);
+		text.append(' ');
+		padLeft("Outcome", 9);
+		text.append(' ');
+		padLeft("Winnings", 10);
+		text.append(' ');
+		padLeft("TotalBet", 10);
+		text.append(' ');
+		padLeft("TotalWin", 10);
+		text.append(' ').append(LINE_SEPARATOR);
+		text.append("----------").append(LINE_SEPARATOR);
+
+		for (int i = 0; i < batch.size; i++)
+		{
+			padRight(batch.userNames[i], 10);
+			text.append(' ');
+			padLeft(RouletteRange.fromOrdinal(batch.choices[i]).getValue(), 5);
+			text.append(' ');
+			padLeft((batch.winnings[i] == 0) ? Outcome.LOSE.name() : Outcome.WIN.name(), 9);
+			text.append(' ');
+			padLeftMoney(batch.winnings[i], 10);
+			text.append(' ');
+			padLeftMoney(batch.totalBets[i], 10);
+			text.append(' ');
+			padLeftMoney(batch.totalWins[i], 10);
+			text.append(' ').append(LINE_SEPARATOR);
+
+			// A round of a million bets goes out a megabyte at a time rather than all at once.
+			if (text.length() >= MAX_TEXT)
+			{
+				write();
+			}
+		}
+		batch.clear();
+	}
+
+	private void padRight(String value, int width)
+	{
+		text.append(value);
+		for (int i = value.length(); i < width; i++)
+		{
+			text.append(' ');
+		}
+	}
+
+	private void padLeft(String value, int width)
+	{
+		for (int i = value.length(); i < width; i++)
+		{
+			text.append(' ');
+		}
+		text.append(value);
+	}
+
+	private void padLeftMoney(long pence, int width)
+	{
+		int start = text.length();
+		Money.append(text, pence);
+		for (int i = text.length() - start; i < width; i++)
+		{
+			text.insert(start, ' ');
+		}
+	}
+
+	/**
+	 * Writes everything formatted so far in one call.
+	 */
+	private void write()
+	{
+		if (text.length() == 0)
+		{
+			return;
+		}
+
+		int needed = (int) (text.length() * encoder.maxBytesPerChar()) + 1;
+		if (bytes.capacity() < needed)
+		{
+			bytes = ByteBuffer.allocate(needed);
+		}
+		bytes.clear();
+		encoder.reset();
+		encoder.encode(CharBuffer.wrap(text), bytes, true);
+		encoder.flush(bytes);
+
+		out.write(bytes.array(), 0, bytes.position());
+		out.flush();
+		text.setLength(0);
+	}
+
+	/**
+	 * The settled bets of one round, one entry per bet in primitive arrays.
+	 */
+	private static final class RoundBatch
+	{
+		private int winningNumber;
+
+		private int size;
+
+		private String[] userNames = new String[INITIAL_BATCH_SIZE];
+
+		private int[] choices = new int[INITIAL_BATCH_SIZE];
+
+		private long[] winnings = new long[INITIAL_BATCH_SIZE];
+
+		private long[] totalBets = new long[INITIAL_BATCH_SIZE];
+
+		private long[] totalWins = new long[INITIAL_BATCH_SIZE];
+
+		private void start(int winningNumber)
+		{
+			this.winningNumber = winningNumber;
+			this.size = 0;
+		}
+
+		private void add(String userName, int choice, long won, long totalBet, long totalWin)
+		{
+			if (size == userNames.length)
+			{
+				int capacity = size * 2;
+				userNames = Arrays.copyOf(userNames, capacity);
+				choices = Arrays.copyOf(choices, capacity);
+				winnings = Arrays.copyOf(winnings, capacity);
+				totalBets = Arrays.copyOf(totalBets, capacity);
+				totalWins = Arrays.copyOf(totalWins, capacity);
+			}
+			userNames[size] = userName;
+			choices[size] = choice;
+			winnings[size] = won;
+			totalBets[size] = totalBet;
+			totalWins[size] = totalWin;
+			size++;
+		}
+
+		/**
+		 * Lets go of the names once printed.
+		 */
+		private void clear()
+		{
+			Arrays.fill(userNames, 0, size, null);
+			size = 0;
+		}
+	}
+}
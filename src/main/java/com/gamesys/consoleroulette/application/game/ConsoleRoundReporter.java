@@ -0,0 +1,66 @@
+package com.gamesys.consoleroulette.application.game;
+
+import com.gamesys.consoleroulette.application.bet.LedgerSnapshot;
+import com.gamesys.consoleroulette.application.bet.Money;
+import com.gamesys.consoleroulette.application.bet.Outcome;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+
+/**
+ * Prints the results table of every game on the console, a line per bet.
+ * 
+ * @author Andreas
+ *
+ */
+public class ConsoleRoundReporter implements RoundReporter
+{
+	// Only used by one game at a time (its thread or the scheduler running its rounds), so one is enough.
+	private final LedgerSnapshot totals = new LedgerSnapshot();
+
+	// Printed above the results when there is more than one table, null otherwise.
+	private final String tableName;
+
+	public ConsoleRoundReporter()
+	{
+		this(null);
+	}
+
+	/**
+	 * @param tableName printed above the results of every game, so tables sharing the console can be told apart
+	 */
+	public ConsoleRoundReporter(String tableName)
+	{
+		this.tableName = tableName;
+	}
+
+	@Override
+	public void roundStarted(long gameId, int winningNumber)
+	{
+		// Print result table title;
+		if (tableName != null)
+		{
+			System.out.println("Table: " + tableName);
+		}
+		System.out.println("Number: " + winningNumber);
+		System.out.printf("%-10s %5s %9s %10s %10s %10s %n", "Player", "Bet", "Outcome", "Winnings", "TotalBet",
+				"TotalWin");
+		System.out.println("----------");
+	}
+
+	@Override
+	public void betSettled(Player player, long gameId, int choice, long amount, long winnings)
+	{
+		Outcome outcome = (winnings == 0) ? Outcome.LOSE : Outcome.WIN;
+		player.getTotals(totals);
+
+		// "Player", "Bet", "Outcome", "Winnings", "TotalBet", "TotalWin"
+		System.out.printf("%-10s %5s %9s %10s %10s %10s %n", player.getUserName(), RouletteRange.fromOrdinal(choice).getValue(),
+				outcome, Money.format(winnings), Money.format(totals.getTotalBet()),
+				Money.format(totals.getTotalWin()));
+	}
+
+	@Override
+	public void roundFinished(long gameId, int betsSettled)
+	{
+	}
+}
@@ -1,11 +1,11 @@
 package com.gamesys.consoleroulette.application.game;
 
-import java.math.BigDecimal;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
 
 public class Game
 {
-	// Max bet allowed in games.
-	protected static final BigDecimal MAX_BET = new BigDecimal(100);
+	// Max bet allowed in games, in pence (100 pounds).
+	protected static final long MAX_BET = 10000;
 
 	// Lowest number allowed to bet on / lowest range of game.
 	private int lowerBound;
@@ -13,10 +13,25 @@ public class Game
 	// Highest number allowed to bet on / highest range of game.
 	private int upperBound;
 
+	// Numbers the game can come up with, bit n for number n.
+	private long numbers;
+
 	Game(int lowerBound, int upperBound)
 	{
 		this.lowerBound = lowerBound;
 		this.upperBound = upperBound;
+		this.numbers = RouletteRange.range(lowerBound, upperBound);
+	}
+
+	/**
+	 * Whether every number a choice covers can come up in this game. Zero, and the splits, trios and first four with
+	 * it, need a lower bound of 0.
+	 * 
+	 * @param choice ordinal of the RouletteRange
+	 */
+	public boolean offers(int choice)
+	{
+		return (RouletteRange.mask(choice) & ~numbers) == 0;
 	}
 
 	/**
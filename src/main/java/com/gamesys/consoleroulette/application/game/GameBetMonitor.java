@@ -3,7 +3,6 @@ package com.gamesys.consoleroulette.application.game;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.math.BigDecimal;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
@@ -11,8 +10,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.gamesys.consoleroulette.application.bet.Bet;
+import com.gamesys.consoleroulette.application.bet.BetRecord;
+import com.gamesys.consoleroulette.application.bet.Money;
 import com.gamesys.consoleroulette.application.bet.Player;
 import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.metrics.TableMetrics;
+import com.gamesys.consoleroulette.application.store.BetJournal;
 
 /**
  * Class that monitors all the betting. Has a thread that accepts lines of input for every bet. Processes that line and
@@ -26,22 +29,102 @@ public class GameBetMonitor extends Game implements Runnable
 	// logger, because system.out and system.err... meh
 	private static final Logger log = LoggerFactory.getLogger(GameBetMonitor.class);
 
-	// Number of tokens an input line should be divided into.
-	private final int NUM_TOKENS = 3;
-	
-	private final String BET_DELIMITER = " ";
+	// Result of placeBet when the bet was recorded. Any other result is a BetLineParser code, TOO_MANY_BETS or
+	// OVER_LIABILITY.
+	public static final int ACCEPTED = BetLineParser.PARSED;
 
-	// A map of all the player participating in the game.
+	// Result of placeBet when the player already made as many bets on the current game as a game takes.
+	public static final int TOO_MANY_BETS = BetLineParser.RESULT_CODES;
+
+	// Result of placeBet when the bet would take the house's liability on a number over the maximum.
+	public static final int OVER_LIABILITY = TOO_MANY_BETS + 1;
+
+	// Number of results placeBet can return, for anyone keeping an array indexed by them.
+	public static final int PLACE_RESULTS = OVER_LIABILITY + 1;
+
+	// Short name of every placeBet result, indexed by it.
+	private static final String[] RESULT_NAMES =
+	{ "accepted", "malformed", "unknownPlayer", "invalidChoice", "invalidNumber", "invalidAmount", "tooManyBets",
+			"overLiability" };
+
+	private static final String ACCEPTED_MESSAGE = "OK! Bet accepted.";
+
+	private static final String OVER_LIABILITY_MESSAGE = "Bet rejected. The table can't take more on those numbers "
+			+ "this game.";
+
+	private static final String TOO_MANY_BETS_MESSAGE = "Bet rejected. This player already made as many bets as "
+			+ "a game takes.";
+
+	// Bets a player can make on one game when no other maximum is set. Chips spread over a whole layout are well
+	// under it.
+	public static final int DEFAULT_MAX_BETS_PER_GAME = 64;
+
+	// A map of all the player participating in the game, null when they are looked up in a directory instead.
 	private ConcurrentHashMap<String, Player> players;
 
+	// Finds the players that bet, in the map or in a directory.
+	private final PlayerLookup playerLookup;
+
 	private GameNumberGenerator game;
 
+	// Prints the answers to the bets off this thread, null to print them straight away.
+	private volatile ConsoleRenderer renderer;
+
+	// Where accepted bets are journaled, null if they aren't.
+	private volatile BetJournal journal;
+
+	// Bets accepted and rejected, and how long they take. Shared with the game of the table.
+	private final TableMetrics metrics;
+
+	// Most bets a player can make on one game.
+	private volatile int maxBetsPerGame = DEFAULT_MAX_BETS_PER_GAME;
+
+	// Parser for bet lines that doesn't create garbage. Players are looked up through an index that follows the map.
+	private BetLineParser betLineParser;
+
 	public GameBetMonitor(int lowerBound, int upperBound, ConcurrentHashMap<String, Player> players,
 			GameNumberGenerator game)
+	{
+		this(lowerBound, upperBound, players, game, new TableMetrics());
+	}
+
+	/**
+	 * @param lowerBound
+	 * @param upperBound
+	 * @param players
+	 * @param game
+	 * @param metrics where the bets are counted and timed, usually shared with the game of the table
+	 */
+	public GameBetMonitor(int lowerBound, int upperBound, ConcurrentHashMap<String, Player> players,
+			GameNumberGenerator game, TableMetrics metrics)
+	{
+		this(lowerBound, upperBound, players, new PlayerIndex(players), game, metrics);
+	}
+
+	/**
+	 * For players that aren't all in memory, i.e. a PlayerDirectory. getPlayers returns null.
+	 * 
+	 * @param lowerBound
+	 * @param upperBound
+	 * @param playerLookup finds the players that bet
+	 * @param game
+	 * @param metrics where the bets are counted and timed, usually shared with the game of the table
+	 */
+	public GameBetMonitor(int lowerBound, int upperBound, PlayerLookup playerLookup, GameNumberGenerator game,
+			TableMetrics metrics)
+	{
+		this(lowerBound, upperBound, null, playerLookup, game, metrics);
+	}
+
+	private GameBetMonitor(int lowerBound, int upperBound, ConcurrentHashMap<String, Player> players,
+			PlayerLookup playerLookup, GameNumberGenerator game, TableMetrics metrics)
 	{
 		super(lowerBound, upperBound);
 		this.players = players;
+		this.playerLookup = playerLookup;
 		this.game = game;
+		this.metrics = metrics;
+		this.betLineParser = new BetLineParser(playerLookup, MAX_BET, lowerBound, upperBound);
 	}
 
 	@Override
@@ -50,8 +133,8 @@ public class GameBetMonitor extends Game implements Runnable
 		// Reader for the input from the console. We will be reading lines of input.
 		BufferedReader consoleReader = new BufferedReader(new InputStreamReader(System.in));
 
-		// The regular expression to use to split every line of input. Might save a bit time on the long run.
-		Pattern pattern = Pattern.compile(BET_DELIMITER);
+		// Every line is parsed into the same record.
+		BetRecord betRecord = new BetRecord();
 
 		/*
 		 * Read a line of input from the console. readLine() is blocking so it will read everything on the console until
@@ -60,31 +143,101 @@ public class GameBetMonitor extends Game implements Runnable
 		 */
 		while (true)
 		{
-			Bet bet;
+			String line;
 			try
 			{
-				bet = createBet(consoleReader, pattern, NUM_TOKENS);
+				line = consoleReader.readLine();
 			}
 			catch (IOException e)
 			{
 				log.error("There was a problem with reading the input.");
 				continue; // no point continuing, read the next input.
 			}
-			catch (NumberFormatException nfe)
+
+			// End of input, nobody can bet from the console anymore.
+			if (line == null)
 			{
-				log.error("The roulette number must be a natural number (i.e. 2, 23) and "
-						+ "the bet amount must be a real number (i.e. 0.15, 3.50)");
-				continue; // no point continuing, read the next input.
+				log.info("The input was closed. No more bets will be read.");
+				return;
 			}
-			catch (IllegalArgumentException iae)
+
+			long read = System.nanoTime();
+			int result = parseBet(line, betRecord);
+			if (result != BetLineParser.PARSED)
 			{
-				log.error(iae.getMessage());
+				metrics.betPlaced(result, System.nanoTime() - read);
+				log.error("'" + line + "': " + BetLineParser.message(result));
 				continue; // no point continuing, read the next input.
 			}
 
-			recordBet(bet);
+			result = recordAndPrint(betRecord.getPlayer(), betRecord.getChoice(), betRecord.getAmount());
+			metrics.betPlaced(result, System.nanoTime() - read);
+		}
+
+	}
+
+	/**
+	 * Parses a "Username Number Bet" line into a reusable record, without creating any objects. The same checks as
+	 * createBet are done, but problems come back as a BetLineParser result code.
+	 * 
+	 * @param line
+	 * @param betRecord filled in with the bet when the line is valid
+	 * @return BetLineParser.PARSED or the code of the problem with the line
+	 */
+	public int parseBet(CharSequence line, BetRecord betRecord)
+	{
+		return betLineParser.parse(line, betRecord);
+	}
+
+	/**
+	 * Parses and records a bet line in one go, for intakes other than the console that have to answer every line.
+	 * Nothing is printed and nothing is created unless the bet is accepted, so it can be called from any thread as
+	 * long as each caller has its own record.
+	 * 
+	 * @param line
+	 * @param start index of the first character of the line
+	 * @param end index after the last character of the line (without the line terminator)
+	 * @param betRecord scratch record of the caller
+	 * @return ACCEPTED, TOO_MANY_BETS, OVER_LIABILITY or the BetLineParser code of the problem with the line
+	 */
+	public int placeBet(CharSequence line, int start, int end, BetRecord betRecord)
+	{
+		long started = System.nanoTime();
+		int result = betLineParser.parse(line, start, end, betRecord);
+		if (result == BetLineParser.PARSED)
+		{
+			result = record(betRecord.getPlayer(), betRecord.getChoice(), betRecord.getAmount());
 		}
+		metrics.betPlaced(result, System.nanoTime() - started);
+		return result;
+	}
 
+	/**
+	 * Returns a short name for a result of placeBet, i.e. for metrics.
+	 */
+	public static String resultName(int placeResult)
+	{
+		return RESULT_NAMES[placeResult];
+	}
+
+	/**
+	 * Returns the answer to give for a result of placeBet.
+	 */
+	public static String message(int placeResult)
+	{
+		if (placeResult == ACCEPTED)
+		{
+			return ACCEPTED_MESSAGE;
+		}
+		if (placeResult == TOO_MANY_BETS)
+		{
+			return TOO_MANY_BETS_MESSAGE;
+		}
+		if (placeResult == OVER_LIABILITY)
+		{
+			return OVER_LIABILITY_MESSAGE;
+		}
+		return "Bet rejected. " + BetLineParser.message(placeResult);
 	}
 
 	public Bet createBet(final BufferedReader consoleReader, final Pattern pattern, final int NUM_TOKENS)
@@ -98,8 +251,8 @@ public class GameBetMonitor extends Game implements Runnable
 
 		// Variables to be used while processing the bet and to use when creating the bet object.
 		String userName;
-		String rouletteChoice;
-		BigDecimal betAmount;
+		RouletteRange rouletteChoice;
+		long betAmount;
 
 		/*
 		 * Read line from console. Split line in the distinct tokens signified by the split pattern. We defined
@@ -119,7 +272,7 @@ public class GameBetMonitor extends Game implements Runnable
 
 		/*
 		 * Here we process the distinct tokens of the input line. We read the first as a String, and convert the
-		 * following two to an integer and a BigDecimal respectively assuming the second will be the number on which the
+		 * following two to an integer and an amount in pence respectively assuming the second will be the number on which the
 		 * player bet and the third the amount he bet. For each token we also do a little validation; valid numbers,
 		 * existing names e.t.c.
 		 */
@@ -129,21 +282,19 @@ public class GameBetMonitor extends Game implements Runnable
 			throw new IllegalArgumentException("The userName does not exist in record. Please check your spelling.");
 		}
 
-		rouletteChoice = betDetails[1].toUpperCase();
-		if (!betIsValid(rouletteChoice))
+		rouletteChoice = RouletteRange.fromValue(betDetails[1].toUpperCase());
+		if (rouletteChoice == null || !offers(rouletteChoice.ordinal()))
 		{
-			throw new IllegalArgumentException(
-					"The roulette number must be a number in the range 1-36 inclusive, ODD or EVEN.");
+			throw new IllegalArgumentException(RouletteRange.CHOICES_MESSAGE);
 		}
 
-		betAmount = new BigDecimal(betDetails[2]);
+		betAmount = Money.parse(betDetails[2]);
 		if (!betAmountIsValid(betAmount))
 		{
 			throw new IllegalArgumentException(
 					"The bet amount must be a positive number with at most 2 decimal places.");
 		}
 
-		// TODO perhaps it would be better to use smallest denomination, i.e pence, cents, etc
 		return new Bet(userName, rouletteChoice, betAmount);
 	}
 
@@ -163,30 +314,117 @@ public class GameBetMonitor extends Game implements Runnable
 	 * to be a new game, then there isn't a problem (programmatically speaking) since the new game also means that the
 	 * player hasn't made a bet and this is a valid action and what would happen in the case where a change in the id
 	 * didn't happen (the id has already changed). However it is not as clear as I would like. And is definitely as
-	 * clear if one would assume knowledge of a player in which game he is betting on.
+	 * clear if one would assume knowledge of a player in which game he is betting on. (A player can now make up to
+	 * maxBetsPerGame bets on a game, the history counts them and only the ones over it are rejected.)
 	 */
 	public boolean recordBet(Bet bet)
 	{
-		Player player = players.get(bet.getUserName());
-		ConcurrentHashMap<Long, Bet> betHistory = player.getBetHistory();
-		if (!betHistory.containsKey(game.getCurrentGameId()))
-		{
-			long gameId = game.getCurrentGameId();
-			bet.setGameId(gameId);
-			
-			betHistory.put(gameId, bet);
-			
-			System.out.println("OK! Bet accepted.");
-			
-			player.updateTotalBet(bet.getAmount());
-			
-			return true;
+		Player player = playerLookup.find(bet.getUserName());
+		return recordAndPrint(player, bet.getChoice().ordinal(), bet.getAmount()) == ACCEPTED;
+	}
+
+	/**
+	 * Records a bet parsed with parseBet. The record can be reused as soon as this returns.
+	 * 
+	 * @param betRecord
+	 * @return true if the bet was accepted
+	 */
+	public boolean recordBet(BetRecord betRecord)
+	{
+		return recordAndPrint(betRecord.getPlayer(), betRecord.getChoice(), betRecord.getAmount()) == ACCEPTED;
+	}
+
+	/**
+	 * @return ACCEPTED, TOO_MANY_BETS or OVER_LIABILITY
+	 */
+	private int recordAndPrint(Player player, int choice, long amount)
+	{
+		int result = record(player, choice, amount);
+		String message = message(result);
+		ConsoleRenderer consoleRenderer = renderer;
+		if (consoleRenderer != null)
+		{
+			consoleRenderer.printLine(message);
 		}
 		else
 		{
-			System.out.println("Bet rejected. A bet from this player was already made. It cannot be changed.");
-			
-			return false;
+			System.out.println(message);
+		}
+		return result;
+	}
+
+	/**
+	 * Records a bet straight from its parts, so nothing is created for it.
+	 * 
+	 * @param player that made the bet
+	 * @param choice ordinal of the RouletteRange bet on
+	 * @param amount in pence
+	 * @return ACCEPTED, TOO_MANY_BETS or OVER_LIABILITY
+	 */
+	private int record(Player player, int choice, long amount)
+	{
+		// Held while the bet is recorded, so a directory doesn't evict the player in the middle of it.
+		Player held = playerLookup.acquire(player);
+		try
+		{
+			// Snapshots are taken at game boundaries from the settled totals, so bets don't wait for each other here;
+			// they only meet in the journal's buffer for as long as it takes to copy the record in.
+			return record(held, choice, amount, journal);
+		}
+		finally
+		{
+			playerLookup.release(held);
+		}
+	}
+
+	private int record(Player player, int choice, long amount, BetJournal betJournal)
+	{
+		// The book of the game taking bets. If the game closed its betting in between, the book of the next game is
+		// already in place, so this never waits for a game to settle.
+		BetBook betBook = game.getOpenBook();
+		while (!betBook.enter())
+		{
+			betBook = game.getOpenBook();
+		}
+		try
+		{
+			return record(player, choice, amount, betJournal, betBook);
+		}
+		finally
+		{
+			betBook.leave();
+		}
+	}
+
+	private int record(Player player, int choice, long amount, BetJournal betJournal, BetBook betBook)
+	{
+		long gameId = betBook.getGameId();
+
+		// The house's liability on the numbers the bet covers is taken first, so a bet that would take a number over
+		// the maximum is turned away at the cost of a few counters, however many players there are.
+		if (!betBook.reserve(choice, amount))
+		{
+			return OVER_LIABILITY;
+		}
+
+		// The history counts the earlier bets of the game and records this one, and the total bet, in one go.
+		if (player.placeBet(gameId, choice, amount, maxBetsPerGame))
+		{
+			// Only copied into the journal's buffer, the disk is left to the journal thread.
+			if (betJournal != null)
+			{
+				betJournal.betAccepted(gameId, player.getUserName(), choice, amount);
+			}
+
+			// Into the book of the game, so the game thread settles it with the rest of this game's bets.
+			betBook.add(player, choice, amount);
+
+			return ACCEPTED;
+		}
+		else
+		{
+			betBook.release(choice, amount);
+			return TOO_MANY_BETS;
 		}
 	}
 
@@ -198,37 +436,67 @@ public class GameBetMonitor extends Game implements Runnable
 	 */
 	private boolean nameIsValid(String userName)
 	{
-		return players.containsKey(userName);
+		return playerLookup.find(userName) != null;
 	}
 
 	/**
-	 * Validates the bet. Checks that the number the bet was made on is in the map of RouletteRange. It does that by
-	 * checking if a key with the value of the argument is present in the map.
+	 * Validates the bet amount. Checks that the amount is a positive number and below the maximum bet. Amounts with
+	 * more than 2 decimal places never get here, they can't be converted to pence.
 	 * 
-	 * @param rouletteChoice
-	 * @return the multiplier for the choice. Otherwise it returns false.
+	 * @param betAmount in pence
+	 * @return true if the amount is valid. Otherwise it returns false.
 	 */
-	private boolean betIsValid(String rouletteChoice)
+	private boolean betAmountIsValid(long betAmount)
 	{
-		return RouletteRange.valueExists(rouletteChoice);
+		return (betAmount > 0 && betAmount < MAX_BET);
 	}
 
 	/**
-	 * Validates the bet amount. Checks that the amount is a positive number and below the maximum bet. TODO: check
-	 * decimal places as well, up to 2. Anything more doesn't make sense.
+	 * Sets how many bets a player can make on one game. Bets after that are turned away with TOO_MANY_BETS.
 	 * 
-	 * @param betAmount
-	 * @return true if the amount is valid. Otherwise it returns false.
+	 * @param maxBetsPerGame 1 for a single bet per game
+	 */
+	public void setMaxBetsPerGame(int maxBetsPerGame)
+	{
+		if (maxBetsPerGame < 1)
+		{
+			throw new IllegalArgumentException("A player must be able to make at least one bet per game.");
+		}
+		this.maxBetsPerGame = maxBetsPerGame;
+	}
+
+	/**
+	 * Return how many bets a player can make on one game.
+	 */
+	public int getMaxBetsPerGame()
+	{
+		return maxBetsPerGame;
+	}
+
+	/**
+	 * Prints the answers to the bets through the renderer, in order with the results of the games, from now on.
+	 * 
+	 * @param renderer
+	 */
+	public void setRenderer(ConsoleRenderer renderer)
+	{
+		this.renderer = renderer;
+	}
+
+	/**
+	 * Journals every bet accepted from now on.
+	 * 
+	 * @param journal
 	 */
-	private boolean betAmountIsValid(BigDecimal betAmount)
+	public void setJournal(BetJournal journal)
 	{
-		return (!BigDecimal.ZERO.equals(betAmount) && MAX_BET.compareTo(betAmount) == 1);
+		this.journal = journal;
 	}
 
 	/**
 	 * Returns a map of all the players to be monitored
 	 * 
-	 * @return the players
+	 * @return the players, or null if they are looked up in a directory
 	 */
 	public ConcurrentHashMap<String, Player> getPlayers()
 	{
@@ -1,14 +1,15 @@
 package com.gamesys.consoleroulette.application.game;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.gamesys.consoleroulette.application.bet.BetListener;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.metrics.TableMetrics;
+import com.gamesys.consoleroulette.application.random.NumberSource;
+import com.gamesys.consoleroulette.application.random.SplittableNumberSource;
 
 /**
  * Main class for generating numbers for games. This can be modified to be used as a base class and extend it for
@@ -23,81 +24,227 @@ public class GameNumberGenerator extends Game implements Runnable
 	// logger, because system.out and system.err... meh
 	private static final Logger log = LoggerFactory.getLogger(GameNumberGenerator.class);
 
-	// Random number generator.
-	private final Random randomGenerator;
+	// Where the winning numbers come from.
+	private final NumberSource numberSource;
+
+	// Presents the results of every game.
+	private final RoundReporter roundReporter;
+
+	// How long rounds take, read over JMX. The bet monitor of the table records into it too.
+	private final TableMetrics metrics;
+
+	// Most the house may owe on any one number in a game, in pence. Bets that would go over it are turned away.
+	private volatile long maxLiability = BetBook.NO_LIMIT;
 
 	// Frequency at which to spit the numbers
 	private int frequency;
 
-	// Game id. Will only be accessed for writing from this thread. Might be accessed for reading from more than one.
-	private AtomicLong gameId;
+	// Milliseconds before every spin in which no more bets are taken on the game about to be spun.
+	private volatile long bettingCutoff;
+
+	// Told about the end of every game. Added and removed at any time, gone through without a lock.
+	private final ListenerRegistry<BetListener> betListeners = new ListenerRegistry<BetListener>();
+
+	// Book of the game taking bets, which carries the game id. Written by the bet monitor. At the cutoff this thread
+	// swaps in the book of the next game, so bets go on being taken while the old book waits for the spin and
+	// settles.
+	private volatile BetBook openBook;
+
+	// Book of the game past its cutoff and not yet spun, null until the cutoff. Guarded by this.
+	private BetBook closedBook;
+
+	// Book of the last game settled, reopened for the next game that needs one. Guarded by this.
+	private BetBook spareBook;
 
-	private List<BetListener> betListeners = new ArrayList<BetListener>();
+	// Whether the betting of a game was ever closed. Guarded by this.
+	private boolean started;
 
 	public GameNumberGenerator(int lowerBound, int upperBound, int frequency)
+	{
+		this(lowerBound, upperBound, frequency, new SplittableNumberSource(), new ConsoleRoundReporter(),
+				new TableMetrics());
+	}
+
+	/**
+	 * @param lowerBound
+	 * @param upperBound
+	 * @param frequency seconds between spins when run as a thread
+	 * @param randomGenerator source of the winning numbers. Seed it to get the same games every time.
+	 * @param roundReporter presents the results of every game
+	 */
+	public GameNumberGenerator(int lowerBound, int upperBound, int frequency, Random randomGenerator,
+			RoundReporter roundReporter)
+	{
+		this(lowerBound, upperBound, frequency,
+				(lower, upper) -> randomGenerator.nextInt(upper - lower + 1) + lower, roundReporter,
+				new TableMetrics());
+	}
+
+	/**
+	 * @param lowerBound
+	 * @param upperBound
+	 * @param frequency seconds between spins when run as a thread
+	 * @param numberSource source of the winning numbers, used by this game only
+	 * @param roundReporter presents the results of every game
+	 * @param metrics where the rounds are timed
+	 */
+	public GameNumberGenerator(int lowerBound, int upperBound, int frequency, NumberSource numberSource,
+			RoundReporter roundReporter, TableMetrics metrics)
+	{
+		this(lowerBound, upperBound, frequency, numberSource, roundReporter, metrics, 0, BetBook.NO_LIMIT);
+	}
+
+	/**
+	 * A game that carries on the game ids of an earlier run (i.e. from a snapshot or a ledger) and limits what the
+	 * house may owe, both from the first game on.
+	 * 
+	 * @param lowerBound
+	 * @param upperBound
+	 * @param frequency seconds between spins when run as a thread
+	 * @param numberSource source of the winning numbers, used by this game only
+	 * @param roundReporter presents the results of every game
+	 * @param metrics where the rounds are timed
+	 * @param firstGameId id of the first game
+	 * @param maxLiability in pence, BetBook.NO_LIMIT for no limit
+	 */
+	public GameNumberGenerator(int lowerBound, int upperBound, int frequency, NumberSource numberSource,
+			RoundReporter roundReporter, TableMetrics metrics, long firstGameId, long maxLiability)
 	{
 		super(lowerBound, upperBound);
-		this.randomGenerator = new Random(System.currentTimeMillis());
+		this.metrics = metrics;
+		this.numberSource = numberSource;
+		this.roundReporter = roundReporter;
 		this.frequency = frequency;
-		this.gameId = new AtomicLong(0);
+		this.maxLiability = maxLiability;
+		this.openBook = new BetBook(firstGameId, maxLiability);
 	}
 
 	public void run()
 	{
-		int winningNumber;
-
 		while (true)
 		{
 			/*
 			 * Wait for a time before spitting out a result. Time defined in the constructor using the frequency. It is
-			 * in seconds. After the thread wakes, then a number is generated and all bets that were made are evaluated.
+			 * in seconds. Bets stop being taken bettingCutoff milliseconds before the end. After the thread wakes, then a
+			 * number is generated and all bets that were made are evaluated.
 			 */
 			try
 			{
-				Thread.sleep(frequency * 1000);
+				long cutoff = bettingCutoff;
+				Thread.sleep(frequency * 1000L - cutoff);
+				closeBetting();
+				Thread.sleep(cutoff);
 			}
 			catch (InterruptedException e)
 			{
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				// Whoever interrupted the thread wants the table to stop. The game in progress is left unsettled, like
+				// at any other shutdown.
+				log.info("The game thread was interrupted, no more games will be played.");
+				Thread.currentThread().interrupt();
+				return;
 			}
 
-			// The game has ended. We generate the winning number.
-			log.debug("Generating the winning number of the current game");
-			winningNumber = generateNumber();
+			playRound();
+		}
 
-			// The game has ended so the next game will start. We increase the game id but first we keep a copy of
-			// the current game id to use in the evaluation of the bets of the game that just ended.
-			long currentGameId = gameId.get();
-			gameId.getAndIncrement();
+	}
 
-			// Print results header
-			printResultsHeader(winningNumber);
+	/**
+	 * No more bets on the current game: the next game starts taking bets straight away and the current one waits for
+	 * its spin. Only waits for bets already being written into the current game. Does nothing if the current game is
+	 * already closed.
+	 */
+	public synchronized void closeBetting()
+	{
+		if (closedBook != null)
+		{
+			return;
+		}
 
-			// Notify all players (that may be interested) that the bet is completed.
-			for (BetListener bl : betListeners)
-			{
-				bl.betCompleted(currentGameId, winningNumber);
-			}
+		// The next book is in place before the old one says it's closed, so a bet turned away by the old one always
+		// finds the new one. The reporter hears about the cutoff before the first bet on the next game.
+		BetBook closing = openBook;
+		roundReporter.bettingClosed(closing.getGameId());
+		openBook = nextBook(closing.getGameId() + 1);
+		closing.close();
+		closedBook = closing;
+		started = true;
+		log.debug("No more bets on game " + closing.getGameId());
+	}
+
+	/**
+	 * Ends the current game: closes its betting if the cutoff didn't already, generates the winning number and settles
+	 * the bets of the game. The thread calls it every frequency seconds; a simulation can call it as fast as it likes.
+	 * 
+	 * @return the winning number
+	 */
+	public synchronized int playRound()
+	{
+		closeBetting();
+		BetBook betBook = closedBook;
+		closedBook = null;
+		long currentGameId = betBook.getGameId();
+
+		// The game has ended. We generate the winning number.
+		log.debug("Generating the winning number of the current game");
+		long generated = System.nanoTime();
+		int winningNumber = generateNumber();
+
+		roundReporter.roundStarted(currentGameId, winningNumber);
+
+		// Settle the bets placed on the game that ended. Only players that bet are touched, and bets on the next game
+		// go into the other book in the meantime.
+		long settlementStarted = System.nanoTime();
+		int betsSettled = betBook.settle(winningNumber, roundReporter);
+		long settled = System.nanoTime();
+
+		roundReporter.roundFinished(currentGameId, betsSettled);
+		spareBook = betBook;
+		metrics.roundPlayed(settled - settlementStarted, System.nanoTime() - generated);
+
+		// Notify everyone that may be interested that the game is completed. Listeners added or removed meanwhile are
+		// left for the next game.
+		for (BetListener bl : betListeners)
+		{
+			bl.betCompleted(currentGameId, winningNumber);
 		}
 
+		return winningNumber;
 	}
 
-	private void printResultsHeader(int winningNumber)
+	/**
+	 * Returns a book for a game, the one settled last if there is one. Its arrays are already as big as a game
+	 * needs, so a table that keeps going stops making books and growing them.
+	 */
+	private BetBook nextBook(long gameId)
 	{
-		// Print result table title;
-		System.out.println("Number: " + winningNumber);
-		System.out.printf("%-10s %5s %9s %10s %10s %10s %n", "Player", "Bet", "Outcome", "Winnings", "TotalBet",
-				"TotalWin");
-		System.out.println("----------");
+		BetBook book = spareBook;
+		if (book == null)
+		{
+			return new BetBook(gameId, maxLiability);
+		}
+		spareBook = null;
+		book.reopen(gameId, maxLiability);
+		return book;
 	}
 
-	// Instances to listen for when a bet is complete.
+	// Instances to listen for when a bet is complete. Can be added at any time, even while a game is being settled.
 	public void addBetListener(BetListener toAdd)
 	{
 		betListeners.add(toAdd);
 	}
 
+	/**
+	 * Stops telling a listener about the games. A game being settled right now may still tell it once.
+	 * 
+	 * @param toRemove
+	 * @return false if it wasn't listening
+	 */
+	public boolean removeBetListener(BetListener toRemove)
+	{
+		return betListeners.remove(toRemove);
+	}
+
 	/**
 	 * Generates an integer number between the two boundaries set in the constructor (inclusive).
 	 * 
@@ -105,15 +252,111 @@ public class GameNumberGenerator extends Game implements Runnable
 	 */
 	private int generateNumber()
 	{
-		return randomGenerator.nextInt(getUpperBound()) + getLowerBound();
+		return numberSource.nextNumber(getLowerBound(), getUpperBound());
 	}
 	
 	/**
-	 * Return the current game id (as a long). Will be used from the bet monitor to read the game id variable.
+	 * Returns the book of the game taking bets. Used from the bet monitor to record the bets it accepts; the book has
+	 * to be entered first, and if it is closed by then the book of the next game is here.
+	 * 
+	 * @return the open book, which carries the id of its game
+	 */
+	public BetBook getOpenBook()
+	{
+		return openBook;
+	}
+
+	/**
+	 * Carries on the game ids from an earlier run (i.e. from a snapshot) instead of starting from zero. A table
+	 * scheduled by the TableManager is better given its first game id when it's added, this is for games that are
+	 * played by hand.
+	 * 
+	 * @param nextGameId id of the game in progress
+	 * @throws IllegalStateException if the game already took a bet or closed the betting of a game
+	 */
+	public synchronized void resumeFrom(long nextGameId)
+	{
+		if (started || openBook.size() > 0)
+		{
+			throw new IllegalStateException("Game " + openBook.getGameId() + " is under way, it's too late to resume "
+					+ "from game " + nextGameId + ".");
+		}
+		openBook = new BetBook(nextGameId, maxLiability);
+	}
+
+	/**
+	 * Sets the most the house may owe on any one number in a game. Applies to the game taking bets and the ones after.
+	 * 
+	 * @param maxLiability in pence, BetBook.NO_LIMIT for no limit
+	 */
+	public synchronized void setMaxLiability(long maxLiability)
+	{
+		this.maxLiability = maxLiability;
+		openBook.setMaxLiability(maxLiability);
+	}
+
+	/**
+	 * Sets how long before every spin no more bets are taken on the game about to be spun. Bets made in that time go
+	 * to the next game. The thread and the TableManager close the betting at the cutoff; anyone else calling
+	 * playRound can call closeBetting themselves.
+	 * 
+	 * @param bettingCutoff in milliseconds, 0 to take bets right up to the spin
+	 * @throws IllegalArgumentException if the cutoff is negative or not shorter than the time between spins
+	 */
+	public void setBettingCutoff(long bettingCutoff)
+	{
+		if (bettingCutoff < 0 || bettingCutoff >= frequency * 1000L)
+		{
+			throw new IllegalArgumentException("The betting cutoff must be shorter than the " + frequency
+					+ " seconds between spins.");
+		}
+		this.bettingCutoff = bettingCutoff;
+	}
+
+	/**
+	 * Return the milliseconds before every spin in which no more bets are taken.
+	 */
+	public long getBettingCutoff()
+	{
+		return bettingCutoff;
+	}
+
+	/**
+	 * Returns what the house owes on each number if it wins the game in progress, in pence, indexed by the number.
+	 */
+	public long[] getLiabilities()
+	{
+		long[] liabilities = new long[RouletteRange.HIGHEST_NUMBER + 1];
+		BetBook betBook = openBook;
+		for (int number = 0; number < liabilities.length; number++)
+		{
+			liabilities[number] = betBook.getLiability(number);
+		}
+		return liabilities;
+	}
+
+	/**
+	 * Return the measurements of the table.
+	 */
+	public TableMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	/**
+	 * Return the number of seconds between spins.
+	 */
+	public int getFrequency()
+	{
+		return frequency;
+	}
+
+	/**
+	 * Return the id of the game taking bets (as a long).
 	 * 
 	 */
 	public long getCurrentGameId()
 	{
-		return gameId.get();
+		return openBook.getGameId();
 	}
 }
@@ -0,0 +1,178 @@
+package com.gamesys.consoleroulette.application.game;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Listeners that can be added and removed at any time while other threads go through them. Going through them takes
+ * no lock: it reads the snapshot published last and sees exactly the listeners of that moment, whatever is added or
+ * removed in the meantime.
+ * <p>
+ * A plain copy-on-write array would copy every listener on every change, which is quadratic when 100k players join
+ * one after the other. Here the listeners are kept in chunks of CHUNK_SIZE. An added listener is written into the free
+ * slot after the last one, which no published snapshot reads (each knows its size), and only the small snapshot
+ * object is new, so adding is constant time. A removal moves the last listener into the gap, so only the chunk of the
+ * gap, the last chunk and the array of chunks are copied: a few hundred references for 100k listeners.
+ * <p>
+ * Changes are serialised on the registry. Listeners are compared by identity and added once.
+ * 
+ * @author Andreas
+ *
+ * @param <T> the listener type
+ */
+public class ListenerRegistry<T> implements Iterable<T>
+{
+	// Listeners per chunk. Removal copies about two chunks, so this bounds its cost.
+	static final int CHUNK_SIZE = 256;
+
+	// Published view that readers go through. Replaced on every change.
+	private volatile Snapshot snapshot = new Snapshot(new Object[0][], 0);
+
+	// Slot of every listener, to find the one to remove without a scan. Guarded by this.
+	private final IdentityHashMap<T, Integer> slots = new IdentityHashMap<T, Integer>();
+
+	/**
+	 * Adds a listener. It is seen by everyone who goes through the listeners from now on.
+	 * 
+	 * @param listener
+	 * @return false if it was already registered
+	 */
+	public synchronized boolean add(T listener)
+	{
+		if (listener == null)
+		{
+			throw new NullPointerException("A listener can't be null.");
+		}
+		if (slots.containsKey(listener))
+		{
+			return false;
+		}
+
+		Snapshot current = snapshot;
+		int size = current.size;
+		Object[][] chunks = current.chunks;
+		int chunk = size / CHUNK_SIZE;
+		if (chunk == chunks.length)
+		{
+			// Grown by half, so the array of chunks is copied a logarithmic number of times.
+			chunks = Arrays.copyOf(chunks, Math.max(4, chunks.length + (chunks.length >> 1)));
+		}
+		if (chunks[chunk] == null)
+		{
+			chunks[chunk] = new Object[CHUNK_SIZE];
+		}
+
+		// The slot is past the size of every snapshot that can see this chunk, so no reader looks at it yet.
+		chunks[chunk][size % CHUNK_SIZE] = listener;
+		slots.put(listener, size);
+		snapshot = new Snapshot(chunks, size + 1);
+		return true;
+	}
+
+	/**
+	 * Removes a listener. Readers already going through the listeners may still call it once.
+	 * 
+	 * @param listener
+	 * @return false if it wasn't registered
+	 */
+	public synchronized boolean remove(T listener)
+	{
+		Integer slot = slots.remove(listener);
+		if (slot == null)
+		{
+			return false;
+		}
+
+		Snapshot current = snapshot;
+		int last = current.size - 1;
+		Object[][] chunks = current.chunks.clone();
+
+		// The chunks that change are copied, older snapshots keep the originals.
+		int lastChunk = last / CHUNK_SIZE;
+		chunks[lastChunk] = chunks[lastChunk].clone();
+		Object moved = chunks[lastChunk][last % CHUNK_SIZE];
+		chunks[lastChunk][last % CHUNK_SIZE] = null;
+
+		if (slot != last)
+		{
+			int chunk = slot / CHUNK_SIZE;
+			if (chunk != lastChunk)
+			{
+				chunks[chunk] = chunks[chunk].clone();
+			}
+			chunks[chunk][slot % CHUNK_SIZE] = moved;
+			@SuppressWarnings("unchecked")
+			T movedListener = (T) moved;
+			slots.put(movedListener, slot);
+		}
+
+		snapshot = new Snapshot(chunks, last);
+		return true;
+	}
+
+	/**
+	 * Returns the number of listeners.
+	 */
+	public int size()
+	{
+		return snapshot.size;
+	}
+
+	/**
+	 * Goes through the listeners of this moment, without locking. The order is not the order they were added in.
+	 */
+	@Override
+	public Iterator<T> iterator()
+	{
+		return new SnapshotIterator(snapshot);
+	}
+
+	/**
+	 * The chunks and how many listeners are in them. The chunks and the slots below size never change once published.
+	 */
+	private static final class Snapshot
+	{
+		private final Object[][] chunks;
+
+		private final int size;
+
+		private Snapshot(Object[][] chunks, int size)
+		{
+			this.chunks = chunks;
+			this.size = size;
+		}
+	}
+
+	private final class SnapshotIterator implements Iterator<T>
+	{
+		private final Snapshot snapshot;
+
+		private int next;
+
+		private SnapshotIterator(Snapshot snapshot)
+		{
+			this.snapshot = snapshot;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return next < snapshot.size;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T next()
+		{
+			if (next >= snapshot.size)
+			{
+				throw new NoSuchElementException();
+			}
+			T listener = (T) snapshot.chunks[next / CHUNK_SIZE][next % CHUNK_SIZE];
+			next++;
+			return listener;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.gamesys.consoleroulette.application.game;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The hash the player lookups find names by. It's the hash String.hashCode gives the name, so it can be taken from
+ * the String of a loaded player, from the characters of a bet line or from the UTF-8 bytes of a name on disk, and the
+ * three always agree.
+ *
+ * @author Andreas
+ *
+ */
+public final class NameHash
+{
+	private NameHash()
+	{
+	}
+
+	/**
+	 * Hashes the name spelled by part of a sequence of characters, without making a String of it.
+	 *
+	 * @param chars
+	 * @param start index of the first character of the name
+	 * @param end index after the last character of the name
+	 */
+	public static int of(CharSequence chars, int start, int end)
+	{
+		int hash = 0;
+		for (int i = start; i < end; i++)
+		{
+			hash = 31 * hash + chars.charAt(i);
+		}
+		return hash;
+	}
+
+	/**
+	 * Hashes a name given in UTF-8. A name that isn't all ASCII is decoded first.
+	 *
+	 * @param name
+	 * @param length bytes of the name, from the start of the array
+	 */
+	public static int of(byte[] name, int length)
+	{
+		int hash = 0;
+		for (int i = 0; i < length; i++)
+		{
+			if (name[i] < 0)
+			{
+				return new String(name, 0, length, StandardCharsets.UTF_8).hashCode();
+			}
+			hash = 31 * hash + name[i];
+		}
+		return hash;
+	}
+
+	/**
+	 * Names like "Player1", "Player2" differ only in the low bits of the hash, mixes the high bits in for a table
+	 * that masks the hash into its size.
+	 */
+	public static int spread(int hash)
+	{
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Spreads the bits of a hash over a long, for a table too big for an int: the low bits pick the slot and the high
+	 * ones can make a tag.
+	 */
+	public static long mix(int hash)
+	{
+		long m = spread(hash) * 0x9E3779B97F4A7C15L;
+		return m ^ (m >>> 29);
+	}
+}
@@ -0,0 +1,155 @@
+package com.gamesys.consoleroulette.application.game;
+
+import java.util.Map;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+
+/**
+ * Look up of players by name straight from the characters of an input line, so no String has to be made for the name.
+ * Open addressing over two parallel arrays, hashing the same way String.hashCode does so the hash of every name can be
+ * taken from the String when the index is built.
+ * <p>
+ * The index follows the map it is built from. A player found in the index is only returned while the map still holds
+ * it under that name, and a name that isn't found is looked up in the map (the only time a String is made); either way
+ * a map that changed gets the index built again, so players added, removed or replaced later are seen. Tables are never
+ * changed once built, only replaced, so lookups need no lock.
+ * 
+ * @author Andreas
+ *
+ */
+public class PlayerIndex implements PlayerLookup
+{
+	// Map the index is built from.
+	private final Map<String, Player> source;
+
+	// Current table, replaced as a whole when the map has changed.
+	private volatile Table table;
+
+	public PlayerIndex(Map<String, Player> players)
+	{
+		this.source = players;
+		this.table = new Table(players);
+	}
+
+	/**
+	 * Finds the player whose name is spelled by part of a sequence of characters.
+	 * 
+	 * @param chars
+	 * @param start index of the first character of the name
+	 * @param end index after the last character of the name
+	 * @return the player, or null if there is no player with that name
+	 */
+	@Override
+	public Player find(CharSequence chars, int start, int end)
+	{
+		int hash = NameHash.of(chars, start, end);
+
+		Table current = table;
+		int slot = current.find(hash, chars, start, end);
+		if (slot >= 0)
+		{
+			Player player = current.players[slot];
+			if (source.get(current.names[slot]) == player)
+			{
+				return player;
+			}
+		}
+		else if (!source.containsKey(chars.subSequence(start, end).toString()))
+		{
+			return null;
+		}
+
+		// The player was added, removed or replaced in the map since the table was built.
+		Table fresh = refresh(current);
+		slot = fresh.find(hash, chars, start, end);
+		return (slot >= 0) ? fresh.players[slot] : null;
+	}
+
+	/**
+	 * Builds the table again from the map, unless another thread did it already.
+	 */
+	private synchronized Table refresh(Table stale)
+	{
+		Table current = table;
+		if (current == stale)
+		{
+			current = new Table(source);
+			table = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Names and players of the index at one point. Never changed once built.
+	 */
+	private static final class Table
+	{
+		private final String[] names;
+
+		private final Player[] players;
+
+		// Table size is a power of two, this masks a hash into it.
+		private final int mask;
+
+		Table(Map<String, Player> source)
+		{
+			// At most half full, so probes stay short. Players added to the map while it is copied are left to the next
+			// table if they don't fit.
+			int capacity = Integer.highestOneBit(Math.max(source.size(), 1) * 2 - 1) << 1;
+			String[] names = new String[capacity];
+			Player[] players = new Player[capacity];
+			int mask = capacity - 1;
+
+			int size = 0;
+			for (Map.Entry<String, Player> entry : source.entrySet())
+			{
+				if (size * 2 >= capacity)
+				{
+					break;
+				}
+				int slot = NameHash.spread(entry.getKey().hashCode()) & mask;
+				while (names[slot] != null)
+				{
+					slot = (slot + 1) & mask;
+				}
+				names[slot] = entry.getKey();
+				players[slot] = entry.getValue();
+				size++;
+			}
+			this.names = names;
+			this.players = players;
+			this.mask = mask;
+		}
+
+		/**
+		 * Returns the slot of the name, or -1 if it isn't in the table.
+		 */
+		int find(int hash, CharSequence chars, int start, int end)
+		{
+			int length = end - start;
+			int slot = NameHash.spread(hash) & mask;
+			String name;
+			while ((name = names[slot]) != null)
+			{
+				if (name.length() == length && matches(name, chars, start))
+				{
+					return slot;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+	}
+
+	private static boolean matches(String name, CharSequence chars, int start)
+	{
+		for (int i = 0; i < name.length(); i++)
+		{
+			if (name.charAt(i) != chars.charAt(start + i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
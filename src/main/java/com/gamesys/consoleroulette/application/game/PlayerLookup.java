@@ -0,0 +1,55 @@
+package com.gamesys.consoleroulette.application.game;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+
+/**
+ * Where the bet monitor finds the players that bet. A PlayerIndex over the players in memory, or a PlayerDirectory
+ * that loads them from the player file as they bet and evicts them again when they don't.
+ * <p>
+ * A player is only found to check a line; while a bet is recorded on it, it is held between acquire and release so a
+ * lookup that evicts players can't drop it halfway.
+ * 
+ * @author Andreas
+ *
+ */
+public interface PlayerLookup
+{
+	/**
+	 * Finds the player whose name is spelled by part of a sequence of characters.
+	 * 
+	 * @param chars
+	 * @param start index of the first character of the name
+	 * @param end index after the last character of the name
+	 * @return the player, or null if there is no player with that name
+	 */
+	Player find(CharSequence chars, int start, int end);
+
+	/**
+	 * Finds a player by name.
+	 * 
+	 * @return the player, or null if there is no player with that name
+	 */
+	default Player find(String userName)
+	{
+		return find(userName, 0, userName.length());
+	}
+
+	/**
+	 * Holds a player found earlier while a bet is recorded on it. Every acquire must be followed by a release of the
+	 * player it returns.
+	 * 
+	 * @param player
+	 * @return the player to record on: the same one, or the one loaded in its place if it was evicted meanwhile
+	 */
+	default Player acquire(Player player)
+	{
+		return player;
+	}
+
+	/**
+	 * Lets go of a player held with acquire.
+	 */
+	default void release(Player player)
+	{
+	}
+}
@@ -0,0 +1,46 @@
+package com.gamesys.consoleroulette.application.game;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+
+/**
+ * Gets told how every game played out, to present the results. The game thread calls it while settling, in order:
+ * the winning number, every bet of the game and then the end of the game. The cutoff of a game comes before all that.
+ * 
+ * @author Andreas
+ *
+ */
+public interface RoundReporter
+{
+	/**
+	 * No more bets are taken on a game. Bets on the next game are only taken once this returns; bets that got into
+	 * the game just before may still be being written.
+	 */
+	default void bettingClosed(long gameId)
+	{
+	}
+
+	/**
+	 * The winning number of a game is out and its bets are about to be settled.
+	 */
+	void roundStarted(long gameId, int winningNumber);
+
+	/**
+	 * A bet was settled. The totals of the player already include it. A player with several bets on the game is told
+	 * about once per bet; no Bet is made for it.
+	 * 
+	 * @param player that made the bet
+	 * @param gameId
+	 * @param choice ordinal of the RouletteRange bet on
+	 * @param amount in pence
+	 * @param winnings in pence, 0 if the bet lost
+	 */
+	void betSettled(Player player, long gameId, int choice, long amount, long winnings);
+
+	/**
+	 * All the bets of the game were settled.
+	 * 
+	 * @param gameId
+	 * @param betsSettled number of bets settled
+	 */
+	void roundFinished(long gameId, int betsSettled);
+}
@@ -0,0 +1,82 @@
+package com.gamesys.consoleroulette.application.game;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+
+/**
+ * One roulette table of a TableManager: its own wheel (bounds and frequency), its own players and its own bet monitor.
+ * Tables share nothing, so the bets of one are never settled by another.
+ * 
+ * @author Andreas
+ *
+ */
+public class Table
+{
+	private final String name;
+
+	private final GameNumberGenerator game;
+
+	private final GameBetMonitor betMonitor;
+
+	// The spins of the table on the manager's scheduler. Set once it's scheduled.
+	private volatile ScheduledFuture<?> spins;
+
+	Table(String name, GameNumberGenerator game, GameBetMonitor betMonitor)
+	{
+		this.name = name;
+		this.game = game;
+		this.betMonitor = betMonitor;
+	}
+
+	void setSpins(ScheduledFuture<?> spins)
+	{
+		this.spins = spins;
+	}
+
+	/**
+	 * Stops spinning the wheel of this table. The game in progress is not played.
+	 */
+	void stop()
+	{
+		ScheduledFuture<?> scheduled = spins;
+		if (scheduled != null)
+		{
+			scheduled.cancel(false);
+		}
+	}
+
+	/**
+	 * @return false once the table was stopped or its spins failed
+	 */
+	public boolean isRunning()
+	{
+		ScheduledFuture<?> scheduled = spins;
+		return scheduled != null && !scheduled.isDone();
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public GameNumberGenerator getGame()
+	{
+		return game;
+	}
+
+	/**
+	 * Returns the bet monitor of the table. Bets for this table (from the console, a gateway or a session intake) go
+	 * through it.
+	 */
+	public GameBetMonitor getBetMonitor()
+	{
+		return betMonitor;
+	}
+
+	public ConcurrentHashMap<String, Player> getPlayers()
+	{
+		return betMonitor.getPlayers();
+	}
+}
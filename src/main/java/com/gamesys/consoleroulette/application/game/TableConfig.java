@@ -0,0 +1,175 @@
+package com.gamesys.consoleroulette.application.game;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.random.NumberSource;
+
+/**
+ * How a table of a TableManager is set up. The bounds and frequency are given up front, everything else is named as
+ * it's set and has a default, so a table that only needs one of them doesn't have to spell out the rest:
+ *
+ * <pre>
+ * tableManager.addTable("Main", new TableConfig(0, 36, 30).players(players).bettingCutoff(2000));
+ * </pre>
+ *
+ * A table needs either its players or a lookup of them.
+ *
+ * @author Andreas
+ *
+ */
+public final class TableConfig
+{
+	private final int lowerBound;
+
+	private final int upperBound;
+
+	// Seconds between spins.
+	private final int frequency;
+
+	// Milliseconds before every spin in which bets go to the next game, 0 for none.
+	private long bettingCutoff;
+
+	// Id of the first game, i.e. the next game id of a snapshot.
+	private long firstGameId;
+
+	// Most the house may owe on any one number in a game, in pence.
+	private long maxLiability = BetBook.NO_LIMIT;
+
+	// The players of the table, all in memory. Null when they are looked up.
+	private ConcurrentHashMap<String, Player> players;
+
+	// Finds the players one by one, i.e. a PlayerDirectory. Null when the players are all in memory.
+	private PlayerLookup playerLookup;
+
+	// Source of the winning numbers of this table only. Null for one split off the manager's.
+	private NumberSource numberSource;
+
+	// Presents the results of every game of the table. Null for the console.
+	private RoundReporter roundReporter;
+
+	/**
+	 * @param lowerBound
+	 * @param upperBound
+	 * @param frequency seconds between spins
+	 */
+	public TableConfig(int lowerBound, int upperBound, int frequency)
+	{
+		this.lowerBound = lowerBound;
+		this.upperBound = upperBound;
+		this.frequency = frequency;
+	}
+
+	/**
+	 * @param bettingCutoff milliseconds before every spin in which bets go to the next game, 0 (the default) for none
+	 */
+	public TableConfig bettingCutoff(long bettingCutoff)
+	{
+		this.bettingCutoff = bettingCutoff;
+		return this;
+	}
+
+	/**
+	 * @param firstGameId id of the first game, to carry on the game ids of an earlier run. 0 by default.
+	 */
+	public TableConfig firstGameId(long firstGameId)
+	{
+		this.firstGameId = firstGameId;
+		return this;
+	}
+
+	/**
+	 * @param maxLiability most the house may owe on any one number in a game, in pence. BetBook.NO_LIMIT by default.
+	 */
+	public TableConfig maxLiability(long maxLiability)
+	{
+		this.maxLiability = maxLiability;
+		return this;
+	}
+
+	/**
+	 * @param players the players of this table only
+	 */
+	public TableConfig players(ConcurrentHashMap<String, Player> players)
+	{
+		this.players = players;
+		return this;
+	}
+
+	/**
+	 * @param playerLookup finds the players of this table, instead of them all being in memory
+	 */
+	public TableConfig playerLookup(PlayerLookup playerLookup)
+	{
+		this.playerLookup = playerLookup;
+		return this;
+	}
+
+	/**
+	 * @param numberSource source of the winning numbers of this table only. One split off the manager's by default.
+	 */
+	public TableConfig numberSource(NumberSource numberSource)
+	{
+		this.numberSource = numberSource;
+		return this;
+	}
+
+	/**
+	 * @param roundReporter presents the results of every game of the table. The console by default.
+	 */
+	public TableConfig roundReporter(RoundReporter roundReporter)
+	{
+		this.roundReporter = roundReporter;
+		return this;
+	}
+
+	public int getLowerBound()
+	{
+		return lowerBound;
+	}
+
+	public int getUpperBound()
+	{
+		return upperBound;
+	}
+
+	public int getFrequency()
+	{
+		return frequency;
+	}
+
+	public long getBettingCutoff()
+	{
+		return bettingCutoff;
+	}
+
+	public long getFirstGameId()
+	{
+		return firstGameId;
+	}
+
+	public long getMaxLiability()
+	{
+		return maxLiability;
+	}
+
+	public ConcurrentHashMap<String, Player> getPlayers()
+	{
+		return players;
+	}
+
+	public PlayerLookup getPlayerLookup()
+	{
+		return playerLookup;
+	}
+
+	public NumberSource getNumberSource()
+	{
+		return numberSource;
+	}
+
+	public RoundReporter getRoundReporter()
+	{
+		return roundReporter;
+	}
+}
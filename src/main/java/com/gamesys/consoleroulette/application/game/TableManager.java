@@ -0,0 +1,287 @@
+package com.gamesys.consoleroulette.application.game;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.metrics.TableMetrics;
+import com.gamesys.consoleroulette.application.random.NumberSource;
+import com.gamesys.consoleroulette.application.random.SplittableNumberSource;
+
+/**
+ * Runs many tables in one JVM on a small, fixed pool of scheduler threads instead of a sleeping thread per table. Every
+ * table gets its rounds played (GameNumberGenerator.playRound) every frequency seconds, and its betting closed the
+ * table's cutoff before every spin. The scheduler never runs two rounds of the same table at once, so a table's
+ * settlement stays single threaded, but the rounds of different tables run on whichever pool thread is free. The
+ * number of threads doesn't depend on the number of tables.
+ * 
+ * @author Andreas
+ *
+ */
+public class TableManager
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(TableManager.class);
+
+	// Threads when none are asked for. A round takes microseconds, so a couple of threads go a long way.
+	public static final int DEFAULT_THREADS = 2;
+
+	private final ScheduledThreadPoolExecutor scheduler;
+
+	// Tables by name.
+	private final ConcurrentHashMap<String, Table> tables = new ConcurrentHashMap<String, Table>();
+
+	// Split into a source of winning numbers for every table that isn't given one. Locked while splitting.
+	private final SplittableNumberSource numberSources = new SplittableNumberSource();
+
+	public TableManager()
+	{
+		this(DEFAULT_THREADS);
+	}
+
+	/**
+	 * @param threads the scheduler threads shared by all the tables
+	 */
+	public TableManager(int threads)
+	{
+		scheduler = new ScheduledThreadPoolExecutor(threads, new TableThreadFactory());
+		// Stopped tables shouldn't stay in the queue until their next spin would have been.
+		scheduler.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Adds a table that prints its results on the console and starts spinning its wheel.
+	 * 
+	 * @param name unique name of the table
+	 * @param lowerBound
+	 * @param upperBound
+	 * @param frequency seconds between spins
+	 * @param players the players of this table only
+	 * @return the table
+	 */
+	public Table addTable(String name, int lowerBound, int upperBound, int frequency,
+			ConcurrentHashMap<String, Player> players)
+	{
+		return addTable(name, new TableConfig(lowerBound, upperBound, frequency).players(players));
+	}
+
+	/**
+	 * Adds a table and starts spinning its wheel. Its game id and liability limit apply from the first game, before
+	 * the table takes any bet.
+	 * 
+	 * @param name unique name of the table
+	 * @param config bounds, frequency and players of the table, and whatever else it doesn't take the default of
+	 * @return the table
+	 * @throws IllegalArgumentException if there is already a table with that name, the table has no players (or both
+	 *             players and a lookup), or the cutoff is longer than a game
+	 */
+	public Table addTable(String name, TableConfig config)
+	{
+		int lowerBound = config.getLowerBound();
+		int upperBound = config.getUpperBound();
+		int frequency = config.getFrequency();
+		long bettingCutoff = config.getBettingCutoff();
+		ConcurrentHashMap<String, Player> players = config.getPlayers();
+		PlayerLookup playerLookup = config.getPlayerLookup();
+		if ((players == null) == (playerLookup == null))
+		{
+			throw new IllegalArgumentException("Table " + name + " needs either its players or a lookup of them.");
+		}
+		if (frequency <= 0)
+		{
+			throw new IllegalArgumentException("The frequency of table " + name + " must be at least a second.");
+		}
+
+		NumberSource numberSource = config.getNumberSource();
+		if (numberSource == null)
+		{
+			synchronized (numberSources)
+			{
+				numberSource = numberSources.split();
+			}
+		}
+		RoundReporter roundReporter = config.getRoundReporter();
+		if (roundReporter == null)
+		{
+			roundReporter = new ConsoleRoundReporter(name);
+		}
+
+		// One set of metrics for the game and the bets of the table.
+		TableMetrics metrics = new TableMetrics();
+		GameNumberGenerator game = new GameNumberGenerator(lowerBound, upperBound, frequency, numberSource,
+				roundReporter, metrics, config.getFirstGameId(), config.getMaxLiability());
+		metrics.setLiabilities(game::getLiabilities);
+		game.setBettingCutoff(bettingCutoff);
+		GameBetMonitor betMonitor = (players != null)
+				? new GameBetMonitor(lowerBound, upperBound, players, game, metrics)
+				: new GameBetMonitor(lowerBound, upperBound, playerLookup, game, metrics);
+		Table table = new Table(name, game, betMonitor);
+
+		if (tables.putIfAbsent(name, table) != null)
+		{
+			throw new IllegalArgumentException("There is already a table called " + name + ".");
+		}
+		metrics.register(name);
+
+		// Fixed rate, like the thread sleeping between spins, and the first spin one period away so the first game
+		// lasts as long as the rest.
+		// With a cutoff it's the cutoffs that run at a fixed rate, and each one has the spin follow it, so the spin
+		// can never come before the cutoff of its game.
+		if (bettingCutoff > 0)
+		{
+			long period = TimeUnit.SECONDS.toMillis(frequency);
+			table.setSpins(scheduler.scheduleAtFixedRate(new Cutoff(table, bettingCutoff), period - bettingCutoff,
+					period, TimeUnit.MILLISECONDS));
+		}
+		else
+		{
+			table.setSpins(scheduler.scheduleAtFixedRate(new Spin(table), frequency, frequency, TimeUnit.SECONDS));
+		}
+		log.info("Table " + name + " spins every " + frequency + " seconds, no more bets " + bettingCutoff
+				+ "ms before.");
+
+		return table;
+	}
+
+	/**
+	 * Stops and removes a table. Bets already taken for its current game are not settled.
+	 * 
+	 * @param name
+	 * @return the table, or null if there was none with that name
+	 */
+	public Table removeTable(String name)
+	{
+		Table table = tables.remove(name);
+		if (table != null)
+		{
+			table.stop();
+			TableMetrics.unregister(name);
+		}
+		return table;
+	}
+
+	public Table getTable(String name)
+	{
+		return tables.get(name);
+	}
+
+	public Collection<Table> getTables()
+	{
+		return tables.values();
+	}
+
+	/**
+	 * @return the threads of the scheduler, which is all the threads the tables use
+	 */
+	public int getThreadCount()
+	{
+		return scheduler.getPoolSize();
+	}
+
+	/**
+	 * Stops all the tables. Rounds being played are finished first.
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * @return false if rounds were still being played when the timeout passed
+	 */
+	public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		for (Table table : tables.values())
+		{
+			table.stop();
+			TableMetrics.unregister(table.getName());
+		}
+		scheduler.shutdown();
+		return scheduler.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * One spin of a table. An exception would cancel all the future spins of the table without a word, so it's logged
+	 * and the table carries on with its next game.
+	 */
+	private static final class Spin implements Runnable
+	{
+		private final Table table;
+
+		private Spin(Table table)
+		{
+			this.table = table;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				table.getGame().playRound();
+			}
+			catch (RuntimeException e)
+			{
+				log.error("Table " + table.getName() + " could not finish its game: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * The end of the betting on a table's game, which then has its spin scheduled bettingCutoff milliseconds later.
+	 */
+	private final class Cutoff implements Runnable
+	{
+		private final Table table;
+
+		private final long bettingCutoff;
+
+		private final Spin spin;
+
+		private Cutoff(Table table, long bettingCutoff)
+		{
+			this.table = table;
+			this.bettingCutoff = bettingCutoff;
+			this.spin = new Spin(table);
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				table.getGame().closeBetting();
+			}
+			catch (RuntimeException e)
+			{
+				log.error("Table " + table.getName() + " could not close its betting: " + e.getMessage(), e);
+			}
+			if (table.isRunning())
+			{
+				scheduler.schedule(spin, bettingCutoff, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Names the scheduler threads, so they can be told apart in a thread dump.
+	 */
+	private static final class TableThreadFactory implements ThreadFactory
+	{
+		private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+		private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+		@Override
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = defaultFactory.newThread(runnable);
+			thread.setName("TableScheduler-" + threadNumber.getAndIncrement());
+			return thread;
+		}
+	}
+}
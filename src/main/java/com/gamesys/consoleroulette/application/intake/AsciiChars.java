@@ -0,0 +1,63 @@
+package com.gamesys.consoleroulette.application.intake;
+
+/**
+ * Read only view of a byte array as characters, one byte per character. Lets the bet parser read bet lines straight out
+ * of a network buffer without decoding them into Strings first. Bet lines are plain ASCII, anything else simply won't
+ * match a player or a choice.
+ * 
+ * @author Andreas
+ *
+ */
+final class AsciiChars implements CharSequence
+{
+	private byte[] bytes;
+
+	private int length;
+
+	/**
+	 * Points the view to a buffer. Characters are read from index 0 up to length.
+	 */
+	AsciiChars wrap(byte[] bytes, int length)
+	{
+		this.bytes = bytes;
+		this.length = length;
+		return this;
+	}
+
+	@Override
+	public int length()
+	{
+		return length;
+	}
+
+	@Override
+	public char charAt(int index)
+	{
+		return (char) (bytes[index] & 0xff);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end)
+	{
+		return toString(start, end);
+	}
+
+	/**
+	 * Copies part of the view into a String, for logging.
+	 */
+	String toString(int start, int end)
+	{
+		StringBuilder sb = new StringBuilder(end - start);
+		for (int i = start; i < end; i++)
+		{
+			sb.append(charAt(i));
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString()
+	{
+		return toString(0, length);
+	}
+}
@@ -0,0 +1,235 @@
+package com.gamesys.consoleroulette.application.intake;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.bet.BetRecord;
+import com.gamesys.consoleroulette.application.game.BetLineParser;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+
+/**
+ * Takes bets over TCP on localhost with one thread per connected bettor. Every session is plain blocking code, read a
+ * line, place the bet, answer, just like the console monitor, so nothing about the validation had to change to serve
+ * many bettors. With virtual threads (the default) an idle session costs a few hundred bytes of stack instead of a
+ * platform thread, so thousands of connected players that hardly ever bet are cheap.
+ * 
+ * The protocol is the same as SocketBetGateway: bet lines in, one answer line per bet line out, in order. Lines longer
+ * than MAX_LINE are answered as malformed.
+ * 
+ * @author Andreas
+ *
+ */
+public class SessionBetIntake implements Runnable
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(SessionBetIntake.class);
+
+	// Longest bet line accepted. Longer lines are answered as malformed and skipped, like the socket gateway does.
+	private static final int MAX_LINE = 256;
+
+	// Returned by readLine at the end of the input.
+	private static final int END_OF_INPUT = -1;
+
+	// Returned by readLine for a line longer than MAX_LINE.
+	private static final int TOO_LONG = -2;
+
+	private final GameBetMonitor betMonitor;
+
+	private final ServerSocket serverSocket;
+
+	// Runs the sessions, a thread per session.
+	private final ExecutorService sessions;
+
+	// Sockets of the open sessions, so close() can drop them.
+	private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Opens the intake on a local port, with a virtual thread per session.
+	 * 
+	 * @param betMonitor where the bets go
+	 * @param port to listen to on the loopback address, 0 for any free port
+	 * @throws IOException if the port can't be opened
+	 */
+	public SessionBetIntake(GameBetMonitor betMonitor, int port) throws IOException
+	{
+		this(betMonitor, port, Executors.newVirtualThreadPerTaskExecutor());
+	}
+
+	/**
+	 * Opens the intake on a local port, running sessions on the given executor. The executor must be able to run as
+	 * many sessions at once as there are connected bettors, since a session holds its thread while it waits for input.
+	 * 
+	 * @param betMonitor where the bets go
+	 * @param port to listen to on the loopback address, 0 for any free port
+	 * @param sessions runs a task per session
+	 * @throws IOException if the port can't be opened
+	 */
+	public SessionBetIntake(GameBetMonitor betMonitor, int port, ExecutorService sessions) throws IOException
+	{
+		this.betMonitor = betMonitor;
+		this.sessions = sessions;
+		this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+	}
+
+	/**
+	 * Returns the port the intake listens to.
+	 */
+	public int getPort()
+	{
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Accepts bettors until the intake is closed.
+	 */
+	@Override
+	public void run()
+	{
+		while (!serverSocket.isClosed())
+		{
+			try
+			{
+				final Socket socket = serverSocket.accept();
+				sockets.add(socket);
+				sessions.execute(() -> serve(socket));
+			}
+			catch (SocketException | RejectedExecutionException e)
+			{
+				// Closed by close(), we are done.
+			}
+			catch (IOException e)
+			{
+				log.error("There was a problem accepting a bettor: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Stops taking bets and drops every session.
+	 */
+	public void close()
+	{
+		try
+		{
+			serverSocket.close();
+		}
+		catch (IOException e)
+		{
+			log.warn("There was a problem closing the session intake: " + e.getMessage());
+		}
+		for (Socket socket : sockets)
+		{
+			closeQuietly(socket);
+		}
+		sessions.shutdownNow();
+	}
+
+	/**
+	 * The session of one bettor. Answers are flushed once there is no more input waiting, so a bettor sending many
+	 * lines at once gets the answers in a few writes.
+	 */
+	private void serve(Socket socket)
+	{
+		BetRecord betRecord = new BetRecord();
+		try
+		{
+			socket.setTcpNoDelay(true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+					StandardCharsets.US_ASCII));
+			BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+					StandardCharsets.US_ASCII));
+
+			// Reused for every line of the session.
+			StringBuilder line = new StringBuilder(MAX_LINE);
+			int length;
+			while ((length = readLine(in, line)) != END_OF_INPUT)
+			{
+				int result = (length == TOO_LONG) ? BetLineParser.MALFORMED
+						: betMonitor.placeBet(line, 0, length, betRecord);
+				out.write(GameBetMonitor.message(result));
+				out.write('\n');
+				if (!in.ready())
+				{
+					out.flush();
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			// The bettor went away, nothing to do about it.
+		}
+		finally
+		{
+			sockets.remove(socket);
+			closeQuietly(socket);
+		}
+	}
+
+	/**
+	 * Reads the next line, without its line end, and never keeps more than MAX_LINE characters of it: a bettor can't
+	 * make the session buffer a line without end.
+	 * 
+	 * @param in to read from
+	 * @param line filled in with the line
+	 * @return the length of the line, TOO_LONG if it was longer than MAX_LINE (the rest of it is read and dropped) or
+	 *         END_OF_INPUT if there are no more lines
+	 * @throws IOException if the input can't be read
+	 */
+	private static int readLine(BufferedReader in, StringBuilder line) throws IOException
+	{
+		line.setLength(0);
+		boolean tooLong = false;
+		int c;
+		while ((c = in.read()) != -1 && c != '\n')
+		{
+			// Room for one more character than MAX_LINE, so a line of MAX_LINE with a \r\n end still fits.
+			if (line.length() > MAX_LINE)
+			{
+				tooLong = true;
+			}
+			else
+			{
+				line.append((char) c);
+			}
+		}
+		if (c == -1 && line.length() == 0)
+		{
+			return END_OF_INPUT;
+		}
+
+		// Lines may end with \r\n as well.
+		int length = line.length();
+		if (!tooLong && length > 0 && line.charAt(length - 1) == '\r')
+		{
+			length--;
+		}
+		return (tooLong || length > MAX_LINE) ? TOO_LONG : length;
+	}
+
+	private static void closeQuietly(Socket socket)
+	{
+		try
+		{
+			socket.close();
+		}
+		catch (IOException ignored)
+		{
+		}
+	}
+}
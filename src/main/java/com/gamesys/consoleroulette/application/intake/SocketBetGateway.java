@@ -0,0 +1,316 @@
+package com.gamesys.consoleroulette.application.intake;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.bet.BetRecord;
+import com.gamesys.consoleroulette.application.game.BetLineParser;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+
+/**
+ * Takes bets over TCP on localhost, next to the console. Any number of clients can connect; each sends bet lines in
+ * the console format ("Username Number Bet", one per line) and gets one answer line per bet line, in the same order, as
+ * the console would print it. Clients don't have to wait for an answer before sending the next line.
+ * 
+ * A single thread serves all connections with a selector. Lines are parsed straight out of the read buffer and go
+ * through the same GameBetMonitor.placeBet as every other bet, so the rules are the same whichever way a bet comes in.
+ * 
+ * @author Andreas
+ *
+ */
+public final class SocketBetGateway implements Runnable
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(SocketBetGateway.class);
+
+	// Longest bet line accepted. Longer lines are answered as malformed and skipped.
+	private static final int MAX_LINE = 256;
+
+	// Size of the read and write buffers of every connection.
+	private static final int BUFFER_SIZE = 16 * 1024;
+
+	// Answer of every placeBet result, encoded once.
+	private static final byte[][] REPLIES = initializeReplies();
+
+	// Room needed in the write buffer to answer one more line.
+	private static final int MAX_REPLY = maxLength(REPLIES);
+
+	private final GameBetMonitor betMonitor;
+
+	private final Selector selector;
+
+	private final ServerSocketChannel serverChannel;
+
+	/**
+	 * Opens the gateway on a local port. Bets are only taken once it runs.
+	 * 
+	 * @param betMonitor where the bets go
+	 * @param port to listen to on the loopback address, 0 for any free port
+	 * @throws IOException if the port can't be opened
+	 */
+	public SocketBetGateway(GameBetMonitor betMonitor, int port) throws IOException
+	{
+		this.betMonitor = betMonitor;
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		try
+		{
+			serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		}
+		catch (IOException e)
+		{
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the port the gateway listens to.
+	 */
+	public int getPort()
+	{
+		return serverChannel.socket().getLocalPort();
+	}
+
+	@Override
+	public void run()
+	{
+		try
+		{
+			while (selector.isOpen())
+			{
+				selector.select();
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext())
+				{
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					if (!key.isValid())
+					{
+						continue;
+					}
+					if (key.isAcceptable())
+					{
+						accept();
+					}
+					else
+					{
+						serve(key);
+					}
+				}
+			}
+		}
+		catch (ClosedSelectorException cse)
+		{
+			// Closed by close(), we are done.
+		}
+		catch (IOException e)
+		{
+			log.error("The bet gateway stopped: " + e.getMessage());
+		}
+		finally
+		{
+			close();
+		}
+	}
+
+	/**
+	 * Stops taking bets and drops every connection.
+	 */
+	public void close()
+	{
+		try
+		{
+			if (selector.isOpen())
+			{
+				for (SelectionKey key : selector.keys())
+				{
+					key.channel().close();
+				}
+				selector.close();
+			}
+			serverChannel.close();
+		}
+		catch (IOException e)
+		{
+			log.warn("There was a problem closing the bet gateway: " + e.getMessage());
+		}
+	}
+
+	private void accept() throws IOException
+	{
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null)
+		{
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		channel.register(selector, SelectionKey.OP_READ, new Connection());
+	}
+
+	private void serve(SelectionKey key)
+	{
+		SocketChannel channel = (SocketChannel) key.channel();
+		Connection connection = (Connection) key.attachment();
+		try
+		{
+			if (key.isReadable())
+			{
+				if (channel.read(connection.in) < 0)
+				{
+					connection.closing = true;
+				}
+			}
+
+			// Answer and write until everything is answered or the socket can't take more.
+			do
+			{
+				connection.answerLines(betMonitor);
+
+				connection.out.flip();
+				channel.write(connection.out);
+				connection.out.compact();
+			}
+			while (connection.backlog && connection.out.position() == 0);
+
+			boolean pendingWrites = connection.out.position() > 0;
+			if (connection.closing && !pendingWrites)
+			{
+				channel.close();
+				return;
+			}
+
+			// Stop reading while answers are waiting to go out, so a client that doesn't read can't fill our memory.
+			key.interestOps(pendingWrites ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		}
+		catch (IOException e)
+		{
+			log.warn("Dropping a bet gateway connection: " + e.getMessage());
+			key.cancel();
+			try
+			{
+				channel.close();
+			}
+			catch (IOException ignored)
+			{
+			}
+		}
+	}
+
+	private static byte[][] initializeReplies()
+	{
+		byte[][] replies = new byte[GameBetMonitor.PLACE_RESULTS][];
+		for (int result = 0; result < replies.length; result++)
+		{
+			replies[result] = (GameBetMonitor.message(result) + "\n").getBytes(StandardCharsets.US_ASCII);
+		}
+		return replies;
+	}
+
+	private static int maxLength(byte[][] arrays)
+	{
+		int max = 0;
+		for (byte[] array : arrays)
+		{
+			max = Math.max(max, array.length);
+		}
+		return max;
+	}
+
+	/**
+	 * State of one client: what was read but not answered yet and the answers not written yet.
+	 */
+	private static final class Connection
+	{
+		private final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+
+		private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+
+		private final AsciiChars chars = new AsciiChars();
+
+		private final BetRecord betRecord = new BetRecord();
+
+		// The start of the current line was too long and got answered already, skip to the next line.
+		private boolean skippingLine;
+
+		// The client closed its side, close ours once all answers are out.
+		private boolean closing;
+
+		// There are complete lines left that didn't get answered for lack of room in the write buffer.
+		private boolean backlog;
+
+		/**
+		 * Answers the complete lines in the read buffer, as long as there is room for the answers, and keeps what is
+		 * left for later.
+		 */
+		void answerLines(GameBetMonitor betMonitor)
+		{
+			byte[] bytes = in.array();
+			int end = in.position();
+			int lineStart = 0;
+
+			backlog = false;
+			for (int i = 0; i < end; i++)
+			{
+				if (bytes[i] != '\n')
+				{
+					continue;
+				}
+
+				if (skippingLine)
+				{
+					skippingLine = false;
+				}
+				else
+				{
+					if (out.remaining() < MAX_REPLY)
+					{
+						backlog = true;
+						break;
+					}
+					int lineEnd = (i > lineStart && bytes[i - 1] == '\r') ? i - 1 : i;
+					int result = betMonitor.placeBet(chars.wrap(bytes, lineEnd), lineStart, lineEnd, betRecord);
+					out.put(REPLIES[result]);
+				}
+				lineStart = i + 1;
+			}
+
+			if (!backlog)
+			{
+				// A line this long is never going to be a bet. Answer it now and drop the rest of it as it comes, so a
+				// client can't fill the buffer with a single line.
+				if (!skippingLine && end - lineStart > MAX_LINE && out.remaining() >= MAX_REPLY)
+				{
+					out.put(REPLIES[BetLineParser.MALFORMED]);
+					skippingLine = true;
+				}
+				if (skippingLine)
+				{
+					lineStart = end;
+				}
+			}
+
+			// Keep what wasn't answered at the start of the buffer.
+			in.flip();
+			in.position(lineStart);
+			in.compact();
+		}
+	}
+}
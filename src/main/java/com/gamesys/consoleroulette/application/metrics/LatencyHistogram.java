@@ -0,0 +1,144 @@
+package com.gamesys.consoleroulette.application.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in nanoseconds, in the style of HdrHistogram: values below 64 get a bucket each, and every
+ * power of two above gets 32 buckets, so any value is kept to within about 3% whatever its size. Recording is a couple
+ * of shifts and an atomic increment, from any number of threads, and allocates nothing. Reads (percentiles, mean) walk
+ * the buckets and may be slightly behind the writers, which is fine for watching a live table.
+ * 
+ * @author Andreas
+ *
+ */
+public class LatencyHistogram
+{
+	// Values below this get a bucket each.
+	private static final int LINEAR_BUCKETS = 64;
+
+	// Bits kept below the highest bit of a value, so 32 buckets per power of two.
+	private static final int SUB_BUCKET_BITS = 5;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// Enough for any positive long.
+	private static final int BUCKETS = LINEAR_BUCKETS + (Long.SIZE - 2 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder sum = new LongAdder();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a duration. Negative ones count as zero.
+	 * 
+	 * @param nanos
+	 */
+	public void record(long nanos)
+	{
+		long value = Math.max(nanos, 0);
+		counts.incrementAndGet(bucket(value));
+		count.increment();
+		sum.add(value);
+
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value))
+		{
+			currentMax = max.get();
+		}
+	}
+
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * @return the mean, 0 if nothing was recorded
+	 */
+	public double getMean()
+	{
+		long n = count.sum();
+		return (n == 0) ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * Returns the value below which a percentage of the recorded values are, as the top of its bucket (so never less
+	 * than the real value).
+	 * 
+	 * @param percentile between 0 and 100
+	 * @return the value, 0 if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0)
+		{
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += snapshot[i];
+			if (seen >= rank)
+			{
+				return Math.min(highestValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Forgets everything recorded. Values recorded while it resets may or may not survive.
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	static int bucket(long value)
+	{
+		if (value < LINEAR_BUCKETS)
+		{
+			return (int) value;
+		}
+		int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		int top = (int) (value >>> shift);
+		return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+	}
+
+	static long highestValue(int bucket)
+	{
+		if (bucket < LINEAR_BUCKETS)
+		{
+			return bucket;
+		}
+		int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+		long top = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((top + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,84 @@
+package com.gamesys.consoleroulette.application.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events and how many happened per second over the last minute. Every second has a slot in a ring of 60; a
+ * slot is cleared when its second comes round again. Marking an event is an atomic increment and allocates nothing.
+ * The rate is close, not exact: an event marked just as its slot is cleared can be lost from the rate (never from the
+ * total).
+ * 
+ * @author Andreas
+ *
+ */
+public class RateMeter
+{
+	// Seconds the rate is averaged over.
+	private static final int WINDOW = 60;
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	private final LongAdder total = new LongAdder();
+
+	// Events of each second of the window.
+	private final AtomicLongArray counts = new AtomicLongArray(WINDOW);
+
+	// Second each slot holds the events of.
+	private final AtomicLongArray seconds = new AtomicLongArray(WINDOW);
+
+	private final long startSecond = second();
+
+	public RateMeter()
+	{
+		for (int slot = 0; slot < WINDOW; slot++)
+		{
+			seconds.set(slot, Long.MIN_VALUE);
+		}
+	}
+
+	public void mark()
+	{
+		total.increment();
+
+		long now = second();
+		int slot = (int) Math.floorMod(now, (long) WINDOW);
+		long slotSecond = seconds.get(slot);
+		if (slotSecond != now && seconds.compareAndSet(slot, slotSecond, now))
+		{
+			counts.set(slot, 0);
+		}
+		counts.incrementAndGet(slot);
+	}
+
+	public long getTotal()
+	{
+		return total.sum();
+	}
+
+	/**
+	 * Returns the events per second over the last minute (or since the meter was created, if that's less), not
+	 * counting the second in progress.
+	 */
+	public double getRatePerSecond()
+	{
+		long now = second();
+		long oldest = Math.max(now - WINDOW, startSecond);
+		long events = 0;
+		for (int slot = 0; slot < WINDOW; slot++)
+		{
+			long slotSecond = seconds.get(slot);
+			if (slotSecond >= oldest && slotSecond < now)
+			{
+				events += counts.get(slot);
+			}
+		}
+		long elapsed = now - oldest;
+		return (elapsed == 0) ? 0 : (double) events / elapsed;
+	}
+
+	private static long second()
+	{
+		return System.nanoTime() / NANOS_PER_SECOND;
+	}
+}
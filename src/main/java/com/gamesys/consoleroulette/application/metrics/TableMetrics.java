@@ -0,0 +1,303 @@
+package com.gamesys.consoleroulette.application.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+
+/**
+ * The measurements of one table: how long rounds take to settle and report, and how many bets come in, how many are
+ * turned away and why, and how long each takes. The game thread and the bet intakes record into it without locks or
+ * garbage; operators read it over JMX.
+ * 
+ * @author Andreas
+ *
+ */
+public class TableMetrics implements TableMetricsMXBean
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(TableMetrics.class);
+
+	private static final String DOMAIN = "com.gamesys.consoleroulette";
+
+	private static final double NANOS_PER_MICRO = 1000.0;
+
+	private final LongAdder rounds = new LongAdder();
+
+	private final LatencyHistogram settlement = new LatencyHistogram();
+
+	private final LatencyHistogram roundLatency = new LatencyHistogram();
+
+	private final LatencyHistogram betLatency = new LatencyHistogram();
+
+	private final RateMeter accepted = new RateMeter();
+
+	private final RateMeter rejected = new RateMeter();
+
+	// Liability of each number in the game in progress, from the game. Nothing until the game is set.
+	private volatile Supplier<long[]> liabilities = () -> new long[0];
+
+	// Bets by GameBetMonitor.placeBet result.
+	private final AtomicLongArray betsByResult = new AtomicLongArray(GameBetMonitor.PLACE_RESULTS);
+
+	/**
+	 * Records a round.
+	 * 
+	 * @param settlementNanos time taken to settle the book
+	 * @param latencyNanos from the winning number to the last result reported
+	 */
+	public void roundPlayed(long settlementNanos, long latencyNanos)
+	{
+		rounds.increment();
+		settlement.record(settlementNanos);
+		roundLatency.record(latencyNanos);
+	}
+
+	/**
+	 * Records a bet line.
+	 * 
+	 * @param placeResult GameBetMonitor.ACCEPTED, TOO_MANY_BETS, OVER_LIABILITY or a BetLineParser code
+	 * @param latencyNanos from the line read to the bet recorded or rejected
+	 */
+	public void betPlaced(int placeResult, long latencyNanos)
+	{
+		betsByResult.incrementAndGet(placeResult);
+		if (placeResult == GameBetMonitor.ACCEPTED)
+		{
+			accepted.mark();
+		}
+		else
+		{
+			rejected.mark();
+		}
+		betLatency.record(latencyNanos);
+	}
+
+	/**
+	 * Sets where the liabilities of the game in progress are read from.
+	 * 
+	 * @param liabilities
+	 */
+	public void setLiabilities(Supplier<long[]> liabilities)
+	{
+		this.liabilities = liabilities;
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server, for jconsole and the like. A failure is logged, the table
+	 * works without.
+	 * 
+	 * @param tableName
+	 * @return the name registered under, or null if it couldn't be
+	 */
+	public ObjectName register(String tableName)
+	{
+		try
+		{
+			ObjectName name = objectName(tableName);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(name))
+			{
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+			return name;
+		}
+		catch (JMException e)
+		{
+			log.warn("Could not register the metrics of table " + tableName + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Removes the metrics of a table from the platform MBean server.
+	 * 
+	 * @param tableName
+	 */
+	public static void unregister(String tableName)
+	{
+		try
+		{
+			ObjectName name = objectName(tableName);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(name))
+			{
+				server.unregisterMBean(name);
+			}
+		}
+		catch (JMException e)
+		{
+			log.warn("Could not unregister the metrics of table " + tableName + ": " + e.getMessage());
+		}
+	}
+
+	private static ObjectName objectName(String tableName) throws JMException
+	{
+		return new ObjectName(DOMAIN + ":type=Table,name=" + ObjectName.quote(tableName));
+	}
+
+	@Override
+	public long getRoundsPlayed()
+	{
+		return rounds.sum();
+	}
+
+	@Override
+	public double getSettlementMeanMicros()
+	{
+		return settlement.getMean() / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public long getSettlement50thPercentileMicros()
+	{
+		return micros(settlement.getValueAtPercentile(50));
+	}
+
+	@Override
+	public long getSettlement99thPercentileMicros()
+	{
+		return micros(settlement.getValueAtPercentile(99));
+	}
+
+	@Override
+	public long getSettlement999thPercentileMicros()
+	{
+		return micros(settlement.getValueAtPercentile(99.9));
+	}
+
+	@Override
+	public long getSettlementMaxMicros()
+	{
+		return micros(settlement.getMax());
+	}
+
+	@Override
+	public double getRoundLatencyMeanMicros()
+	{
+		return roundLatency.getMean() / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public long getRoundLatency50thPercentileMicros()
+	{
+		return micros(roundLatency.getValueAtPercentile(50));
+	}
+
+	@Override
+	public long getRoundLatency99thPercentileMicros()
+	{
+		return micros(roundLatency.getValueAtPercentile(99));
+	}
+
+	@Override
+	public long getRoundLatency999thPercentileMicros()
+	{
+		return micros(roundLatency.getValueAtPercentile(99.9));
+	}
+
+	@Override
+	public long getRoundLatencyMaxMicros()
+	{
+		return micros(roundLatency.getMax());
+	}
+
+	@Override
+	public long getBetsAccepted()
+	{
+		return accepted.getTotal();
+	}
+
+	@Override
+	public long getBetsRejected()
+	{
+		return rejected.getTotal();
+	}
+
+	@Override
+	public double getBetsAcceptedPerSecond()
+	{
+		return accepted.getRatePerSecond();
+	}
+
+	@Override
+	public double getBetsRejectedPerSecond()
+	{
+		return rejected.getRatePerSecond();
+	}
+
+	@Override
+	public Map<String, Long> getBetsRejectedByReason()
+	{
+		Map<String, Long> byReason = new LinkedHashMap<String, Long>();
+		for (int result = 0; result < GameBetMonitor.PLACE_RESULTS; result++)
+		{
+			if (result != GameBetMonitor.ACCEPTED)
+			{
+				byReason.put(GameBetMonitor.resultName(result), betsByResult.get(result));
+			}
+		}
+		return byReason;
+	}
+
+	@Override
+	public double getBetLatencyMeanMicros()
+	{
+		return betLatency.getMean() / NANOS_PER_MICRO;
+	}
+
+	@Override
+	public long getBetLatency50thPercentileMicros()
+	{
+		return micros(betLatency.getValueAtPercentile(50));
+	}
+
+	@Override
+	public long getBetLatency99thPercentileMicros()
+	{
+		return micros(betLatency.getValueAtPercentile(99));
+	}
+
+	@Override
+	public long getBetLatency999thPercentileMicros()
+	{
+		return micros(betLatency.getValueAtPercentile(99.9));
+	}
+
+	@Override
+	public long getBetLatencyMaxMicros()
+	{
+		return micros(betLatency.getMax());
+	}
+
+	@Override
+	public long[] getLiabilityByNumber()
+	{
+		return liabilities.get();
+	}
+
+	@Override
+	public void resetLatencies()
+	{
+		settlement.reset();
+		roundLatency.reset();
+		betLatency.reset();
+	}
+
+	private static long micros(long nanos)
+	{
+		return nanos / 1000;
+	}
+}
@@ -0,0 +1,67 @@
+package com.gamesys.consoleroulette.application.metrics;
+
+import java.util.Map;
+
+/**
+ * What a table reports over JMX (i.e. to jconsole), under com.gamesys.consoleroulette:type=Table,name=<table>.
+ * Durations are in microseconds and percentiles are since the start or the last reset.
+ * 
+ * @author Andreas
+ *
+ */
+public interface TableMetricsMXBean
+{
+	long getRoundsPlayed();
+
+	// Settling the book of a round: from the book taken to the last bet settled.
+	double getSettlementMeanMicros();
+
+	long getSettlement50thPercentileMicros();
+
+	long getSettlement99thPercentileMicros();
+
+	long getSettlement999thPercentileMicros();
+
+	long getSettlementMaxMicros();
+
+	// From the winning number generated to the last result handed to the reporter.
+	double getRoundLatencyMeanMicros();
+
+	long getRoundLatency50thPercentileMicros();
+
+	long getRoundLatency99thPercentileMicros();
+
+	long getRoundLatency999thPercentileMicros();
+
+	long getRoundLatencyMaxMicros();
+
+	long getBetsAccepted();
+
+	long getBetsRejected();
+
+	double getBetsAcceptedPerSecond();
+
+	double getBetsRejectedPerSecond();
+
+	// Rejected bets by reason, since the start.
+	Map<String, Long> getBetsRejectedByReason();
+
+	// From the bet line read to the bet recorded (or rejected).
+	double getBetLatencyMeanMicros();
+
+	long getBetLatency50thPercentileMicros();
+
+	long getBetLatency99thPercentileMicros();
+
+	long getBetLatency999thPercentileMicros();
+
+	long getBetLatencyMaxMicros();
+
+	// What the house owes if each number wins the game in progress, in pence, indexed by the number.
+	long[] getLiabilityByNumber();
+
+	/**
+	 * Starts the latency histograms over. Counters and rates carry on.
+	 */
+	void resetLatencies();
+}
@@ -0,0 +1,122 @@
+package com.gamesys.consoleroulette.application.random;
+
+/**
+ * Pearson's chi-square test of how evenly a source spreads its numbers: the statistic of the counts of every number
+ * against the same expected count for all, and the probability of a statistic at least that large from a fair source.
+ * A p-value below 0.001 or so means the numbers are not uniform; one very close to 1 that they are suspiciously even.
+ * 
+ * @author Andreas
+ *
+ */
+public final class ChiSquare
+{
+	// Iterations and precision of the incomplete gamma function.
+	private static final int MAX_ITERATIONS = 1000;
+
+	private static final double EPSILON = 1e-15;
+
+	private ChiSquare()
+	{
+	}
+
+	/**
+	 * Returns the chi-square statistic of counts that should all be the same.
+	 * 
+	 * @param observed how many times every number came up
+	 */
+	public static double statistic(long[] observed)
+	{
+		long total = 0;
+		for (long count : observed)
+		{
+			total += count;
+		}
+		double expected = (double) total / observed.length;
+
+		double statistic = 0;
+		for (long count : observed)
+		{
+			double difference = count - expected;
+			statistic += difference * difference / expected;
+		}
+		return statistic;
+	}
+
+	/**
+	 * Returns the probability of a statistic at least this large from a fair source.
+	 * 
+	 * @param statistic
+	 * @param degreesOfFreedom the count of numbers minus one
+	 */
+	public static double pValue(double statistic, int degreesOfFreedom)
+	{
+		return upperIncompleteGamma(degreesOfFreedom / 2.0, statistic / 2.0);
+	}
+
+	/**
+	 * Regularized upper incomplete gamma function Q(a, x), by its series below a + 1 and its continued fraction above.
+	 */
+	private static double upperIncompleteGamma(double a, double x)
+	{
+		if (x <= 0)
+		{
+			return 1;
+		}
+		double logPrefix = a * Math.log(x) - x - logGamma(a);
+
+		if (x < a + 1)
+		{
+			double term = 1 / a;
+			double sum = term;
+			for (int n = 1; n < MAX_ITERATIONS && Math.abs(term) > Math.abs(sum) * EPSILON; n++)
+			{
+				term *= x / (a + n);
+				sum += term;
+			}
+			return 1 - sum * Math.exp(logPrefix);
+		}
+
+		// Lentz's method.
+		double tiny = 1e-300;
+		double b = x + 1 - a;
+		double c = 1 / tiny;
+		double d = 1 / b;
+		double fraction = d;
+		for (int n = 1; n < MAX_ITERATIONS; n++)
+		{
+			double an = -n * (n - a);
+			b += 2;
+			d = an * d + b;
+			d = Math.abs(d) < tiny ? tiny : d;
+			c = b + an / c;
+			c = Math.abs(c) < tiny ? tiny : c;
+			d = 1 / d;
+			double delta = d * c;
+			fraction *= delta;
+			if (Math.abs(delta - 1) < EPSILON)
+			{
+				break;
+			}
+		}
+		return fraction * Math.exp(logPrefix);
+	}
+
+	/**
+	 * Logarithm of the gamma function, Lanczos approximation.
+	 */
+	private static double logGamma(double x)
+	{
+		double[] coefficients =
+		{ 76.18009172947146, -86.50532032941677, 24.01409824083091, -1.231739572450155, 0.1208650973866179e-2,
+				-0.5395239384953e-5 };
+		double y = x;
+		double tmp = x + 5.5;
+		tmp -= (x + 0.5) * Math.log(tmp);
+		double series = 1.000000000190015;
+		for (double coefficient : coefficients)
+		{
+			series += coefficient / ++y;
+		}
+		return -tmp + Math.log(2.5066282746310005 * series / x);
+	}
+}
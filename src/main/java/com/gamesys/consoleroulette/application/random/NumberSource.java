@@ -0,0 +1,22 @@
+package com.gamesys.consoleroulette.application.random;
+
+/**
+ * Where the winning numbers of a table come from. Every table has a source of its own and draws from it on one thread
+ * at a time (the game settles its rounds one after the other), so sources don't need to be thread safe and tables
+ * never contend on a shared generator.
+ * 
+ * @author Andreas
+ *
+ */
+@FunctionalInterface
+public interface NumberSource
+{
+	/**
+	 * Draws a number between the two bounds, both inclusive, every number as likely as the others.
+	 * 
+	 * @param lowerBound
+	 * @param upperBound
+	 * @return the number drawn
+	 */
+	int nextNumber(int lowerBound, int upperBound);
+}
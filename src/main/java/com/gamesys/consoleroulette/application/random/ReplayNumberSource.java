@@ -0,0 +1,63 @@
+package com.gamesys.consoleroulette.application.random;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic source: the same seed always gives the same numbers, so a sequence of games can be played again
+ * exactly, i.e. to check a simulation or the results of an audit. Counts the numbers drawn, and can skip ahead, so a
+ * replay can be picked up at any spin.
+ * 
+ * @author Andreas
+ *
+ */
+public class ReplayNumberSource implements NumberSource
+{
+	private final long seed;
+
+	private final SplittableRandom random;
+
+	// Numbers drawn so far, skipped ones included.
+	private long spins;
+
+	/**
+	 * @param seed
+	 */
+	public ReplayNumberSource(long seed)
+	{
+		this.seed = seed;
+		this.random = new SplittableRandom(seed);
+	}
+
+	@Override
+	public int nextNumber(int lowerBound, int upperBound)
+	{
+		spins++;
+		return random.nextInt(lowerBound, upperBound + 1);
+	}
+
+	/**
+	 * Draws and throws away numbers until the given number of spins have been drawn, so the next number is the one of
+	 * that spin. The bounds must be the ones the numbers are drawn with.
+	 * 
+	 * @param spin spins already drawn, i.e. from a recording
+	 * @param lowerBound
+	 * @param upperBound
+	 */
+	public void skipTo(long spin, int lowerBound, int upperBound)
+	{
+		while (spins < spin)
+		{
+			nextNumber(lowerBound, upperBound);
+		}
+	}
+
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	public long getSpins()
+	{
+		return spins;
+	}
+}
@@ -0,0 +1,91 @@
+package com.gamesys.consoleroulette.application.random;
+
+import java.security.SecureRandom;
+
+/**
+ * Source backed by a SecureRandom, for tables whose numbers have to stand up to an audit. Asking SecureRandom for a few
+ * bytes at a time is slow (every call goes through its lock and, for some providers, the operating system), so the
+ * bytes are fetched a block at a time and the numbers cut out of the block.
+ * <p>
+ * For up to 256 numbers (a roulette wheel has 37) a single byte is enough: bytes at or above the largest multiple of
+ * the count of numbers are thrown away and the rest taken modulo the count, so every number is exactly as likely. For
+ * 37 numbers that is 222 of the 256 bytes kept, so a spin costs about 1.15 bytes. Wider ranges take 31 bits at a time
+ * the same way.
+ * 
+ * @author Andreas
+ *
+ */
+public class SecureNumberSource implements NumberSource
+{
+	// Bytes fetched from the SecureRandom at a time.
+	public static final int DEFAULT_BLOCK_SIZE = 8192;
+
+	private final SecureRandom random;
+
+	private final byte[] block;
+
+	// Next byte of the block to use. The block is refilled once it reaches the end.
+	private int position;
+
+	public SecureNumberSource()
+	{
+		this(new SecureRandom(), DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * @param random
+	 * @param blockSize bytes fetched at a time
+	 */
+	public SecureNumberSource(SecureRandom random, int blockSize)
+	{
+		if (blockSize < 4)
+		{
+			throw new IllegalArgumentException("The block must hold at least 4 bytes.");
+		}
+		this.random = random;
+		this.block = new byte[blockSize];
+		this.position = blockSize;
+	}
+
+	@Override
+	public int nextNumber(int lowerBound, int upperBound)
+	{
+		long count = (long) upperBound - lowerBound + 1;
+		if (count <= 256)
+		{
+			int limit = (int) (256 - 256 % count);
+			while (true)
+			{
+				int b = nextByte();
+				if (b < limit)
+				{
+					return lowerBound + (int) (b % count);
+				}
+			}
+		}
+
+		if (count > 1L << 31)
+		{
+			throw new IllegalArgumentException("No more than 2^31 numbers can be drawn from.");
+		}
+		long limit = (1L << 31) - (1L << 31) % count;
+		while (true)
+		{
+			int bits = ((nextByte() << 24) | (nextByte() << 16) | (nextByte() << 8) | nextByte()) & Integer.MAX_VALUE;
+			if (bits < limit)
+			{
+				return (int) (lowerBound + bits % count);
+			}
+		}
+	}
+
+	private int nextByte()
+	{
+		if (position == block.length)
+		{
+			random.nextBytes(block);
+			position = 0;
+		}
+		return block[position++] & 0xFF;
+	}
+}
@@ -0,0 +1,49 @@
+package com.gamesys.consoleroulette.application.random;
+
+import java.util.SplittableRandom;
+
+/**
+ * Fast source for tables that don't need a cryptographic generator. SplittableRandom keeps its state in a plain field,
+ * so there is no compare-and-set on every draw like java.util.Random does, and split gives every table a generator of
+ * its own that is statistically independent of the others.
+ * 
+ * @author Andreas
+ *
+ */
+public class SplittableNumberSource implements NumberSource
+{
+	private final SplittableRandom random;
+
+	public SplittableNumberSource()
+	{
+		this(new SplittableRandom());
+	}
+
+	/**
+	 * @param seed the same seed gives the same numbers
+	 */
+	public SplittableNumberSource(long seed)
+	{
+		this(new SplittableRandom(seed));
+	}
+
+	private SplittableNumberSource(SplittableRandom random)
+	{
+		this.random = random;
+	}
+
+	@Override
+	public int nextNumber(int lowerBound, int upperBound)
+	{
+		return random.nextInt(lowerBound, upperBound + 1);
+	}
+
+	/**
+	 * Returns a new source for another table. Not thread safe, like drawing numbers, so a source shared for splitting
+	 * has to be locked by whoever splits it.
+	 */
+	public SplittableNumberSource split()
+	{
+		return new SplittableNumberSource(random.split());
+	}
+}
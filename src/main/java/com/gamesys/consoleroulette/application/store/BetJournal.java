@@ -0,0 +1,670 @@
+package com.gamesys.consoleroulette.application.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+
+/**
+ * Append-only binary journal of accepted and settled bets, so a crash doesn't lose the totals of the session.
+ * 
+ * Appending only copies the record into a buffer in memory; nothing waits for the disk. The journal thread writes the
+ * buffer out and forces it to disk in one go (a group commit) at the end of every round, when commit() is called, or
+ * every commit interval, whichever comes first. A bet is therefore on disk at most one commit interval after it was
+ * accepted.
+ * 
+ * Snapshots (see LedgerSnapshotStore) are taken at a position of the journal, the cutoff of the last game they settled,
+ * and only what comes after it is replayed on top of them.
+ * 
+ * Every record is its length, a CRC32C of its contents and the contents. Replay stops at the first record that is cut
+ * short or doesn't match its checksum, which is what a crash in the middle of a write leaves behind, and opening the
+ * journal cuts that tail off before appending to it.
+ * 
+ * If the journal can't be written, it fails: nothing more is appended (bets go on unjournaled rather than piling up in
+ * memory) and whoever waits for the disk is woken up with the error.
+ * 
+ * @author Andreas
+ *
+ */
+public class BetJournal implements Runnable
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(BetJournal.class);
+
+	// A new session (run of the game). A session carries on the game ids of the snapshot or ledger it started from,
+	// or starts them at 0 without one, so the game an earlier session crashed in can come again: stakes left pending
+	// by an earlier session are void.
+	private static final byte SESSION = 1;
+
+	// A bet was accepted: game id, choice ordinal (unsigned byte), amount, player.
+	private static final byte ACCEPT = 2;
+
+	// Largest choice ordinal the unsigned byte of an ACCEPT holds.
+	private static final int MAX_CHOICE = 0xFF;
+
+	// A bet was settled: game id, winning number, winnings, player.
+	private static final byte SETTLE = 3;
+
+	// Length and checksum in front of every record.
+	private static final int HEADER_SIZE = 8;
+
+	// Largest record replay will believe, anything bigger is a torn write.
+	private static final int MAX_RECORD = 1024;
+
+	// Longest player name written, in bytes.
+	private static final int MAX_NAME = MAX_RECORD - 32;
+
+	// Initial size of the append buffers. They grow if a commit interval brings more.
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final FileChannel channel;
+
+	private final long commitIntervalMillis;
+
+	private final CRC32C checksum = new CRC32C();
+
+	// Records appended since the last write. Guarded by this.
+	private ByteBuffer appending = ByteBuffer.allocate(BUFFER_SIZE);
+
+	// Records being written. Guarded by flushLock.
+	private ByteBuffer writing = ByteBuffer.allocate(BUFFER_SIZE);
+
+	// Held while writing, so the journal thread and close() don't write at the same time.
+	private final Object flushLock = new Object();
+
+	// Set by commit() to write without waiting for the interval. Guarded by this.
+	private boolean commitRequested;
+
+	// Length of the journal with everything appended so far, written or not. Guarded by this.
+	private long appended;
+
+	// Length of the journal that is forced to disk. Guarded by this.
+	private long durable;
+
+	private volatile boolean closed;
+
+	// Why the journal could not be written, null while it's fine. Guarded by this.
+	private IOException failure;
+
+	/**
+	 * Opens the journal for appending, creating it if needed, and starts a new session in it. Run it on a thread of
+	 * its own to get anything written.
+	 * 
+	 * @param file
+	 * @param commitIntervalMillis longest time between writes to disk
+	 * @throws IOException
+	 */
+	public BetJournal(Path file, long commitIntervalMillis) throws IOException
+	{
+		this.commitIntervalMillis = commitIntervalMillis;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try
+		{
+			// Whatever a crash left half written goes.
+			long end = validLength(channel);
+			if (end < channel.size())
+			{
+				log.warn("Dropping " + (channel.size() - end) + " bytes of a torn write at the end of the journal.");
+				channel.truncate(end);
+			}
+			channel.position(end);
+			appended = end;
+			durable = end;
+		}
+		catch (IOException e)
+		{
+			channel.close();
+			throw e;
+		}
+
+		synchronized (this)
+		{
+			int start = begin(SESSION);
+			appending.putLong(System.currentTimeMillis());
+			end(start);
+			commitRequested = true;
+		}
+	}
+
+	/**
+	 * Journals an accepted bet. Never waits for the disk.
+	 * 
+	 * @param gameId
+	 * @param userName
+	 * @param choice ordinal of the RouletteRange bet on, at most MAX_CHOICE
+	 * @param amount in pence
+	 * @throws IllegalArgumentException if the choice doesn't fit the record
+	 */
+	public synchronized void betAccepted(long gameId, String userName, int choice, long amount)
+	{
+		if (choice < 0 || choice > MAX_CHOICE)
+		{
+			throw new IllegalArgumentException("Choice " + choice + " doesn't fit a journal record.");
+		}
+		if (failure != null)
+		{
+			return;
+		}
+		int start = begin(ACCEPT);
+		appending.putLong(gameId);
+		appending.put((byte) choice);
+		appending.putLong(amount);
+		putName(userName);
+		end(start);
+	}
+
+	/**
+	 * Journals a settled bet. Never waits for the disk.
+	 * 
+	 * @param gameId
+	 * @param userName
+	 * @param winningNumber
+	 * @param winnings in pence, zero for a lost bet
+	 */
+	public synchronized void betSettled(long gameId, String userName, int winningNumber, long winnings)
+	{
+		if (failure != null)
+		{
+			return;
+		}
+		int start = begin(SETTLE);
+		appending.putLong(gameId);
+		appending.put((byte) winningNumber);
+		appending.putLong(winnings);
+		putName(userName);
+		end(start);
+	}
+
+	/**
+	 * Asks for everything appended so far to be written and forced to disk now instead of at the end of the
+	 * interval. Doesn't wait for it.
+	 */
+	public synchronized void commit()
+	{
+		commitRequested = true;
+		notifyAll();
+	}
+
+	/**
+	 * Returns the length of the journal with everything appended so far. Snapshots stamp it at the cutoff of a game.
+	 */
+	public synchronized long position()
+	{
+		return appended;
+	}
+
+	/**
+	 * Whether the journal could not be written and stopped journaling.
+	 */
+	public synchronized boolean isFailed()
+	{
+		return failure != null;
+	}
+
+	/**
+	 * Waits until the journal is on disk up to a position. The journal thread must be running.
+	 * 
+	 * @param position
+	 * @throws IOException if the journal failed before getting there
+	 * @throws InterruptedException
+	 */
+	public synchronized void awaitDurable(long position) throws IOException, InterruptedException
+	{
+		while (durable < position && !closed && failure == null)
+		{
+			commitRequested = true;
+			notifyAll();
+			wait(commitIntervalMillis);
+		}
+		if (durable < position && failure != null)
+		{
+			throw new IOException("The bet journal failed before position " + position + ".", failure);
+		}
+	}
+
+	/**
+	 * Writes the journal to disk every commit interval, or sooner when asked, until it's closed.
+	 */
+	public void run()
+	{
+		try
+		{
+			while (!closed)
+			{
+				synchronized (this)
+				{
+					if (!commitRequested)
+					{
+						wait(commitIntervalMillis);
+					}
+				}
+				flush();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (IOException e)
+		{
+			if (!closed)
+			{
+				log.error("Could not write the bet journal, bets are no longer journaled: " + e.getMessage());
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Stops journaling, drops what wasn't written and wakes up whoever waits for the disk.
+	 */
+	private synchronized void fail(IOException e)
+	{
+		failure = e;
+		appending.clear();
+		notifyAll();
+	}
+
+	/**
+	 * Writes and forces what's left and closes the journal. Call it once the journal thread is done, or instead of
+	 * running one.
+	 */
+	public void close() throws IOException
+	{
+		closed = true;
+		synchronized (this)
+		{
+			notifyAll();
+		}
+		try
+		{
+			// A failed journal has nothing left that could be written.
+			if (!isFailed())
+			{
+				flush();
+			}
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes the records appended so far and forces them to disk. Appending goes on meanwhile, into the other buffer.
+	 */
+	private void flush() throws IOException
+	{
+		synchronized (flushLock)
+		{
+			// Swap the buffers, so appending goes on while we write.
+			synchronized (this)
+			{
+				ByteBuffer appended = appending;
+				appending = writing;
+				writing = appended;
+				commitRequested = false;
+			}
+
+			writing.flip();
+			int written = writing.remaining();
+			if (written > 0)
+			{
+				while (writing.hasRemaining())
+				{
+					channel.write(writing);
+				}
+				channel.force(false);
+			}
+			writing.clear();
+
+			synchronized (this)
+			{
+				durable += written;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Applies a journal to the players: every bet that was settled adds to the total bet and total win of its player.
+	 * Bets accepted but never settled (the game was cut short by a crash) are void and don't count. Records of players
+	 * that aren't in the map are skipped.
+	 * 
+	 * @param file
+	 * @param players as loaded from the player file
+	 * @return the number of bets replayed
+	 * @throws IOException
+	 */
+	public static int replay(Path file, Map<String, Player> players) throws IOException
+	{
+		return replay(file, players::get, 0, 0);
+	}
+
+	/**
+	 * Applies a whole journal to players that are looked up one by one, i.e. loaded from a PlayerDirectory as they
+	 * turn up in the journal.
+	 * 
+	 * @param file
+	 * @param players finds a player by name, null if there is none
+	 * @return the number of bets replayed
+	 * @throws IOException
+	 */
+	public static int replay(Path file, Function<String, Player> players) throws IOException
+	{
+		return replay(file, players, 0, 0);
+	}
+
+	/**
+	 * Applies the part of a journal that came after a snapshot to the players of the snapshot. The snapshot has every
+	 * game before nextGameId settled and nothing of the games after, and was taken at the cutoff of the last game it
+	 * settled: the records of that game (and any before) that come after it are already in the snapshot and are
+	 * skipped, up to the next session. A later session was started after the snapshot was taken, so none of its
+	 * records are in it, whatever their game ids.
+	 * 
+	 * @param file
+	 * @param players as loaded from the snapshot
+	 * @param from length of the journal at the cutoff of the last game of the snapshot
+	 * @param nextGameId first game the snapshot has nothing of
+	 * @return the number of bets replayed
+	 * @throws IOException
+	 */
+	public static int replay(Path file, Map<String, Player> players, long from, long nextGameId) throws IOException
+	{
+		return replay(file, players::get, from, nextGameId);
+	}
+
+	/**
+	 * Applies the part of a journal that came after a snapshot to players that are looked up one by one, see above.
+	 */
+	static int replay(Path file, Function<String, Player> players, long from, long nextGameId) throws IOException
+	{
+		if (!Files.exists(file))
+		{
+			return 0;
+		}
+
+		int replayed = 0;
+		int unknown = 0;
+		int voided = 0;
+
+		// Stakes accepted and not settled yet, by pendingKey.
+		Map<String, Long> pending = new HashMap<String, Long>();
+
+		// Games before this one are already in the totals, until the session ends.
+		long skipBefore = nextGameId;
+
+		// A player can have several bets on a game, each with its own SETTLE. The first one takes the stakes of all
+		// of them, the rest only bring their winnings. The SETTLEs of a game are all together, so only the players of
+		// the game being settled are kept.
+		long settlingGameId = -1;
+		Set<String> settling = new HashSet<String>();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			JournalReader reader = new JournalReader(channel);
+			reader.position = from;
+			ByteBuffer record;
+			while ((record = reader.next()) != null)
+			{
+				byte type = record.get();
+				if (type == SESSION)
+				{
+					voided += pending.size();
+					pending.clear();
+					settling.clear();
+					settlingGameId = -1;
+					skipBefore = 0;
+					continue;
+				}
+
+				// The unsigned byte after the game id is the choice or the winning number, neither of which matters
+				// here.
+				long gameId = record.getLong();
+				if (gameId < skipBefore)
+				{
+					continue;
+				}
+				record.get();
+				long amount = record.getLong();
+				String userName = getName(record);
+				String key = pendingKey(userName, gameId);
+
+				if (type == ACCEPT)
+				{
+					pending.merge(key, amount, Long::sum);
+				}
+				else if (type == SETTLE)
+				{
+					if (gameId != settlingGameId)
+					{
+						settlingGameId = gameId;
+						settling.clear();
+					}
+					Long stake = pending.remove(key);
+					if (stake != null)
+					{
+						settling.add(key);
+					}
+					else if (!settling.contains(key))
+					{
+						continue;
+					}
+					Player player = players.apply(userName);
+					if (player == null)
+					{
+						unknown++;
+						continue;
+					}
+					player.addSettledBet((stake != null) ? stake : 0, amount);
+					replayed++;
+				}
+			}
+			if (reader.torn())
+			{
+				log.warn("The journal ends in a torn write, replayed up to it.");
+			}
+		}
+		voided += pending.size();
+
+		if (unknown > 0)
+		{
+			log.warn(unknown + " journaled bets were of players that are not in the player file.");
+		}
+		if (voided > 0)
+		{
+			log.info(voided + " journaled stakes were never settled and don't count.");
+		}
+		return replayed;
+	}
+
+	/**
+	 * Key of a stake waiting to be settled.
+	 */
+	private static String pendingKey(String userName, long gameId)
+	{
+		return userName + '#' + gameId;
+	}
+
+	/**
+	 * Returns how far the journal is made of whole records.
+	 */
+	private static long validLength(FileChannel channel) throws IOException
+	{
+		JournalReader reader = new JournalReader(channel);
+		while (reader.next() != null)
+		{
+		}
+		return reader.position;
+	}
+
+	/**
+	 * Starts a record, leaving room for the header.
+	 * 
+	 * @return where the record starts
+	 */
+	private int begin(byte type)
+	{
+		if (appending.remaining() < MAX_RECORD)
+		{
+			// More than a buffer between two writes, the journal thread is behind. Make room rather than wait.
+			ByteBuffer bigger = ByteBuffer.allocate(appending.capacity() * 2);
+			appending.flip();
+			bigger.put(appending);
+			appending = bigger;
+		}
+		int start = appending.position();
+		appending.position(start + HEADER_SIZE);
+		appending.put(type);
+		return start;
+	}
+
+	/**
+	 * Fills in the header of the record.
+	 */
+	private void end(int start)
+	{
+		int length = appending.position() - start - HEADER_SIZE;
+		checksum.reset();
+		checksum.update(appending.array(), start + HEADER_SIZE, length);
+		appending.putInt(start, length);
+		appending.putInt(start + Integer.BYTES, (int) checksum.getValue());
+		appended += HEADER_SIZE + length;
+	}
+
+	/**
+	 * Writes the name as its length and its UTF-8 bytes. Names are nearly always ASCII, which is written as is.
+	 */
+	private void putName(String userName)
+	{
+		int lengthAt = appending.position();
+		appending.position(lengthAt + Short.BYTES);
+		int length = userName.length();
+		for (int i = 0; i < length; i++)
+		{
+			char c = userName.charAt(i);
+			if (c >= 0x80)
+			{
+				// Not ASCII, do it the long way.
+				appending.position(lengthAt + Short.BYTES);
+				byte[] bytes = userName.getBytes(StandardCharsets.UTF_8);
+				length = Math.min(bytes.length, MAX_NAME);
+				appending.put(bytes, 0, length);
+				break;
+			}
+			if (i == MAX_NAME)
+			{
+				length = MAX_NAME;
+				break;
+			}
+			appending.put((byte) c);
+		}
+		appending.putShort(lengthAt, (short) length);
+	}
+
+	private static String getName(ByteBuffer record)
+	{
+		int length = record.getShort();
+		String userName = new String(record.array(), record.arrayOffset() + record.position(), length,
+				StandardCharsets.UTF_8);
+		record.position(record.position() + length);
+		return userName;
+	}
+
+	/**
+	 * Reads the whole records of a journal, one by one, from the start.
+	 */
+	private static final class JournalReader
+	{
+		private final FileChannel channel;
+
+		private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+		private final ByteBuffer record = ByteBuffer.allocate(MAX_RECORD);
+
+		private final CRC32C checksum = new CRC32C();
+
+		// End of the last whole record read.
+		private long position;
+
+		private boolean torn;
+
+		private JournalReader(FileChannel channel)
+		{
+			this.channel = channel;
+		}
+
+		/**
+		 * @return the contents of the next record, or null at the end of the journal or at a torn record
+		 */
+		private ByteBuffer next() throws IOException
+		{
+			header.clear();
+			if (!readFully(header, position))
+			{
+				torn = header.position() > 0;
+				return null;
+			}
+			header.flip();
+			int length = header.getInt();
+			int expected = header.getInt();
+			if (length <= 0 || length > MAX_RECORD)
+			{
+				torn = true;
+				return null;
+			}
+
+			record.clear();
+			record.limit(length);
+			if (!readFully(record, position + HEADER_SIZE))
+			{
+				torn = true;
+				return null;
+			}
+			checksum.reset();
+			checksum.update(record.array(), 0, length);
+			if ((int) checksum.getValue() != expected)
+			{
+				torn = true;
+				return null;
+			}
+
+			position += HEADER_SIZE + length;
+			record.flip();
+			return record;
+		}
+
+		private boolean torn()
+		{
+			return torn;
+		}
+
+		private boolean readFully(ByteBuffer buffer, long at) throws IOException
+		{
+			while (buffer.hasRemaining())
+			{
+				int read = channel.read(buffer, at + buffer.position());
+				if (read < 0)
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.gamesys.consoleroulette.application.store;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.RoundReporter;
+
+/**
+ * Journals every settled bet and commits the journal at the end of every round, then passes everything on to another
+ * reporter (i.e. the console).
+ * 
+ * @author Andreas
+ *
+ */
+public class JournalRoundReporter implements RoundReporter
+{
+	private final BetJournal journal;
+
+	private final RoundReporter next;
+
+	// Winning number of the round being settled. Only used from the thread playing the round.
+	private int winningNumber;
+
+	public JournalRoundReporter(BetJournal journal, RoundReporter next)
+	{
+		this.journal = journal;
+		this.next = next;
+	}
+
+	@Override
+	public void bettingClosed(long gameId)
+	{
+		next.bettingClosed(gameId);
+	}
+
+	@Override
+	public void roundStarted(long gameId, int winningNumber)
+	{
+		this.winningNumber = winningNumber;
+		next.roundStarted(gameId, winningNumber);
+	}
+
+	@Override
+	public void betSettled(Player player, long gameId, int choice, long amount, long winnings)
+	{
+		journal.betSettled(gameId, player.getUserName(), winningNumber, winnings);
+		next.betSettled(player, gameId, choice, amount, winnings);
+	}
+
+	@Override
+	public void roundFinished(long gameId, int betsSettled)
+	{
+		// One write and one fsync for the whole round.
+		if (betsSettled > 0)
+		{
+			journal.commit();
+		}
+		next.roundFinished(gameId, betsSettled);
+	}
+}
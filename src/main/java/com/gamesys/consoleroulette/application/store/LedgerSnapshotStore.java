@@ -0,0 +1,434 @@
+package com.gamesys.consoleroulette.application.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.bet.LedgerSnapshot;
+import com.gamesys.consoleroulette.application.bet.Player;
+
+/**
+ * Binary snapshots of the whole player ledger (names and totals), the game to carry on from and the position of the
+ * bet journal they go with, for a warm restart that doesn't parse the player file or replay the whole journal.
+ * 
+ * A snapshot is taken at a game boundary: at the end of a round, on the thread that plays the rounds, it captures the
+ * totals of the games settled so far, leaving out the stakes of the game taking bets. The journal position that goes
+ * with it is the one stamped at the cutoff of the round, before the first bet on the next game; replay skips whatever
+ * the settled games still wrote after it. Bets keep coming in meanwhile and nothing locks them out. Writing it out
+ * happens later on another thread. A snapshot is only put in place (renamed from a temporary file) once the journal is
+ * on disk up to where it was at the capture, so a snapshot is never ahead of its journal.
+ * 
+ * The file is a header, the players and a CRC32C of all of it. It's memory-mapped and read in one pass. A snapshot
+ * that fails its checksum is skipped for the one before it.
+ * 
+ * @author Andreas
+ *
+ */
+public class LedgerSnapshotStore
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(LedgerSnapshotStore.class);
+
+	private static final int MAGIC = 0x524C534E;
+
+	private static final int VERSION = 2;
+
+	// Magic, version, next game id, journal position and players.
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+
+	private static final int CHECKSUM_SIZE = 4;
+
+	private static final String PREFIX = "snapshot-";
+
+	private static final String SUFFIX = ".bin";
+
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	// Snapshots kept, the newest ones. Older ones are deleted as new ones are written.
+	private final int keep;
+
+	private final Path directory;
+
+	/**
+	 * @param directory where the snapshots are kept, created if needed
+	 * @param keep number of snapshots to keep, at least one
+	 */
+	public LedgerSnapshotStore(Path directory, int keep)
+	{
+		this.directory = directory;
+		this.keep = Math.max(keep, 1);
+	}
+
+	/**
+	 * Takes the totals of all the players as of the games settled so far. Call it between rounds, from the thread that
+	 * plays them, once the game before nextGameId is settled. Bets on nextGameId may come in all along; their stakes
+	 * are left out, player by player, and the journal has them all after the cutoff position.
+	 * 
+	 * @param players
+	 * @param nextGameId the game taking bets, the first one the snapshot has nothing of
+	 * @param cutoffPosition length of the journal at the cutoff of the game before nextGameId
+	 * @param journal
+	 * @return what to write
+	 */
+	public Capture capture(Collection<Player> players, long nextGameId, long cutoffPosition, BetJournal journal)
+	{
+		// Everything of the settled games is in the journal by now.
+		Capture capture = new Capture(players.size(), nextGameId, cutoffPosition, journal.position());
+		LedgerSnapshot totals = new LedgerSnapshot();
+		for (Player player : players)
+		{
+			player.getSettledTotals(nextGameId, totals);
+			capture.addPlayer(player.getUserName(), totals.getTotalBet(), totals.getTotalWin());
+		}
+		return capture;
+	}
+
+	/**
+	 * Writes a capture, once the journal is on disk as far as the capture goes, and deletes the oldest snapshots.
+	 * 
+	 * @param capture
+	 * @param journal
+	 * @return the snapshot written
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public Path write(Capture capture, BetJournal journal) throws IOException, InterruptedException
+	{
+		Files.createDirectories(directory);
+		Path snapshot = directory.resolve(String.format("%s%020d%s", PREFIX, capture.nextGameId, SUFFIX));
+		Path temporary = directory.resolve(snapshot.getFileName() + TEMPORARY_SUFFIX);
+
+		ByteBuffer buffer = capture.encode();
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			while (buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+
+		journal.awaitDurable(capture.capturedPosition);
+		Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		List<Path> snapshots = list();
+		for (int i = keep; i < snapshots.size(); i++)
+		{
+			Files.deleteIfExists(snapshots.get(i));
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Loads the newest snapshot that is whole.
+	 * 
+	 * @param historyDepth games each player keeps the bets and results of
+	 * @return the snapshot, or null if there is none
+	 * @throws IOException
+	 */
+	public Snapshot loadNewest(int historyDepth) throws IOException
+	{
+		PlayerMap players = new PlayerMap(historyDepth);
+		Snapshot snapshot = readNewest(players);
+		return (snapshot == null) ? null
+				: new Snapshot(snapshot.file, players.map, snapshot.nextGameId, snapshot.journalPosition);
+	}
+
+	/**
+	 * Reads the newest snapshot that is whole, handing its players over one at a time instead of loading them, i.e.
+	 * into a MappedLedger. A snapshot is only read once its checksum is checked, so the players are those of one whole
+	 * snapshot.
+	 * 
+	 * @param players takes the players as they are read
+	 * @return the snapshot, without players, or null if there is none
+	 * @throws IOException
+	 */
+	public Snapshot readNewest(PlayerSink players) throws IOException
+	{
+		for (Path file : list())
+		{
+			Snapshot snapshot = load(file, players);
+			if (snapshot != null)
+			{
+				return snapshot;
+			}
+			log.warn("Snapshot " + file.getFileName() + " is damaged, trying an older one.");
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the snapshots, newest first.
+	 */
+	private List<Path> list() throws IOException
+	{
+		List<Path> snapshots = new ArrayList<Path>();
+		if (!Files.isDirectory(directory))
+		{
+			return snapshots;
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX))
+		{
+			for (Path file : files)
+			{
+				snapshots.add(file);
+			}
+		}
+		// The game id is zero padded, so the names sort in game order.
+		Collections.sort(snapshots, Collections.reverseOrder());
+		return snapshots;
+	}
+
+	/**
+	 * @return the snapshot, or null if it's damaged
+	 */
+	private static Snapshot load(Path file, PlayerSink players) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			long size = channel.size();
+			if (size < HEADER_SIZE + CHECKSUM_SIZE || size > Integer.MAX_VALUE)
+			{
+				return null;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+			CRC32C checksum = new CRC32C();
+			ByteBuffer contents = buffer.duplicate();
+			contents.limit((int) size - CHECKSUM_SIZE);
+			checksum.update(contents);
+			if ((int) checksum.getValue() != buffer.getInt((int) size - CHECKSUM_SIZE))
+			{
+				return null;
+			}
+
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			{
+				return null;
+			}
+			long nextGameId = buffer.getLong();
+			long journalPosition = buffer.getLong();
+			int playerCount = buffer.getInt();
+
+			players.expect(playerCount);
+			byte[] name = new byte[256];
+			for (int i = 0; i < playerCount; i++)
+			{
+				int length = buffer.getShort();
+				if (length > name.length)
+				{
+					name = new byte[length];
+				}
+				buffer.get(name, 0, length);
+				String userName = new String(name, 0, length, StandardCharsets.UTF_8);
+				long totalBet = buffer.getLong();
+				long totalWin = buffer.getLong();
+				players.player(userName, totalBet, totalWin);
+			}
+
+			return new Snapshot(file, null, nextGameId, journalPosition);
+		}
+	}
+
+	/**
+	 * Takes the players of a snapshot as it's read.
+	 */
+	public interface PlayerSink
+	{
+		/**
+		 * Called once before the players.
+		 * 
+		 * @param players how many players the snapshot has
+		 */
+		default void expect(int players)
+		{
+		}
+
+		void player(String userName, long totalBet, long totalWin) throws IOException;
+	}
+
+	/**
+	 * Makes the players of a snapshot and puts them in a map.
+	 */
+	private static final class PlayerMap implements PlayerSink
+	{
+		private final int historyDepth;
+
+		private ConcurrentHashMap<String, Player> map;
+
+		private PlayerMap(int historyDepth)
+		{
+			this.historyDepth = historyDepth;
+		}
+
+		@Override
+		public void expect(int players)
+		{
+			map = new ConcurrentHashMap<String, Player>(Math.max(players, 2));
+		}
+
+		@Override
+		public void player(String userName, long totalBet, long totalWin)
+		{
+			map.put(userName, new Player(userName, totalBet, totalWin, historyDepth));
+		}
+	}
+
+	/**
+	 * The ledger as captured, waiting to be written.
+	 */
+	public static final class Capture
+	{
+		private final long nextGameId;
+
+		// Where replay starts, the cutoff of the last game settled.
+		private final long journalPosition;
+
+		// How far the journal went at the capture. The snapshot waits for it to be on disk.
+		private final long capturedPosition;
+
+		private final List<byte[]> names;
+
+		private final long[] totalBets;
+
+		private final long[] totalWins;
+
+		private Capture(int players, long nextGameId, long journalPosition, long capturedPosition)
+		{
+			this.nextGameId = nextGameId;
+			this.journalPosition = journalPosition;
+			this.capturedPosition = capturedPosition;
+			this.names = new ArrayList<byte[]>(players);
+			this.totalBets = new long[players];
+			this.totalWins = new long[players];
+		}
+
+		private void addPlayer(String userName, long totalBet, long totalWin)
+		{
+			int i = names.size();
+			names.add(userName.getBytes(StandardCharsets.UTF_8));
+			totalBets[i] = totalBet;
+			totalWins[i] = totalWin;
+		}
+
+		public long getNextGameId()
+		{
+			return nextGameId;
+		}
+
+		private ByteBuffer encode()
+		{
+			long size = HEADER_SIZE + CHECKSUM_SIZE;
+			for (byte[] name : names)
+			{
+				size += Short.BYTES + name.length + 2 * Long.BYTES;
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putLong(nextGameId);
+			buffer.putLong(journalPosition);
+			buffer.putInt(names.size());
+			for (int i = 0; i < names.size(); i++)
+			{
+				buffer.putShort((short) names.get(i).length);
+				buffer.put(names.get(i));
+				buffer.putLong(totalBets[i]);
+				buffer.putLong(totalWins[i]);
+			}
+
+			CRC32C checksum = new CRC32C();
+			checksum.update(buffer.array(), 0, buffer.position());
+			buffer.putInt((int) checksum.getValue());
+			buffer.flip();
+			return buffer;
+		}
+	}
+
+	/**
+	 * A snapshot as loaded.
+	 */
+	public static final class Snapshot
+	{
+		private final Path file;
+
+		private final ConcurrentHashMap<String, Player> players;
+
+		private final long nextGameId;
+
+		private final long journalPosition;
+
+		private Snapshot(Path file, ConcurrentHashMap<String, Player> players, long nextGameId, long journalPosition)
+		{
+			this.file = file;
+			this.players = players;
+			this.nextGameId = nextGameId;
+			this.journalPosition = journalPosition;
+		}
+
+		public Path getFile()
+		{
+			return file;
+		}
+
+		/**
+		 * Returns the players of the snapshot, null if they were handed over as it was read (see readNewest).
+		 */
+		public ConcurrentHashMap<String, Player> getPlayers()
+		{
+			return players;
+		}
+
+		/**
+		 * Returns the game that was in progress, where the game ids carry on from.
+		 */
+		public long getNextGameId()
+		{
+			return nextGameId;
+		}
+
+		/**
+		 * Applies the journal written after the snapshot to its players.
+		 * 
+		 * @param journalFile
+		 * @return the number of bets replayed
+		 * @throws IOException
+		 */
+		public int replayJournal(Path journalFile) throws IOException
+		{
+			return BetJournal.replay(journalFile, players, journalPosition, nextGameId);
+		}
+
+		/**
+		 * Applies the journal written after the snapshot to the players it was read into.
+		 * 
+		 * @param journalFile
+		 * @param players finds a player by name, null if there is none
+		 * @return the number of bets replayed
+		 * @throws IOException
+		 */
+		public int replayJournal(Path journalFile, Function<String, Player> players) throws IOException
+		{
+			return BetJournal.replay(journalFile, players, journalPosition, nextGameId);
+		}
+	}
+}
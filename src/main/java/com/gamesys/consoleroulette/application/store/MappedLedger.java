@@ -0,0 +1,806 @@
+package com.gamesys.consoleroulette.application.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.bet.BetListener;
+import com.gamesys.consoleroulette.application.bet.Ledger;
+import com.gamesys.consoleroulette.application.bet.LedgerSnapshot;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.NameHash;
+import com.gamesys.consoleroulette.application.game.PlayerLookup;
+
+/**
+ * The totals of all the players in a memory-mapped file, one fixed-width slot per player id. A player of the ledger
+ * only holds its name, its history and a view of its slot; the totals themselves are never on the heap, and since
+ * every update goes straight to the mapped file they are still there after a restart (or a crash of the JVM) without
+ * anything being saved.
+ * <p>
+ * A slot is 64 bytes: total bet of the settled games, total win, stakes of the games not settled yet, writes started
+ * and writes completed (the same lock-free scheme as PlayerLedger, with atomic adds on the mapped memory), then the
+ * length and the UTF-8 bytes of the name. The total bet of a player is the settled one plus the open stakes, and a bet
+ * moves from one to the other when it's settled. The file starts with a header of one slot: magic, version, byte
+ * order, players and the next game to play. The file is mapped in segments of a million slots and grows a segment at
+ * a time.
+ * <p>
+ * Opening the file puts every slot right for a new run: a write cut short by a crash leaves the counters apart, so
+ * they are set equal again, and the open stakes are dropped, since their games will never be settled. That's what
+ * replaying the journal does with bets that were accepted and never settled, too.
+ * <p>
+ * Players are found by name through an index in a second mapped file next to the ledger: open addressing, one long a
+ * slot with the hash of the name in the high half and the player id in the low half, at most half full. It's rebuilt
+ * from the slots every time the ledger is opened, and made bigger as players are registered. Only the players that
+ * bet are made on the heap, when they are first found, and idle ones are evicted again past a memory budget, the same
+ * way a PlayerDirectory does (see ResidentPlayers); their totals stay in their slots. What the heap holds therefore
+ * doesn't grow with the players in the ledger: the players loaded at a time, within the budget, and an array of mapped
+ * segments.
+ * <p>
+ * The operating system writes the pages back when it likes; {@link #force()} (and closing) puts them on disk. A
+ * machine that goes down loses what wasn't written back, a JVM that goes down doesn't.
+ *
+ * @author Andreas
+ *
+ */
+public class MappedLedger implements BetListener, Closeable
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(MappedLedger.class);
+
+	private static final long MAGIC = 0x524C45444745524CL;
+
+	private static final int VERSION = 2;
+
+	public static final int SLOT_BYTES = 64;
+
+	private static final int TOTAL_BET = 0;
+
+	private static final int TOTAL_WIN = 8;
+
+	private static final int OPEN_BET = 16;
+
+	// The write counters are ints, a reader only ever compares them for equality.
+	private static final int WRITES_STARTED = 24;
+
+	private static final int WRITES_COMPLETED = 28;
+
+	private static final int NAME_LENGTH = 32;
+
+	private static final int NAME = 36;
+
+	// Longest name a slot can hold, in UTF-8 bytes.
+	public static final int MAX_NAME_BYTES = SLOT_BYTES - NAME;
+
+	// Header fields, in the first slot.
+	private static final int HEADER_VERSION = 8;
+
+	private static final int HEADER_ORDER = 12;
+
+	private static final int HEADER_PLAYERS = 16;
+
+	private static final int HEADER_NEXT_GAME = 24;
+
+	// Slots per mapped segment (64MB).
+	private static final int SEGMENT_SHIFT = 20;
+
+	private static final int SEGMENT_SLOTS = 1 << SEGMENT_SHIFT;
+
+	// Atomic access to the longs of a mapped segment. The file is in the byte order of the machine that made it.
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.nativeOrder());
+
+	private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+	// The name index is the ledger file with this after its name.
+	public static final String INDEX_SUFFIX = ".idx";
+
+	// Slots per mapped segment of the index (512MB).
+	private static final int INDEX_SEGMENT_SHIFT = 26;
+
+	private final FileChannel channel;
+
+	private final FileChannel indexChannel;
+
+	// Mapped segments, replaced by a longer array when the file grows.
+	private volatile MappedByteBuffer[] segments;
+
+	// Players in the file. Slot 0 is the header, player ids start at 1.
+	private volatile int players;
+
+	// Name index, replaced as a whole when it grows.
+	private volatile NameIndex index;
+
+	// Players loaded as they bet, null until lookup is called.
+	private volatile LedgerPlayers lookup;
+
+	private MappedLedger(FileChannel channel, FileChannel indexChannel, MappedByteBuffer[] segments, int players)
+	{
+		this.channel = channel;
+		this.indexChannel = indexChannel;
+		this.segments = segments;
+		this.players = players;
+	}
+
+	/**
+	 * Opens a ledger file, or creates an empty one. Every slot is put right for a new run, see above, and the name
+	 * index is built again.
+	 *
+	 * @param file
+	 * @return the ledger
+	 * @throws IOException if the file isn't a ledger, or was made on a machine of the other byte order
+	 */
+	public static MappedLedger open(Path file) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		FileChannel indexChannel = null;
+		try
+		{
+			indexChannel = FileChannel.open(file.resolveSibling(file.getFileName() + INDEX_SUFFIX),
+					StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+
+			boolean created = channel.size() == 0;
+			int segmentCount = created ? 1 : (int) ((channel.size() / SLOT_BYTES - 1) >>> SEGMENT_SHIFT) + 1;
+			MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+			for (int i = 0; i < segmentCount; i++)
+			{
+				segments[i] = map(channel, i);
+			}
+
+			MappedByteBuffer header = segments[0];
+			if (created)
+			{
+				header.putLong(0, MAGIC);
+				header.putInt(HEADER_VERSION, VERSION);
+				header.putInt(HEADER_ORDER, ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0);
+				MappedLedger ledger = new MappedLedger(channel, indexChannel, segments, 0);
+				ledger.buildIndex(false);
+				return ledger;
+			}
+
+			if (header.getLong(0) != MAGIC)
+			{
+				throw new IOException(file + " is not a player ledger.");
+			}
+			if (header.getInt(HEADER_VERSION) != VERSION)
+			{
+				throw new IOException(file + " is a player ledger of another version.");
+			}
+			if (header.getInt(HEADER_ORDER) != (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0))
+			{
+				throw new IOException(file + " was written with the other byte order.");
+			}
+			MappedLedger ledger = new MappedLedger(channel, indexChannel, segments, (int) header.getLong(HEADER_PLAYERS));
+			ledger.recover();
+			ledger.buildIndex(false);
+			return ledger;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			if (indexChannel != null)
+			{
+				indexChannel.close();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Sets the write counters of every slot equal and drops the open stakes. Nobody uses the ledger yet.
+	 */
+	private void recover()
+	{
+		int torn = 0;
+		int stakes = 0;
+		for (int id = 1; id <= players; id++)
+		{
+			MappedByteBuffer buffer = segments[id >>> SEGMENT_SHIFT];
+			int base = offset(id);
+			int started = buffer.getInt(base + WRITES_STARTED);
+			if (buffer.getInt(base + WRITES_COMPLETED) != started)
+			{
+				buffer.putInt(base + WRITES_COMPLETED, started);
+				torn++;
+			}
+			if (buffer.getLong(base + OPEN_BET) != 0)
+			{
+				buffer.putLong(base + OPEN_BET, 0);
+				stakes++;
+			}
+		}
+		if (torn > 0)
+		{
+			log.warn(torn + " players of the ledger were being written when it was last closed.");
+		}
+		if (stakes > 0)
+		{
+			log.info(stakes + " players had stakes on games that were never settled, they don't count.");
+		}
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, int segment) throws IOException
+	{
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+				(long) segment * SEGMENT_SLOTS * SLOT_BYTES, (long) SEGMENT_SLOTS * SLOT_BYTES);
+		buffer.order(ByteOrder.nativeOrder());
+		return buffer;
+	}
+
+	/**
+	 * Builds the name index from the slots, four times as big as the players need so it stays at most half full until
+	 * they double.
+	 *
+	 * @param clear whether the index file has an older index in it, to be cleared first
+	 */
+	private void buildIndex(boolean clear) throws IOException
+	{
+		int count = players;
+		long capacity = Long.highestOneBit(Math.max(count, 8) * 4L - 1) << 1;
+		int segmentCount = (int) ((capacity - 1) >>> INDEX_SEGMENT_SHIFT) + 1;
+		MappedByteBuffer[] mapped = new MappedByteBuffer[segmentCount];
+		for (int i = 0; i < segmentCount; i++)
+		{
+			long slots = Math.min(capacity - ((long) i << INDEX_SEGMENT_SHIFT), 1L << INDEX_SEGMENT_SHIFT);
+			mapped[i] = indexChannel.map(FileChannel.MapMode.READ_WRITE, ((long) i << INDEX_SEGMENT_SHIFT) * Long.BYTES,
+					slots * Long.BYTES);
+			if (clear)
+			{
+				for (int slot = 0; slot < slots; slot++)
+				{
+					mapped[i].putLong(slot * Long.BYTES, 0);
+				}
+			}
+		}
+
+		NameIndex built = new NameIndex(mapped, capacity);
+		byte[] name = new byte[MAX_NAME_BYTES];
+		for (int id = 1; id <= count; id++)
+		{
+			built.insert(nameHash(id, name), id);
+		}
+		index = built;
+	}
+
+	/**
+	 * Adds a player to the ledger with its totals. A name that is already in the ledger gets the totals instead, the
+	 * later ones win like with a name that is in the player file twice.
+	 * <p>
+	 * Players are registered before the games start: when the index grows it's built again, and a lookup in the
+	 * meantime may miss a player.
+	 *
+	 * @param userName at most {@link #MAX_NAME_BYTES} bytes in UTF-8
+	 * @param totalBet in pence
+	 * @param totalWin in pence
+	 * @return the id of the player
+	 * @throws IOException if the file couldn't grow
+	 */
+	public synchronized int register(String userName, long totalBet, long totalWin) throws IOException
+	{
+		byte[] name = userName.getBytes(StandardCharsets.UTF_8);
+		if (name.length > MAX_NAME_BYTES)
+		{
+			throw new IllegalArgumentException("The name " + userName + " is longer than a ledger slot can hold.");
+		}
+
+		int hash = NameHash.of(name, name.length);
+		int existing = index.find(hash, id -> sameName(id, name));
+		if (existing != 0)
+		{
+			MappedByteBuffer buffer = segments[existing >>> SEGMENT_SHIFT];
+			int base = offset(existing);
+			INTS.getAndAdd(buffer, base + WRITES_STARTED, 1);
+			LONGS.setVolatile(buffer, base + TOTAL_BET, totalBet);
+			LONGS.setVolatile(buffer, base + TOTAL_WIN, totalWin);
+			LONGS.setVolatile(buffer, base + OPEN_BET, 0L);
+			INTS.getAndAdd(buffer, base + WRITES_COMPLETED, 1);
+			return existing;
+		}
+
+		int id = players + 1;
+		int segment = id >>> SEGMENT_SHIFT;
+		if (segment == segments.length)
+		{
+			MappedByteBuffer[] grown = Arrays.copyOf(segments, segment + 1);
+			grown[segment] = map(channel, segment);
+			segments = grown;
+		}
+
+		MappedByteBuffer buffer = segments[segment];
+		int base = offset(id);
+		buffer.putLong(base + TOTAL_BET, totalBet);
+		buffer.putLong(base + TOTAL_WIN, totalWin);
+		buffer.putLong(base + OPEN_BET, 0);
+		buffer.putInt(base + WRITES_STARTED, 0);
+		buffer.putInt(base + WRITES_COMPLETED, 0);
+		buffer.putInt(base + NAME_LENGTH, name.length);
+		buffer.put(base + NAME, name);
+
+		// Only counted once the slot is written, a reader of the file never sees half a player.
+		players = id;
+		LONGS.setRelease(segments[0], HEADER_PLAYERS, (long) id);
+
+		if (index.isFull(id))
+		{
+			buildIndex(true);
+		}
+		else
+		{
+			index.insert(hash, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Adds a player to the ledger like register, unless its name doesn't fit in a slot: then it's reported and left
+	 * out.
+	 *
+	 * @return false if the player was left out
+	 * @throws IOException
+	 */
+	public boolean registerIfFits(String userName, long totalBet, long totalWin) throws IOException
+	{
+		if (userName.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES)
+		{
+			log.warn("The name " + userName + " is too long for the ledger, the player is left out.");
+			return false;
+		}
+		register(userName, totalBet, totalWin);
+		return true;
+	}
+
+	/**
+	 * Adds the players of a map to the ledger. A player whose name doesn't fit in a slot is reported and left out.
+	 *
+	 * @return the players that were added
+	 * @throws IOException
+	 */
+	public int registerAll(Map<String, Player> players) throws IOException
+	{
+		int registered = 0;
+		LedgerSnapshot totals = new LedgerSnapshot();
+		for (Player player : players.values())
+		{
+			player.getTotals(totals);
+			if (registerIfFits(player.getUserName(), totals.getTotalBet(), totals.getTotalWin()))
+			{
+				registered++;
+			}
+		}
+		return registered;
+	}
+
+	/**
+	 * Returns the id of a player.
+	 *
+	 * @param userName
+	 * @return the id, 0 if the name isn't in the ledger
+	 */
+	public int getId(String userName)
+	{
+		return index.find(userName.hashCode(), id -> matches(id, userName, 0, userName.length()));
+	}
+
+	/**
+	 * Makes a player of the slot of a name that nothing keeps, for going over the players once, i.e. replaying the
+	 * journal into the ledger. The players that bet are found with lookup instead.
+	 *
+	 * @param userName
+	 * @return the player, or null if the name isn't in the ledger
+	 */
+	public Player view(String userName)
+	{
+		int id = getId(userName);
+		return (id == 0) ? null : new Player(userName, ledger(id), 1);
+	}
+
+	/**
+	 * Returns the totals of a player as a view of its slot.
+	 *
+	 * @param id of the player
+	 */
+	public Ledger ledger(int id)
+	{
+		checkId(id);
+		return new Slot(segments[id >>> SEGMENT_SHIFT], offset(id));
+	}
+
+	/**
+	 * Returns the name of a player.
+	 *
+	 * @param id of the player
+	 */
+	public String getUserName(int id)
+	{
+		checkId(id);
+		MappedByteBuffer buffer = segments[id >>> SEGMENT_SHIFT];
+		int base = offset(id);
+		byte[] name = new byte[buffer.getInt(base + NAME_LENGTH)];
+		buffer.get(base + NAME, name);
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the players of the ledger for the bet monitor to find them by. A player is made the first time it's
+	 * found, with its totals in its slot, and evicted again once it's idle and more than the memory budget's worth are
+	 * made; that happens as games are settled into the ledger (see betCompleted). A ledger has one lookup.
+	 *
+	 * @param historyDepth games kept in the history of each player
+	 * @param memoryBudget bytes of heap the players made may take, roughly
+	 * @return the lookup
+	 * @throws IllegalStateException if the ledger already has its lookup
+	 */
+	public synchronized PlayerLookup lookup(int historyDepth, long memoryBudget)
+	{
+		if (lookup != null)
+		{
+			throw new IllegalStateException("The players of the ledger are already looked up.");
+		}
+		lookup = new LedgerPlayers(historyDepth, memoryBudget);
+		return lookup;
+	}
+
+	/**
+	 * Returns the number of players made by the lookup right now.
+	 */
+	public int getResidentCount()
+	{
+		LedgerPlayers current = lookup;
+		return (current == null) ? 0 : current.residents.size();
+	}
+
+	/**
+	 * Returns the number of players in the ledger.
+	 */
+	public int size()
+	{
+		return players;
+	}
+
+	/**
+	 * Returns the game after the last one settled, to carry on from.
+	 */
+	public long getNextGameId()
+	{
+		return (long) LONGS.getAcquire(segments[0], HEADER_NEXT_GAME);
+	}
+
+	/**
+	 * A game was settled, its totals are all in the ledger. Players idle since a couple of games ago can be evicted.
+	 */
+	@Override
+	public void betCompleted(long gameId, int winningNumber)
+	{
+		LONGS.setRelease(segments[0], HEADER_NEXT_GAME, gameId + 1);
+		LedgerPlayers current = lookup;
+		if (current != null)
+		{
+			// Their totals are in their slots already, there is nothing to save.
+			current.residents.evictIdle(gameId, (id, player) -> {});
+		}
+	}
+
+	/**
+	 * Writes the ledger to disk.
+	 */
+	public void force()
+	{
+		for (MappedByteBuffer segment : segments)
+		{
+			segment.force();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		force();
+		try
+		{
+			channel.close();
+		}
+		finally
+		{
+			indexChannel.close();
+		}
+	}
+
+	private void checkId(int id)
+	{
+		if (id < 1 || id > players)
+		{
+			throw new IllegalArgumentException("There is no player " + id + " in the ledger.");
+		}
+	}
+
+	private static int offset(int id)
+	{
+		return (id & (SEGMENT_SLOTS - 1)) * SLOT_BYTES;
+	}
+
+	/**
+	 * Hashes the name in the slot of a player.
+	 *
+	 * @param buffer to read the name into, MAX_NAME_BYTES long
+	 */
+	private int nameHash(int id, byte[] buffer)
+	{
+		MappedByteBuffer slots = segments[id >>> SEGMENT_SHIFT];
+		int base = offset(id);
+		int length = slots.getInt(base + NAME_LENGTH);
+		slots.get(base + NAME, buffer, 0, length);
+		return NameHash.of(buffer, length);
+	}
+
+	/**
+	 * Whether the name in the slot of a player is the one spelled by the characters. Names that aren't all ASCII are
+	 * decoded first.
+	 */
+	private boolean matches(int id, CharSequence chars, int start, int end)
+	{
+		MappedByteBuffer buffer = segments[id >>> SEGMENT_SHIFT];
+		int base = offset(id);
+		int length = buffer.getInt(base + NAME_LENGTH);
+		for (int i = 0; i < length; i++)
+		{
+			byte b = buffer.get(base + NAME + i);
+			if (b < 0)
+			{
+				return getUserName(id).contentEquals(chars.subSequence(start, end));
+			}
+			if (start + i >= end || b != chars.charAt(start + i))
+			{
+				return false;
+			}
+		}
+		return start + length == end;
+	}
+
+	/**
+	 * Whether the name in the slot of a player is the one given in UTF-8.
+	 */
+	private boolean sameName(int id, byte[] name)
+	{
+		MappedByteBuffer buffer = segments[id >>> SEGMENT_SHIFT];
+		int base = offset(id);
+		if (buffer.getInt(base + NAME_LENGTH) != name.length)
+		{
+			return false;
+		}
+		for (int i = 0; i < name.length; i++)
+		{
+			if (buffer.get(base + NAME + i) != name[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The name index as built at one point, in the mapped index file. Never made smaller or bigger, only replaced.
+	 */
+	private static final class NameIndex
+	{
+		private final MappedByteBuffer[] segments;
+
+		// Table size is a power of two, this masks a hash into it.
+		private final long mask;
+
+		private NameIndex(MappedByteBuffer[] segments, long capacity)
+		{
+			this.segments = segments;
+			this.mask = capacity - 1;
+		}
+
+		/**
+		 * Whether the index would be more than half full with a player more than the given one.
+		 */
+		private boolean isFull(int players)
+		{
+			return (players + 1L) * 2 > mask + 1;
+		}
+
+		private void insert(int hash, int id)
+		{
+			long slot = NameHash.mix(hash) & mask;
+			while (entry(slot) != 0)
+			{
+				slot = (slot + 1) & mask;
+			}
+			setEntry(slot, ((long) hash << 32) | id);
+		}
+
+		/**
+		 * Returns the id of the first player with the hash that the name test accepts, 0 if there is none.
+		 */
+		private int find(int hash, IntPredicate sameName)
+		{
+			for (long slot = NameHash.mix(hash) & mask;; slot = (slot + 1) & mask)
+			{
+				long entry = entry(slot);
+				if (entry == 0)
+				{
+					return 0;
+				}
+				int id = (int) entry;
+				if ((int) (entry >>> 32) == hash && sameName.test(id))
+				{
+					return id;
+				}
+			}
+		}
+
+		private long entry(long slot)
+		{
+			return segments[(int) (slot >>> INDEX_SEGMENT_SHIFT)]
+					.getLong((int) (slot & ((1 << INDEX_SEGMENT_SHIFT) - 1)) * Long.BYTES);
+		}
+
+		private void setEntry(long slot, long entry)
+		{
+			segments[(int) (slot >>> INDEX_SEGMENT_SHIFT)]
+					.putLong((int) (slot & ((1 << INDEX_SEGMENT_SHIFT) - 1)) * Long.BYTES, entry);
+		}
+	}
+
+	/**
+	 * Finds the players of the ledger by name, through the index, and keeps the ones that bet loaded by id.
+	 */
+	private final class LedgerPlayers implements PlayerLookup
+	{
+		private final int historyDepth;
+
+		private final ResidentPlayers residents;
+
+		private LedgerPlayers(int historyDepth, long memoryBudget)
+		{
+			this.historyDepth = historyDepth;
+			this.residents = new ResidentPlayers(memoryBudget);
+		}
+
+		@Override
+		public Player find(CharSequence chars, int start, int end)
+		{
+			int id = index.find(NameHash.of(chars, start, end), candidate -> matches(candidate, chars, start, end));
+			if (id == 0)
+			{
+				return null;
+			}
+			Player player = residents.get(id);
+			return (player != null) ? player
+					: residents.load(id, key -> new Player(getUserName((int) key), ledger((int) key), historyDepth));
+		}
+
+		@Override
+		public Player acquire(Player player)
+		{
+			Player held = residents.acquire(player, this::find);
+			if (held == null)
+			{
+				throw new IllegalStateException(player.getUserName() + " is no longer in the ledger.");
+			}
+			return held;
+		}
+
+		@Override
+		public void release(Player player)
+		{
+			residents.release(player);
+		}
+	}
+
+	/**
+	 * The totals of one player, read and written in place in its slot.
+	 */
+	private static final class Slot implements Ledger
+	{
+		private final MappedByteBuffer buffer;
+
+		private final int base;
+
+		private Slot(MappedByteBuffer buffer, int base)
+		{
+			this.buffer = buffer;
+			this.base = base;
+		}
+
+		@Override
+		public void addBet(long amount)
+		{
+			INTS.getAndAdd(buffer, base + WRITES_STARTED, 1);
+			LONGS.getAndAdd(buffer, base + OPEN_BET, amount);
+			INTS.getAndAdd(buffer, base + WRITES_COMPLETED, 1);
+		}
+
+		@Override
+		public void addWin(long amount)
+		{
+			INTS.getAndAdd(buffer, base + WRITES_STARTED, 1);
+			LONGS.getAndAdd(buffer, base + TOTAL_WIN, amount);
+			INTS.getAndAdd(buffer, base + WRITES_COMPLETED, 1);
+		}
+
+		@Override
+		public void betSettled(long amount)
+		{
+			INTS.getAndAdd(buffer, base + WRITES_STARTED, 1);
+			LONGS.getAndAdd(buffer, base + TOTAL_BET, amount);
+			LONGS.getAndAdd(buffer, base + OPEN_BET, -amount);
+			INTS.getAndAdd(buffer, base + WRITES_COMPLETED, 1);
+		}
+
+		@Override
+		public long getTotalBet()
+		{
+			while (true)
+			{
+				int started = startRead();
+				long bet = (long) LONGS.getVolatile(buffer, base + TOTAL_BET)
+						+ (long) LONGS.getVolatile(buffer, base + OPEN_BET);
+				if ((int) INTS.getVolatile(buffer, base + WRITES_STARTED) == started)
+				{
+					return bet;
+				}
+			}
+		}
+
+		@Override
+		public long getTotalWin()
+		{
+			return (long) LONGS.getVolatile(buffer, base + TOTAL_WIN);
+		}
+
+		@Override
+		public LedgerSnapshot snapshot(LedgerSnapshot snapshot)
+		{
+			while (true)
+			{
+				int started = startRead();
+				long bet = (long) LONGS.getVolatile(buffer, base + TOTAL_BET)
+						+ (long) LONGS.getVolatile(buffer, base + OPEN_BET);
+				long win = getTotalWin();
+
+				// No write may have started while we were reading.
+				if ((int) INTS.getVolatile(buffer, base + WRITES_STARTED) == started)
+				{
+					snapshot.set(bet, win);
+					return snapshot;
+				}
+			}
+		}
+
+		/**
+		 * Waits for no write to be in progress.
+		 * 
+		 * @return the writes started so far
+		 */
+		private int startRead()
+		{
+			while (true)
+			{
+				int completed = (int) INTS.getVolatile(buffer, base + WRITES_COMPLETED);
+				int started = (int) INTS.getVolatile(buffer, base + WRITES_STARTED);
+				if (started == completed)
+				{
+					return started;
+				}
+				Thread.onSpinWait();
+			}
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package com.gamesys.consoleroulette.application.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+
+/**
+ * Loads a player file of millions of lines. The file is memory-mapped and cut into chunks that start and end on a line
+ * break, the chunks are parsed in parallel on a fork-join pool and the players go into a map sized up front from an
+ * estimate of the number of lines, so it never resizes. Lines follow the same rules as on the console loader (see
+ * PlayerRecordParser): a bad line is reported and skipped.
+ * 
+ * If a name appears more than once the last line wins, as when the file is read line by line. That's why the chunks
+ * only parse in parallel and their players are put in the map in file order.
+ * 
+ * @author Andreas
+ *
+ */
+public class MappedPlayerLoader
+{
+	// Smallest chunk worth a task of its own.
+	private static final long MIN_CHUNK = 1 << 20;
+
+	// Chunks per pool thread, so a thread that finishes early can steal some work.
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	// Largest chunk, since a single mapping can't go over 2GB. Half of that, so a chunk stretched to the end of its
+	// last line still fits.
+	private static final long MAX_CHUNK = Integer.MAX_VALUE / 2;
+
+	// Bytes at the start of the file used to estimate the number of lines.
+	private static final int SAMPLE_SIZE = 64 * 1024;
+
+	// Bytes read at a time while looking for the end of a line.
+	private static final int SCAN_SIZE = 4 * 1024;
+
+	private final PlayerRecordParser recordParser;
+
+	private final ForkJoinPool pool;
+
+	public MappedPlayerLoader(PlayerRecordParser recordParser)
+	{
+		this(recordParser, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param recordParser
+	 * @param pool where the chunks are parsed
+	 */
+	public MappedPlayerLoader(PlayerRecordParser recordParser, ForkJoinPool pool)
+	{
+		this.recordParser = recordParser;
+		this.pool = pool;
+	}
+
+	/**
+	 * Loads all the valid players of the file.
+	 * 
+	 * @param file
+	 * @return the players by name
+	 * @throws IOException
+	 */
+	public ConcurrentHashMap<String, Player> load(Path file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			long size = channel.size();
+			ConcurrentHashMap<String, Player> players = new ConcurrentHashMap<String, Player>(
+					estimateLines(channel, size), 0.75f, pool.getParallelism());
+			if (size == 0)
+			{
+				return players;
+			}
+
+			long[] bounds = chunkBounds(channel, size);
+			List<ParseChunk> chunks = new ArrayList<ParseChunk>(bounds.length - 1);
+			for (int i = 0; i < bounds.length - 1; i++)
+			{
+				if (bounds[i + 1] > bounds[i])
+				{
+					chunks.add(new ParseChunk(channel, bounds[i], bounds[i + 1]));
+				}
+			}
+
+			try
+			{
+				pool.invoke(new ParseChunks(chunks));
+			}
+			catch (UncheckedIOException e)
+			{
+				throw e.getCause();
+			}
+
+			for (ParseChunk chunk : chunks)
+			{
+				for (Player player : chunk.players)
+				{
+					players.put(player.getUserName(), player);
+				}
+			}
+
+			return players;
+		}
+	}
+
+	/**
+	 * Estimates the lines of the file from the line breaks at its start.
+	 */
+	private static int estimateLines(FileChannel channel, long size) throws IOException
+	{
+		ByteBuffer sample = ByteBuffer.allocate((int) Math.min(size, SAMPLE_SIZE));
+		while (sample.hasRemaining() && channel.read(sample, sample.position()) > 0)
+		{
+		}
+
+		int lineBreaks = 0;
+		for (int i = 0; i < sample.position(); i++)
+		{
+			if (sample.get(i) == '\n')
+			{
+				lineBreaks++;
+			}
+		}
+
+		if (sample.position() == 0)
+		{
+			return 1;
+		}
+		// One line more than the breaks, for the last line that may not end with one.
+		long lines = size * Math.max(lineBreaks, 1) / sample.position() + 1;
+		return (int) Math.min(lines, Integer.MAX_VALUE / 2);
+	}
+
+	/**
+	 * Cuts the file in chunks that start at the beginning of a line. Chunk i is from bounds[i] to bounds[i + 1].
+	 */
+	private long[] chunkBounds(FileChannel channel, long size) throws IOException
+	{
+		long chunkCount = Math.min(size / MIN_CHUNK, (long) pool.getParallelism() * CHUNKS_PER_THREAD);
+		chunkCount = Math.max(chunkCount, size / MAX_CHUNK + 1);
+
+		long[] bounds = new long[(int) chunkCount + 1];
+		bounds[(int) chunkCount] = size;
+		ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+		for (int i = 1; i < chunkCount; i++)
+		{
+			bounds[i] = Math.max(bounds[i - 1], nextLineStart(channel, size * i / chunkCount, size, scan));
+		}
+		return bounds;
+	}
+
+	/**
+	 * Returns where the first line at or after the position starts.
+	 */
+	private static long nextLineStart(FileChannel channel, long position, long size, ByteBuffer scan)
+			throws IOException
+	{
+		// A line starts here if the byte before is a line break, so the scan begins at that byte.
+		long at = position - 1;
+		while (at < size)
+		{
+			scan.clear();
+			int read = channel.read(scan, at);
+			if (read <= 0)
+			{
+				break;
+			}
+			for (int i = 0; i < read; i++)
+			{
+				if (scan.get(i) == '\n')
+				{
+					return at + i + 1;
+				}
+			}
+			at += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Parses all the chunks, in parallel.
+	 */
+	private static final class ParseChunks extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		// Tasks are only serializable because ForkJoinTask is, these are never written out.
+		private final transient List<ParseChunk> chunks;
+
+		private ParseChunks(List<ParseChunk> chunks)
+		{
+			this.chunks = chunks;
+		}
+
+		@Override
+		protected void compute()
+		{
+			ForkJoinTask.invokeAll(chunks);
+		}
+	}
+
+	/**
+	 * Maps a chunk of the file and parses its lines.
+	 */
+	private final class ParseChunk extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		// Never serialized, see ParseChunks.
+		private final transient FileChannel channel;
+
+		private final long start;
+
+		private final long end;
+
+		// The valid players of the chunk, in file order.
+		private final transient List<Player> players = new ArrayList<Player>();
+
+		private ParseChunk(FileChannel channel, long start, long end)
+		{
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute()
+		{
+			MappedByteBuffer chunk;
+			try
+			{
+				chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+
+			// Bytes of the current line, reused from line to line.
+			byte[] line = new byte[256];
+			int length = 0;
+			int limit = chunk.limit();
+			for (int i = 0; i < limit; i++)
+			{
+				byte b = chunk.get(i);
+				if (b == '\n')
+				{
+					parseLine(line, length);
+					length = 0;
+				}
+				else
+				{
+					if (length == line.length)
+					{
+						line = Arrays.copyOf(line, length * 2);
+					}
+					line[length++] = b;
+				}
+			}
+			// The last line of the file may not end with a line break.
+			if (length > 0)
+			{
+				parseLine(line, length);
+			}
+		}
+
+		private void parseLine(byte[] line, int length)
+		{
+			// Windows line breaks.
+			if (length > 0 && line[length - 1] == '\r')
+			{
+				length--;
+			}
+
+			Player player = recordParser.parse(new String(line, 0, length, StandardCharsets.UTF_8));
+			if (player != null)
+			{
+				players.add(player);
+			}
+		}
+	}
+}
@@ -0,0 +1,567 @@
+package com.gamesys.consoleroulette.application.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.bet.BetListener;
+import com.gamesys.consoleroulette.application.bet.LedgerSnapshot;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.NameHash;
+import com.gamesys.consoleroulette.application.game.PlayerLookup;
+
+/**
+ * The players of a player file that is too big to load, found through an index on disk and loaded only when they
+ * bet. At start the file is scanned once and an open addressing table of name hash to line offset is written to a
+ * memory-mapped index file (8 bytes a slot, at most half full), so the heap holds neither the players nor the index.
+ * A player is parsed from its line the first time it's found, and players that haven't bet for a couple of games are
+ * evicted once more than the memory budget's worth of them are loaded. The totals of an evicted player are written to
+ * a totals file next to the index and read back if it's loaded again.
+ * <p>
+ * A slot of the index holds the offset of the line plus one (0 is an empty slot) in the low 40 bits, 23 bits of the
+ * hash of the name above them, so most probes that don't match are told apart without reading the file, and in the
+ * top bit whether the totals file has the player's totals.
+ * <p>
+ * The index and the totals are rebuilt every start. Between runs the totals come from the player file and the bet
+ * journal, the same as without a directory.
+ *
+ * @author Andreas
+ *
+ */
+public class PlayerDirectory implements PlayerLookup, BetListener, Closeable
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(PlayerDirectory.class);
+
+	// Rough heap cost of a loaded player, see ResidentPlayers.
+	public static final int ESTIMATED_PLAYER_BYTES = ResidentPlayers.ESTIMATED_PLAYER_BYTES;
+
+	public static final String INDEX_FILE = "players.idx";
+
+	public static final String TOTALS_FILE = "players.totals";
+
+	private static final int SLOT_BYTES = 8;
+
+	private static final int TOTALS_BYTES = 16;
+
+	// Slots per mapped segment of the index (512MB), a MappedByteBuffer can't be larger than 2GB.
+	private static final int SEGMENT_SHIFT = 26;
+
+	private static final long OFFSET_MASK = (1L << 40) - 1;
+
+	private static final int TAG_SHIFT = 40;
+
+	private static final long TAG_MASK = (1L << 23) - 1;
+
+	private static final long HAS_TOTALS = 1L << 63;
+
+	// Bytes read at a time while scanning the file, and to start with when reading a line.
+	private static final int SCAN_SIZE = 1 << 16;
+
+	private static final int READ_SIZE = 128;
+
+	private final FileChannel data;
+
+	private final FileChannel indexChannel;
+
+	private final MappedByteBuffer[] segments;
+
+	private final FileChannel totals;
+
+	private final long mask;
+
+	private final byte delimiter;
+
+	private final PlayerRecordParser parser;
+
+	// Names in the index.
+	private long size;
+
+	// Loaded players by index slot.
+	private final ResidentPlayers residents;
+
+	private PlayerDirectory(FileChannel data, FileChannel indexChannel, MappedByteBuffer[] segments,
+			FileChannel totals, long capacity, byte delimiter, PlayerRecordParser parser, long memoryBudget)
+	{
+		this.data = data;
+		this.indexChannel = indexChannel;
+		this.segments = segments;
+		this.totals = totals;
+		this.mask = capacity - 1;
+		this.delimiter = delimiter;
+		this.parser = parser;
+		this.residents = new ResidentPlayers(memoryBudget);
+	}
+
+	/**
+	 * Indexes a player file. Lines with an empty name are left out; a name that is in the file twice is the last of
+	 * its lines, like when the file is loaded. Other invalid lines are found out when the player is loaded.
+	 *
+	 * @param dataFile the player file
+	 * @param directory where the index and totals files are written, created if needed
+	 * @param delimiter between the name and the totals on a line
+	 * @param parser turns a line into a player
+	 * @param memoryBudget bytes of heap the loaded players may take, roughly
+	 * @return the directory
+	 * @throws IOException
+	 */
+	public static PlayerDirectory open(Path dataFile, Path directory, char delimiter, PlayerRecordParser parser,
+			long memoryBudget) throws IOException
+	{
+		Files.createDirectories(directory);
+		FileChannel data = FileChannel.open(dataFile, StandardOpenOption.READ);
+		FileChannel indexChannel = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		FileChannel totals = FileChannel.open(directory.resolve(TOTALS_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+		long start = System.nanoTime();
+
+		// Counted first, so the table is the right size and never has to grow.
+		long lines = scan(data, (byte) delimiter, null);
+		long capacity = Long.highestOneBit(Math.max(lines, 8) * 2 - 1) << 1;
+
+		int segmentCount = (int) ((capacity - 1) >>> SEGMENT_SHIFT) + 1;
+		MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+		for (int i = 0; i < segmentCount; i++)
+		{
+			long slots = Math.min(capacity - ((long) i << SEGMENT_SHIFT), 1L << SEGMENT_SHIFT);
+			segments[i] = indexChannel.map(FileChannel.MapMode.READ_WRITE, ((long) i << SEGMENT_SHIFT) * SLOT_BYTES,
+					slots * SLOT_BYTES);
+		}
+
+		PlayerDirectory playerDirectory = new PlayerDirectory(data, indexChannel, segments, totals, capacity,
+				(byte) delimiter, parser, memoryBudget);
+		scan(data, (byte) delimiter, playerDirectory);
+
+		log.info("Indexed " + playerDirectory.size + " players of " + dataFile + " in "
+				+ (System.nanoTime() - start) / 1000000 + "ms, up to " + playerDirectory.getMaxResident()
+				+ " of them kept loaded.");
+		return playerDirectory;
+	}
+
+	/**
+	 * Goes through the lines of the file, counting the ones with a name or putting them in the index.
+	 *
+	 * @param into the directory to index the lines in, null to only count them
+	 * @return the lines with a name
+	 */
+	private static long scan(FileChannel data, byte delimiter, PlayerDirectory into) throws IOException
+	{
+		byte[] chunk = new byte[SCAN_SIZE];
+		byte[] name = new byte[64];
+		int nameLength = 0;
+		boolean inName = true;
+		long lineStart = 0;
+		long position = 0;
+		long lines = 0;
+
+		while (true)
+		{
+			int read = data.read(ByteBuffer.wrap(chunk), position);
+			if (read <= 0)
+			{
+				break;
+			}
+			for (int i = 0; i < read; i++)
+			{
+				byte b = chunk[i];
+				if (b == '\n')
+				{
+					lines += endLine(into, lineStart, name, nameLength);
+					lineStart = position + i + 1;
+					inName = true;
+					nameLength = 0;
+				}
+				else if (inName)
+				{
+					if (b == delimiter)
+					{
+						inName = false;
+					}
+					else
+					{
+						if (nameLength == name.length)
+						{
+							name = Arrays.copyOf(name, nameLength * 2);
+						}
+						name[nameLength++] = b;
+					}
+				}
+			}
+			position += read;
+		}
+
+		// The last line may have no line terminator.
+		if (lineStart < position)
+		{
+			lines += endLine(into, lineStart, name, nameLength);
+		}
+		return lines;
+	}
+
+	private static int endLine(PlayerDirectory into, long lineStart, byte[] name, int nameLength) throws IOException
+	{
+		if (nameLength > 0 && name[nameLength - 1] == '\r')
+		{
+			nameLength--;
+		}
+		if (nameLength == 0)
+		{
+			return 0;
+		}
+		if (into != null)
+		{
+			into.insert(lineStart, name, nameLength);
+		}
+		return 1;
+	}
+
+	private void insert(long offset, byte[] name, int nameLength) throws IOException
+	{
+		long hash = NameHash.mix(NameHash.of(name, nameLength));
+		long tag = (hash >>> 41) & TAG_MASK;
+		long entry = (tag << TAG_SHIFT) | (offset + 1);
+		for (long slot = hash & mask;; slot = (slot + 1) & mask)
+		{
+			long current = slot(slot);
+			if (current == 0)
+			{
+				setSlot(slot, entry);
+				size++;
+				return;
+			}
+			if (tagOf(current) == tag && sameName(readLine(offsetOf(current)), name, nameLength))
+			{
+				// The later line wins.
+				setSlot(slot, entry);
+				return;
+			}
+		}
+	}
+
+	@Override
+	public Player find(CharSequence chars, int start, int end)
+	{
+		long hash = NameHash.mix(NameHash.of(chars, start, end));
+		long tag = (hash >>> 41) & TAG_MASK;
+
+		for (long slot = hash & mask;; slot = (slot + 1) & mask)
+		{
+			long current = slot(slot);
+			if (current == 0)
+			{
+				return null;
+			}
+			if (tagOf(current) != tag)
+			{
+				continue;
+			}
+
+			// Loaded players are compared in memory, the others on disk.
+			Player resident = residents.get(slot);
+			if (resident != null)
+			{
+				if (matches(resident.getUserName(), chars, start, end))
+				{
+					return resident;
+				}
+				continue;
+			}
+
+			byte[] line = readLine(offsetOf(current));
+			if (matches(line, chars, start, end))
+			{
+				return residents.load(slot, s -> load(s, line));
+			}
+		}
+	}
+
+	/**
+	 * Holds the player so it can't be evicted. If it was evicted since it was found, it's loaded again with the totals
+	 * it was evicted with.
+	 */
+	@Override
+	public Player acquire(Player player)
+	{
+		Player held = residents.acquire(player, this::find);
+		if (held == null)
+		{
+			throw new IllegalStateException(player.getUserName() + " is no longer in the player file.");
+		}
+		return held;
+	}
+
+	@Override
+	public void release(Player player)
+	{
+		residents.release(player);
+	}
+
+	/**
+	 * A game was settled: players idle since a couple of games ago can be evicted.
+	 */
+	@Override
+	public void betCompleted(long gameId, int winningNumber)
+	{
+		evictIdle(gameId);
+	}
+
+	/**
+	 * Evicts players that haven't bet since a couple of games before the one settled, if more than the budget's worth
+	 * are loaded. A quarter of the budget is freed on top, so it doesn't happen after every game.
+	 *
+	 * @param settledGameId the last game settled
+	 * @return the number of players evicted
+	 */
+	public int evictIdle(long settledGameId)
+	{
+		// No one can hold an evicted player anymore. The totals are on disk before it's gone, so loading it again
+		// finds them.
+		LedgerSnapshot ledger = new LedgerSnapshot();
+		return residents.evictIdle(settledGameId, (slot, player) -> writeTotals(slot, player.getTotals(ledger)));
+	}
+
+	/**
+	 * Parses the player of a line of the index.
+	 *
+	 * @return the player, or null if the line isn't a valid player
+	 */
+	private Player load(long slot, byte[] line)
+	{
+		Player player = parser.parse(new String(line, StandardCharsets.UTF_8));
+		if (player == null)
+		{
+			return null;
+		}
+
+		// Evicted before, its totals are the ones it was evicted with.
+		if ((slot(slot) & HAS_TOTALS) != 0)
+		{
+			long[] saved = readTotals(slot);
+			player = new Player(player.getUserName(), saved[0], saved[1], player.getHistory().getDepth());
+		}
+		return player;
+	}
+
+	private void writeTotals(long slot, LedgerSnapshot ledger)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(TOTALS_BYTES);
+		buffer.putLong(ledger.getTotalBet()).putLong(ledger.getTotalWin()).flip();
+		try
+		{
+			while (buffer.hasRemaining())
+			{
+				totals.write(buffer, slot * TOTALS_BYTES + buffer.position());
+			}
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Could not write the totals of an evicted player.", e);
+		}
+		setSlot(slot, slot(slot) | HAS_TOTALS);
+	}
+
+	private long[] readTotals(long slot)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(TOTALS_BYTES);
+		try
+		{
+			while (buffer.hasRemaining())
+			{
+				if (totals.read(buffer, slot * TOTALS_BYTES + buffer.position()) < 0)
+				{
+					throw new IOException("The totals file is shorter than expected.");
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Could not read the totals of an evicted player.", e);
+		}
+		return new long[] { buffer.getLong(0), buffer.getLong(8) };
+	}
+
+	/**
+	 * Reads the line at an offset of the player file, without its line terminator.
+	 */
+	private byte[] readLine(long offset)
+	{
+		byte[] bytes = new byte[READ_SIZE];
+		int length = 0;
+		try
+		{
+			while (true)
+			{
+				int read = data.read(ByteBuffer.wrap(bytes, length, bytes.length - length), offset + length);
+				if (read <= 0)
+				{
+					break;
+				}
+				for (int i = length; i < length + read; i++)
+				{
+					if (bytes[i] == '\n')
+					{
+						return trim(bytes, i);
+					}
+				}
+				length += read;
+				if (length == bytes.length)
+				{
+					bytes = Arrays.copyOf(bytes, bytes.length * 2);
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException("Could not read the player file.", e);
+		}
+		return trim(bytes, length);
+	}
+
+	private static byte[] trim(byte[] bytes, int length)
+	{
+		if (length > 0 && bytes[length - 1] == '\r')
+		{
+			length--;
+		}
+		return Arrays.copyOf(bytes, length);
+	}
+
+	/**
+	 * Whether the name at the start of a line is the name spelled by the characters.
+	 */
+	private boolean matches(byte[] line, CharSequence chars, int start, int end)
+	{
+		int nameLength = nameLength(line);
+		for (int i = 0; i < nameLength; i++)
+		{
+			if (line[i] < 0)
+			{
+				// Not ASCII, compare it decoded.
+				return matches(new String(line, 0, nameLength, StandardCharsets.UTF_8), chars, start, end);
+			}
+		}
+		if (nameLength != end - start)
+		{
+			return false;
+		}
+		for (int i = 0; i < nameLength; i++)
+		{
+			if (line[i] != chars.charAt(start + i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean matches(String name, CharSequence chars, int start, int end)
+	{
+		if (name.length() != end - start)
+		{
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++)
+		{
+			if (name.charAt(i) != chars.charAt(start + i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean sameName(byte[] line, byte[] name, int nameLength)
+	{
+		return nameLength(line) == nameLength && Arrays.equals(line, 0, nameLength, name, 0, nameLength);
+	}
+
+	private int nameLength(byte[] line)
+	{
+		for (int i = 0; i < line.length; i++)
+		{
+			if (line[i] == delimiter)
+			{
+				return i;
+			}
+		}
+		return line.length;
+	}
+
+	private static long tagOf(long entry)
+	{
+		return (entry >>> TAG_SHIFT) & TAG_MASK;
+	}
+
+	private static long offsetOf(long entry)
+	{
+		return (entry & OFFSET_MASK) - 1;
+	}
+
+	private long slot(long slot)
+	{
+		return segments[(int) (slot >>> SEGMENT_SHIFT)].getLong((int) (slot & ((1 << SEGMENT_SHIFT) - 1)) * SLOT_BYTES);
+	}
+
+	private void setSlot(long slot, long entry)
+	{
+		segments[(int) (slot >>> SEGMENT_SHIFT)].putLong((int) (slot & ((1 << SEGMENT_SHIFT) - 1)) * SLOT_BYTES, entry);
+	}
+
+	/**
+	 * Returns the number of players in the index.
+	 */
+	public long size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the number of players loaded right now.
+	 */
+	public int getResidentCount()
+	{
+		return residents.size();
+	}
+
+	public int getMaxResident()
+	{
+		return residents.getMaxResident();
+	}
+
+	public long getLoads()
+	{
+		return residents.getLoads();
+	}
+
+	public long getEvictions()
+	{
+		return residents.getEvictions();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			data.close();
+			totals.close();
+		}
+		finally
+		{
+			indexChannel.close();
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.gamesys.consoleroulette.application.store;
+
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.bet.Money;
+import com.gamesys.consoleroulette.application.bet.Player;
+
+/**
+ * Turns one line of the player file ("Username[,TotalWin[,TotalBet]]") into a player. An invalid line is reported
+ * and skipped, never fatal. Both the console loader and the memory-mapped loader use it, so the rules are the same
+ * however the file is read. It keeps no state, so any number of threads can share it.
+ * 
+ * @author Andreas
+ *
+ */
+public class PlayerRecordParser
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(PlayerRecordParser.class);
+
+	private final Pattern pattern;
+
+	private final int maxTokens;
+
+	private final int historyDepth;
+
+	/**
+	 * @param pattern the delimiter between the values
+	 * @param maxTokens values on a line, at most
+	 * @param historyDepth games each player keeps the bets and results of
+	 */
+	public PlayerRecordParser(Pattern pattern, int maxTokens, int historyDepth)
+	{
+		this.pattern = pattern;
+		this.maxTokens = maxTokens;
+		this.historyDepth = historyDepth;
+	}
+
+	/**
+	 * @param line
+	 * @return the player, or null if the line was invalid (and a warning logged)
+	 */
+	public Player parse(String line)
+	{
+		String[] playerDetails = pattern.split(line, maxTokens + 1);
+
+		/*
+		 * While we limit the number of tokens to the expected number we also check if the tokens are less and print an
+		 * error message to the user so he can correct his input.
+		 */
+		if (playerDetails.length > maxTokens)
+		{
+			log.warn("'" + line + "' was malformed. The format is 'Username [TotalWin] [TotalBet]'.");
+			return null;
+		}
+
+		// The user name will always be present but it might be empty.
+		if (playerDetails[0].isEmpty() || playerDetails[0].contains(" "))
+		{
+			log.warn("The user name cannot be empty or contain empty spaces. Did you forget a comma?");
+			return null;
+		}
+		String userName = playerDetails[0];
+
+		// Totals in pence. No value is zero.
+		long totalWin = 0;
+		long totalBet = 0;
+
+		try
+		{
+			if (playerDetails.length >= 2)
+			{
+				totalWin = (playerDetails[1].isEmpty()) ? 0 : Money.parse(playerDetails[1]);
+				if (totalWin < 0)
+				{
+					log.warn("The total win amount must be positive.");
+					return null;
+				}
+			}
+
+			if (playerDetails.length == 3)
+			{
+				totalBet = (playerDetails[2].isEmpty()) ? 0 : Money.parse(playerDetails[2]);
+				if (totalBet < 0)
+				{
+					log.warn("The total bet amount must be positive.");
+					return null;
+				}
+			}
+		}
+		catch (NumberFormatException nfe)
+		{
+			log.error("The total bet and total win amount must be a real numbers with at most 2 decimal places "
+					+ "(i.e. 0.15, 3.50).");
+			return null;
+		}
+
+		return new Player(userName, totalBet, totalWin, historyDepth);
+	}
+}
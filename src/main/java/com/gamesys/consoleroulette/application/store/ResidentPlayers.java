@@ -0,0 +1,224 @@
+package com.gamesys.consoleroulette.application.store;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+
+/**
+ * The players loaded right now by a lookup that loads its players as they bet and evicts them again when they don't:
+ * a PlayerDirectory, or the players of a MappedLedger. A player is loaded under a key of the lookup (a slot of its
+ * index, an id) the first time it's found. While a bet is recorded on it, it's held between acquire and release, and
+ * it's only evicted when no one holds it, it hasn't bet for a couple of games and more than the memory budget's worth
+ * of players are loaded.
+ *
+ * @author Andreas
+ *
+ */
+final class ResidentPlayers
+{
+	// Rough heap cost of a loaded player with a history of 16 games: the player, its ledger and history arrays, its
+	// name and the entries pointing at it.
+	static final int ESTIMATED_PLAYER_BYTES = 1024;
+
+	// Games a player has to be idle for before it can be evicted. Bets are taken at most one game ahead of the last
+	// game settled, so after two games all the bets of the player are settled.
+	private static final int IDLE_GAMES = 2;
+
+	// Loaded players by key, and the same entries by player for acquire and release.
+	private final ConcurrentHashMap<Long, Resident> byKey = new ConcurrentHashMap<Long, Resident>();
+
+	private final ConcurrentHashMap<Player, Resident> byPlayer = new ConcurrentHashMap<Player, Resident>();
+
+	// Players kept loaded before the idle ones are evicted.
+	private final int maxResident;
+
+	// The game after the last one settled. Stamped on players when they are used.
+	private volatile long epoch;
+
+	private final LongAdder loads = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param memoryBudget bytes of heap the loaded players may take, roughly
+	 */
+	ResidentPlayers(long memoryBudget)
+	{
+		this.maxResident = (int) Math.min(Integer.MAX_VALUE, Math.max(1, memoryBudget / ESTIMATED_PLAYER_BYTES));
+	}
+
+	/**
+	 * Returns the player loaded under a key, or null if it isn't loaded.
+	 */
+	Player get(long key)
+	{
+		Resident resident = byKey.get(key);
+		return (resident == null) ? null : resident.player;
+	}
+
+	/**
+	 * Returns the player of a key, loading it if it isn't loaded yet.
+	 *
+	 * @param key
+	 * @param loader makes the player of the key, null if there is none
+	 * @return the player, or null if the loader made none
+	 */
+	Player load(long key, LongFunction<Player> loader)
+	{
+		Resident resident = byKey.computeIfAbsent(key, k -> {
+			Player player = loader.apply(k);
+			if (player == null)
+			{
+				return null;
+			}
+			Resident loaded = new Resident(k, player, epoch);
+			byPlayer.put(player, loaded);
+			loads.increment();
+			return loaded;
+		});
+		return (resident == null) ? null : resident.player;
+	}
+
+	/**
+	 * Holds the player so it can't be evicted. If it was evicted since it was found, it's found again.
+	 *
+	 * @param player
+	 * @param finder finds a player by name, loading it
+	 * @return the player held, or null if it can't be found anymore
+	 */
+	Player acquire(Player player, Function<String, Player> finder)
+	{
+		while (true)
+		{
+			Resident resident = byPlayer.get(player);
+			if (resident == null)
+			{
+				player = finder.apply(player.getUserName());
+				if (player == null)
+				{
+					return null;
+				}
+				continue;
+			}
+
+			int holds = resident.holds.get();
+			if (holds < 0)
+			{
+				// Being evicted, which takes a moment. It can be loaded again once it's gone.
+				Thread.onSpinWait();
+			}
+			else if (resident.holds.compareAndSet(holds, holds + 1))
+			{
+				return player;
+			}
+		}
+	}
+
+	/**
+	 * Lets go of a player held with acquire.
+	 */
+	void release(Player player)
+	{
+		Resident resident = byPlayer.get(player);
+		if (resident != null)
+		{
+			resident.lastUsed = epoch;
+			resident.holds.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Evicts players that haven't bet since a couple of games before the one settled, if more than the budget's worth
+	 * are loaded. A quarter of the budget is freed on top, so it doesn't happen after every game.
+	 *
+	 * @param settledGameId the last game settled
+	 * @param eviction told about every player before it's gone, while no one can hold it
+	 * @return the number of players evicted
+	 */
+	synchronized int evictIdle(long settledGameId, Eviction eviction)
+	{
+		epoch = settledGameId + 1;
+
+		int excess = byKey.size() - maxResident;
+		if (excess <= 0)
+		{
+			return 0;
+		}
+
+		int target = excess + maxResident / 4;
+		int evicted = 0;
+		for (Resident resident : byKey.values())
+		{
+			if (evicted == target)
+			{
+				break;
+			}
+			if (settledGameId - resident.lastUsed >= IDLE_GAMES && resident.holds.compareAndSet(0, -1))
+			{
+				eviction.evicted(resident.key, resident.player);
+				byKey.remove(resident.key);
+				byPlayer.remove(resident.player);
+				evicted++;
+			}
+		}
+		evictions.add(evicted);
+		return evicted;
+	}
+
+	/**
+	 * Returns the number of players loaded right now.
+	 */
+	int size()
+	{
+		return byKey.size();
+	}
+
+	int getMaxResident()
+	{
+		return maxResident;
+	}
+
+	long getLoads()
+	{
+		return loads.sum();
+	}
+
+	long getEvictions()
+	{
+		return evictions.sum();
+	}
+
+	/**
+	 * Told about a player that is evicted.
+	 */
+	interface Eviction
+	{
+		void evicted(long key, Player player);
+	}
+
+	/**
+	 * A loaded player. Holds counts the bets being recorded on it, -1 once it is being evicted.
+	 */
+	private static final class Resident
+	{
+		private final long key;
+
+		private final Player player;
+
+		private final AtomicInteger holds = new AtomicInteger();
+
+		// Epoch of the last time it was used.
+		private volatile long lastUsed;
+
+		private Resident(long key, Player player, long lastUsed)
+		{
+			this.key = key;
+			this.player = player;
+			this.lastUsed = lastUsed;
+		}
+	}
+}
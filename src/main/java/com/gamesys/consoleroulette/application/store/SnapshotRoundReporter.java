@@ -0,0 +1,124 @@
+package com.gamesys.consoleroulette.application.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.RoundReporter;
+
+/**
+ * Takes a snapshot of the player ledger every so many rounds, then passes everything on to another reporter. The
+ * snapshot is captured at the end of the round, with the position the journal had at the cutoff of the round, and
+ * written on a thread of its own, so the next round doesn't wait for it. If the last snapshot is still being written the round is skipped, and so is every round once the journal has
+ * failed.
+ * 
+ * @author Andreas
+ *
+ */
+public class SnapshotRoundReporter implements RoundReporter
+{
+	// logger, because system.out and system.err... meh
+	private static final Logger log = LoggerFactory.getLogger(SnapshotRoundReporter.class);
+
+	private final LedgerSnapshotStore snapshotStore;
+
+	private final BetJournal journal;
+
+	private final Collection<Player> players;
+
+	private final int rounds;
+
+	private final RoundReporter next;
+
+	// Writes the snapshots, one at a time.
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "SnapshotWriter");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// The snapshot being written, if any. Only used from the thread playing the rounds.
+	private Future<?> writing;
+
+	// Game whose betting closed last and the length of the journal right then, before any bet on the next game.
+	// Only used under the lock of the game, which the cutoff and the round both hold.
+	private long cutoffGameId = -1;
+
+	private long cutoffPosition;
+
+	/**
+	 * @param snapshotStore
+	 * @param journal the journal the snapshots go with
+	 * @param players all the players of the table
+	 * @param rounds snapshot every this many rounds
+	 * @param next
+	 */
+	public SnapshotRoundReporter(LedgerSnapshotStore snapshotStore, BetJournal journal, Collection<Player> players,
+			int rounds, RoundReporter next)
+	{
+		this.snapshotStore = snapshotStore;
+		this.journal = journal;
+		this.players = players;
+		this.rounds = rounds;
+		this.next = next;
+	}
+
+	@Override
+	public void bettingClosed(long gameId)
+	{
+		cutoffGameId = gameId;
+		cutoffPosition = journal.position();
+		next.bettingClosed(gameId);
+	}
+
+	@Override
+	public void roundStarted(long gameId, int winningNumber)
+	{
+		next.roundStarted(gameId, winningNumber);
+	}
+
+	@Override
+	public void betSettled(Player player, long gameId, int choice, long amount, long winnings)
+	{
+		next.betSettled(player, gameId, choice, amount, winnings);
+	}
+
+	@Override
+	public void roundFinished(long gameId, int betsSettled)
+	{
+		next.roundFinished(gameId, betsSettled);
+
+		// A snapshot is never ahead of its journal, so none are taken once the journal failed.
+		if ((gameId + 1) % rounds == 0 && (writing == null || writing.isDone()) && !journal.isFailed()
+				&& cutoffGameId == gameId)
+		{
+			final LedgerSnapshotStore.Capture capture = snapshotStore.capture(players, gameId + 1, cutoffPosition,
+					journal);
+			writing = writer.submit(() -> write(capture));
+		}
+	}
+
+	private void write(LedgerSnapshotStore.Capture capture)
+	{
+		try
+		{
+			Path snapshot = snapshotStore.write(capture, journal);
+			log.info("Snapshot of the players taken at game " + capture.getNextGameId() + " in " + snapshot + ".");
+		}
+		catch (IOException e)
+		{
+			log.error("Could not write a snapshot of the players: " + e.getMessage());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.store.BetJournal;
+
+/**
+ * A journal written in one session and replayed in the next gives the players back the totals of the settled bets,
+ * and only those.
+ */
+public class BetJournalTest
+{
+	private Path file;
+
+	private ConcurrentHashMap<String, Player> players;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		System.out.println("@Before - setUp");
+
+		file = Files.createTempFile("journal", ".bin");
+		players = new ConcurrentHashMap<String, Player>(2);
+		players.put("Tiki_Monkey", new Player("Tiki_Monkey", 100, 50));
+		players.put("Barbara", new Player("Barbara"));
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		System.out.println("@After - tearDown");
+
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testReplaySettledBets() throws IOException
+	{
+		System.out.println("@Test: Replay settled bets");
+
+		BetJournal journal = new BetJournal(file, 10);
+		journal.betAccepted(0, "Tiki_Monkey", RouletteRange.TWO.ordinal(), 200);
+		journal.betAccepted(0, "Barbara", RouletteRange.ODD.ordinal(), 300);
+		journal.betSettled(0, "Tiki_Monkey", 2, 7200);
+		journal.betSettled(0, "Barbara", 2, 0);
+		// Cut short by the end of the session.
+		journal.betAccepted(1, "Barbara", RouletteRange.EVEN.ordinal(), 400);
+		journal.close();
+
+		assertEquals(2, BetJournal.replay(file, players));
+		assertEquals(300, players.get("Tiki_Monkey").getTotalBet());
+		assertEquals(7250, players.get("Tiki_Monkey").getTotalWin());
+		assertEquals(300, players.get("Barbara").getTotalBet());
+		assertEquals(0, players.get("Barbara").getTotalWin());
+	}
+
+	@Test
+	public void testReplaySeveralBetsPerGame() throws IOException
+	{
+		System.out.println("@Test: Replay several bets of a player on one game");
+
+		BetJournal journal = new BetJournal(file, 10);
+		journal.betAccepted(0, "Barbara", RouletteRange.TWO.ordinal(), 200);
+		journal.betAccepted(0, "Barbara", RouletteRange.ODD.ordinal(), 300);
+		journal.betAccepted(0, "Barbara", RouletteRange.EVEN.ordinal(), 100);
+		journal.betAccepted(1, "Barbara", RouletteRange.EVEN.ordinal(), 400);
+		journal.betSettled(0, "Barbara", 2, 7200);
+		journal.betSettled(0, "Barbara", 2, 0);
+		journal.betSettled(0, "Barbara", 2, 200);
+		journal.betAccepted(1, "Tiki_Monkey", RouletteRange.ODD.ordinal(), 500);
+		journal.betSettled(1, "Tiki_Monkey", 3, 1000);
+		journal.betSettled(1, "Barbara", 3, 0);
+		journal.close();
+
+		assertEquals(5, BetJournal.replay(file, players));
+		assertEquals(1000, players.get("Barbara").getTotalBet());
+		assertEquals(7400, players.get("Barbara").getTotalWin());
+		assertEquals(600, players.get("Tiki_Monkey").getTotalBet());
+		assertEquals(1050, players.get("Tiki_Monkey").getTotalWin());
+	}
+
+	@Test
+	public void testSessionsDontMix() throws IOException
+	{
+		System.out.println("@Test: A game that comes again in the next session doesn't settle bets of the last");
+
+		BetJournal journal = new BetJournal(file, 10);
+		journal.betAccepted(42, "Barbara", RouletteRange.ODD.ordinal(), 300);
+		journal.close();
+
+		// The session crashed in game 42 and the next one carries on from it: the bet of the first is void.
+		journal = new BetJournal(file, 10);
+		journal.betSettled(42, "Barbara", 3, 600);
+		journal.close();
+
+		assertEquals(0, BetJournal.replay(file, players));
+		assertEquals(0, players.get("Barbara").getTotalBet());
+		assertEquals(0, players.get("Barbara").getTotalWin());
+	}
+
+	@Test
+	public void testEveryChoiceFits() throws IOException
+	{
+		System.out.println("@Test: Every bet choice fits a journal record");
+
+		RouletteRange[] choices = RouletteRange.values();
+		assertTrue(choices.length - 1 <= 0xFF);
+
+		BetJournal journal = new BetJournal(file, 10);
+		journal.betAccepted(0, "Barbara", choices[choices.length - 1].ordinal(), 300);
+		journal.betSettled(0, "Barbara", 3, 0);
+		journal.close();
+
+		assertEquals(1, BetJournal.replay(file, players));
+		assertEquals(300, players.get("Barbara").getTotalBet());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testChoiceTooBig() throws IOException
+	{
+		System.out.println("@Test: A choice too big for a journal record is turned down");
+
+		BetJournal journal = new BetJournal(file, 10);
+		try
+		{
+			journal.betAccepted(0, "Barbara", 0x100, 300);
+		}
+		finally
+		{
+			journal.close();
+		}
+	}
+
+	@Test
+	public void testTornWrite() throws IOException
+	{
+		System.out.println("@Test: Torn write at the end of the journal");
+
+		BetJournal journal = new BetJournal(file, 10);
+		journal.betAccepted(0, "Barbara", RouletteRange.ODD.ordinal(), 300);
+		journal.betSettled(0, "Barbara", 3, 600);
+		journal.close();
+		long length = Files.size(file);
+
+		// Half a record, as a crash in the middle of a write leaves it.
+		Files.write(file, new byte[] { 40, 0, 0, 0, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+		assertEquals(1, BetJournal.replay(file, players));
+		assertEquals(300, players.get("Barbara").getTotalBet());
+		assertEquals(600, players.get("Barbara").getTotalWin());
+
+		// Opening it again cuts the torn write off before appending the new session (a header, a type and a time).
+		journal = new BetJournal(file, 10);
+		journal.close();
+		assertEquals(length + 17, Files.size(file));
+
+		players.put("Barbara", new Player("Barbara"));
+		assertEquals(1, BetJournal.replay(file, players));
+		assertEquals(600, players.get("Barbara").getTotalWin());
+	}
+}
@@ -0,0 +1,147 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.BetRecord;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.game.BetLineParser;
+import com.gamesys.consoleroulette.application.game.PlayerIndex;
+
+public class BetLineParserTest
+{
+	private static final long MAX_BET = 10000;
+
+	private ConcurrentHashMap<String, Player> players;
+
+	private BetLineParser parser;
+
+	private BetRecord record;
+
+	private String valid[] =
+	{ "Barbara 1 1.60", "Tiki_Monkey odd 3", "Tiki_Monkey EVEN .5", "Barbara 36 99.99", "Barbara 12 7.",
+			"Barbara 2 1.600", "Barbara 3 0.1000" };
+
+	private long validAmounts[] =
+	{ 160, 300, 50, 9999, 700, 160, 10 };
+
+	private String invalid[] =
+	{ "Tiki_Monkey -0.2", "Tiki_Monkey 0.2 34", "Tiki_Monkey,0.5", "Andreas 1 0.5", "Barbara  1 0.5",
+			"Barbara 1 0.5 ", "Barbara 37 1", "Barbara 0 1", "Barbara 07 1", "Barbara ODDS 1", "Barbara 1 money",
+			"Barbara 1 1.605", "Barbara 1 1.6001", "Barbara 1 -1", "Barbara 1 .", "Barbara 1 0", "Barbara 1 100", "barbara 1 1", "" };
+
+	private int invalidResults[] =
+	{ BetLineParser.MALFORMED, BetLineParser.INVALID_CHOICE, BetLineParser.MALFORMED, BetLineParser.UNKNOWN_PLAYER,
+			BetLineParser.MALFORMED, BetLineParser.MALFORMED, BetLineParser.INVALID_CHOICE,
+			BetLineParser.INVALID_CHOICE, BetLineParser.INVALID_CHOICE, BetLineParser.INVALID_CHOICE,
+			BetLineParser.INVALID_NUMBER, BetLineParser.INVALID_NUMBER, BetLineParser.INVALID_NUMBER,
+			BetLineParser.INVALID_NUMBER, BetLineParser.INVALID_NUMBER, BetLineParser.INVALID_AMOUNT, BetLineParser.INVALID_AMOUNT,
+			BetLineParser.UNKNOWN_PLAYER, BetLineParser.MALFORMED };
+
+	@Before
+	public void setUp()
+	{
+		System.out.println("@Before - setUp");
+
+		players = new ConcurrentHashMap<String, Player>(2);
+		players.put("Barbara", new Player("Barbara"));
+		players.put("Tiki_Monkey", new Player("Tiki_Monkey", 0, 0));
+
+		parser = new BetLineParser(new PlayerIndex(players), MAX_BET);
+		record = new BetRecord();
+	}
+
+	@Test
+	public void testValidLines()
+	{
+		System.out.println("@Test: Parsing valid bet lines");
+
+		for (int i = 0; i < valid.length; i++)
+		{
+			String msg = "The bet is not as expected for [" + valid[i] + "]";
+
+			assertEquals(msg, BetLineParser.PARSED, parser.parse(valid[i], record));
+			assertSame(msg, players.get(valid[i].substring(0, valid[i].indexOf(' '))), record.getPlayer());
+			assertEquals(msg, validAmounts[i], record.getAmount());
+		}
+
+		parser.parse("Tiki_Monkey odd 3", record);
+		assertEquals(RouletteRange.ODD.ordinal(), record.getChoice());
+
+		parser.parse("Barbara 36 99.99", record);
+		assertEquals(RouletteRange.THIRTYSIX.ordinal(), record.getChoice());
+	}
+
+	@Test
+	public void testInvalidLines()
+	{
+		System.out.println("@Test: Parsing invalid bet lines");
+
+		for (int i = 0; i < invalid.length; i++)
+		{
+			String msg = "The result is not as expected for [" + invalid[i] + "]";
+
+			assertEquals(msg, invalidResults[i], parser.parse(invalid[i], record));
+			assertNull(msg, record.getPlayer());
+		}
+	}
+
+	@Test
+	public void testPlayerAddedLater()
+	{
+		System.out.println("@Test: A player added to the map after the index is built can bet");
+
+		assertEquals(BetLineParser.UNKNOWN_PLAYER, parser.parse("Andreas 1 1", record));
+
+		Player andreas = new Player("Andreas");
+		players.put("Andreas", andreas);
+		assertEquals(BetLineParser.PARSED, parser.parse("Andreas 1 1", record));
+		assertSame(andreas, record.getPlayer());
+		assertEquals(BetLineParser.PARSED, parser.parse("Barbara 1 1", record));
+		assertSame(players.get("Barbara"), record.getPlayer());
+	}
+
+	@Test
+	public void testPlayerReplaced()
+	{
+		System.out.println("@Test: A player replaced or swapped in the map is found as it is in the map");
+
+		Player barbara = new Player("Barbara");
+		players.put("Barbara", barbara);
+		assertEquals(BetLineParser.PARSED, parser.parse("Barbara 1 1", record));
+		assertSame(barbara, record.getPlayer());
+
+		// One out, one in: the map holds as many players as before.
+		players.remove("Barbara");
+		Player andreas = new Player("Andreas");
+		players.put("Andreas", andreas);
+		assertEquals(BetLineParser.UNKNOWN_PLAYER, parser.parse("Barbara 1 1", record));
+		assertEquals(BetLineParser.PARSED, parser.parse("Andreas 1 1", record));
+		assertSame(andreas, record.getPlayer());
+	}
+
+	@Test
+	public void testZeroWithLowerBound()
+	{
+		System.out.println("@Test: Bets on zero only in a game with zero");
+
+		assertEquals(BetLineParser.INVALID_CHOICE, parser.parse("Barbara 0-1 1", record));
+		assertEquals(BetLineParser.PARSED, parser.parse("Barbara 2-1 1", record));
+		assertEquals(RouletteRange.SPLIT_1_2.ordinal(), record.getChoice());
+
+		BetLineParser withZero = new BetLineParser(new PlayerIndex(players), MAX_BET, 0, RouletteRange.HIGHEST_NUMBER);
+		assertEquals(BetLineParser.PARSED, withZero.parse("Barbara 0 1", record));
+		assertEquals(RouletteRange.ZERO.ordinal(), record.getChoice());
+		assertEquals(BetLineParser.PARSED, withZero.parse("Barbara 0-1-2-3 1", record));
+		assertEquals(RouletteRange.FIRST_FOUR.ordinal(), record.getChoice());
+		assertEquals(BetLineParser.PARSED, withZero.parse("Barbara black 1", record));
+		assertEquals(RouletteRange.BLACK.ordinal(), record.getChoice());
+	}
+}
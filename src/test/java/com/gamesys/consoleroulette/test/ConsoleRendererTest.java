@@ -0,0 +1,94 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.Bet;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.game.ConsoleRenderer;
+import com.gamesys.consoleroulette.application.game.ConsoleRoundReporter;
+import com.gamesys.consoleroulette.application.game.RoundReporter;
+
+/**
+ * The renderer must print exactly what the console reporter prints, answers to bets included, in order.
+ */
+public class ConsoleRendererTest
+{
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private PrintStream console;
+
+	private Thread rendererThread;
+
+	@Before
+	public void setUp()
+	{
+		System.out.println("@Before - setUp");
+
+		console = System.out;
+	}
+
+	@After
+	public void tearDown() throws InterruptedException
+	{
+		System.setOut(console);
+		if (rendererThread != null)
+		{
+			rendererThread.interrupt();
+			rendererThread.join();
+		}
+
+		System.out.println("@After - tearDown");
+	}
+
+	@Test
+	public void testSameAsConsoleReporter() throws InterruptedException
+	{
+		System.out.println("@Test: Renderer prints what the console reporter prints");
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(expected, true));
+		System.out.println("OK! Bet accepted.");
+		playRound(new ConsoleRoundReporter(), new Player("Tiki_Monkey", 100, 50), new Player("Barbara"));
+		System.setOut(console);
+
+		ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+		ConsoleRenderer renderer = new ConsoleRenderer(new PrintStream(rendered, true), null);
+		rendererThread = new Thread(renderer, "ConsoleRenderer");
+		rendererThread.start();
+		renderer.printLine("OK! Bet accepted.");
+		playRound(renderer, new Player("Tiki_Monkey", 100, 50), new Player("Barbara"));
+
+		String text = new String(expected.toByteArray(), StandardCharsets.UTF_8);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (rendered.size() < expected.size() && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		assertEquals(text, new String(rendered.toByteArray(), StandardCharsets.UTF_8));
+		assertEquals(6, text.split(LINE_SEPARATOR).length);
+	}
+
+	private void playRound(RoundReporter reporter, Player winner, Player loser)
+	{
+		reporter.roundStarted(0, 7);
+
+		Bet win = new Bet(winner.getUserName(), RouletteRange.SEVEN, 250);
+		winner.updateTotalBet(win.getAmount());
+		reporter.betSettled(winner, 0, win.getChoice().ordinal(), win.getAmount(), winner.settleBet(win, 7, 36));
+
+		Bet lose = new Bet(loser.getUserName(), RouletteRange.EVEN, 1005);
+		loser.updateTotalBet(lose.getAmount());
+		reporter.betSettled(loser, 0, lose.getChoice().ordinal(), lose.getAmount(), loser.settleBet(lose, 7, 0));
+
+		reporter.roundFinished(0, 2);
+	}
+}
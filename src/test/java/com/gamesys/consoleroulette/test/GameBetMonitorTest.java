@@ -1,13 +1,13 @@
 package com.gamesys.consoleroulette.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
-import java.math.BigDecimal;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -21,9 +21,14 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.gamesys.consoleroulette.application.bet.Bet;
+import com.gamesys.consoleroulette.application.bet.BetRecord;
 import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.game.BetBook;
+import com.gamesys.consoleroulette.application.game.ConsoleRoundReporter;
 import com.gamesys.consoleroulette.application.game.GameBetMonitor;
 import com.gamesys.consoleroulette.application.game.GameNumberGenerator;
+import com.gamesys.consoleroulette.application.metrics.TableMetrics;
 
 public class GameBetMonitorTest
 {
@@ -64,7 +69,7 @@ public class GameBetMonitorTest
 
 		players = new ConcurrentHashMap<String, Player>(2);
 		players.put("Barbara", new Player("Barbara"));
-		players.put("Tiki_Monkey", new Player("Tiki_Monkey", new BigDecimal(0), new BigDecimal(0)));
+		players.put("Tiki_Monkey", new Player("Tiki_Monkey", 0, 0));
 
 		gng = EasyMock.createMock(GameNumberGenerator.class);
 
@@ -95,7 +100,7 @@ public class GameBetMonitorTest
 
 			Bet bet = gbm.createBet(br, pattern, NUM_TOKENS);
 
-			assertEquals(msg, bet.getAmount(), new BigDecimal("1.60"));
+			assertEquals(msg, 160, bet.getAmount());
 		}
 	}
 
@@ -133,9 +138,11 @@ public class GameBetMonitorTest
 	{
 		System.out.println("@Test: Bet recording");
 		
-		Bet bet = new Bet("Barbara", "6", new BigDecimal(2));
+		Bet bet = new Bet("Barbara", RouletteRange.SIX, 200);
 		
-		EasyMock.expect(gng.getCurrentGameId()).andStubReturn(10l);
+		BetBook betBook = new BetBook(10, BetBook.NO_LIMIT);
+
+		EasyMock.expect(gng.getOpenBook()).andStubReturn(betBook);
 		EasyMock.replay(gng);
 		
 		String msg = "The total bet is not as expected for [" + bet.toString() + "]";
@@ -144,6 +151,48 @@ public class GameBetMonitorTest
 		
 		assertEquals(msg, bet.getAmount(), players.get(bet.getUserName()).getTotalBet());
 		
-		assertTrue(players.get(bet.getUserName()).getBetHistory().containsKey(new Long(10)));
+		assertTrue(players.get(bet.getUserName()).getHistory().contains(10));
+
+		assertEquals("The bet is not in the book of the game", 1, betBook.size());
+	}
+
+	@Test
+	public void testSeveralBetsPerGame()
+	{
+		System.out.println("@Test: Several bets of a player on one game");
+
+		GameNumberGenerator game = new GameNumberGenerator(LOWER_BOUND, UPPER_BOUND, 30, (lower, upper) -> 5,
+				new ConsoleRoundReporter(), new TableMetrics());
+		GameBetMonitor betMonitor = new GameBetMonitor(LOWER_BOUND, UPPER_BOUND, players, game);
+		betMonitor.setMaxBetsPerGame(3);
+		BetRecord betRecord = new BetRecord();
+		BetBook firstBook = game.getOpenBook();
+
+		assertEquals(GameBetMonitor.ACCEPTED, place(betMonitor, "Barbara 5 1", betRecord));
+		assertEquals(GameBetMonitor.ACCEPTED, place(betMonitor, "Barbara ODD 2", betRecord));
+		assertEquals(GameBetMonitor.ACCEPTED, place(betMonitor, "Barbara EVEN 3", betRecord));
+		assertEquals(GameBetMonitor.TOO_MANY_BETS, place(betMonitor, "Barbara 6 1", betRecord));
+		assertEquals(GameBetMonitor.ACCEPTED, place(betMonitor, "Tiki_Monkey 6 1", betRecord));
+		assertEquals(3, players.get("Barbara").getHistory().getBetCount(0));
+		assertEquals(600, players.get("Barbara").getTotalBet());
+
+		game.playRound();
+
+		assertEquals(3600 + 400, players.get("Barbara").getTotalWin());
+		assertEquals(3600 + 400, players.get("Barbara").getBetResult(0).getWinnings());
+		assertEquals(0, players.get("Tiki_Monkey").getTotalWin());
+
+		// The book of the first game is used again for the third, empty.
+		assertEquals(GameBetMonitor.ACCEPTED, place(betMonitor, "Barbara 5 1", betRecord));
+		game.playRound();
+		assertEquals(3600 + 400 + 3600, players.get("Barbara").getTotalWin());
+		assertSame(firstBook, game.getOpenBook());
+		assertEquals(2, firstBook.getGameId());
+		assertEquals(0, firstBook.size());
+	}
+
+	private static int place(GameBetMonitor betMonitor, String line, BetRecord betRecord)
+	{
+		return betMonitor.placeBet(line, 0, line.length(), betRecord);
 	}
 }
\ No newline at end of file
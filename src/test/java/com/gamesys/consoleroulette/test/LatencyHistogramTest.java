@@ -0,0 +1,100 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.game.BetLineParser;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+import com.gamesys.consoleroulette.application.metrics.LatencyHistogram;
+import com.gamesys.consoleroulette.application.metrics.TableMetrics;
+
+/**
+ * Percentiles of the histogram must be within its precision of the real ones, for small and large values alike.
+ */
+public class LatencyHistogramTest
+{
+	// Relative error allowed, a bucket is at most 1/32 wide.
+	private static final double PRECISION = 1.0 / 32;
+
+	private LatencyHistogram histogram;
+
+	@Before
+	public void setUp()
+	{
+		System.out.println("@Before - setUp");
+
+		histogram = new LatencyHistogram();
+	}
+
+	@Test
+	public void testPercentiles()
+	{
+		System.out.println("@Test: Histogram percentiles");
+
+		// 1 to 100000, once each.
+		for (long value = 1; value <= 100000; value++)
+		{
+			histogram.record(value);
+		}
+
+		assertEquals(100000, histogram.getCount());
+		assertEquals(100000, histogram.getMax());
+		assertEquals(50000.5, histogram.getMean(), 0.001);
+		assertClose(50000, histogram.getValueAtPercentile(50));
+		assertClose(99000, histogram.getValueAtPercentile(99));
+		assertClose(99900, histogram.getValueAtPercentile(99.9));
+		assertEquals(100000, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testWideRange()
+	{
+		System.out.println("@Test: Histogram over a wide range");
+
+		Random random = new Random(7);
+		for (int i = 0; i < 10000; i++)
+		{
+			long value = (long) Math.pow(10, random.nextDouble() * 12);
+			histogram.reset();
+			histogram.record(value);
+			assertClose(value, histogram.getValueAtPercentile(50));
+		}
+
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getMax());
+
+		histogram.reset();
+		histogram.record(-5);
+		assertEquals(0, histogram.getValueAtPercentile(99));
+	}
+
+	@Test
+	public void testRejectionReasons()
+	{
+		System.out.println("@Test: Rejected bets by reason");
+
+		TableMetrics metrics = new TableMetrics();
+		metrics.betPlaced(GameBetMonitor.ACCEPTED, 1000);
+		metrics.betPlaced(GameBetMonitor.TOO_MANY_BETS, 1000);
+		metrics.betPlaced(BetLineParser.UNKNOWN_PLAYER, 1000);
+		metrics.betPlaced(BetLineParser.UNKNOWN_PLAYER, 3000);
+
+		assertEquals(1, metrics.getBetsAccepted());
+		assertEquals(3, metrics.getBetsRejected());
+		assertEquals(Long.valueOf(2), metrics.getBetsRejectedByReason().get("unknownPlayer"));
+		assertEquals(Long.valueOf(1), metrics.getBetsRejectedByReason().get("tooManyBets"));
+		assertEquals(Long.valueOf(0), metrics.getBetsRejectedByReason().get("malformed"));
+		assertEquals(1.5, metrics.getBetLatencyMeanMicros(), 0.001);
+	}
+
+	private static void assertClose(long expected, long actual)
+	{
+		assertTrue("Expected about " + expected + " but was " + actual,
+				actual >= expected && actual <= expected + Math.max(1, expected * PRECISION));
+	}
+}
@@ -0,0 +1,208 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.LedgerSnapshot;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.store.BetJournal;
+import com.gamesys.consoleroulette.application.store.LedgerSnapshotStore;
+import com.gamesys.consoleroulette.application.store.LedgerSnapshotStore.Snapshot;
+import com.gamesys.consoleroulette.application.store.MappedLedger;
+
+/**
+ * A snapshot plus the journal after it must give the same totals as the whole journal, stakes of the game in progress
+ * included, however the bets of the next game and the settlement of the last one mix in the journal.
+ */
+public class LedgerSnapshotStoreTest
+{
+	private Path directory;
+
+	private Path journalFile;
+
+	private LedgerSnapshotStore snapshotStore;
+
+	private ConcurrentHashMap<String, Player> players;
+
+	private BetJournal journal;
+
+	private Thread journalThread;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		System.out.println("@Before - setUp");
+
+		directory = Files.createTempDirectory("snapshots");
+		journalFile = directory.resolve("journal.bin");
+		snapshotStore = new LedgerSnapshotStore(directory, 2);
+
+		players = new ConcurrentHashMap<String, Player>(2);
+		players.put("Tiki_Monkey", new Player("Tiki_Monkey", 100, 50));
+		players.put("Barbara", new Player("Barbara"));
+
+		journal = new BetJournal(journalFile, 10);
+		journalThread = new Thread(journal, "BetJournal");
+		journalThread.start();
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		System.out.println("@After - tearDown");
+
+		journal.close();
+		try (Stream<Path> files = Files.walk(directory))
+		{
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	@Test
+	public void testSnapshotAndJournalTail() throws Exception
+	{
+		System.out.println("@Test: Snapshot plus journal tail");
+
+		// Game 0 closes its betting, Barbara bets on game 1 while game 0 is settled, and the snapshot is taken at the
+		// end of game 0. Her bet is settled after it.
+		accept("Tiki_Monkey", 0, RouletteRange.TWO, 200);
+		long cutoff = journal.position();
+		accept("Barbara", 1, RouletteRange.ODD, 300);
+		settle("Tiki_Monkey", 0, 2, 7200);
+
+		Path written = snapshotStore.write(snapshotStore.capture(players.values(), 1, cutoff, journal), journal);
+
+		settle("Barbara", 1, 3, 600);
+		accept("Tiki_Monkey", 2, RouletteRange.EVEN, 100);
+		settle("Tiki_Monkey", 2, 3, 0);
+		journal.close();
+
+		Snapshot snapshot = snapshotStore.loadNewest(Player.DEFAULT_HISTORY_DEPTH);
+		assertEquals(written, snapshot.getFile());
+		assertEquals(1, snapshot.getNextGameId());
+		ConcurrentHashMap<String, Player> restored = snapshot.getPlayers();
+		assertEquals(200 + 100, restored.get("Tiki_Monkey").getTotalBet());
+		assertEquals(0, restored.get("Barbara").getTotalBet());
+
+		assertEquals(2, snapshot.replayJournal(journalFile));
+		assertEquals(100 + 200 + 100, restored.get("Tiki_Monkey").getTotalBet());
+		assertEquals(50 + 7200, restored.get("Tiki_Monkey").getTotalWin());
+		assertEquals(300, restored.get("Barbara").getTotalBet());
+		assertEquals(600, restored.get("Barbara").getTotalWin());
+	}
+
+	@Test
+	public void testSnapshotIntoLedger() throws Exception
+	{
+		System.out.println("@Test: Snapshot plus journal tail read into a ledger, a player at a time");
+
+		accept("Tiki_Monkey", 0, RouletteRange.TWO, 200);
+		long cutoff = journal.position();
+		accept("Barbara", 1, RouletteRange.ODD, 300);
+		settle("Tiki_Monkey", 0, 2, 7200);
+		snapshotStore.write(snapshotStore.capture(players.values(), 1, cutoff, journal), journal);
+		settle("Barbara", 1, 3, 600);
+		journal.close();
+
+		Path ledgerFile = directory.resolve("ledger.bin");
+		try (MappedLedger ledger = MappedLedger.open(ledgerFile))
+		{
+			Snapshot snapshot = snapshotStore.readNewest(ledger::registerIfFits);
+			assertNull(snapshot.getPlayers());
+			assertEquals(2, ledger.size());
+			assertEquals(1, snapshot.replayJournal(journalFile, ledger::view));
+		}
+
+		// The replayed stake is one of a settled game, so it's still there after opening the ledger again.
+		try (MappedLedger ledger = MappedLedger.open(ledgerFile))
+		{
+			LedgerSnapshot barbara = ledger.ledger(ledger.getId("Barbara")).snapshot();
+			assertEquals(300, barbara.getTotalBet());
+			assertEquals(600, barbara.getTotalWin());
+			assertEquals(100 + 200, ledger.ledger(ledger.getId("Tiki_Monkey")).getTotalBet());
+		}
+	}
+
+	@Test
+	public void testNewSessionAfterSnapshot() throws Exception
+	{
+		System.out.println("@Test: A session after the snapshot is replayed whatever its game ids");
+
+		accept("Barbara", 3, RouletteRange.ODD, 300);
+		settle("Barbara", 3, 3, 600);
+		snapshotStore.write(capture(4), journal);
+		journal.close();
+
+		// The next run started from the player file, so its game ids start over.
+		journal = new BetJournal(journalFile, 10);
+		accept("Barbara", 0, RouletteRange.EVEN, 100);
+		settle("Barbara", 0, 2, 200);
+		journal.close();
+
+		Snapshot snapshot = snapshotStore.loadNewest(Player.DEFAULT_HISTORY_DEPTH);
+		assertEquals(1, snapshot.replayJournal(journalFile));
+		assertEquals(300 + 100, snapshot.getPlayers().get("Barbara").getTotalBet());
+		assertEquals(600 + 200, snapshot.getPlayers().get("Barbara").getTotalWin());
+	}
+
+	@Test
+	public void testDamagedSnapshot() throws Exception
+	{
+		System.out.println("@Test: Damaged snapshot falls back to an older one");
+
+		Path older = snapshotStore.write(capture(5), journal);
+		Path newer = snapshotStore.write(capture(6), journal);
+
+		Files.write(newer, new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+		assertEquals(older, snapshotStore.loadNewest(Player.DEFAULT_HISTORY_DEPTH).getFile());
+
+		Files.write(older, new byte[] { 0 }, StandardOpenOption.TRUNCATE_EXISTING);
+		assertNull(snapshotStore.loadNewest(Player.DEFAULT_HISTORY_DEPTH));
+	}
+
+	@Test
+	public void testOldSnapshotsDeleted() throws Exception
+	{
+		System.out.println("@Test: Only the newest snapshots are kept");
+
+		Path first = snapshotStore.write(capture(1), journal);
+		snapshotStore.write(capture(2), journal);
+		snapshotStore.write(capture(3), journal);
+
+		assertEquals(false, Files.exists(first));
+		assertEquals(3, snapshotStore.loadNewest(Player.DEFAULT_HISTORY_DEPTH).getNextGameId());
+	}
+
+	private LedgerSnapshotStore.Capture capture(long nextGameId)
+	{
+		return snapshotStore.capture(players.values(), nextGameId, journal.position(), journal);
+	}
+
+	private void accept(String userName, long gameId, RouletteRange choice, long amount)
+	{
+		Player player = players.get(userName);
+		player.placeBet(gameId, choice.ordinal(), amount, 1);
+		journal.betAccepted(gameId, userName, choice.ordinal(), amount);
+	}
+
+	private void settle(String userName, long gameId, int winningNumber, long winnings)
+	{
+		Player player = players.get(userName);
+		player.getHistory().settle(gameId, winningNumber, winnings);
+		player.updateTotalWin(winnings);
+		journal.betSettled(gameId, userName, winningNumber, winnings);
+	}
+}
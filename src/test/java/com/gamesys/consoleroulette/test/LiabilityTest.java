@@ -0,0 +1,105 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.BetRecord;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.game.BetBook;
+import com.gamesys.consoleroulette.application.game.ConsoleRoundReporter;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+import com.gamesys.consoleroulette.application.game.GameNumberGenerator;
+
+/**
+ * The liability of every number must follow the bets placed on it, and bets that would take a number over the
+ * maximum must be turned away without changing anything.
+ */
+public class LiabilityTest
+{
+	private static final int LOWER_BOUND = 1;
+
+	private static final int UPPER_BOUND = 36;
+
+	private ConcurrentHashMap<String, Player> players;
+
+	@Before
+	public void setUp()
+	{
+		System.out.println("@Before - setUp");
+
+		players = new ConcurrentHashMap<String, Player>(4);
+		for (String name : new String[] { "Tiki_Monkey", "Barbara", "Andreas", "Maria" })
+		{
+			players.put(name, new Player(name));
+		}
+	}
+
+	@Test
+	public void testLiabilityByNumber()
+	{
+		System.out.println("@Test: Liability of every number");
+
+		BetBook betBook = new BetBook();
+		assertTrue(betBook.reserve(RouletteRange.SEVEN.ordinal(), 100));
+		assertTrue(betBook.reserve(RouletteRange.ODD.ordinal(), 50));
+		assertTrue(betBook.reserve(RouletteRange.EVEN.ordinal(), 10));
+
+		assertEquals(100 * 36 + 50 * 2, betBook.getLiability(7));
+		assertEquals(50 * 2, betBook.getLiability(9));
+		assertEquals(10 * 2, betBook.getLiability(8));
+		assertEquals(0, betBook.getLiability(0));
+
+		betBook.release(RouletteRange.ODD.ordinal(), 50);
+		assertEquals(100 * 36, betBook.getLiability(7));
+		assertEquals(0, betBook.getLiability(9));
+	}
+
+	@Test
+	public void testReserveOverMaximum()
+	{
+		System.out.println("@Test: Reservation over the maximum changes nothing");
+
+		BetBook betBook = new BetBook(0, 1000);
+		assertTrue(betBook.reserve(RouletteRange.EVEN.ordinal(), 400));
+		assertFalse(betBook.reserve(RouletteRange.TWO.ordinal(), 10));
+		assertEquals(800, betBook.getLiability(2));
+		assertEquals(800, betBook.getLiability(36));
+		assertTrue(betBook.reserve(RouletteRange.ONE.ordinal(), 10));
+		assertEquals(360, betBook.getLiability(1));
+	}
+
+	@Test
+	public void testBetsOverMaximumRejected()
+	{
+		System.out.println("@Test: Bets over the maximum liability are rejected");
+
+		GameNumberGenerator game = new GameNumberGenerator(LOWER_BOUND, UPPER_BOUND, 30, new Random(1),
+				new ConsoleRoundReporter());
+		game.setMaxLiability(200000);
+		GameBetMonitor betMonitor = new GameBetMonitor(LOWER_BOUND, UPPER_BOUND, players, game);
+		BetRecord betRecord = new BetRecord();
+
+		// 50.00 on 17 owes 1800.00 if it wins, a second one would take it to 3600.00.
+		assertEquals(GameBetMonitor.ACCEPTED, place(betMonitor, "Tiki_Monkey 17 50", betRecord));
+		assertEquals(GameBetMonitor.OVER_LIABILITY, place(betMonitor, "Barbara 17 50", betRecord));
+		assertEquals(GameBetMonitor.ACCEPTED, place(betMonitor, "Barbara ODD 40", betRecord));
+		assertEquals(GameBetMonitor.ACCEPTED, place(betMonitor, "Tiki_Monkey 18 1", betRecord));
+
+		assertEquals(180000 + 8000, game.getLiabilities()[17]);
+		assertEquals(3600, game.getLiabilities()[18]);
+		assertEquals(3, game.getOpenBook().size());
+	}
+
+	private static int place(GameBetMonitor betMonitor, String line, BetRecord betRecord)
+	{
+		return betMonitor.placeBet(line, 0, line.length(), betRecord);
+	}
+}
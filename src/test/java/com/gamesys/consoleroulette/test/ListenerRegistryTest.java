@@ -0,0 +1,161 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.BetListener;
+import com.gamesys.consoleroulette.application.game.ListenerRegistry;
+
+/**
+ * Listeners added and removed while the games are told about must neither break the telling nor get lost, and 100k of
+ * them must come and go in linear time.
+ */
+public class ListenerRegistryTest
+{
+	private static final int LISTENERS = 100000;
+
+	private ListenerRegistry<BetListener> registry;
+
+	@Before
+	public void setUp()
+	{
+		System.out.println("@Before - setUp");
+
+		registry = new ListenerRegistry<BetListener>();
+	}
+
+	@Test
+	public void testAddAndRemove()
+	{
+		System.out.println("@Test: Listeners added and removed");
+
+		CountingListener[] listeners = new CountingListener[LISTENERS];
+		for (int i = 0; i < LISTENERS; i++)
+		{
+			listeners[i] = new CountingListener();
+			assertTrue(registry.add(listeners[i]));
+		}
+		assertFalse(registry.add(listeners[0]));
+		assertEquals(LISTENERS, registry.size());
+
+		// Every other one leaves.
+		for (int i = 0; i < LISTENERS; i += 2)
+		{
+			assertTrue(registry.remove(listeners[i]));
+		}
+		assertFalse(registry.remove(listeners[0]));
+		assertEquals(LISTENERS / 2, registry.size());
+
+		for (BetListener listener : registry)
+		{
+			listener.betCompleted(1, 7);
+		}
+		for (int i = 0; i < LISTENERS; i++)
+		{
+			assertEquals("Listener " + i, (i % 2 == 0) ? 0 : 1, listeners[i].games);
+		}
+	}
+
+	@Test
+	public void testIterationSeesSnapshot()
+	{
+		System.out.println("@Test: Iteration sees the listeners of the moment it started");
+
+		Set<BetListener> before = new HashSet<BetListener>();
+		for (int i = 0; i < 1000; i++)
+		{
+			CountingListener listener = new CountingListener();
+			registry.add(listener);
+			before.add(listener);
+		}
+
+		Set<BetListener> seen = new HashSet<BetListener>();
+		int count = 0;
+		for (BetListener listener : registry)
+		{
+			// Changes while going through them are not seen by this round.
+			if (count++ % 3 == 0)
+			{
+				registry.remove(listener);
+				registry.add(new CountingListener());
+			}
+			seen.add(listener);
+		}
+		assertEquals(before, seen);
+		assertEquals(1000, registry.size());
+	}
+
+	@Test
+	public void testConcurrentChanges() throws InterruptedException
+	{
+		System.out.println("@Test: Listeners join and leave while games are told about");
+
+		final CountingListener stayer = new CountingListener();
+		registry.add(stayer);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		Thread churn = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					CountingListener[] passing = new CountingListener[500];
+					while (running.get())
+					{
+						for (int i = 0; i < passing.length; i++)
+						{
+							passing[i] = new CountingListener();
+							registry.add(passing[i]);
+						}
+						for (int i = passing.length - 1; i >= 0; i--)
+						{
+							registry.remove(passing[i]);
+						}
+					}
+				}
+				catch (Throwable e)
+				{
+					failure.set(e);
+				}
+			}
+		});
+		churn.start();
+
+		for (int game = 0; game < 2000; game++)
+		{
+			for (BetListener listener : registry)
+			{
+				listener.betCompleted(game, 1);
+			}
+		}
+		running.set(false);
+		churn.join();
+
+		assertEquals(null, failure.get());
+		assertEquals(2000, stayer.games);
+		assertEquals(1, registry.size());
+	}
+
+	private static final class CountingListener implements BetListener
+	{
+		private int games;
+
+		@Override
+		public void betCompleted(long gameId, int winningNumber)
+		{
+			games++;
+		}
+	}
+}
@@ -0,0 +1,252 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.LedgerSnapshot;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.game.PlayerLookup;
+import com.gamesys.consoleroulette.application.store.MappedLedger;
+import com.gamesys.consoleroulette.application.store.PlayerDirectory;
+
+/**
+ * The players of a mapped ledger must keep their totals in the file: updated atomically from many threads, and still
+ * there when the file is opened again, without the stakes of games that were never settled.
+ */
+public class MappedLedgerTest
+{
+	// Where the writes started counter is in a slot.
+	private static final int WRITES_STARTED = 24;
+
+	// Room for 50 players made by a lookup.
+	private static final long MEMORY_BUDGET = 50 * PlayerDirectory.ESTIMATED_PLAYER_BYTES;
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		System.out.println("@Before - setUp");
+
+		file = Files.createTempFile("ledger", ".bin");
+		Files.delete(file);
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		System.out.println("@After - tearDown");
+
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(file.resolveSibling(file.getFileName() + MappedLedger.INDEX_SUFFIX));
+	}
+
+	@Test
+	public void testTotalsSurviveReopening() throws IOException
+	{
+		System.out.println("@Test: Totals and names survive reopening the ledger");
+
+		Map<String, Player> loaded = new ConcurrentHashMap<String, Player>();
+		loaded.put("Tiki_Monkey", new Player("Tiki_Monkey", 100, 200));
+		loaded.put("Barbara", new Player("Barbara", 300, 0));
+		loaded.put("Zoë", new Player("Zoë"));
+		loaded.put("A_name_that_is_much_too_long_for_a_slot", new Player("A_name_that_is_much_too_long_for_a_slot"));
+
+		try (MappedLedger ledger = MappedLedger.open(file))
+		{
+			assertEquals(3, ledger.registerAll(loaded));
+			PlayerLookup players = ledger.lookup(Player.DEFAULT_HISTORY_DEPTH, MEMORY_BUDGET);
+			Player tikiMonkey = players.find("Tiki_Monkey");
+			tikiMonkey.placeBet(41, RouletteRange.ODD.ordinal(), 50, 1);
+			tikiMonkey.settleBet(41, 50, 7, 0);
+			players.find("Barbara").updateTotalWin(3600);
+			ledger.betCompleted(41, 7);
+
+			// Game 42 never gets settled.
+			players.find("Barbara").placeBet(42, RouletteRange.EVEN.ordinal(), 100, 1);
+			assertEquals(400, players.find("Barbara").getTotalBet());
+		}
+
+		try (MappedLedger ledger = MappedLedger.open(file))
+		{
+			assertEquals(3, ledger.size());
+			assertEquals(42, ledger.getNextGameId());
+
+			PlayerLookup players = ledger.lookup(Player.DEFAULT_HISTORY_DEPTH, MEMORY_BUDGET);
+			assertSame(players.find("Barbara"), players.find("xBarbara", 1, 8));
+			assertNull(players.find("Barbar"));
+			assertNull(players.find("A_name_that_is_much_too_long_for_a_slot"));
+			assertEquals(150, players.find("Tiki_Monkey").getTotalBet());
+			assertEquals(200, players.find("Tiki_Monkey").getTotalWin());
+			assertEquals(300, players.find("Barbara").getTotalBet());
+			assertEquals(3600, players.find("Barbara").getTotalWin());
+			assertEquals(0, players.find("Zoë").getTotalBet());
+		}
+	}
+
+	@Test
+	public void testRegisterTwice() throws IOException
+	{
+		System.out.println("@Test: A name registered again gets the later totals");
+
+		try (MappedLedger ledger = MappedLedger.open(file))
+		{
+			int id = ledger.register("Barbara", 100, 200);
+			ledger.register("Tiki_Monkey", 0, 0);
+			assertEquals(id, ledger.register("Barbara", 300, 400));
+			assertEquals(2, ledger.size());
+			assertEquals(300, ledger.ledger(id).getTotalBet());
+			assertEquals(400, ledger.ledger(id).getTotalWin());
+			assertEquals(0, ledger.getId("Andreas"));
+		}
+	}
+
+	@Test
+	public void testIdlePlayersEvicted() throws IOException
+	{
+		System.out.println("@Test: Players made by the lookup are evicted once idle, their totals stay");
+
+		try (MappedLedger ledger = MappedLedger.open(file))
+		{
+			for (int i = 0; i < 400; i++)
+			{
+				ledger.register("Player" + i, i, 0);
+			}
+			PlayerLookup players = ledger.lookup(Player.DEFAULT_HISTORY_DEPTH, MEMORY_BUDGET);
+
+			// 20 players bet every game.
+			for (long gameId = 0; gameId < 20; gameId++)
+			{
+				for (int i = 0; i < 20; i++)
+				{
+					Player player = players.acquire(players.find("Player" + (gameId * 20 + i)));
+					player.placeBet(gameId, RouletteRange.ODD.ordinal(), 1, 1);
+					player.settleBet(gameId, 1, 3, 2);
+					players.release(player);
+				}
+				ledger.betCompleted(gameId, 3);
+				assertTrue(ledger.getResidentCount() <= 50 + 3 * 20);
+			}
+
+			Player first = players.find("Player0");
+			assertEquals(0 + 1, first.getTotalBet());
+			assertEquals(2, first.getTotalWin());
+			assertEquals(399 + 1, players.find("Player399").getTotalBet());
+		}
+	}
+
+	@Test
+	public void testWriteCutShort() throws IOException
+	{
+		System.out.println("@Test: A write cut short by a crash doesn't hold up readers after reopening");
+
+		try (MappedLedger ledger = MappedLedger.open(file))
+		{
+			ledger.register("Tiki_Monkey", 100, 200);
+		}
+
+		// A crash between the two counters of a write: started went up, completed didn't.
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+		{
+			ByteBuffer started = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder());
+			started.putInt(0, 1);
+			channel.write(started, MappedLedger.SLOT_BYTES + WRITES_STARTED);
+		}
+
+		try (MappedLedger ledger = MappedLedger.open(file))
+		{
+			LedgerSnapshot totals = ledger.ledger(1).snapshot();
+			assertEquals(100, totals.getTotalBet());
+			assertEquals(200, totals.getTotalWin());
+		}
+	}
+
+	@Test
+	public void testGrowsPastASegment() throws IOException
+	{
+		System.out.println("@Test: The ledger grows past a mapped segment");
+
+		int count = (1 << 20) + 10;
+		try (MappedLedger ledger = MappedLedger.open(file))
+		{
+			for (int i = 0; i < count; i++)
+			{
+				assertEquals(i + 1, ledger.register("P" + i, i, 0));
+			}
+			ledger.ledger(count).addWin(5);
+		}
+
+		try (MappedLedger ledger = MappedLedger.open(file))
+		{
+			assertEquals(count, ledger.size());
+			assertEquals("P" + (count - 1), ledger.getUserName(count));
+			assertEquals(count, ledger.getId("P" + (count - 1)));
+			assertEquals(1, ledger.getId("P0"));
+			assertEquals(count - 1, ledger.ledger(count).getTotalBet());
+			assertEquals(5, ledger.ledger(count).getTotalWin());
+			assertEquals(ledger.size() + 1, ledger.register("New", 0, 0));
+		}
+	}
+
+	@Test
+	public void testConcurrentUpdates() throws Exception
+	{
+		System.out.println("@Test: Concurrent updates of a slot all count and read consistently");
+
+		try (MappedLedger ledger = MappedLedger.open(file))
+		{
+			int id = ledger.register("Tiki_Monkey", 0, 0);
+			final Player player = new Player("Tiki_Monkey", ledger.ledger(id), 1);
+
+			// Bets and wins always go in pairs, so a consistent read has the total win at twice the total bet, less the
+			// win of every writer between the two.
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			for (int t = 0; t < 3; t++)
+			{
+				executor.execute(() -> {
+					for (int i = 0; i < 100000; i++)
+					{
+						player.updateTotalBet(1);
+						player.updateTotalWin(2);
+					}
+				});
+			}
+			Future<?> reader = executor.submit(() -> {
+				LedgerSnapshot totals = new LedgerSnapshot();
+				for (int i = 0; i < 100000; i++)
+				{
+					player.getTotals(totals);
+					long difference = totals.getTotalWin() - 2 * totals.getTotalBet();
+					assertTrue(difference <= 0 && difference >= -3 * 2);
+				}
+			});
+			executor.shutdown();
+			reader.get();
+			assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+			assertEquals(300000, player.getTotalBet());
+			assertEquals(600000, player.getTotalWin());
+		}
+	}
+}
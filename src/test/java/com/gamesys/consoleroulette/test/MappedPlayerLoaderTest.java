@@ -0,0 +1,129 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.ConsoleRoulette;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.store.MappedPlayerLoader;
+import com.gamesys.consoleroulette.application.store.PlayerRecordParser;
+
+/**
+ * The memory-mapped loader must end up with exactly the players the line by line loader does, whatever the chunks.
+ */
+public class MappedPlayerLoaderTest
+{
+	private static final int MAX_TOKENS = 3;
+
+	private static final String PLAYER_DELIMITER = ",";
+
+	// Enough lines for a few chunks of a megabyte.
+	private static final int LINES = 150000;
+
+	private ForkJoinPool pool;
+
+	private MappedPlayerLoader loader;
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		System.out.println("@Before - setUp");
+
+		pool = new ForkJoinPool(4);
+		loader = new MappedPlayerLoader(new PlayerRecordParser(Pattern.compile(PLAYER_DELIMITER), MAX_TOKENS, 1),
+				pool);
+		file = Files.createTempFile("players", ".txt");
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		System.out.println("@After - tearDown");
+
+		pool.shutdown();
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testSmallFile() throws IOException
+	{
+		System.out.println("@Test: Small player file");
+
+		// Two valid players, the invalid lines of ConsoleRouletteTest, Windows line breaks and no break at the end.
+		write("Tiki_Monkey,1.0,2.0\r\nTiki_Monkey -0.2\nTiki_Monkey,money\n\nTiki_Monkey,0.5,12.52,\nBarbara,2.0");
+
+		Map<String, Player> players = loader.load(file);
+
+		assertEquals(2, players.size());
+		assertEquals(100, players.get("Tiki_Monkey").getTotalWin());
+		assertEquals(200, players.get("Tiki_Monkey").getTotalBet());
+		assertEquals(200, players.get("Barbara").getTotalWin());
+		assertEquals(0, players.get("Barbara").getTotalBet());
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException
+	{
+		System.out.println("@Test: Empty player file");
+
+		write("");
+
+		assertEquals(0, loader.load(file).size());
+	}
+
+	@Test
+	public void testSameAsLineByLine() throws IOException
+	{
+		System.out.println("@Test: Chunked load matches line by line load");
+
+		StringBuilder content = new StringBuilder(LINES * 24);
+		for (int i = 0; i < LINES; i++)
+		{
+			if (i % 1000 == 7)
+			{
+				content.append("Bad Name,1.00\n");
+			}
+			else
+			{
+				// A name every thousand lines comes back later, the last line must win.
+				int name = (i % 1000 == 999) ? i - 100000 : i;
+				content.append("Player").append(Math.max(name, 0)).append(',').append(i % 50).append(".25,")
+						.append(i).append('\n');
+			}
+		}
+		write(content.toString());
+
+		Map<String, Player> mapped = loader.load(file);
+		Map<String, Player> lineByLine = new ConsoleRoulette().createPlayerMap(
+				new BufferedReader(new StringReader(content.toString())), Pattern.compile(PLAYER_DELIMITER),
+				MAX_TOKENS);
+
+		assertEquals(lineByLine.size(), mapped.size());
+		for (Player player : lineByLine.values())
+		{
+			Player other = mapped.get(player.getUserName());
+			assertEquals(player.getTotalWin(), other.getTotalWin());
+			assertEquals(player.getTotalBet(), other.getTotalBet());
+		}
+	}
+
+	private void write(String content) throws IOException
+	{
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,96 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.random.ChiSquare;
+import com.gamesys.consoleroulette.application.random.NumberSource;
+import com.gamesys.consoleroulette.application.random.ReplayNumberSource;
+import com.gamesys.consoleroulette.application.random.SecureNumberSource;
+import com.gamesys.consoleroulette.application.random.SplittableNumberSource;
+
+/**
+ * Every source must stay inside the bounds and spread the numbers evenly, and the replay source must give the same
+ * numbers for the same seed. The sources are seeded so the test gives the same result every time.
+ */
+public class NumberSourceTest
+{
+	private static final int LOWER_BOUND = 0;
+
+	private static final int UPPER_BOUND = 36;
+
+	private static final int SPINS = 370000;
+
+	@Before
+	public void setUp()
+	{
+		System.out.println("@Before - setUp");
+	}
+
+	@Test
+	public void testChiSquare()
+	{
+		System.out.println("@Test: Chi-square statistic and p-value");
+
+		assertEquals(0, ChiSquare.statistic(new long[] { 10, 10, 10, 10 }), 0);
+		assertEquals(0.8, ChiSquare.statistic(new long[] { 12, 8, 10, 10 }), 1e-9);
+
+		// Known values of the chi-square distribution.
+		assertEquals(0.05, ChiSquare.pValue(3.841, 1), 1e-4);
+		assertEquals(0.001, ChiSquare.pValue(66.619, 35), 1e-5);
+		assertEquals(0.5, ChiSquare.pValue(35.336, 36), 1e-3);
+	}
+
+	@Test
+	public void testUniformity() throws NoSuchAlgorithmException
+	{
+		System.out.println("@Test: Sources spread the numbers evenly");
+
+		SecureRandom secureRandom = SecureRandom.getInstance("SHA1PRNG");
+		secureRandom.setSeed(7);
+
+		assertUniform(new SplittableNumberSource(7));
+		assertUniform(new SecureNumberSource(secureRandom, 64));
+		assertUniform(new ReplayNumberSource(7));
+	}
+
+	@Test
+	public void testReplay()
+	{
+		System.out.println("@Test: Replay source repeats its numbers");
+
+		ReplayNumberSource first = new ReplayNumberSource(42);
+		int[] numbers = new int[100];
+		for (int i = 0; i < numbers.length; i++)
+		{
+			numbers[i] = first.nextNumber(LOWER_BOUND, UPPER_BOUND);
+		}
+		assertEquals(100, first.getSpins());
+
+		ReplayNumberSource replay = new ReplayNumberSource(first.getSeed());
+		replay.skipTo(60, LOWER_BOUND, UPPER_BOUND);
+		for (int i = 60; i < numbers.length; i++)
+		{
+			assertEquals(numbers[i], replay.nextNumber(LOWER_BOUND, UPPER_BOUND));
+		}
+	}
+
+	private static void assertUniform(NumberSource source)
+	{
+		long[] counts = new long[UPPER_BOUND - LOWER_BOUND + 1];
+		for (int i = 0; i < SPINS; i++)
+		{
+			int number = source.nextNumber(LOWER_BOUND, UPPER_BOUND);
+			assertTrue(number >= LOWER_BOUND && number <= UPPER_BOUND);
+			counts[number - LOWER_BOUND]++;
+		}
+		double pValue = ChiSquare.pValue(ChiSquare.statistic(counts), counts.length - 1);
+		assertTrue("p-value " + pValue + " of " + source.getClass().getSimpleName(), pValue > 0.001);
+	}
+}
@@ -0,0 +1,145 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.BetRecord;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.ConsoleRoundReporter;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+import com.gamesys.consoleroulette.application.game.GameNumberGenerator;
+import com.gamesys.consoleroulette.application.metrics.TableMetrics;
+import com.gamesys.consoleroulette.application.store.PlayerDirectory;
+import com.gamesys.consoleroulette.application.store.PlayerRecordParser;
+
+/**
+ * The player directory must find the players the loaders would, keep no more of them loaded than its budget allows
+ * and give evicted players back with the totals they had.
+ */
+public class PlayerDirectoryTest
+{
+	private static final int LOWER_BOUND = 0;
+
+	private static final int UPPER_BOUND = 36;
+
+	private static final int PLAYERS = 1000;
+
+	// Room for 50 loaded players.
+	private static final long MEMORY_BUDGET = 50 * PlayerDirectory.ESTIMATED_PLAYER_BYTES;
+
+	private Path file;
+
+	private Path directoryPath;
+
+	private PlayerDirectory directory;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		System.out.println("@Before - setUp");
+
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i < PLAYERS; i++)
+		{
+			lines.append("P").append(i).append(",0.5,1.0\n");
+		}
+		lines.append("Broken,abc\n");
+		lines.append("Zoë,2.0,3.0\r\n");
+		// The last line of a name wins, like when the file is loaded.
+		lines.append("P7,0.0,9.0");
+
+		file = Files.createTempFile("players", ".txt");
+		Files.write(file, lines.toString().getBytes(StandardCharsets.UTF_8));
+		directoryPath = Files.createTempDirectory("directory");
+		directory = PlayerDirectory.open(file, directoryPath, ',', new PlayerRecordParser(Pattern.compile(","), 3, 1),
+				MEMORY_BUDGET);
+	}
+
+	@After
+	public void tearDown() throws IOException
+	{
+		System.out.println("@After - tearDown");
+
+		directory.close();
+		Files.deleteIfExists(file);
+		try (Stream<Path> files = Files.list(directoryPath))
+		{
+			for (Path path : (Iterable<Path>) files::iterator)
+			{
+				Files.delete(path);
+			}
+		}
+		Files.delete(directoryPath);
+	}
+
+	@Test
+	public void testFind()
+	{
+		System.out.println("@Test: Players are found by name");
+
+		assertEquals(PLAYERS + 2, directory.size());
+		assertEquals(0, directory.getResidentCount());
+
+		Player player = directory.find("P42");
+		assertNotNull(player);
+		assertEquals("P42", player.getUserName());
+		assertEquals(100, player.getTotalBet());
+		assertEquals(50, player.getTotalWin());
+		assertSame(player, directory.find("P42"));
+
+		assertEquals(900, directory.find("P7").getTotalBet());
+		assertEquals(300, directory.find("Zoë").getTotalBet());
+		assertNull(directory.find("Broken"));
+		assertNull(directory.find("P1000"));
+		assertNull(directory.find("Nobody"));
+		assertEquals(3, directory.getResidentCount());
+	}
+
+	@Test
+	public void testEvictionKeepsTotals()
+	{
+		System.out.println("@Test: Idle players are evicted and come back with their totals");
+
+		GameNumberGenerator game = new GameNumberGenerator(LOWER_BOUND, UPPER_BOUND, 30, (lower, upper) -> 5,
+				new ConsoleRoundReporter(), new TableMetrics());
+		game.addBetListener(directory);
+		GameBetMonitor betMonitor = new GameBetMonitor(LOWER_BOUND, UPPER_BOUND, directory, game, new TableMetrics());
+		BetRecord betRecord = new BetRecord();
+
+		// 20 rounds of 20 players each, every one of them new, so most have to be evicted on the way.
+		for (int round = 0; round < 20; round++)
+		{
+			for (int i = 0; i < 20; i++)
+			{
+				String line = "P" + (round * 20 + i) + " " + ((i % 2 == 0) ? "5" : "6") + " 1";
+				assertEquals(GameBetMonitor.ACCEPTED, betMonitor.placeBet(line, 0, line.length(), betRecord));
+			}
+			game.playRound();
+			assertTrue(directory.getResidentCount() <= directory.getMaxResident() + 3 * 20);
+		}
+		assertTrue(directory.getEvictions() > 0);
+
+		// The winners of the first round were evicted long ago.
+		Player winner = directory.find("P0");
+		assertEquals(100 + 100, winner.getTotalBet());
+		assertEquals(50 + 3600, winner.getTotalWin());
+		Player loser = directory.find("P1");
+		assertEquals(100 + 100, loser.getTotalBet());
+		assertEquals(50, loser.getTotalWin());
+		assertEquals(400 + 2, directory.getLoads());
+	}
+}
@@ -0,0 +1,238 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.Bet;
+import com.gamesys.consoleroulette.application.bet.LedgerSnapshot;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.game.BetBook;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+import com.gamesys.consoleroulette.application.game.GameNumberGenerator;
+
+/**
+ * Several bet monitors record bets for the same players while several settlers pay out wins to them, all at once. At
+ * the end the totals of every player must be exactly the sum of what was accepted and paid.
+ */
+public class PlayerLedgerStressTest
+{
+	private static final int LOWER_BOUND = 1;
+
+	private static final int UPPER_BOUND = 36;
+
+	private static final int PLAYERS = 4;
+
+	private static final int BETTORS = 4;
+
+	private static final int SETTLERS = 4;
+
+	private static final int ROUNDS = 5000;
+
+	private static final long AMOUNT = 150;
+
+	private ConcurrentHashMap<String, Player> players;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp()
+	{
+		System.out.println("@Before - setUp");
+
+		players = new ConcurrentHashMap<String, Player>(PLAYERS);
+		for (int i = 0; i < PLAYERS; i++)
+		{
+			players.put("Player" + i, new Player("Player" + i));
+		}
+
+		executor = Executors.newFixedThreadPool(BETTORS + SETTLERS + 1);
+	}
+
+	@After
+	public void tearDown()
+	{
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testConcurrentBetsAndWins() throws Exception
+	{
+		System.out.println("@Test: Concurrent bets and wins");
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final Player[] table = players.values().toArray(new Player[0]);
+
+		List<Future<long[]>> bettors = new ArrayList<Future<long[]>>();
+		for (int t = 0; t < BETTORS; t++)
+		{
+			final int thread = t;
+			bettors.add(executor.submit(new Callable<long[]>()
+			{
+				@Override
+				public long[] call() throws Exception
+				{
+					SteppedGame game = new SteppedGame();
+					GameBetMonitor monitor = new GameBetMonitor(LOWER_BOUND, UPPER_BOUND, players, game);
+					long[] accepted = new long[PLAYERS];
+
+					start.await();
+					for (int round = 0; round < ROUNDS; round++)
+					{
+						// Every monitor bets on its own games, so each player gets bets from every thread.
+						game.step((long) round * BETTORS + thread);
+						for (int p = 0; p < PLAYERS; p++)
+						{
+							if (monitor.recordBet(new Bet(table[p].getUserName(), RouletteRange.ODD, AMOUNT)))
+							{
+								accepted[p] += AMOUNT;
+							}
+						}
+					}
+					return accepted;
+				}
+			}));
+		}
+
+		List<Future<long[]>> settlers = new ArrayList<Future<long[]>>();
+		for (int t = 0; t < SETTLERS; t++)
+		{
+			settlers.add(executor.submit(new Callable<long[]>()
+			{
+				@Override
+				public long[] call() throws Exception
+				{
+					long[] paid = new long[PLAYERS];
+					Bet bet = new Bet("", RouletteRange.ODD, AMOUNT);
+
+					start.await();
+					for (int round = 0; round < ROUNDS; round++)
+					{
+						int winningNumber = round % UPPER_BOUND + LOWER_BOUND;
+						int multiplier = RouletteRange.payout(RouletteRange.ODD.ordinal(), winningNumber);
+						for (int p = 0; p < PLAYERS; p++)
+						{
+							paid[p] += table[p].settleBet(bet, winningNumber, multiplier);
+						}
+					}
+					return paid;
+				}
+			}));
+		}
+
+		// Totals only ever go up, so a snapshot that isn't torn never goes down on either side.
+		Future<Boolean> reader = executor.submit(new Callable<Boolean>()
+		{
+			@Override
+			public Boolean call() throws Exception
+			{
+				long[] lastBet = new long[PLAYERS];
+				long[] lastWin = new long[PLAYERS];
+
+				start.await();
+				while (running.get())
+				{
+					for (int p = 0; p < PLAYERS; p++)
+					{
+						LedgerSnapshot snapshot = table[p].getTotals();
+						if (snapshot.getTotalBet() < lastBet[p] || snapshot.getTotalWin() < lastWin[p])
+						{
+							return false;
+						}
+						lastBet[p] = snapshot.getTotalBet();
+						lastWin[p] = snapshot.getTotalWin();
+					}
+				}
+				return true;
+			}
+		});
+
+		// Every accepted bet and settled result is printed, keep the console quiet.
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream()
+		{
+			@Override
+			public void write(int b)
+			{
+			}
+		}));
+		long[] expectedBet = new long[PLAYERS];
+		long[] expectedWin = new long[PLAYERS];
+		try
+		{
+			start.countDown();
+			for (Future<long[]> bettor : bettors)
+			{
+				add(expectedBet, bettor.get(60, TimeUnit.SECONDS));
+			}
+			for (Future<long[]> settler : settlers)
+			{
+				add(expectedWin, settler.get(60, TimeUnit.SECONDS));
+			}
+			running.set(false);
+		}
+		finally
+		{
+			System.setOut(console);
+		}
+
+		assertTrue("A reader saw a total go down", reader.get(60, TimeUnit.SECONDS));
+		for (int p = 0; p < PLAYERS; p++)
+		{
+			String msg = "The totals are not exact for [" + table[p].getUserName() + "]";
+			assertTrue(msg, expectedBet[p] > 0);
+			assertEquals(msg, expectedBet[p], table[p].getTotalBet());
+			assertEquals(msg, expectedWin[p], table[p].getTotalWin());
+		}
+	}
+
+	private static void add(long[] totals, long[] amounts)
+	{
+		for (int i = 0; i < totals.length; i++)
+		{
+			totals[i] += amounts[i];
+		}
+	}
+
+	/**
+	 * Game that never runs. The bettor moves it to the next game itself, and the books are never settled.
+	 */
+	private static final class SteppedGame extends GameNumberGenerator
+	{
+		private volatile BetBook betBook = new BetBook();
+
+		SteppedGame()
+		{
+			super(LOWER_BOUND, UPPER_BOUND, 0);
+		}
+
+		void step(long gameId)
+		{
+			betBook = new BetBook(gameId, BetBook.NO_LIMIT);
+		}
+
+		@Override
+		public BetBook getOpenBook()
+		{
+			return betBook;
+		}
+	}
+}
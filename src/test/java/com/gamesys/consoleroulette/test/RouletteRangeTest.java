@@ -0,0 +1,132 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+
+public class RouletteRangeTest
+{
+	private static final int LOWER_BOUND = 0;
+
+	private static final int UPPER_BOUND = 36;
+
+	private static final List<Integer> RED = Arrays.asList(1, 3, 5, 7, 9, 12, 14, 16, 18, 19, 21, 23, 25, 27, 30, 32,
+			34, 36);
+
+	@Test
+	public void testPayoutTable()
+	{
+		System.out.println("@Test: Payout table against the choice rules");
+
+		for (RouletteRange choice : RouletteRange.values())
+		{
+			for (int winningNumber = LOWER_BOUND; winningNumber <= UPPER_BOUND; winningNumber++)
+			{
+				String msg = "The payout is not as expected for [" + choice.getValue() + "] on " + winningNumber;
+
+				assertEquals(msg, wins(choice, winningNumber) ? choice.getMultiplier() : 0,
+						RouletteRange.payout(choice.ordinal(), winningNumber));
+			}
+		}
+	}
+
+	@Test
+	public void testZeroPaysOnlyBetsOnZero()
+	{
+		System.out.println("@Test: Zero pays only the bets that cover it");
+
+		for (RouletteRange choice : RouletteRange.values())
+		{
+			boolean onZero = choice == RouletteRange.ZERO || choice.getValue().startsWith("0-");
+			assertEquals("Zero paid out [" + choice.getValue() + "]", onZero ? choice.getMultiplier() : 0,
+					RouletteRange.payout(choice.ordinal(), 0));
+		}
+	}
+
+	@Test
+	public void testLayout()
+	{
+		System.out.println("@Test: Every bet of the European layout, paying 36 for a number");
+
+		int[] choicesBySize = new int[RouletteRange.HIGHEST_NUMBER + 2];
+		for (RouletteRange choice : RouletteRange.values())
+		{
+			int size = Long.bitCount(choice.getMask());
+			choicesBySize[size]++;
+			assertEquals(choice.getValue(), 36, size * choice.getMultiplier());
+		}
+
+		// Straights, splits, streets and trios, corners and the first four, six lines, dozens and columns, even money.
+		assertEquals(37, choicesBySize[1]);
+		assertEquals(60, choicesBySize[2]);
+		assertEquals(14, choicesBySize[3]);
+		assertEquals(23, choicesBySize[4]);
+		assertEquals(11, choicesBySize[6]);
+		assertEquals(6, choicesBySize[12]);
+		assertEquals(6, choicesBySize[18]);
+	}
+
+	@Test
+	public void testOrdinalOf()
+	{
+		System.out.println("@Test: Choices found from their spelling");
+
+		assertEquals(RouletteRange.SEVENTEEN.ordinal(), ordinalOf("17"));
+		assertEquals(RouletteRange.ZERO.ordinal(), ordinalOf("0"));
+		assertEquals(RouletteRange.RED.ordinal(), ordinalOf("red"));
+		assertEquals(RouletteRange.SPLIT_1_2.ordinal(), ordinalOf("1-2"));
+		assertEquals(RouletteRange.SPLIT_1_2.ordinal(), ordinalOf("2-1"));
+		assertEquals(RouletteRange.CORNER_1_2_4_5.ordinal(), ordinalOf("5-4-2-1"));
+		assertEquals(RouletteRange.SIX_LINE_31_36.ordinal(), ordinalOf("31-32-33-34-35-36"));
+		assertEquals(RouletteRange.FIRST_FOUR.ordinal(), ordinalOf("0-1-2-3"));
+
+		// Not next to each other, the same number twice, leading zeros, off the wheel and half a list.
+		for (String value : new String[] { "1-3", "1-1", "01", "00", "37", "1-", "-1", "1--2", "1-2-3-4", "", "REDS" })
+		{
+			assertTrue(value, ordinalOf(value) < 0);
+		}
+	}
+
+	private static int ordinalOf(String value)
+	{
+		return RouletteRange.ordinalOf(value, 0, value.length());
+	}
+
+	/**
+	 * The rules of the layout, written out separately from the masks.
+	 */
+	private static boolean wins(RouletteRange choice, int number)
+	{
+		switch (choice.getValue())
+		{
+		case "ODD":
+			return number % 2 == 1;
+		case "EVEN":
+			return number != 0 && number % 2 == 0;
+		case "RED":
+			return RED.contains(number);
+		case "BLACK":
+			return number != 0 && !RED.contains(number);
+		case "LOW":
+			return number >= 1 && number <= 18;
+		case "HIGH":
+			return number >= 19;
+		case "DOZEN1":
+		case "DOZEN2":
+		case "DOZEN3":
+			return number != 0 && (number - 1) / 12 + 1 == choice.getValue().charAt(5) - '0';
+		case "COLUMN1":
+		case "COLUMN2":
+		case "COLUMN3":
+			return number != 0 && (number - 1) % 3 + 1 == choice.getValue().charAt(6) - '0';
+		default:
+			return Arrays.asList(choice.getValue().split("-")).contains(Integer.toString(number));
+		}
+	}
+}
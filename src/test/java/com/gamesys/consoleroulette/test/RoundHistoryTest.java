@@ -0,0 +1,107 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.BetResult;
+import com.gamesys.consoleroulette.application.bet.Outcome;
+import com.gamesys.consoleroulette.application.bet.RouletteRange;
+import com.gamesys.consoleroulette.application.bet.RoundHistory;
+
+public class RoundHistoryTest
+{
+	private static final int DEPTH = 4;
+
+	private RoundHistory history;
+
+	@Before
+	public void setUp()
+	{
+		System.out.println("@Before - setUp");
+
+		history = new RoundHistory(DEPTH);
+	}
+
+	@Test
+	public void testOneBetPerGame()
+	{
+		System.out.println("@Test: One bet per game");
+
+		assertTrue(history.record(3, RouletteRange.ODD.ordinal(), 100));
+		assertFalse("A second bet on the same game was recorded", history.record(3, RouletteRange.EVEN.ordinal(), 200));
+
+		assertEquals(RouletteRange.ODD, history.getBet("Barbara", 3).getChoice());
+		assertEquals(100, history.getBet("Barbara", 3).getAmount());
+	}
+
+	@Test
+	public void testSeveralBetsPerGame()
+	{
+		System.out.println("@Test: Several bets per game, up to the maximum");
+
+		for (int i = 0; i < 10; i++)
+		{
+			assertEquals(i, history.record(3, RouletteRange.fromValue(String.valueOf(i + 1)).ordinal(), 100 + i, 10));
+		}
+		assertEquals(-1, history.record(3, RouletteRange.ODD.ordinal(), 100, 10));
+
+		assertEquals(10, history.getBetCount(3));
+		assertEquals(1045, history.getStaked(3));
+		assertEquals(RouletteRange.ONE, history.getBet("Barbara", 3).getChoice());
+		assertEquals(RouletteRange.TEN, history.getBet("Barbara", 3, 9).getChoice());
+		assertEquals(109, history.getBet("Barbara", 3, 9).getAmount());
+		assertNull(history.getBet("Barbara", 3, 10));
+
+		// A new game in the slot starts with no bets.
+		assertEquals(0, history.record(3 + DEPTH, RouletteRange.ODD.ordinal(), 50, 10));
+		assertEquals(1, history.getBetCount(3 + DEPTH));
+		assertEquals(50, history.getStaked(3 + DEPTH));
+		assertEquals(0, history.getBetCount(3));
+
+		history.settle(3 + DEPTH, 9, 100);
+		assertNull(history.getResult("Barbara", 3));
+		assertEquals(100, history.getResult("Barbara", 3 + DEPTH).getWinnings());
+	}
+
+	@Test
+	public void testOldestGameIsEvicted()
+	{
+		System.out.println("@Test: Oldest game is evicted");
+
+		for (long gameId = 0; gameId <= DEPTH; gameId++)
+		{
+			assertTrue(history.record(gameId, RouletteRange.SEVEN.ordinal(), 100));
+		}
+
+		assertFalse("The oldest game was not evicted", history.contains(0));
+		for (long gameId = 1; gameId <= DEPTH; gameId++)
+		{
+			assertTrue("Game " + gameId + " was evicted", history.contains(gameId));
+		}
+
+		assertFalse("A bet for an evicted game was recorded", history.record(0, RouletteRange.SEVEN.ordinal(), 100));
+	}
+
+	@Test
+	public void testSettlement()
+	{
+		System.out.println("@Test: Settlement");
+
+		history.record(7, RouletteRange.SEVEN.ordinal(), 100);
+		assertNull("An unsettled bet has a result", history.getResult("Barbara", 7));
+
+		history.record(7, RouletteRange.ODD.ordinal(), 50, 2);
+		history.settle(7, 7, 3600);
+		history.settle(7, 7, 100);
+
+		BetResult result = history.getResult("Barbara", 7);
+		assertEquals(Outcome.WIN, result.getOutcome());
+		assertEquals(3700, result.getWinnings());
+		assertEquals(7, result.getWinningNumber());
+	}
+}
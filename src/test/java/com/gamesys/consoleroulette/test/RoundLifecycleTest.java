@@ -0,0 +1,163 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.BetRecord;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.BetBook;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+import com.gamesys.consoleroulette.application.game.GameNumberGenerator;
+import com.gamesys.consoleroulette.application.game.RoundReporter;
+
+/**
+ * A game takes bets until its cutoff, then the next game does while the first one is spun and settled. Every bet
+ * accepted must be settled exactly once, in the game it was accepted for.
+ */
+public class RoundLifecycleTest
+{
+	private static final int LOWER_BOUND = 1;
+
+	private static final int UPPER_BOUND = 36;
+
+	private static final int PLAYERS = 200;
+
+	private static final int ROUNDS = 500;
+
+	private ConcurrentHashMap<String, Player> players;
+
+	@Before
+	public void setUp()
+	{
+		System.out.println("@Before - setUp");
+
+		players = new ConcurrentHashMap<String, Player>(PLAYERS * 2);
+		for (int i = 0; i < PLAYERS; i++)
+		{
+			players.put("Player" + i, new Player("Player" + i));
+		}
+	}
+
+	@Test
+	public void testBetsAfterCutoffGoToNextGame()
+	{
+		System.out.println("@Test: Bets after the cutoff go to the next game");
+
+		SettlementCounter counter = new SettlementCounter();
+		GameNumberGenerator game = new GameNumberGenerator(LOWER_BOUND, UPPER_BOUND, 30, new Random(1), counter);
+		GameBetMonitor betMonitor = new GameBetMonitor(LOWER_BOUND, UPPER_BOUND, players, game);
+		BetRecord betRecord = new BetRecord();
+
+		BetBook first = game.getOpenBook();
+		assertEquals(GameBetMonitor.ACCEPTED, place(betMonitor, "Player0 EVEN 10", betRecord));
+
+		game.closeBetting();
+		assertEquals(BetBook.State.CLOSED, first.getState());
+		assertEquals(1, game.getCurrentGameId());
+
+		// Player0 already bet on game 0, but game 1 is a new game.
+		assertEquals(GameBetMonitor.ACCEPTED, place(betMonitor, "Player0 ODD 10", betRecord));
+		assertEquals(GameBetMonitor.ACCEPTED, place(betMonitor, "Player1 ODD 10", betRecord));
+		assertEquals(1, first.size());
+		assertEquals(2, game.getOpenBook().size());
+
+		// The spin settles the closed game only, and closing again before it changes nothing.
+		game.closeBetting();
+		game.playRound();
+		assertEquals(BetBook.State.SETTLING, first.getState());
+		assertEquals(1, counter.settled.get());
+		assertEquals(BetBook.State.OPEN, game.getOpenBook().getState());
+		assertEquals(1, game.getOpenBook().getGameId());
+
+		game.playRound();
+		assertEquals(3, counter.settled.get());
+		assertEquals(2, game.getCurrentGameId());
+	}
+
+	@Test
+	public void testBetsWhileSettling() throws InterruptedException
+	{
+		System.out.println("@Test: Bets taken while games settle are all settled once");
+
+		SettlementCounter counter = new SettlementCounter();
+		final GameNumberGenerator game = new GameNumberGenerator(LOWER_BOUND, UPPER_BOUND, 30, new Random(1), counter);
+		final GameBetMonitor betMonitor = new GameBetMonitor(LOWER_BOUND, UPPER_BOUND, players, game);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicLong accepted = new AtomicLong();
+
+		Thread bettor = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				BetRecord betRecord = new BetRecord();
+				int i = 0;
+				while (running.get())
+				{
+					String line = "Player" + (i++ % PLAYERS) + " " + (i % UPPER_BOUND + 1) + " 1";
+					if (betMonitor.placeBet(line, 0, line.length(), betRecord) == GameBetMonitor.ACCEPTED)
+					{
+						accepted.incrementAndGet();
+					}
+				}
+			}
+		});
+		bettor.start();
+
+		for (int round = 0; round < ROUNDS; round++)
+		{
+			game.closeBetting();
+			game.playRound();
+		}
+		running.set(false);
+		bettor.join();
+		// The bets of the game still open are settled too.
+		game.playRound();
+
+		assertTrue(accepted.get() > 0);
+		assertEquals(accepted.get(), counter.settled.get());
+		long staked = 0;
+		for (Player player : players.values())
+		{
+			staked += player.getTotalBet();
+		}
+		assertEquals(accepted.get() * 100, staked);
+	}
+
+	private static int place(GameBetMonitor betMonitor, String line, BetRecord betRecord)
+	{
+		return betMonitor.placeBet(line, 0, line.length(), betRecord);
+	}
+
+	/**
+	 * Counts the bets settled instead of printing them.
+	 */
+	private static final class SettlementCounter implements RoundReporter
+	{
+		private final AtomicLong settled = new AtomicLong();
+
+		@Override
+		public void roundStarted(long gameId, int winningNumber)
+		{
+		}
+
+		@Override
+		public void betSettled(Player player, long gameId, int choice, long amount, long winnings)
+		{
+			settled.incrementAndGet();
+		}
+
+		@Override
+		public void roundFinished(long gameId, int betsSettled)
+		{
+		}
+	}
+}
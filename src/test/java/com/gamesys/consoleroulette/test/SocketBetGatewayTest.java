@@ -0,0 +1,114 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.BetBook;
+import com.gamesys.consoleroulette.application.game.BetLineParser;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+import com.gamesys.consoleroulette.application.game.GameNumberGenerator;
+import com.gamesys.consoleroulette.application.intake.SocketBetGateway;
+
+public class SocketBetGatewayTest
+{
+	private static final int LOWER_BOUND = 1;
+
+	private static final int UPPER_BOUND = 36;
+
+	private ConcurrentHashMap<String, Player> players;
+
+	private BetBook betBook;
+
+	private SocketBetGateway gateway;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		System.out.println("@Before - setUp");
+
+		players = new ConcurrentHashMap<String, Player>(2);
+		players.put("Barbara", new Player("Barbara"));
+		players.put("Tiki_Monkey", new Player("Tiki_Monkey"));
+
+		betBook = new BetBook(10, BetBook.NO_LIMIT);
+		GameNumberGenerator gng = EasyMock.createMock(GameNumberGenerator.class);
+		EasyMock.expect(gng.getOpenBook()).andStubReturn(betBook);
+		EasyMock.replay(gng);
+
+		GameBetMonitor gbm = new GameBetMonitor(LOWER_BOUND, UPPER_BOUND, players, gng);
+		// One bet per game, so the second bet of a player is turned away.
+		gbm.setMaxBetsPerGame(1);
+		gateway = new SocketBetGateway(gbm, 0);
+		new Thread(gateway, "BetGateway").start();
+	}
+
+	@After
+	public void tearDown()
+	{
+		gateway.close();
+	}
+
+	@Test
+	public void testPipelinedBets() throws IOException
+	{
+		System.out.println("@Test: Pipelined bets over the gateway");
+
+		StringBuilder tooLong = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+		{
+			tooLong.append('x');
+		}
+
+		String[] lines =
+		{ "Barbara 1 1.60", "Barbara 2 1.60", "Andreas 1 0.5", tooLong.toString(), "Tiki_Monkey odd 3.00" };
+		String[] expected =
+		{ GameBetMonitor.message(GameBetMonitor.ACCEPTED), GameBetMonitor.message(GameBetMonitor.TOO_MANY_BETS),
+				GameBetMonitor.message(BetLineParser.UNKNOWN_PLAYER), GameBetMonitor.message(BetLineParser.MALFORMED),
+				GameBetMonitor.message(GameBetMonitor.ACCEPTED) };
+
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), gateway.getPort());
+		try
+		{
+			socket.setSoTimeout(10000);
+
+			// Everything in one go, without waiting for answers.
+			StringBuilder request = new StringBuilder();
+			for (String line : lines)
+			{
+				request.append(line).append("\r\n");
+			}
+			OutputStream out = socket.getOutputStream();
+			out.write(request.toString().getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+					StandardCharsets.US_ASCII));
+			for (int i = 0; i < lines.length; i++)
+			{
+				assertEquals("The answer is not as expected for [" + lines[i] + "]", expected[i], in.readLine());
+			}
+		}
+		finally
+		{
+			socket.close();
+		}
+
+		assertEquals("The accepted bets are not in the book", 2, betBook.size());
+		assertEquals(160, players.get("Barbara").getTotalBet());
+		assertEquals(300, players.get("Tiki_Monkey").getTotalBet());
+	}
+}
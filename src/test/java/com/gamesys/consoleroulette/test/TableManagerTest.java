@@ -0,0 +1,216 @@
+package com.gamesys.consoleroulette.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gamesys.consoleroulette.application.bet.BetRecord;
+import com.gamesys.consoleroulette.application.bet.Player;
+import com.gamesys.consoleroulette.application.game.GameBetMonitor;
+import com.gamesys.consoleroulette.application.game.GameNumberGenerator;
+import com.gamesys.consoleroulette.application.game.RoundReporter;
+import com.gamesys.consoleroulette.application.game.Table;
+import com.gamesys.consoleroulette.application.game.TableConfig;
+import com.gamesys.consoleroulette.application.game.TableManager;
+import com.gamesys.consoleroulette.application.random.SecureNumberSource;
+
+/**
+ * Many tables on a couple of scheduler threads: every table must keep playing its games and the threads must not grow
+ * with the tables.
+ */
+public class TableManagerTest
+{
+	private static final int TABLES = 200;
+
+	private static final int THREADS = 2;
+
+	private static final int FREQUENCY = 1;
+
+	private TableManager tableManager;
+
+	// Games played over all the tables.
+	private final AtomicLong roundsPlayed = new AtomicLong();
+
+	@Before
+	public void setUp()
+	{
+		System.out.println("@Before - setUp");
+
+		tableManager = new TableManager(THREADS);
+	}
+
+	@After
+	public void tearDown() throws InterruptedException
+	{
+		System.out.println("@After - tearDown");
+
+		tableManager.shutdown(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testManyTablesFewThreads() throws Exception
+	{
+		System.out.println("@Test: Many tables on few threads");
+
+		for (int i = 0; i < TABLES; i++)
+		{
+			ConcurrentHashMap<String, Player> players = new ConcurrentHashMap<String, Player>(2);
+			players.put("Player" + i, new Player("Player" + i));
+			tableManager.addTable("Table" + i, config(1, 36, new Random(i)).players(players));
+		}
+
+		// Every table should get to its second game within a few spins.
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!allTablesPlayed(2) && System.nanoTime() < deadline)
+		{
+			Thread.sleep(100);
+		}
+
+		assertTrue(allTablesPlayed(2));
+		assertTrue(roundsPlayed.get() >= 2 * TABLES);
+		assertTrue(tableManager.getThreadCount() <= THREADS);
+
+		// Every table can be watched over JMX.
+		ObjectName name = new ObjectName("com.gamesys.consoleroulette:type=Table,name=\"Table7\"");
+		long rounds = (Long) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "RoundsPlayed");
+		assertTrue(rounds >= 2);
+	}
+
+	@Test
+	public void testTablesAreSeparate()
+	{
+		System.out.println("@Test: Tables have their own players and monitor");
+
+		ConcurrentHashMap<String, Player> firstPlayers = new ConcurrentHashMap<String, Player>(2);
+		ConcurrentHashMap<String, Player> secondPlayers = new ConcurrentHashMap<String, Player>(2);
+		Table first = tableManager.addTable("First", config(1, 36, new Random(1)).players(firstPlayers));
+		Table second = tableManager.addTable("Second", config(0, 18, new Random(2)).players(secondPlayers));
+
+		assertNotSame(first.getBetMonitor(), second.getBetMonitor());
+		assertNotSame(first.getGame(), second.getGame());
+		assertTrue(first.getPlayers() == firstPlayers);
+		assertTrue(second.getPlayers() == secondPlayers);
+		assertEquals(18, second.getGame().getUpperBound());
+		assertEquals(2, tableManager.getTables().size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateTableName()
+	{
+		System.out.println("@Test: Table names are unique");
+
+		tableManager.addTable("Same", config(1, 36, new Random(1)).players(new ConcurrentHashMap<String, Player>()));
+		tableManager.addTable("Same", config(1, 36, new Random(2)).players(new ConcurrentHashMap<String, Player>()));
+	}
+
+	@Test
+	public void testRemoveTable()
+	{
+		System.out.println("@Test: Removed tables stop");
+
+		Table table = tableManager.addTable("Gone",
+				config(1, 36, new Random(1)).players(new ConcurrentHashMap<String, Player>()));
+		assertTrue(table.isRunning());
+
+		assertTrue(tableManager.removeTable("Gone") == table);
+		assertFalse(table.isRunning());
+		assertTrue(tableManager.getTable("Gone") == null);
+	}
+
+	@Test
+	public void testFirstGameAndLiability()
+	{
+		System.out.println("@Test: A table starts from its first game id and liability limit");
+
+		ConcurrentHashMap<String, Player> players = new ConcurrentHashMap<String, Player>();
+		players.put("Barbara", new Player("Barbara"));
+		Table table = tableManager.addTable("Resumed", new TableConfig(1, 36, 60).firstGameId(42).maxLiability(3600)
+				.players(players).numberSource(new SecureNumberSource()).roundReporter(new CountingReporter()));
+
+		assertEquals(42, table.getGame().getCurrentGameId());
+
+		// A bet on a number pays 36 times the stake, so 1.00 is as much as the table takes on it.
+		GameBetMonitor betMonitor = table.getBetMonitor();
+		BetRecord record = new BetRecord();
+		assertEquals(GameBetMonitor.OVER_LIABILITY, betMonitor.placeBet("Barbara 1 2", 0, 11, record));
+		assertEquals(GameBetMonitor.ACCEPTED, betMonitor.placeBet("Barbara 1 1", 0, 11, record));
+
+		// The metrics of the table read the liabilities of its game.
+		assertEquals(3600, table.getGame().getMetrics().getLiabilityByNumber()[1]);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testResumeTooLate()
+	{
+		System.out.println("@Test: A game can't be resumed once it is under way");
+
+		GameNumberGenerator game = new GameNumberGenerator(1, 36, FREQUENCY);
+		game.closeBetting();
+		game.resumeFrom(42);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTableWithoutPlayers()
+	{
+		System.out.println("@Test: A table needs its players or a lookup of them");
+
+		tableManager.addTable("Empty", config(1, 36, new Random(1)));
+	}
+
+	/**
+	 * A table of the test: FREQUENCY seconds between spins, numbers from a seeded generator, games counted.
+	 */
+	private TableConfig config(int lowerBound, int upperBound, Random randomGenerator)
+	{
+		return new TableConfig(lowerBound, upperBound, FREQUENCY)
+				.numberSource((lower, upper) -> randomGenerator.nextInt(upper - lower + 1) + lower)
+				.roundReporter(new CountingReporter());
+	}
+
+	private boolean allTablesPlayed(long games)
+	{
+		for (Table table : tableManager.getTables())
+		{
+			if (table.getGame().getCurrentGameId() < games)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Counts the games instead of printing them.
+	 */
+	private final class CountingReporter implements RoundReporter
+	{
+		@Override
+		public void roundStarted(long gameId, int winningNumber)
+		{
+		}
+
+		@Override
+		public void betSettled(Player player, long gameId, int choice, long amount, long winnings)
+		{
+		}
+
+		@Override
+		public void roundFinished(long gameId, int betsSettled)
+		{
+			roundsPlayed.incrementAndGet();
+		}
+	}
+}